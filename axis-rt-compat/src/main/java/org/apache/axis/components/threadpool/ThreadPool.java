@@ -17,6 +17,7 @@
 package org.apache.axis.components.threadpool;
 
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.threads.ThreadFactoryFactory;
 import org.apache.axis.i18n.Messages;
 import org.apache.commons.logging.Log;
 
@@ -99,12 +100,15 @@ public class ThreadPool {
         if (log.isDebugEnabled()) {
             log.debug("Enter: ThreadPool::addWorker");
         }
-        if (_shutdown || threadcount == maxPoolSize) {
-            throw new IllegalStateException(Messages.getMessage("illegalStateException00"));
+        Thread thread;
+        synchronized (this) {
+            if (_shutdown || threadcount == maxPoolSize) {
+                throw new IllegalStateException(Messages.getMessage("illegalStateException00"));
+            }
+            thread = ThreadFactoryFactory.getFactory().newThread(worker);
+            threads.put(worker, thread);
+            threadcount++;
         }
-        Thread thread = new Thread(worker);
-        threads.put(worker, thread);
-        threadcount++;
         thread.start();
         if (log.isDebugEnabled()) {
             log.debug("Exit: ThreadPool::addWorker");
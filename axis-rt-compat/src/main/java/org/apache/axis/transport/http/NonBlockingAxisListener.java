@@ -0,0 +1,852 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.transport.http;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.threadpool.ThreadPool;
+import org.apache.axis.components.threads.ThreadFactoryFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * The non-blocking front end of {@link SimpleAxisServer}, used when its
+ * server socket belongs to a <code>ServerSocketChannel</code>.
+ * <p>
+ * A single thread accepts the connections and reads from all of them with
+ * a selector.  Requests are parsed as their bytes arrive; once a request is
+ * complete it is queued for a {@link SimpleAxisWorker} running in one of at
+ * most <code>maxPending</code> pooled threads (a single thread from the
+ * {@link ThreadFactoryFactory} if the server doesn't use threads), and the
+ * response is written back by the selector thread again.  Requests never
+ * run on the selector thread; if the pool has no thread to spare, they
+ * stay queued until a worker is free or a thread can be added.
+ * Connections are kept open as HTTP/1.1 (or a
+ * <code>Connection: keep-alive</code> header) asks for, pipelined requests
+ * are answered in order, and chunked request bodies are decoded.
+ * <p>
+ * When all workers are busy, complete requests are held back and no new
+ * connections are accepted until a worker is free again; connections that
+ * are waiting for their next request don't occupy a thread.
+ * <p>
+ * The largest request body accepted is set with the
+ * <code>axis.simpleServer.maxRequestSize</code> property (in bytes), the
+ * time after which an idle connection is closed with
+ * <code>axis.simpleServer.keepAliveTimeout</code> (in milliseconds).
+ */
+public class NonBlockingAxisListener implements Runnable {
+    protected static Log log =
+            LogFactory.getLog(NonBlockingAxisListener.class.getName());
+
+    public static final String PROP_MAX_REQUEST_SIZE =
+            "axis.simpleServer.maxRequestSize";
+    public static final String PROP_KEEP_ALIVE_TIMEOUT =
+            "axis.simpleServer.keepAliveTimeout";
+
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 30000;
+
+    // initial size of the input buffer of a connection
+    private static final int BUFSIZ = 8192;
+
+    // the longest request line and headers accepted
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    // how often idle connections are looked for
+    private static final long SWEEP_INTERVAL = 1000;
+
+    private static final byte[] CONTINUE =
+            "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+
+    private final SimpleAxisServer server;
+    private final ServerSocketChannel serverChannel;
+    private final ThreadPool pool;
+    private final int maxPending;
+    private final int maxRequestSize;
+    private final long keepAliveTimeout;
+
+    private Selector selector;
+    private SelectionKey acceptKey;
+    private volatile boolean stopped = false;
+
+    // The following are only used by the selector thread.
+    // requests handed to a worker and not yet answered
+    private int pending = 0;
+    // connections with a complete request that wait for a free worker
+    private final LinkedList parked = new LinkedList();
+
+    // Shared with the workers and guarded by the queue itself.
+    private final LinkedList queue = new LinkedList();
+    private int idle = 0;
+    private int workers = 0;
+
+    // connections whose response is ready; guarded by itself
+    private final List done = new ArrayList();
+
+    /**
+     * @param server the server the requests are processed for
+     * @param serverChannel the channel to accept connections from
+     * @param pool the pool to run the workers in
+     * @param maxPending the number of requests processed at the same time
+     */
+    public NonBlockingAxisListener(SimpleAxisServer server,
+                                   ServerSocketChannel serverChannel,
+                                   ThreadPool pool,
+                                   int maxPending) {
+        this.server = server;
+        this.serverChannel = serverChannel;
+        this.pool = pool;
+        this.maxPending = Math.max(maxPending, 1);
+        this.maxRequestSize = getProperty(PROP_MAX_REQUEST_SIZE,
+                                          DEFAULT_MAX_REQUEST_SIZE);
+        this.keepAliveTimeout = getProperty(PROP_KEEP_ALIVE_TIMEOUT,
+                                            DEFAULT_KEEP_ALIVE_TIMEOUT);
+    }
+
+    private static int getProperty(String name, int defaultValue) {
+        String value = AxisProperties.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Accept connections and serve their requests until {@link #stop()} is
+     * called or the server channel is closed.
+     */
+    public void run() {
+        try {
+            selector = Selector.open();
+            serverChannel.configureBlocking(false);
+            acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            log.error(Messages.getMessage("exception00"), e);
+            closeSelector();
+            return;
+        }
+
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        try {
+            while (!stopped && serverChannel.isOpen()) {
+                selector.select(SWEEP_INTERVAL);
+                if (stopped) {
+                    break;
+                }
+                finishResponses();
+
+                for (Iterator i = selector.selectedKeys().iterator(); i.hasNext();) {
+                    SelectionKey key = (SelectionKey) i.next();
+                    i.remove();
+                    handle(key);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    closeIdleConnections(now);
+                    retryDispatchers();
+                    nextSweep = now + SWEEP_INTERVAL;
+                }
+            }
+        } catch (IOException e) {
+            log.error(Messages.getMessage("exception00"), e);
+        } finally {
+            stop();
+            closeSelector();
+        }
+    }
+
+    /**
+     * Stop accepting and serving requests.  Requests being processed are
+     * finished, but their responses are not sent any more.
+     */
+    public void stop() {
+        stopped = true;
+        synchronized (queue) {
+            queue.clear();
+            queue.notifyAll();
+        }
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void closeSelector() {
+        if (selector == null) {
+            return;
+        }
+        for (Iterator i = selector.keys().iterator(); i.hasNext();) {
+            SelectionKey key = (SelectionKey) i.next();
+            if (key.attachment() != null) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug(Messages.getMessage("exception00"), e);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (CancelledKeyException e) {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (IOException e) {
+            log.debug(Messages.getMessage("exception00"), e);
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while (parked.isEmpty() && (channel = serverChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(channel);
+                connection.key =
+                    channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                log.debug(Messages.getMessage("exception00"), e);
+                try {
+                    channel.close();
+                } catch (IOException e2) {
+                }
+            }
+        }
+    }
+
+    private void closeIdleConnections(long now) {
+        for (Iterator i = selector.keys().iterator(); i.hasNext();) {
+            SelectionKey key = (SelectionKey) i.next();
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && !connection.busy
+                    && now - connection.lastActive > keepAliveTimeout) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Queue a complete request for a worker, or hold it back if all workers
+     * are busy.
+     */
+    private void submit(Connection connection) {
+        if (pending >= maxPending) {
+            parked.add(connection);
+            if (acceptKey.isValid()) {
+                acceptKey.interestOps(0);
+            }
+            return;
+        }
+        pending++;
+        synchronized (queue) {
+            queue.add(connection);
+            if (queue.size() <= idle) {
+                queue.notify();
+                return;
+            }
+        }
+        startDispatcher();
+    }
+
+    /**
+     * Start another worker for the queued requests.  Without threads
+     * requests are processed one at a time by a single worker.  If the pool
+     * is full, the requests stay queued; see {@link #retryDispatchers()}.
+     */
+    private void startDispatcher() {
+        boolean pooled = server.getDoThreads();
+        synchronized (queue) {
+            if (!pooled && workers > 0) {
+                return;
+            }
+            workers++;
+        }
+        Dispatcher dispatcher = new Dispatcher(pooled);
+        try {
+            if (pooled) {
+                pool.addWorker(dispatcher);
+            } else {
+                ThreadFactoryFactory.getFactory().newThread(dispatcher).start();
+            }
+        } catch (IllegalStateException e) {
+            // the pool is full or shutting down
+            synchronized (queue) {
+                workers--;
+            }
+        }
+    }
+
+    /**
+     * Try again to start workers for requests that were queued while the
+     * pool was full.
+     */
+    private void retryDispatchers() {
+        synchronized (queue) {
+            if (queue.size() <= idle) {
+                return;
+            }
+        }
+        startDispatcher();
+    }
+
+    /**
+     * Called by the workers when a response is ready.
+     */
+    private void processed(Connection connection) {
+        synchronized (done) {
+            done.add(connection);
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Start writing the responses the workers have produced and hand the
+     * held back requests to the workers that became free.
+     */
+    private void finishResponses() throws IOException {
+        Object[] connections;
+        synchronized (done) {
+            if (done.isEmpty()) {
+                return;
+            }
+            connections = done.toArray();
+            done.clear();
+        }
+        for (int i = 0; i < connections.length; i++) {
+            pending--;
+            Connection connection = (Connection) connections[i];
+            connection.busy = false;
+            try {
+                connection.write();
+            } catch (CancelledKeyException e) {
+                connection.close();
+            } catch (IOException e) {
+                log.debug(Messages.getMessage("exception00"), e);
+                connection.close();
+            }
+        }
+        while (!parked.isEmpty() && pending < maxPending) {
+            submit((Connection) parked.removeFirst());
+        }
+        if (parked.isEmpty() && acceptKey.isValid()) {
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /**
+     * Processes queued requests until the listener is stopped.
+     */
+    private class Dispatcher implements Runnable {
+        // whether this runs in a thread of the pool
+        private final boolean pooled;
+
+        Dispatcher(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Connection connection;
+                    synchronized (queue) {
+                        while (queue.isEmpty()) {
+                            if (stopped) {
+                                return;
+                            }
+                            idle++;
+                            try {
+                                queue.wait();
+                            } catch (InterruptedException e) {
+                                return;
+                            } finally {
+                                idle--;
+                            }
+                        }
+                        connection = (Connection) queue.removeFirst();
+                    }
+                    connection.process();
+                    processed(connection);
+                }
+            } finally {
+                synchronized (queue) {
+                    workers--;
+                }
+                if (pooled) {
+                    pool.workerDone(this, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one client connection.  Apart from
+     * {@link #process()}, which a worker calls while the connection is busy,
+     * it is only used by the selector thread.
+     */
+    private class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        long lastActive = System.currentTimeMillis();
+
+        // input read so far; requests start at offset 0
+        byte[] in = new byte[BUFSIZ];
+        int count = 0;
+
+        // state of the request being read
+        int scan = 0;
+        int headLength = -1;
+        String head;
+        int contentLength = 0;
+        boolean chunked = false;
+        int chunkPos;
+        boolean trailer;
+        ByteArrayOutputStream chunks;
+        boolean http11;
+        boolean keepAlive;
+        int requestLength;
+
+        // set while the request is waiting for or being processed by a worker
+        boolean busy = false;
+
+        // the "100 Continue" response, as long as it isn't written
+        ByteBuffer interim;
+
+        // the response being written
+        ByteBuffer out;
+        boolean quit = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (count == in.length) {
+                if (in.length >= maxRequestSize + MAX_HEAD_SIZE) {
+                    reject("413 Request Entity Too Large");
+                    return;
+                }
+                grow(in.length * 2);
+            }
+            int n = channel.read(ByteBuffer.wrap(in, count, in.length - count));
+            if (n < 0) {
+                close();
+                return;
+            }
+            count += n;
+            lastActive = System.currentTimeMillis();
+            parse();
+        }
+
+        private void grow(int size) {
+            byte[] bigger = new byte[size];
+            System.arraycopy(in, 0, bigger, 0, count);
+            in = bigger;
+        }
+
+        /**
+         * Look at the input read so far and submit the request if it is
+         * complete.
+         */
+        private void parse() throws IOException {
+            if (headLength < 0) {
+                // skip the line ends some clients send after a request
+                int start = 0;
+                while (start < count && (in[start] == '\r' || in[start] == '\n')) {
+                    start++;
+                }
+                if (start > 0) {
+                    consume(start);
+                }
+                headLength = findEndOfHead();
+                if (headLength < 0) {
+                    if (count >= MAX_HEAD_SIZE) {
+                        reject("400 Bad Request");
+                    }
+                    return;
+                }
+                if (!parseHead()) {
+                    return;
+                }
+            }
+
+            if (chunked) {
+                requestLength = findEndOfChunks();
+                if (requestLength < 0) {
+                    return;
+                }
+            } else {
+                requestLength = headLength + contentLength;
+                if (count < requestLength) {
+                    if (in.length < requestLength) {
+                        grow(requestLength);
+                    }
+                    return;
+                }
+            }
+
+            busy = true;
+            key.interestOps(interim != null ? SelectionKey.OP_WRITE : 0);
+            submit(this);
+        }
+
+        /**
+         * @return the length of the request line and headers including the
+         *         empty line after them, or -1 if they are not complete
+         */
+        private int findEndOfHead() {
+            for (int i = Math.max(scan, 1); i < count; i++) {
+                if (in[i] == '\n'
+                        && (in[i - 1] == '\n'
+                            || (i > 1 && in[i - 1] == '\r' && in[i - 2] == '\n'))) {
+                    return i + 1;
+                }
+            }
+            scan = Math.max(count - 2, 0);
+            return -1;
+        }
+
+        /**
+         * Pick out what the listener needs to know from the request line and
+         * headers; the rest is left to the worker.
+         */
+        private boolean parseHead() throws IOException {
+            try {
+                head = new String(in, 0, headLength, "ISO-8859-1");
+            } catch (UnsupportedEncodingException e) {
+                throw new IOException(e.getMessage());
+            }
+            StringTokenizer lines = new StringTokenizer(head, "\r\n");
+            StringTokenizer requestLine = new StringTokenizer(lines.nextToken());
+            String version = null;
+            for (int i = 0; i < 3 && requestLine.hasMoreTokens(); i++) {
+                version = requestLine.nextToken();
+            }
+            http11 = version != null && version.startsWith("HTTP/1.")
+                    && !version.equals("HTTP/1.0");
+            keepAlive = http11;
+            boolean expectContinue = false;
+
+            while (lines.hasMoreTokens()) {
+                String line = lines.nextToken();
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim().toLowerCase();
+                if (name.equalsIgnoreCase(HTTPConstants.HEADER_CONTENT_LENGTH)) {
+                    try {
+                        contentLength = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        contentLength = -1;
+                    }
+                    if (contentLength < 0) {
+                        reject("400 Bad Request");
+                        return false;
+                    }
+                } else if (name.equalsIgnoreCase(HTTPConstants.HEADER_TRANSFER_ENCODING)) {
+                    chunked = value.indexOf(HTTPConstants.HEADER_TRANSFER_ENCODING_CHUNKED) >= 0;
+                } else if (name.equalsIgnoreCase(HTTPConstants.HEADER_CONNECTION)) {
+                    if (value.indexOf(HTTPConstants.HEADER_CONNECTION_CLOSE) >= 0) {
+                        keepAlive = false;
+                    } else if (value.indexOf(HTTPConstants.HEADER_CONNECTION_KEEPALIVE.toLowerCase()) >= 0) {
+                        keepAlive = true;
+                    }
+                } else if (name.equalsIgnoreCase(HTTPConstants.HEADER_EXPECT)) {
+                    expectContinue = value.equals(HTTPConstants.HEADER_EXPECT_100_Continue);
+                }
+            }
+
+            if (chunked) {
+                contentLength = 0;
+                chunkPos = headLength;
+                trailer = false;
+                chunks = new ByteArrayOutputStream();
+            } else if (contentLength > maxRequestSize) {
+                reject("413 Request Entity Too Large");
+                return false;
+            }
+            if (expectContinue && http11 && (chunked || count < headLength + contentLength)) {
+                interim = ByteBuffer.wrap(CONTINUE);
+                write();
+            }
+            return true;
+        }
+
+        /**
+         * Decode the chunks read so far.
+         * @return the length of the request, or -1 if it is not complete
+         */
+        private int findEndOfChunks() throws IOException {
+            while (true) {
+                int eol = chunkPos;
+                while (eol < count && in[eol] != '\n') {
+                    eol++;
+                }
+                if (eol == count) {
+                    break;
+                }
+                if (trailer) {
+                    if (eol == chunkPos || (eol == chunkPos + 1 && in[chunkPos] == '\r')) {
+                        return eol + 1;
+                    }
+                    chunkPos = eol + 1;
+                    continue;
+                }
+
+                int size = 0;
+                int digits = 0;
+                for (int i = chunkPos; i < eol; i++, digits++) {
+                    int digit = Character.digit((char) in[i], 16);
+                    if (digit < 0) {
+                        break;
+                    }
+                    size = size * 16 + digit;
+                    if (size > maxRequestSize) {
+                        break;
+                    }
+                }
+                if (digits == 0) {
+                    reject("400 Bad Request");
+                    return -1;
+                }
+                if (size == 0) {
+                    trailer = true;
+                    chunkPos = eol + 1;
+                    continue;
+                }
+                if (chunks.size() + size > maxRequestSize) {
+                    reject("413 Request Entity Too Large");
+                    return -1;
+                }
+                int data = eol + 1;
+                if (count < data + size + 2) {
+                    if (in.length < data + size + 2) {
+                        grow(Math.max(data + size + 2, in.length * 2));
+                    }
+                    break;
+                }
+                chunks.write(in, data, size);
+                chunkPos = data + size;
+                // skip the line end after the data
+                if (in[chunkPos] == '\r') {
+                    chunkPos++;
+                }
+                if (in[chunkPos] == '\n') {
+                    chunkPos++;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The request as the worker sees it: chunked bodies are passed on
+         * with a Content-Length.
+         */
+        private InputStream getRequest() {
+            if (!chunked) {
+                return new ByteArrayInputStream(in, 0, requestLength);
+            }
+            StringBuffer sb = new StringBuffer();
+            StringTokenizer lines = new StringTokenizer(head, "\r\n");
+            while (lines.hasMoreTokens()) {
+                String line = lines.nextToken();
+                String name = line.substring(0, Math.max(line.indexOf(':'), 0)).trim();
+                if (!name.equalsIgnoreCase(HTTPConstants.HEADER_TRANSFER_ENCODING)
+                        && !name.equalsIgnoreCase(HTTPConstants.HEADER_CONTENT_LENGTH)) {
+                    sb.append(line).append("\r\n");
+                }
+            }
+            sb.append(HTTPConstants.HEADER_CONTENT_LENGTH).append(": ")
+              .append(chunks.size()).append("\r\n\r\n");
+            byte[] newHead;
+            try {
+                newHead = sb.toString().getBytes("ISO-8859-1");
+            } catch (UnsupportedEncodingException e) {
+                newHead = sb.toString().getBytes();
+            }
+            return new SequenceInputStream(new ByteArrayInputStream(newHead),
+                    new ByteArrayInputStream(chunks.toByteArray()));
+        }
+
+        /**
+         * Run the request through Axis.  Called by a worker.
+         */
+        void process() {
+            SimpleAxisWorker worker =
+                    new SimpleAxisWorker(server, http11, keepAlive && !stopped);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try {
+                worker.execute(getRequest(), response);
+            } catch (Exception e) {
+                // whatever was written of the response is incomplete
+                log.error(Messages.getMessage("exception00"), e);
+                out = ByteBuffer.wrap(getErrorResponse(
+                        "500 Internal Server Error"));
+                keepAlive = false;
+                return;
+            }
+            keepAlive = worker.isKeepAlive();
+            quit = worker.isQuitRequested();
+            out = ByteBuffer.wrap(response.toByteArray());
+        }
+
+        /**
+         * An empty response with the given status that closes the
+         * connection.
+         */
+        private byte[] getErrorResponse(String status) {
+            return ("HTTP/1.1 " + status + "\r\n"
+                    + HTTPConstants.HEADER_CONTENT_LENGTH + ": 0\r\n"
+                    + HTTPConstants.HEADER_CONNECTION + ": "
+                    + HTTPConstants.HEADER_CONNECTION_CLOSE + "\r\n\r\n").getBytes();
+        }
+
+        /**
+         * Answer a request the listener can't accept and close the
+         * connection.
+         */
+        private void reject(String status) throws IOException {
+            out = ByteBuffer.wrap(getErrorResponse(status));
+            keepAlive = false;
+            write();
+        }
+
+        /**
+         * Write as much of the response as the socket takes, then go on with
+         * the next request once it is written.  A pending "100 Continue" is
+         * written first.
+         */
+        void write() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (interim != null) {
+                if (channel.write(interim) > 0) {
+                    lastActive = System.currentTimeMillis();
+                }
+                if (interim.hasRemaining()) {
+                    key.interestOps(
+                            (busy || out != null ? 0 : SelectionKey.OP_READ)
+                            | SelectionKey.OP_WRITE);
+                    return;
+                }
+                interim = null;
+                if (out == null) {
+                    key.interestOps(busy ? 0 : SelectionKey.OP_READ);
+                }
+            }
+            if (out == null) {
+                return;
+            }
+            if (channel.write(out) > 0) {
+                lastActive = System.currentTimeMillis();
+            }
+            if (out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            out = null;
+            if (quit) {
+                close();
+                server.stop();
+                return;
+            }
+            if (!keepAlive || stopped) {
+                close();
+                return;
+            }
+
+            consume(requestLength);
+            if (in.length > BUFSIZ && count <= BUFSIZ) {
+                byte[] smaller = new byte[BUFSIZ];
+                System.arraycopy(in, 0, smaller, 0, count);
+                in = smaller;
+            }
+            scan = 0;
+            headLength = -1;
+            head = null;
+            contentLength = 0;
+            chunked = false;
+            chunks = null;
+            requestLength = 0;
+            key.interestOps(SelectionKey.OP_READ);
+            // a pipelined request may have been read already
+            parse();
+        }
+
+        private void consume(int length) {
+            System.arraycopy(in, length, in, 0, count - length);
+            count -= length;
+        }
+
+        void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug(Messages.getMessage("exception00"), e);
+            }
+        }
+    }
+}
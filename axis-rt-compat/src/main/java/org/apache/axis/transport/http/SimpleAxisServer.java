@@ -30,9 +30,11 @@ import org.apache.axis.management.ServiceAdmin;
 import org.apache.axis.configuration.EngineConfigurationFactoryFinder;
 import org.apache.commons.logging.Log;
 
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Map;
 import java.io.IOException;
 import java.io.File;
@@ -46,6 +48,12 @@ import java.io.File;
  * Note this classes uses static objects to provide a thread pool, so you should
  * not use multiple instances of this class in the same JVM/classloader unless
  * you want bad things to happen at shutdown.
+ *
+ * If the server socket was created by a <code>ServerSocketChannel</code>, as
+ * {@link #main(String[])} does, the connections are served by a
+ * {@link NonBlockingAxisListener}, and the threads of the pool are only busy
+ * while a request is processed.  Otherwise every connection occupies a
+ * thread of its own.
  * @author Sam Ruby (ruby@us.ibm.com)
  * @author Rob Jellinghaus (robj@unrealities.com)
  * @author Alireza Taherkordi (a_taherkordi@users.sourceforge.net)
@@ -77,6 +85,10 @@ public class SimpleAxisServer implements Runnable {
      */
     private static ThreadPool pool;
 
+    private int maxPoolSize;
+
+    private volatile NonBlockingAxisListener listener;
+
     /** Are we doing threads?
      * */
     private static boolean doThreads = true;
@@ -109,6 +121,7 @@ public class SimpleAxisServer implements Runnable {
      */
     public SimpleAxisServer(int maxPoolSize, int maxSessions) {
         this.maxSessions = maxSessions;
+        this.maxPoolSize = maxPoolSize;
         sessions = new LRUMap(maxSessions);
         pool = new ThreadPool(maxPoolSize);
     }
@@ -170,7 +183,7 @@ public class SimpleAxisServer implements Runnable {
      * @param cooky
      * @return a session.
      */
-    protected Session createSession(String cooky) {
+    protected synchronized Session createSession(String cooky) {
 
         // is there a session already?
         Session session = null;
@@ -227,6 +240,14 @@ public class SimpleAxisServer implements Runnable {
         log.info(Messages.getMessage("start01", "SimpleAxisServer",
                 new Integer(getServerSocket().getLocalPort()).toString(),getCurrentDirectory()));
 
+        ServerSocketChannel channel = serverSocket.getChannel();
+        if (channel != null && !stopped) {
+            listener = new NonBlockingAxisListener(this, channel, pool, maxPoolSize);
+            listener.run();
+            log.info(Messages.getMessage("quit00", "SimpleAxisServer"));
+            return;
+        }
+
         // Accept and process requests from the socket
         while (!stopped) {
             Socket socket = null;
@@ -321,6 +342,10 @@ public class SimpleAxisServer implements Runnable {
          */
         stopped = true;
 
+        if (listener != null) {
+            listener.stop();
+        }
+
         try {
             if(serverSocket != null) {
                 serverSocket.close();
@@ -367,10 +392,13 @@ public class SimpleAxisServer implements Runnable {
             // Try five times
             final int retries = 5;
             for (int i = 0; i < retries; i++) {
+                ServerSocketChannel channel = ServerSocketChannel.open();
                 try {
-                    ss = new ServerSocket(port);
+                    ss = channel.socket();
+                    ss.bind(new InetSocketAddress(port));
                     break;
                 } catch (java.net.BindException be){
+                    channel.close();
                     log.debug(Messages.getMessage("exception00"), be);
                     if (i < (retries-1)) {
                         // At 3 second intervals.
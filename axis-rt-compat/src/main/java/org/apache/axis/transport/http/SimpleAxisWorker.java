@@ -26,6 +26,7 @@ import org.apache.axis.description.ServiceDesc;
 import org.apache.axis.encoding.Base64;
 import org.apache.axis.message.SOAPEnvelope;
 import org.apache.axis.message.SOAPFault;
+import org.apache.axis.monitoring.MetricsRegistry;
 import org.apache.axis.server.AxisServer;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.XMLUtils;
@@ -38,8 +39,11 @@ import javax.xml.soap.MimeHeader;
 import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPMessage;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -52,18 +56,31 @@ public class SimpleAxisWorker implements Runnable {
     private SimpleAxisServer server;
     private Socket socket;
 
+    // set when serving a request for the non-blocking listener: the
+    // response must then be delimited so the connection can be reused
+    private boolean http11 = false;
+    private boolean keepAlive = false;
+    private boolean quitRequested = false;
+
     // Axis specific constants
     private static String transportName = "SimpleHTTP";
 
     // HTTP status codes
     private static byte OK[] = ("200 " + Messages.getMessage("ok00")).getBytes();
     private static byte NOCONTENT[] = ("202 " + Messages.getMessage("ok00") + "\n\n").getBytes();
+    private static byte ACCEPTED[] = ("202 " + Messages.getMessage("ok00")).getBytes();
     private static byte UNAUTH[] = ("401 " + Messages.getMessage("unauth00")).getBytes();
     private static byte SENDER[] = "400".getBytes();
     private static byte ISE[] = ("500 " + Messages.getMessage("internalError01")).getBytes();
 
     // HTTP prefix
     private static byte HTTP[] = "HTTP/1.0 ".getBytes();
+    private static byte HTTP11[] = "HTTP/1.1 ".getBytes();
+
+    // Connection headers
+    private static byte KEEP_ALIVE[] = "\r\nConnection: keep-alive".getBytes();
+    private static byte CLOSE[] = "\r\nConnection: close".getBytes();
+    private static byte LENGTH[] = ("\r\n" + HTTPConstants.HEADER_CONTENT_LENGTH + ": ").getBytes();
 
     // Standard MIME headers for XML payload
     private static byte XML_MIME_STUFF[] =
@@ -147,6 +164,18 @@ public class SimpleAxisWorker implements Runnable {
         this.socket = socket;
     }
 
+    /**
+     * Create a worker for a request that has already been read by the
+     * {@link NonBlockingAxisListener}; see {@link #execute(InputStream, OutputStream)}.
+     * @param http11 whether the request was an HTTP/1.1 request
+     * @param keepAlive whether the client wants to keep the connection open
+     */
+    SimpleAxisWorker(SimpleAxisServer server, boolean http11, boolean keepAlive) {
+        this.server = server;
+        this.http11 = http11;
+        this.keepAlive = keepAlive;
+    }
+
     /**
      * Run method
      */ 
@@ -162,6 +191,32 @@ public class SimpleAxisWorker implements Runnable {
      * The main workhorse method.
      */
     public void execute () {
+        try {
+            execute(socket.getInputStream(), socket.getOutputStream());
+        } catch (Exception e) {
+            log.info(Messages.getMessage("exception00"), e);
+        } finally {
+            try {
+                if (socket != null) socket.close();
+            } catch (Exception e) {
+            }
+        }
+        if (quitRequested) {
+            // why then, quit!
+            try {
+                server.stop();
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * Read one request from <code>in</code>, process it and write the
+     * response to <code>out</code>.  Unless the worker was created for the
+     * non-blocking listener, the response is not delimited and the
+     * connection has to be closed afterwards.
+     */
+    void execute(InputStream in, OutputStream out) throws IOException {
         byte buf[] = new byte[BUFSIZ];
         // create an Axis server
         AxisServer engine = server.getAxisServer();
@@ -209,6 +264,9 @@ public class SimpleAxisWorker implements Runnable {
 
             String methodName = null;
 
+            // size of the request body, if known
+            int requestLength = -1;
+
             try {
                 // wipe cookies if we're doing sessions
                 if (server.isSessionUsed()) {
@@ -218,7 +276,7 @@ public class SimpleAxisWorker implements Runnable {
                 authInfo.delete(0, authInfo.length());
 
                 // read headers
-                is.setInputStream(socket.getInputStream());
+                is.setInputStream(in);
                 // parse all headers into hashtable
                 MimeHeaders requestHeaders = new MimeHeaders();
                 int contentLength = parseHeaders(is, buf, contentType,
@@ -226,6 +284,7 @@ public class SimpleAxisWorker implements Runnable {
                         httpRequest, fileName,
                         cookie, cookie2, authInfo, requestHeaders);
                 is.setContentLength(contentLength);
+                requestLength = contentLength;
 
                 int paramIdx = fileName.toString().indexOf('?');
                 if (paramIdx != -1) {
@@ -301,14 +360,14 @@ public class SimpleAxisWorker implements Runnable {
                 // if get, then return simpleton document as response
                 if (httpRequest.toString().equals("GET")) {
                     
-                    OutputStream out = socket.getOutputStream();
-                    out.write(HTTP);
                     if(fileName.length()==0) {
+                        // not delimited, so the connection can't be reused
+                        keepAlive = false;
+                        out.write(getVersion());
                         out.write("301 Redirect\nLocation: /axis/\n\n".getBytes());
                         out.flush();
                         return;                        
                     }
-                    out.write(status);
 
                     if (methodName != null) {
                         String body =
@@ -333,8 +392,11 @@ public class SimpleAxisWorker implements Runnable {
                             String response = XMLUtils.PrettyDocumentToString(doc);
                             byte[] respBytes = response.getBytes();
 
+                            out.write(getVersion());
+                            out.write(status);
                             out.write(XML_MIME_STUFF);
                             putInt(buf, out, respBytes.length);
+                            writeConnection(out);
                             out.write(SEPARATOR);
                             out.write(respBytes);
                             out.flush();
@@ -366,8 +428,11 @@ public class SimpleAxisWorker implements Runnable {
 
                         byte [] bytes = sb.toString().getBytes();
 
+                        out.write(getVersion());
+                        out.write(status);
                         out.write(HTML_MIME_STUFF);
                         putInt(buf, out, bytes.length);
+                        writeConnection(out);
                         out.write(SEPARATOR);
                         out.write(bytes);
                         out.flush();
@@ -475,9 +540,16 @@ public class SimpleAxisWorker implements Runnable {
                 responseMsg.setProperty(SOAPMessage.CHARACTER_SET_ENCODING, responseEncoding);
             }
             // Send it on its way...
-            OutputStream out = socket.getOutputStream();
-            out.write(HTTP);
-            out.write(status);
+            out.write(getVersion());
+            if (status == NOCONTENT && socket == null) {
+                out.write(ACCEPTED);
+                out.write(LENGTH);
+                putInt(buf, out, 0);
+                writeConnection(out);
+                out.write(SEPARATOR);
+            } else {
+                out.write(status);
+            }
 
             if (responseMsg != null) {
                 if (server.isSessionUsed() && null != cooky &&
@@ -510,28 +582,67 @@ public class SimpleAxisWorker implements Runnable {
                     out.write(responseHeader.getValue().getBytes());
                 }
 
-                out.write(SEPARATOR);
-                responseMsg.writeTo(out);
+                long start = System.currentTimeMillis();
+                long sent = -1;
+                if (socket == null) {
+                    // a reused connection needs the length up front
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    responseMsg.writeTo(body);
+                    out.write(LENGTH);
+                    putInt(buf, out, body.size());
+                    writeConnection(out);
+                    out.write(SEPARATOR);
+                    body.writeTo(out);
+                    sent = body.size();
+                } else {
+                    out.write(SEPARATOR);
+                    responseMsg.writeTo(out);
+                }
+                MetricsRegistry.recordTransfer(msgContext, requestLength, sent,
+                        System.currentTimeMillis() - start);
             }
 
             // out.write(response);
             out.flush();
+        } catch (IOException e) {
+            keepAlive = false;
+            throw e;
         } catch (Exception e) {
-            log.info(Messages.getMessage("exception00"), e);
+            keepAlive = false;
+            throw AxisFault.makeFault(e);
         } finally {
-            try {
-                if (socket != null) socket.close();
-            } catch (Exception e) {
-            }
-        }
-        if (msgContext.getProperty(MessageContext.QUIT_REQUESTED) != null) {
-            // why then, quit!
-            try {
-                server.stop();
-            } catch (Exception e) {
-            }
+            quitRequested =
+                msgContext.getProperty(MessageContext.QUIT_REQUESTED) != null;
         }
+    }
+
+    /**
+     * Whether the connection may be used for another request after the
+     * last call to {@link #execute(InputStream, OutputStream)}.
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Whether the last request asked the server to quit.
+     */
+    boolean isQuitRequested() {
+        return quitRequested;
+    }
+
+    private byte[] getVersion() {
+        return http11 ? HTTP11 : HTTP;
+    }
 
+    /**
+     * Tell the client of the non-blocking listener whether the connection
+     * stays open.
+     */
+    private void writeConnection(OutputStream out) throws IOException {
+        if (socket == null) {
+            out.write(keepAlive ? KEEP_ALIVE : CLOSE);
+        }
     }
 
     protected void invokeMethodFromGet(String methodName, String args) throws Exception {
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.http;
+
+import junit.framework.TestCase;
+import org.apache.axis.AxisFault;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.configuration.SimpleProvider;
+import org.apache.axis.handlers.BasicHandler;
+import org.apache.axis.handlers.soap.SOAPService;
+
+import javax.xml.soap.SOAPException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests {@link NonBlockingAxisListener} over real sockets: connection
+ * reuse, pipelining, chunked bodies, "100 Continue", the rejected requests
+ * and the holding back of requests when all workers are busy.
+ */
+public class TestNonBlockingAxisListener extends TestCase {
+    private static final int TIMEOUT = 10000;
+
+    /** The engine of the server is shared by all servers of the JVM */
+    private static final SimpleProvider config = new SimpleProvider();
+    static {
+        config.deployService("Echo", new SOAPService(new EchoHandler()));
+    }
+
+    /** Guards the state of the requests held by the echo service */
+    private static final Object gate = new Object();
+    private static int held = 0;
+    private static boolean open = true;
+
+    private SimpleAxisServer server;
+    private int port;
+
+    private void startServer(int maxPending) throws Exception {
+        server = new SimpleAxisServer(maxPending);
+        server.setMyConfig(config);
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress("localhost", 0));
+        port = channel.socket().getLocalPort();
+        server.setServerSocket(channel.socket());
+        server.start(true);
+    }
+
+    protected void setUp() {
+        synchronized (gate) {
+            held = 0;
+            open = true;
+        }
+    }
+
+    protected void tearDown() {
+        openGate();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public void testKeepAlive() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        for (int i = 0; i < 3; i++) {
+            write(socket, post("r" + i, null));
+            Response response = readResponse(socket);
+            assertEquals(200, response.status);
+            assertTrue(response.body, response.body.indexOf("r" + i) >= 0);
+        }
+        socket.close();
+    }
+
+    public void testPipelinedResponsesInOrder() throws Exception {
+        startServer(4);
+        Socket socket = connect();
+        StringBuffer requests = new StringBuffer();
+        for (int i = 0; i < 5; i++) {
+            requests.append(post("p" + i, null));
+        }
+        write(socket, requests.toString());
+        for (int i = 0; i < 5; i++) {
+            Response response = readResponse(socket);
+            assertEquals(200, response.status);
+            assertTrue(response.body, response.body.indexOf("p" + i) >= 0);
+        }
+        socket.close();
+    }
+
+    public void testConnectionClose() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        write(socket, post("c", "Connection: close\r\n"));
+        assertEquals(200, readResponse(socket).status);
+        assertEquals(-1, socket.getInputStream().read());
+        socket.close();
+    }
+
+    public void testChunkedBody() throws Exception {
+        startServer(2);
+        String body = envelope("chunky");
+        int half = body.length() / 2;
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: text/xml\r\n"
+                + "SOAPAction: \"\"\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n"
+                + Integer.toHexString(half) + "\r\n"
+                + body.substring(0, half) + "\r\n");
+        // the rest arrives separately, with a chunk extension and a trailer
+        Thread.sleep(100);
+        write(socket, Integer.toHexString(body.length() - half) + ";x=y\r\n"
+                + body.substring(half) + "\r\n"
+                + "0\r\nX-Trailer: t\r\n\r\n");
+        Response response = readResponse(socket);
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.indexOf("chunky") >= 0);
+
+        // the connection is still usable
+        write(socket, post("after", null));
+        assertTrue(readResponse(socket).body.indexOf("after") >= 0);
+        socket.close();
+    }
+
+    public void testExpectContinue() throws Exception {
+        startServer(2);
+        String body = envelope("expected");
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: text/xml\r\n"
+                + "SOAPAction: \"\"\r\n"
+                + "Expect: 100-continue\r\n"
+                + "Content-Length: " + body.length() + "\r\n\r\n");
+        Response interim = readResponse(socket);
+        assertEquals(100, interim.status);
+        write(socket, body);
+        Response response = readResponse(socket);
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.indexOf("expected") >= 0);
+        socket.close();
+    }
+
+    public void testRequestTooLarge() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Length: "
+                + (NonBlockingAxisListener.DEFAULT_MAX_REQUEST_SIZE + 1)
+                + "\r\n\r\n");
+        assertRejected(socket, 413);
+    }
+
+    public void testChunkTooLarge() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n"
+                + Integer.toHexString(NonBlockingAxisListener.DEFAULT_MAX_REQUEST_SIZE + 1)
+                + "\r\n");
+        assertRejected(socket, 413);
+    }
+
+    public void testBadContentLength() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Length: ten\r\n\r\n");
+        assertRejected(socket, 400);
+    }
+
+    public void testBadChunkSize() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        write(socket, "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n"
+                + "zz\r\n");
+        assertRejected(socket, 400);
+    }
+
+    public void testHeadTooLarge() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        // exactly as much as is read before giving up, so that closing the
+        // connection doesn't reset it
+        StringBuffer head = new StringBuffer("POST /axis/services/Echo HTTP/1.1\r\n");
+        while (head.length() < 64 * 1024) {
+            head.append("X-Filler: 0123456789\r\n");
+        }
+        head.setLength(64 * 1024 - 2);
+        head.append("\r\n");
+        write(socket, head.toString());
+        assertRejected(socket, 400);
+    }
+
+    public void testWorkerFailure() throws Exception {
+        startServer(2);
+        Socket socket = connect();
+        // the response fails to be written after the first headers
+        write(socket, post("broken", "SOAPAction: \"fail\"\r\n"));
+        assertRejected(socket, 500);
+    }
+
+    public void testBackpressure() throws Exception {
+        startServer(1);
+        closeGate();
+
+        Socket first = connect();
+        write(first, post("first", "SOAPAction: \"hold\"\r\n"));
+        waitForHeld(1);
+
+        // the only worker is busy, so this request is held back
+        Socket second = connect();
+        write(second, post("second", null));
+        second.setSoTimeout(500);
+        try {
+            second.getInputStream().read();
+            fail("Expected no response while the worker is busy");
+        } catch (SocketTimeoutException e) {
+        }
+        second.setSoTimeout(TIMEOUT);
+
+        // and new connections are not served either
+        Socket third = connect();
+        write(third, post("third", null));
+
+        openGate();
+        assertTrue(readResponse(first).body.indexOf("first") >= 0);
+        assertTrue(readResponse(second).body.indexOf("second") >= 0);
+        assertTrue(readResponse(third).body.indexOf("third") >= 0);
+        first.close();
+        second.close();
+        third.close();
+    }
+
+    private void assertRejected(Socket socket, int status) throws IOException {
+        Response response = readResponse(socket);
+        assertEquals(status, response.status);
+        assertEquals("close", response.headers.get("connection"));
+        assertEquals(-1, socket.getInputStream().read());
+        socket.close();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(TIMEOUT);
+        return socket;
+    }
+
+    private static void write(Socket socket, String data) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes("ISO-8859-1"));
+        out.flush();
+    }
+
+    private static String envelope(String text) {
+        return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<soapenv:Body><echo>" + text + "</echo></soapenv:Body>"
+                + "</soapenv:Envelope>";
+    }
+
+    private static String post(String text, String headers) {
+        String body = envelope(text);
+        return "POST /axis/services/Echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: text/xml\r\n"
+                + (headers != null && headers.indexOf("SOAPAction") >= 0
+                   ? "" : "SOAPAction: \"\"\r\n")
+                + (headers != null ? headers : "")
+                + "Content-Length: " + body.length() + "\r\n\r\n"
+                + body;
+    }
+
+    /**
+     * Read a response with a Content-Length, or without a body.
+     */
+    private static Response readResponse(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        Response response = new Response();
+        String statusLine = readLine(in);
+        assertNotNull("Connection closed", statusLine);
+        response.status = Integer.parseInt(statusLine.substring(9, 12));
+        String line;
+        while ((line = readLine(in)) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim().toLowerCase(),
+                                 line.substring(colon + 1).trim().toLowerCase());
+        }
+        String length = (String) response.headers.get("content-length");
+        byte[] body = new byte[length == null ? 0 : Integer.parseInt(length)];
+        int n = 0;
+        while (n < body.length) {
+            int r = in.read(body, n, body.length - n);
+            if (r < 0) {
+                fail("Response body cut short");
+            }
+            n += r;
+        }
+        response.body = new String(body, "ISO-8859-1");
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                return line.size() == 0 ? null : line.toString("ISO-8859-1");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("ISO-8859-1");
+    }
+
+    private static void closeGate() {
+        synchronized (gate) {
+            open = false;
+        }
+    }
+
+    private static void openGate() {
+        synchronized (gate) {
+            open = true;
+            gate.notifyAll();
+        }
+    }
+
+    private static void waitForHeld(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        synchronized (gate) {
+            while (held < count) {
+                long left = end - System.currentTimeMillis();
+                assertTrue("Request not processed", left > 0);
+                gate.wait(left);
+            }
+        }
+    }
+
+    private static class Response {
+        int status;
+        Map headers = new HashMap();
+        String body;
+    }
+
+    /**
+     * Returns the request as the response.  Requests with the SOAPAction
+     * "hold" wait until the gate is opened; those with "fail" get a
+     * response that can't be written.
+     */
+    public static class EchoHandler extends BasicHandler {
+        public void invoke(MessageContext msgContext) throws AxisFault {
+            if ("hold".equals(msgContext.getSOAPActionURI())) {
+                synchronized (gate) {
+                    held++;
+                    gate.notifyAll();
+                    while (!open) {
+                        try {
+                            gate.wait();
+                        } catch (InterruptedException e) {
+                            throw AxisFault.makeFault(e);
+                        }
+                    }
+                }
+            }
+            String request = msgContext.getRequestMessage().getSOAPPartAsString();
+            if ("fail".equals(msgContext.getSOAPActionURI())) {
+                msgContext.setResponseMessage(new Message(request) {
+                    public void writeTo(OutputStream os)
+                            throws SOAPException, IOException {
+                        throw new IOException("broken");
+                    }
+                });
+                return;
+            }
+            msgContext.setResponseMessage(new Message(request));
+        }
+    }
+}
@@ -64,17 +64,35 @@ public abstract class AxisEngine extends BasicHandler
     public static final String PROP_ATTACHMENT_DIR = "attachments.Directory";
     public static final String PROP_ATTACHMENT_IMPLEMENTATION  = "attachments.implementation" ;
     public static final String PROP_ATTACHMENT_CLEANUP = "attachment.DirectoryCleanUp";
+    /**
+     * The most bytes the temporary files of attachments and buffered
+     * messages may take on disk together; 0 or less means no limit.
+     */
+    public static final String PROP_ATTACHMENT_DISK_QUOTA = "axis.attachments.diskQuota";
     public static final String PROP_DEFAULT_CONFIG_CLASS = "axis.engineConfigClass";
     public static final String PROP_SOAP_VERSION = "defaultSOAPVersion";
     public static final String PROP_SOAP_ALLOWED_VERSION = "singleSOAPVersion";
     public static final String PROP_TWOD_ARRAY_ENCODING = "enable2DArrayEncoding";
     public static final String PROP_XML_ENCODING = "axis.xmlEncoding";
     public static final String PROP_XML_REUSE_SAX_PARSERS = "axis.xml.reuseParsers";
+    public static final String PROP_XML_PARSER_POOL = "axis.xml.parserPool";
+    public static final String PROP_XML_PARSER_POOL_SIZE = "axis.xml.parserPool.size";
+    public static final String PROP_XML_PARSER_POOL_THREAD_AFFINITY = "axis.xml.parserPool.threadAffinity";
     public static final String PROP_BYTE_BUFFER_BACKING = "axis.byteBuffer.backing";
     public static final String PROP_BYTE_BUFFER_CACHE_INCREMENT = "axis.byteBuffer.cacheIncrement";
     public static final String PROP_BYTE_BUFFER_RESIDENT_MAX_SIZE = "axis.byteBuffer.residentMaxSize";
     public static final String PROP_BYTE_BUFFER_WORK_BUFFER_SIZE = "axis.byteBuffer.workBufferSize";
     public static final String PROP_EMIT_ALL_TYPES = "emitAllTypesInWSDL";
+    /**
+     * Set this property to 'false' to generate the WSDL of a service anew
+     * for every ?wsdl request instead of reusing it.
+     */
+    public static final String PROP_WSDL_CACHE = "axis.wsdl.cache";
+    /**
+     * Binary values of at least this many bytes are sent as XOP attachments
+     * rather than inline base64 when a message is sent as MTOM.
+     */
+    public static final String PROP_XOP_THRESHOLD = "axis.xop.threshold";
     /**
      * Set this property to 'true' when you want Axis to avoid soap encoded
      * types to work around a .NET problem where it wont accept soap encoded
@@ -121,6 +139,11 @@ public abstract class AxisEngine extends BasicHandler
      */
     private ArrayList actorURIs = new ArrayList();
 
+    /**
+     * Incremented whenever the configuration is reloaded or changed.
+     */
+    private volatile int configGeneration = 0;
+
     /**
      * Thread local storage used for locating the active message context.
      * This information is only valid for the lifetime of this request.
@@ -500,6 +523,17 @@ public abstract class AxisEngine extends BasicHandler
         // fixme: If we change actorURIs to List, this copy constructor can
         //        go away...
         actorURIs = new ArrayList(config.getRoles());
+
+        configGeneration++;
+    }
+
+    /**
+     * Get a number that changes whenever the configuration is reloaded or
+     * services are (un)deployed through {@link #refreshGlobalOptions()}, so
+     * that data derived from the configuration can be cached.
+     */
+    public int getConfigGeneration() {
+        return configGeneration;
     }
 
     /**
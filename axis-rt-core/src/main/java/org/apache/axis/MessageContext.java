@@ -19,6 +19,7 @@ package org.apache.axis ;
 import org.apache.axis.attachments.Attachments;
 import org.apache.axis.client.AxisClient;
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.tracing.Trace;
 import org.apache.axis.description.OperationDesc;
 import org.apache.axis.description.ServiceDesc;
 import org.apache.axis.encoding.TypeMapping;
@@ -200,6 +201,30 @@ public class MessageContext implements SOAPMessageContext {
         currentOperation = operation;
     }
 
+    /** The trace of this request, if it is traced. */
+    private Trace trace = null;
+
+    /**
+     * The trace recording the handlers this request passes through.
+     *
+     * @return the trace; <code>null</code> if the request is not traced
+     */
+    public Trace getTrace()
+    {
+        return trace;
+    }
+
+    /**
+     * Set the trace of this request.
+     *
+     * @param trace  the <code>Trace</code> to record the handlers in, or
+     *               <code>null</code> to stop tracing
+     */
+    public void setTrace(Trace trace)
+    {
+        this.trace = trace;
+    }
+
     /**
      * Returns a list of operation descriptors that could may
      * possibly match a body containing an element of the given QName.
@@ -811,7 +836,7 @@ public class MessageContext implements SOAPMessageContext {
             // Note that we need (or don't need) high-fidelity SAX recording
             // of deserialized messages according to the setting on the
             // new service.
-            highFidelity = service.needsHighFidelityRecording();
+            highFidelity = service.needsHighFidelityRecording(this);
 
             service.getInitializedServiceDesc(this);
         }
@@ -1278,6 +1303,7 @@ public class MessageContext implements SOAPMessageContext {
         serviceHandler = null;
         havePassedPivot = false;
         currentOperation = null;
+        trace = null;
     }
 
     /**
@@ -28,6 +28,7 @@ import org.apache.axis.transport.http.HTTPConstants;
 import org.apache.axis.utils.ByteArray;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.SessionUtils;
+import org.apache.axis.utils.UTF8Writer;
 import org.apache.axis.utils.XMLUtils;
 import org.apache.axis.handlers.HandlerChainImpl;
 import org.apache.commons.logging.Log;
@@ -263,6 +264,17 @@ public class SOAPPart extends javax.xml.soap.SOAPPart implements Part
             os.write((byte[])currentMessage);
         } else if ( currentForm == FORM_OPTIMIZED ) {
             ((ByteArray) currentMessage).writeTo(os);
+        } else if ("UTF-8".equalsIgnoreCase(currentEncoding)
+                || "UTF8".equalsIgnoreCase(currentEncoding)) {
+            // Encode straight into a byte buffer; no OutputStreamWriter,
+            // BufferedWriter and PrintWriter in between
+            UTF8Writer writer = new UTF8Writer(os);
+            try {
+                writeTo(writer);
+                writer.flush();
+            } finally {
+                writer.release();
+            }
         } else {
             Writer writer = new OutputStreamWriter(os, currentEncoding);
             writer = new BufferedWriter(new PrintWriter(writer));
@@ -294,27 +306,31 @@ public class SOAPPart extends javax.xml.soap.SOAPPart implements Part
         
         if ( currentForm == FORM_FAULT ) {
             AxisFault env = (AxisFault)currentMessage;
+            SerializationContext serContext = SerializationContext.obtain(writer, getMessage().getMessageContext());
             try {
-                SerializationContext serContext = new SerializationContext(writer, getMessage().getMessageContext()); 
                 serContext.setSendDecl(inclXmlDecl);
                 serContext.setEncoding(currentEncoding);
                 env.output(serContext);
             } catch (Exception e) {
                 log.error(Messages.getMessage("exception00"), e);
                 throw env;
+            } finally {
+                serContext.release();
             }
             return;
         }
 
         if ( currentForm == FORM_SOAPENVELOPE ) {
             SOAPEnvelope env = (SOAPEnvelope)currentMessage;
+            SerializationContext serContext = SerializationContext.obtain(writer, getMessage().getMessageContext());
             try {
-                SerializationContext serContext = new SerializationContext(writer, getMessage().getMessageContext());
                 serContext.setSendDecl(inclXmlDecl);
                 serContext.setEncoding(currentEncoding);
                 env.output(serContext);
             } catch (Exception e) {
                 throw AxisFault.makeFault(e);
+            } finally {
+                serContext.release();
             }
             return;
         }
@@ -17,6 +17,7 @@
 package org.apache.axis ;
 
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.tracing.Trace;
 import org.apache.axis.handlers.BasicHandler;
 import org.apache.axis.strategies.InvocationStrategy;
 import org.apache.axis.strategies.WSDLGenStrategy;
@@ -111,11 +112,21 @@ public class SimpleChain extends BasicHandler implements Chain {
     private void doVisiting(MessageContext msgContext,
                             HandlerIterationStrategy visitor) throws AxisFault {
         int i = 0 ;
+        Trace trace = msgContext.getTrace();
         try {
             Enumeration enumeration = handlers.elements();
             while (enumeration.hasMoreElements()) {
                 Handler h = (Handler)enumeration.nextElement();
-                visitor.visit(h, msgContext);
+                if (trace == null) {
+                    visitor.visit(h, msgContext);
+                } else {
+                    int span = trace.startSpan(h);
+                    try {
+                        visitor.visit(h, msgContext);
+                    } finally {
+                        trace.endSpan(span);
+                    }
+                }
                 i++;
             }
         } catch( AxisFault f ) {
@@ -364,12 +364,19 @@ public class BoundaryDelimitedStream extends java.io.FilterInputStream {
      *
      * @throws java.io.IOException
      */
-    public int read() throws java.io.IOException {
+    public synchronized int read() throws java.io.IOException {
 
-        byte[] b = new byte[1];    // quick and dirty. //for now
+        // Header parsing reads a byte at a time; serve those from the buffer.
+        if (!closed && !eos && (readbuf != null)
+                && (readBufPos < boundaryPos)
+                && (readBufPos < readBufEnd - boundaryBufLen)) {
+            return readbuf[readBufPos++] & 0xff;
+        }
+
+        byte[] b = new byte[1];
         int read = read(b);
 
-        if (read < 0) {
+        if (read < 1) {
             return -1;
         } else {
             return b[0]&0xff;
@@ -457,78 +464,74 @@ public class BoundaryDelimitedStream extends java.io.FilterInputStream {
      */
     protected int boundaryPosition(byte[] searchbuf, int start, int end) throws java.io.IOException  {
 
-        int foundAt = boundarySearch(searchbuf, start, end);
+        for (int from = start; ; ) {
+            int foundAt = boundarySearch(searchbuf, from, end);
 
-        // First find the boundary marker
-        if (BOUNDARY_NOT_FOUND != foundAt) {    // Something was found.
+            // First find the boundary marker
+            if (BOUNDARY_NOT_FOUND == foundAt) {
+                return BOUNDARY_NOT_FOUND;
+            }
             if (foundAt + boundaryLen + 2 > end) {
-                foundAt = BOUNDARY_NOT_FOUND;
-            } else {
-
-                // If the marker has a "--" at the end then this is the last boundary.
-                if ((searchbuf[foundAt + boundaryLen] == '-')
-                        && (searchbuf[foundAt + boundaryLen + 1] == '-')) {
-                    finalClose();
-                } else if ((searchbuf[foundAt + boundaryLen] != 13)
-                        || (searchbuf[foundAt + boundaryLen + 1] != 10)) {
+                // Can't tell yet, look again once there is more data.
+                return BOUNDARY_NOT_FOUND;
+            }
 
-                    // If there really was no crlf at then end then this is not a boundary.
-                    foundAt = BOUNDARY_NOT_FOUND;
-                }
+            // If the marker has a "--" at the end then this is the last boundary.
+            if ((searchbuf[foundAt + boundaryLen] == '-')
+                    && (searchbuf[foundAt + boundaryLen + 1] == '-')) {
+                finalClose();
+                return foundAt;
+            }
+            if ((searchbuf[foundAt + boundaryLen] == 13)
+                    && (searchbuf[foundAt + boundaryLen + 1] == 10)) {
+                return foundAt;
             }
-        }
 
-        return foundAt;
+            // If there really was no crlf at then end then this is not a
+            // boundary; the real one may still follow.
+            from = foundAt + 1;
+        }
     }
 
-    /* The below uses a standard textbook Boyer-Moore pattern search. */
+    /* The below uses a Boyer-Moore-Horspool pattern search. */
 
     private int[] skip = null;
 
     private int boundarySearch(final byte[] text, final int start,
                                final int end) {
 
-        // log.debug(">>>>" + start + "," + end);
-        int i = 0, j = 0, k = 0;
-
         if (boundaryLen > (end - start)) {
             return BOUNDARY_NOT_FOUND;
         }
 
         if (null == skip) {
-            skip = new int[256];
+            int[] table = new int[256];
 
-            java.util.Arrays.fill(skip, boundaryLen);
+            java.util.Arrays.fill(table, boundaryLen);
 
-            for (k = 0; k < boundaryLen - 1; k++) {
-                skip[boundary[k]] = boundaryLen - k - 1;
+            for (int k = 0; k < boundaryLen - 1; k++) {
+                table[boundary[k] & 0xff] = boundaryLen - k - 1;
             }
+            skip = table;
         }
 
-        for (k = start + boundaryLen - 1; k < end;
-             k += skip[text[k] & (0xff)]) {
+        final byte[] pattern = boundary;
+        final int last = boundaryLen - 1;
+        final byte lastByte = pattern[last];
 
-            // log.debug(">>>>" + k);
-            // printarry(text, k-boundaryLen+1, end);
-            try {
-                for (j = boundaryLen - 1, i = k;
-                     (j >= 0) && (text[i] == boundary[j]); j--) {
-                    i--;
-                }
-            } catch (ArrayIndexOutOfBoundsException e) {
-                StringBuffer sb = new StringBuffer();
-                sb.append(
-                        ">>>"
-                        + e);    // rr temporary till a boundary issue is resolved.
-                sb.append("start=" + start);
-                sb.append("k=" + k);
-                sb.append("text.length=" + text.length);
-                sb.append("i=" + i);
-                sb.append("boundary.length=" + boundary.length);
-                sb.append("j=" + j);
-                sb.append("end=" + end);
-                log.warn(Messages.getMessage("exception01",sb.toString()));
-                throw e;
+        for (int k = start + last; k < end; k += skip[text[k] & 0xff]) {
+
+            // check the last byte first, it usually differs
+            if (text[k] != lastByte) {
+                continue;
+            }
+
+            int i = k - 1;
+            int j = last - 1;
+
+            while ((j >= 0) && (text[i] == pattern[j])) {
+                i--;
+                j--;
             }
 
             if (j == (-1)) {
@@ -536,7 +539,6 @@ public class BoundaryDelimitedStream extends java.io.FilterInputStream {
             }
         }
 
-        // log.debug(">>>> not found" );
         return BOUNDARY_NOT_FOUND;
     }
 
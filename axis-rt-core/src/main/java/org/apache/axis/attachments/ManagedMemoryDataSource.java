@@ -19,6 +19,7 @@ import org.apache.axis.InternalException;
 import org.apache.axis.MessageContext;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.utils.Messages;
+import org.apache.axis.utils.TempFileJanitor;
 import org.apache.commons.logging.Log;
 
 import java.io.File;
@@ -57,7 +58,10 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
     // If set the file the disk is cached to.
 
     /** Field diskCacheFile           */
-    protected java.io.File diskCacheFile = null;
+    protected volatile java.io.File diskCacheFile = null;
+
+    /** The disk quota taken by the disk cache */
+    private TempFileJanitor.Reservation diskCacheReservation = null;
 
     // A list of open input Streams.
 
@@ -67,7 +71,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
     /**
      * Flag to show if the resources behind this have been deleted.
      */
-    protected boolean deleted =
+    protected volatile boolean deleted =
             false;
 
     // Memory is allocated in these size chunks.
@@ -154,6 +158,32 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
         }
     }
 
+    /**
+     * Create an empty data source that is filled through the stream returned
+     * by {@link #getOutputStream()}, e.g. with the decoded content of a
+     * base64 element.
+     *
+     * @param maxCached  This is the max memory that is to be used to cache the data.
+     * @param contentType the mime type for this data stream.
+     */
+    public ManagedMemoryDataSource(int maxCached, String contentType) {
+        this.maxCached = maxCached;
+        this.writable = true;
+
+        if ((null != contentType) && (contentType.length() != 0)) {
+            this.contentType = contentType;
+        }
+
+        if (maxCached < MIN_MEMORY_DISK_CACHED) {
+            throw new IllegalArgumentException(
+                    Messages.getMessage("badMaxCached", "" + maxCached));
+        }
+
+        if (log.isDebugEnabled()) {
+            debugEnabled = true;
+        }
+    }
+
     /* javax.activation.Interface DataSource implementation */
 
     /**
@@ -208,19 +238,40 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
     /**
      * This method returns an OutputStream where the data can be written and
      * throws the appropriate exception if it can not do so.
-     * NOT SUPPORTED, not need for axis, data sources are create by constructors.
-     *
+     * Only supported by data sources created empty with
+     * {@link #ManagedMemoryDataSource(int, String)}; closing the stream
+     * completes the data source.
      *
-     * @return always <code>null</code>
+     * @return the stream, or <code>null</code> if the data source was
+     *         created from an input stream or is complete
      *
      * @throws java.io.IOException
      */
     public java.io.OutputStream getOutputStream() throws java.io.IOException {
-        return null;
+        if (!writable || closed) {
+            return null;
+        }
+        return new java.io.OutputStream() {
+            public void write(int b) throws java.io.IOException {
+                ManagedMemoryDataSource.this.write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            public void write(byte[] b, int off, int len)
+                    throws java.io.IOException {
+                ManagedMemoryDataSource.this.write(b, off, len);
+            }
+
+            public void close() throws java.io.IOException {
+                ManagedMemoryDataSource.this.close();
+            }
+        };
     }
 
+    /** If true the data source is filled through getOutputStream(). */
+    private boolean writable = false;
+
     /** The linked list to hold the in memory buffers. */
-    protected java.util.LinkedList memorybuflist =
+    protected volatile java.util.LinkedList memorybuflist =
             new java.util.LinkedList();
 
     /** Hold the last memory buffer. */
@@ -240,6 +291,12 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
     /** If true the source input stream is now closed. */
     protected boolean closed = false;
 
+    /**
+     * Set once all data has been written; from then on it is only read,
+     * and readers need no lock.
+     */
+    private volatile boolean complete = false;
+
     /**
      * Write bytes to the stream.
      *
@@ -260,7 +317,21 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
      *
      * @throws java.io.IOException
      */
-    protected synchronized void write(byte[] data, int length)
+    protected void write(byte[] data, int length)
+            throws java.io.IOException {
+        write(data, 0, length);
+    }
+
+    /**
+     * This method is a low level write.
+     *
+     * @param data
+     * @param off the offset of the first byte to write
+     * @param length
+     *
+     * @throws java.io.IOException
+     */
+    protected synchronized void write(byte[] data, int off, int length)
             throws java.io.IOException {
 
         if (closed) {
@@ -280,7 +351,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
         if (memorybuflist != null) {    // Can write to memory.
             do {
                 if (null == currentMemoryBuf) {
-                    currentMemoryBuf = new byte[READ_CHUNK_SZ];
+                    currentMemoryBuf = new byte[getChunkSize()];
                     currentMemoryBufSz = 0;
 
                     memorybuflist.add(currentMemoryBuf);
@@ -292,7 +363,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
                         - currentMemoryBufSz));
 
                 // copy the data.
-                System.arraycopy(data, byteswritten, currentMemoryBuf,
+                System.arraycopy(data, off + byteswritten, currentMemoryBuf,
                         currentMemoryBufSz, bytes2write);
 
                 byteswritten += bytes2write;
@@ -300,7 +371,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
 
                 if (byteswritten
                         < writesz) {    // only get more if we really need it.
-                    currentMemoryBuf = new byte[READ_CHUNK_SZ];
+                    currentMemoryBuf = new byte[getChunkSize()];
                     currentMemoryBufSz = 0;
 
                     memorybuflist.add(currentMemoryBuf);    // add it to the chain.
@@ -309,7 +380,13 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
         }
 
         if (null != cachediskstream) {    // Write to the out going stream.
-            cachediskstream.write(data, 0, length);
+            try {
+                diskCacheReservation.use(length);
+            } catch (java.io.IOException e) {
+                delete();    // the data is incomplete, free the disk space
+                throw e;
+            }
+            cachediskstream.write(data, off, length);
         }
 
         totalsz += writesz;
@@ -317,6 +394,15 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
         return;
     }
 
+    /**
+     * The size of the memory buffers: no more than what may be held in
+     * memory at all.
+     */
+    private int getChunkSize() {
+        return (maxCached > 0) ? Math.min(maxCached, READ_CHUNK_SZ)
+                               : READ_CHUNK_SZ;
+    }
+
     /**
      * This method is a low level write.
      * Close the stream.
@@ -348,6 +434,8 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
 
                 currentMemoryBuf = null;      // No need for this anymore.
             }
+
+            complete = true;
         }
     }
 
@@ -358,6 +446,11 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
 
             cachediskstream = null;
         }
+
+        // The file outlives us; don't count it against the quota forever
+        if (diskCacheFile != null && !deleted) {
+            TempFileJanitor.release(diskCacheFile);
+        }
     }
 
     /**
@@ -383,7 +476,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
                             : mc.getStrProp(
                                     MessageContext.ATTACHMENTS_DIR);
 
-                    diskCacheFile = java.io.File.createTempFile("Axis", ".att",
+                    diskCacheFile = TempFileJanitor.createTempFile("Axis", ".att",
                             (attdir == null)
                             ? null
                             : new File(
@@ -395,8 +488,18 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
                                     "diskCache", diskCacheFile.getAbsolutePath()));
                      }
 
-                    cachediskstream = new java.io.BufferedOutputStream(
-                            new java.io.FileOutputStream(diskCacheFile));
+                    try {
+                        diskCacheReservation = new TempFileJanitor.Reservation(
+                                diskCacheFile, totalsz);
+                    } catch (java.io.IOException e) {
+                        TempFileJanitor.delete(diskCacheFile);
+                        diskCacheFile = null;
+                        throw e;
+                    }
+
+                    java.io.BufferedOutputStream diskstream =
+                            new java.io.BufferedOutputStream(
+                                    new java.io.FileOutputStream(diskCacheFile));
 
                     int listsz = ml.size();
 
@@ -404,21 +507,24 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
                     for (java.util.Iterator it = ml.iterator();
                          it.hasNext();) {
                         byte[] rbuf = (byte[]) it.next();
-                        int bwrite = (listsz-- == 0)
+                        int bwrite = (--listsz == 0)
                                 ? currentMemoryBufSz
                                 : rbuf.length;
 
-                        cachediskstream.write(rbuf, 0, bwrite);
-
-                        if (closed) {
-                            cachediskstream.close();
+                        diskstream.write(rbuf, 0, bwrite);
+                    }
 
-                            cachediskstream = null;
-                        }
+                    if (closed) {
+                        diskstream.close();
+                    } else {
+                        cachediskstream = diskstream;
                     }
 
                     memorybuflist = null;
                 } catch (java.lang.SecurityException se) {
+                    if (diskCacheFile != null) {
+                        TempFileJanitor.release(diskCacheFile);
+                    }
                     diskCacheFile = null;
                     cachediskstream = null;
                     maxCached = java.lang.Integer.MAX_VALUE;
@@ -460,7 +566,7 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
             readers.clear();
 
             try {
-                diskCacheFile.delete();
+                TempFileJanitor.delete(diskCacheFile);
 
                 ret = true;
             } catch (Exception e) {
@@ -717,103 +823,128 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
                 return 0;
             }
 
-            int bwritten = 0;
+            int bwritten;
 
-            synchronized (ManagedMemoryDataSource.this) {
-                if (bread == totalsz) {
-                    return -1;
+            // Once the data source is complete nothing changes any more
+            // that a reader would have to be protected from.
+            if (complete) {
+                bwritten = readData(b, off, len);
+            } else {
+                synchronized (ManagedMemoryDataSource.this) {
+                    bwritten = readData(b, off, len);
                 }
+            }
 
-                java.util.List ml = memorybuflist;
-                
-                long longlen = len;
-                longlen = Math.min(
-                        longlen,
-                        totalsz
-                        - bread);    // Only return the number of bytes in the data store that is left.
-                len = new Long(longlen).intValue();
-                
-                if (debugEnabled) {
-                    is_log.debug("len = " + len);
-                }
+            if (bwritten < 0) {
+                return -1;
+            }
 
-                if (ml != null) {
-                    if (null == currentBuf) {    // Get the buffer we need to read from.
-                        currentBuf = (byte[]) ml.get(currentIndex);
-                        currentBufPos = 0;    // New buffer start from the begining.
-                    }
+            if (debugEnabled) {
+                is_log.debug(this.hashCode()
+                        + Messages.getMessage("read", "" + bwritten));
+            }
 
-                    do {
+            return bwritten;
+        }
 
-                        // The bytes to copy, the minimum of the bytes left in this buffer or bytes remaining.
-                        int bcopy = Math.min(currentBuf.length - currentBufPos,
-                                len - bwritten);
+        /**
+         * Copy data into <code>b</code>.
+         *
+         * @return the number of bytes copied, -1 at the end of the data
+         */
+        private int readData(byte[] b, int off, int len)
+                throws java.io.IOException {
 
-                        // Copy the data.
-                        System.arraycopy(currentBuf, currentBufPos, b,
-                                off + bwritten, bcopy);
+            int bwritten = 0;
 
-                        bwritten += bcopy;
-                        currentBufPos += bcopy;
+            if (bread == totalsz) {
+                return -1;
+            }
 
-                        if (bwritten < len) {    // Get the next buffer.
-                            currentBuf = (byte[]) ml.get(++currentIndex);
-                            currentBufPos = 0;
-                        }
-                    } while (bwritten < len);
+            java.util.List ml = memorybuflist;
+            
+            long longlen = len;
+            longlen = Math.min(
+                    longlen,
+                    totalsz
+                    - bread);    // Only return the number of bytes in the data store that is left.
+            len = new Long(longlen).intValue();
+            
+            if (debugEnabled) {
+                is_log.debug("len = " + len);
+            }
+
+            if (ml != null) {
+                if (null == currentBuf) {    // Get the buffer we need to read from.
+                    currentBuf = (byte[]) ml.get(currentIndex);
+                    currentBufPos = 0;    // New buffer start from the begining.
                 }
 
-                if ((bwritten == 0) && (null != diskCacheFile)) {
-                    if (debugEnabled) {
-                        is_log.debug(Messages.getMessage("reading", "" + len));
-                    }
+                do {
 
-                    if (null == fin) {           // we are now reading from disk.
-                        if (debugEnabled) {
-                            is_log.debug(
-                                    Messages.getMessage(
-                                            "openBread",
-                                            diskCacheFile.getCanonicalPath()));
-                        }
+                    // The bytes to copy, the minimum of the bytes left in this buffer or bytes remaining.
+                    int bcopy = Math.min(currentBuf.length - currentBufPos,
+                            len - bwritten);
 
-                        if (debugEnabled) {
-                            is_log.debug(Messages.getMessage("openBread",
-                                    "" + bread));
-                        }
+                    // Copy the data.
+                    System.arraycopy(currentBuf, currentBufPos, b,
+                            off + bwritten, bcopy);
 
-                        fin = new java.io.FileInputStream(diskCacheFile);
+                    bwritten += bcopy;
+                    currentBufPos += bcopy;
 
-                        if (bread > 0) {
-                            fin.skip(bread);     // Skip what we've read so far.
-                        }
+                    if (bwritten < len) {    // Get the next buffer.
+                        currentBuf = (byte[]) ml.get(++currentIndex);
+                        currentBufPos = 0;
                     }
+                } while (bwritten < len);
+            }
 
-                    if (cachediskstream != null) {
-                        if (debugEnabled) {
-                            is_log.debug(Messages.getMessage("flushing"));
-                        }
+            if ((bwritten == 0) && (null != diskCacheFile)) {
+                if (debugEnabled) {
+                    is_log.debug(Messages.getMessage("reading", "" + len));
+                }
 
-                        cachediskstream.flush();
+                if (null == fin) {           // we are now reading from disk.
+                    if (debugEnabled) {
+                        is_log.debug(
+                                Messages.getMessage(
+                                        "openBread",
+                                        diskCacheFile.getCanonicalPath()));
+                    }
+
+                    if (debugEnabled) {
+                        is_log.debug(Messages.getMessage("openBread",
+                                "" + bread));
+                    }
+
+                    fin = new java.io.FileInputStream(diskCacheFile);
+
+                    if (bread > 0) {
+                        fin.skip(bread);     // Skip what we've read so far.
                     }
+                }
 
+                if (cachediskstream != null) {
                     if (debugEnabled) {
                         is_log.debug(Messages.getMessage("flushing"));
-                        is_log.debug("len=" + len);
-                        is_log.debug("off=" + off);
-                        is_log.debug("b.length=" + b.length);
                     }
 
-                    bwritten = fin.read(b, off, len);
+                    cachediskstream.flush();
                 }
 
-                if (bwritten > 0) {
-                    bread += bwritten;
+                if (debugEnabled) {
+                    is_log.debug(Messages.getMessage("flushing"));
+                    is_log.debug("len=" + len);
+                    is_log.debug("off=" + off);
+                    is_log.debug("b.length=" + b.length);
                 }
+
+                bwritten = fin.read(b, off, len);
             }
 
-            if (debugEnabled) {
-                is_log.debug(this.hashCode()
-                        + Messages.getMessage("read", "" + bwritten));
+            if (bwritten > 0) {
+                bread += bwritten;
             }
 
             return bwritten;
@@ -831,7 +962,9 @@ public class ManagedMemoryDataSource implements javax.activation.DataSource {
             }
 
             if (!readClosed) {
-                readers.remove(this);
+                synchronized (ManagedMemoryDataSource.this) {
+                    readers.remove(this);
+                }
 
                 readClosed = true;
 
@@ -187,7 +187,7 @@ public class MultiPartRelatedInputStream extends MultiPartInputStream{
             // create the boundary delmited stream.
             boundaryDelimitedStream =
                     new org.apache.axis.attachments.BoundaryDelimitedStream(stream,
-                            boundary, 1024);
+                            boundary, 16 * 1024);
 
             // Now read through all potential streams until we have found the root part.
             String contentTransferEncoding = null;
@@ -26,6 +26,9 @@ import org.apache.axis.EngineConfiguration;
 import org.apache.axis.Handler;
 import org.apache.axis.MessageContext;
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.tracing.Trace;
+import org.apache.axis.components.tracing.Tracer;
+import org.apache.axis.components.tracing.TracerFactory;
 import org.apache.axis.configuration.EngineConfigurationFactoryFinder;
 import org.apache.axis.handlers.HandlerInfoChainFactory;
 import org.apache.axis.handlers.soap.MustUnderstandChecker;
@@ -80,11 +83,22 @@ public class AxisClient extends AxisEngine {
         Handler h = null;
         HandlerChain handlerImpl = null;
         
+        Tracer tracer = TracerFactory.getTracer();
+        Trace trace = null;
+
         // save previous context
         MessageContext previousContext = getCurrentMessageContext();
         try {
             // set active context
             setCurrentMessageContext(msgContext);
+
+            // a call made while serving a traced request is traced as well
+            if (msgContext.getTrace() == null) {
+                trace = tracer.startTrace(msgContext, (previousContext == null)
+                        ? null : previousContext.getTrace());
+                msgContext.setTrace(trace);
+            }
+
             hName = msgContext.getStrProp(MessageContext.ENGINE_HANDLER);
             if (log.isDebugEnabled()) {
                 log.debug("EngineHandler: " + hName);
@@ -92,7 +106,7 @@ public class AxisClient extends AxisEngine {
             if (hName != null) {
                 h = getHandler(hName);
                 if (h != null)
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
                 else
                     throw new AxisFault("Client.error",
                             Messages.getMessage("noHandler00",
@@ -118,13 +132,13 @@ public class AxisClient extends AxisEngine {
                 if (service != null) {
                     h = service.getRequestHandler();
                     if (h != null)
-                        h.invoke(msgContext);
+                        Trace.invoke(h, msgContext);
                 }
 
                 /* Process the Global Request Chain */
                 /**********************************/
                 if ((h = getGlobalRequest()) != null)
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
 
                 /* Process the JAX-RPC Handlers  - handleRequest.
                  * Make sure to set the pastPivot to true if this returns a
@@ -162,7 +176,7 @@ public class AxisClient extends AxisEngine {
                     hName = msgContext.getTransportName();
                     if (hName != null && (h = getTransport(hName)) != null) {
                         try {
-                            h.invoke(msgContext);
+                            Trace.invoke(h, msgContext);
                         } catch (AxisFault e) {
                             throw e;
                         }
@@ -187,7 +201,7 @@ public class AxisClient extends AxisEngine {
                     /* Process the Global Response Chain */
                     /***********************************/
                     if ((h = getGlobalResponse()) != null) {
-                        h.invoke(msgContext);
+                        Trace.invoke(h, msgContext);
                     }
                     
                     /* Process the Service-Specific Response Chain */
@@ -195,7 +209,7 @@ public class AxisClient extends AxisEngine {
                     if (service != null) {
                         h = service.getResponseHandler();
                         if (h != null) {
-                            h.invoke(msgContext);
+                            Trace.invoke(h, msgContext);
                         }
                     }
 
@@ -221,6 +235,10 @@ public class AxisClient extends AxisEngine {
             }
             // restore previous state
             setCurrentMessageContext(previousContext);
+            if (trace != null) {
+                msgContext.setTrace(null);
+                tracer.endTrace(msgContext, trace);
+            }
         }
         if (log.isDebugEnabled()) {
             log.debug("Exit: AxisClient::invoke");
@@ -26,7 +26,10 @@ import org.apache.axis.MessageContext;
 import org.apache.axis.AxisEngine;
 import org.apache.axis.SOAPPart;
 import org.apache.axis.attachments.Attachments;
+import org.apache.axis.client.async.AsyncExecutor;
+import org.apache.axis.client.async.CallFuture;
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.threads.ThreadFactoryFactory;
 import org.apache.axis.description.FaultDesc;
 import org.apache.axis.description.OperationDesc;
 import org.apache.axis.description.ParameterDesc;
@@ -1851,6 +1854,45 @@ public class Call implements javax.xml.rpc.Call {
         }
     }
 
+    /**
+     * Invokes the operation associated with this Call object without
+     * waiting for the response.
+     *
+     * @see #invokeAsync(QName, Object[], long)
+     */
+    public CallFuture invokeAsync(Object[] params) {
+        return invokeAsync(null, params, 0);
+    }
+
+    /**
+     * Invokes a specific operation without waiting for the response.
+     *
+     * @see #invokeAsync(QName, Object[], long)
+     */
+    public CallFuture invokeAsync(QName operationName, Object[] params) {
+        return invokeAsync(operationName, params, 0);
+    }
+
+    /**
+     * Invokes a specific operation without waiting for the response.  The
+     * call is made on a thread of the shared {@link AsyncExecutor}; until
+     * the returned future is done this Call object must not be used for
+     * anything else, so make a Call per concurrent invocation.
+     *
+     * @param operationName the operation to invoke, or <code>null</code>
+     *                      for the one set on this Call
+     * @param params        parameters for this invocation
+     * @param timeout       the number of milliseconds after which the call
+     *                      is cancelled, or 0 for no limit
+     * @return the future of the result
+     */
+    public CallFuture invokeAsync(QName operationName, Object[] params,
+                                  long timeout) {
+        CallFuture future = new CallFuture(this, operationName, params);
+        future.start(AsyncExecutor.getDefault(), timeout);
+        return future;
+    }
+
     /************************************************************************/
     /* End of core JAX-RPC stuff                                            */
     /************************************************************************/
@@ -2836,7 +2878,7 @@ public class Call implements javax.xml.rpc.Call {
             }
         };
         //create a thread to run it
-        Thread thread = new Thread(runnable);
+        Thread thread = ThreadFactoryFactory.getFactory().newThread(runnable);
         //run it
         thread.start();
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.client;
+
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.async.AsyncExecutor;
+import org.apache.axis.client.async.CallFuture;
+import org.apache.axis.transport.http.HTTPConstants;
+import org.apache.axis.transport.http.HTTPPipeline;
+
+import javax.xml.namespace.QName;
+import javax.xml.rpc.ServiceException;
+
+/**
+ * A batch of calls to one endpoint that are pipelined over a single
+ * HTTP/1.1 keep-alive connection: every request is sent as soon as the
+ * previous one has been written, without waiting for its response.
+ * <p>
+ * Calls are added with {@link #invoke(Call, QName, Object[])}, which runs
+ * them on the shared {@link AsyncExecutor} and returns a future for each.
+ * The responses are matched to the calls in the order the requests were
+ * sent, and a fault only completes the future of its own call.  Stubs take
+ * part in a batch through {@link Stub#_setBatch(CallBatch)}; their
+ * operations are then pipelined when invoked from several threads.
+ * <p>
+ * {@link #close()} hands the connection back to the pool once all
+ * responses have been read.
+ */
+public class CallBatch {
+    private final Service service;
+    private final AsyncExecutor executor;
+    private final HTTPPipeline pipeline = new HTTPPipeline();
+
+    public CallBatch(Service service) {
+        this(service, AsyncExecutor.getDefault());
+    }
+
+    public CallBatch(Service service, AsyncExecutor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    /**
+     * Create a call that belongs to this batch.
+     */
+    public Call createCall() throws ServiceException {
+        Call call = (Call) service.createCall();
+        add(call);
+        return call;
+    }
+
+    /**
+     * Make <code>call</code> send its requests over the connection of this
+     * batch.
+     */
+    public void add(Call call) {
+        call.setProperty(HTTPConstants.MC_HTTP_PIPELINE, pipeline);
+        call.setProperty(MessageContext.HTTP_TRANSPORT_VERSION,
+                         HTTPConstants.HEADER_PROTOCOL_V11);
+    }
+
+    /**
+     * Invoke <code>call</code> as part of this batch.  The call must not be
+     * used for anything else until the returned future is done.
+     *
+     * @param operationName the operation, or <code>null</code> for the one
+     *                      set on the call
+     */
+    public CallFuture invoke(Call call, QName operationName, Object[] params) {
+        add(call);
+        CallFuture future = new CallFuture(call, operationName, params);
+        future.start(executor, 0);
+        return future;
+    }
+
+    /**
+     * Stop accepting calls.  The connection is returned to the pool as soon
+     * as the calls already sent have been answered.
+     */
+    public void close() {
+        pipeline.close();
+    }
+
+    public Service getService() {
+        return service;
+    }
+}
@@ -556,6 +556,16 @@ public class Service implements javax.xml.rpc.Service, Serializable, Referenceab
         return new org.apache.axis.client.Call(this);
     }
 
+    /**
+     * Creates a batch whose calls are pipelined over a single connection.
+     *
+     * @return a new CallBatch
+     * @see CallBatch
+     */
+    public CallBatch createBatch() {
+        return new CallBatch(this);
+    }
+
     /**
      * Gets an array of preconfigured Call objects for invoking operations
      * on the specified port. There is one Call object per operation that
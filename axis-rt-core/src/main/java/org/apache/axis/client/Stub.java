@@ -68,6 +68,9 @@ public abstract class Stub implements javax.xml.rpc.Stub {
     // The last call object
     protected Call _call = null;
 
+    // The batch new calls are added to, if any
+    private volatile CallBatch batch = null;
+
     /**
      * Is this the first time the type mappings are being registered?
      */
@@ -436,12 +439,32 @@ public abstract class Stub implements javax.xml.rpc.Stub {
         // to return the value of the local call variable instead of reading the _call attribute.
         Call call = (Call) service.createCall();
         _call = call;
+        CallBatch batch = this.batch;
+        if (batch != null) {
+            batch.add(call);
+        }
 
         // TODO: There is a lot of code in the generated stubs that
         // can be moved here.
         return call;
     }
 
+    /**
+     * Pipelines the calls made through this stub with the other calls of
+     * <code>batch</code>, or stops doing so if <code>batch</code> is null.
+     * Not part of JAX-RPC.
+     */
+    public void _setBatch(CallBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the batch set with {@link #_setBatch(CallBatch)}, if any.
+     */
+    public CallBatch _getBatch() {
+        return batch;
+    }
+
     /**
      * Returns last Call object associated with this stub.
      */
@@ -82,7 +82,7 @@ public class AsyncCall {
      * @return 
      */
     public IAsyncResult invoke(Object[] inputParams) {
-        return new AsyncResult(this, null, inputParams);
+        return invoke(null, inputParams);
     }
 
     /**
@@ -93,7 +93,12 @@ public class AsyncCall {
      * @return 
      */
     public IAsyncResult invoke(QName qName, Object[] inputParams) {
-        return new AsyncResult(this, qName, inputParams);
+        CallFuture future = new CallFuture(call, qName, inputParams);
+        if (callback != null) {
+            future.addCallback(callback);
+        }
+        future.start(AsyncExecutor.getDefault(), 0);
+        return future;
     }
 
     /**
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.client.async;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.threads.ThreadFactoryFactory;
+import org.apache.commons.logging.Log;
+
+import java.util.LinkedList;
+
+/**
+ * A bounded pool of threads shared by all asynchronous calls.
+ * <p>
+ * Threads are started on demand up to the maximum, and stop again after
+ * being idle for a minute; calls submitted while all threads are busy wait
+ * in a queue.  The threads are created by the configured
+ * {@link org.apache.axis.components.threads.ThreadFactory}, so with virtual
+ * threads a call blocked on the network doesn't hold an operating system
+ * thread.
+ * <p>
+ * The size of the default executor is set with the
+ * <code>axis.async.maxThreads</code> property.
+ */
+public class AsyncExecutor {
+    protected static Log log =
+        LogFactory.getLog(AsyncExecutor.class.getName());
+
+    public static final String PROP_MAX_THREADS = "axis.async.maxThreads";
+
+    public static final int DEFAULT_MAX_THREADS = 32;
+
+    private static final long IDLE_TIMEOUT = 60000;
+
+    private static AsyncExecutor defaultExecutor;
+
+    private final int maxThreads;
+    private final LinkedList queue = new LinkedList();
+    private int threads = 0;
+    private int idle = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Return the executor used by {@link org.apache.axis.client.Call#invokeAsync}.
+     */
+    public static synchronized AsyncExecutor getDefault() {
+        if (defaultExecutor == null) {
+            int max = DEFAULT_MAX_THREADS;
+            String value = AxisProperties.getProperty(PROP_MAX_THREADS);
+            if (value != null) {
+                try {
+                    max = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    log.warn(PROP_MAX_THREADS + "=" + value, e);
+                }
+            }
+            defaultExecutor = new AsyncExecutor(max);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * @param maxThreads the number of calls that may run at the same time
+     */
+    public AsyncExecutor(int maxThreads) {
+        this.maxThreads = Math.max(maxThreads, 1);
+    }
+
+    /**
+     * Run <code>task</code> on one of the pool threads, as soon as one is
+     * free.
+     *
+     * @throws IllegalStateException if the executor has been shut down
+     */
+    public void execute(Runnable task) {
+        synchronized (queue) {
+            if (shutdown) {
+                throw new IllegalStateException();
+            }
+            queue.addLast(task);
+            if (queue.size() <= idle) {
+                queue.notify();
+                return;
+            }
+            if (threads >= maxThreads) {
+                return;
+            }
+            threads++;
+        }
+        Thread thread;
+        try {
+            thread = ThreadFactoryFactory.getFactory().newThread(new Worker());
+            thread.setDaemon(true);
+            thread.start();
+        } catch (RuntimeException e) {
+            synchronized (queue) {
+                threads--;
+            }
+            throw e;
+        } catch (Error e) {
+            synchronized (queue) {
+                threads--;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stop accepting new calls.  Queued calls are still run, after which
+     * the threads stop.
+     */
+    public void shutdown() {
+        synchronized (queue) {
+            shutdown = true;
+            queue.notifyAll();
+        }
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /** Number of threads currently in the pool */
+    public int getThreadCount() {
+        synchronized (queue) {
+            return threads;
+        }
+    }
+
+    /** Number of calls waiting for a free thread */
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Take the next task, waiting up to the idle timeout for one.
+     *
+     * @return the task, or <code>null</code> if the thread should stop
+     */
+    private Runnable take() {
+        synchronized (queue) {
+            long deadline = System.currentTimeMillis() + IDLE_TIMEOUT;
+            while (queue.isEmpty()) {
+                long wait = deadline - System.currentTimeMillis();
+                if (shutdown || wait <= 0) {
+                    threads--;
+                    return null;
+                }
+                idle++;
+                try {
+                    queue.wait(wait);
+                } catch (InterruptedException e) {
+                    // a cancelled call may leave the flag set; keep going
+                } finally {
+                    idle--;
+                }
+            }
+            return (Runnable) queue.removeFirst();
+        }
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            Runnable task;
+            while ((task = take()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error(t.getMessage(), t);
+                }
+            }
+        }
+    }
+}
@@ -16,10 +16,16 @@
 
 package org.apache.axis.client.async;
 
+import org.apache.axis.components.threads.ThreadFactoryFactory;
+
 import javax.xml.namespace.QName;
 
 /**
  * Access the results of the Async call
+ * <p>
+ * Every instance runs its call on a thread of its own.  {@link AsyncCall}
+ * now uses {@link CallFuture} instead, which shares a bounded pool of
+ * threads between calls.
  * 
  * @author Davanum Srinivas (dims@yahoo.com)
  */
@@ -76,7 +82,7 @@ public class AsyncResult implements IAsyncResult, Runnable {
             this.opName = ac.getCall().getOperationName();
         }
 
-        thread = new Thread(this);
+        thread = ThreadFactoryFactory.getFactory().newThread(this);
         thread.setDaemon(true);
         thread.start();
     }
@@ -86,7 +92,10 @@ public class AsyncResult implements IAsyncResult, Runnable {
      */
     public void abort() {
         thread.interrupt();
-        status = Status.INTERRUPTED;
+        synchronized (this) {
+            status = Status.INTERRUPTED;
+            notifyAll();
+        }
     }
 
     /**
@@ -94,7 +103,7 @@ public class AsyncResult implements IAsyncResult, Runnable {
      * 
      * @return 
      */
-    public Status getStatus() {
+    public synchronized Status getStatus() {
         return status;
     }
 
@@ -104,8 +113,15 @@ public class AsyncResult implements IAsyncResult, Runnable {
      * @param timeout 
      * @throws InterruptedException 
      */
-    public void waitFor(long timeout) throws InterruptedException {
-        thread.wait(timeout);
+    public synchronized void waitFor(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (status == Status.NONE) {
+            long wait = end - System.currentTimeMillis();
+            if (timeout > 0 && wait <= 0) {
+                return;
+            }
+            wait(timeout > 0 ? wait : 0);
+        }
     }
 
     /**
@@ -113,7 +129,7 @@ public class AsyncResult implements IAsyncResult, Runnable {
      * 
      * @return 
      */
-    public Object getResponse() {
+    public synchronized Object getResponse() {
         return response;
     }
 
@@ -122,7 +138,7 @@ public class AsyncResult implements IAsyncResult, Runnable {
      * 
      * @return 
      */
-    public Throwable getException() {
+    public synchronized Throwable getException() {
         return exception;
     }
 
@@ -131,11 +147,22 @@ public class AsyncResult implements IAsyncResult, Runnable {
      */
     public void run() {
         try {
-            response = ac.getCall().invoke(opName, params);
-            status = Status.COMPLETED;
+            Object result = ac.getCall().invoke(opName, params);
+            synchronized (this) {
+                response = result;
+                if (status == Status.NONE) {
+                    status = Status.COMPLETED;
+                }
+                notifyAll();
+            }
         } catch (Throwable e) {
-            exception = e;
-            status = Status.EXCEPTION;
+            synchronized (this) {
+                exception = e;
+                if (status == Status.NONE) {
+                    status = Status.EXCEPTION;
+                }
+                notifyAll();
+            }
         } finally {
             IAsyncCallback callback = ac.getCallback();
             if (callback != null) {
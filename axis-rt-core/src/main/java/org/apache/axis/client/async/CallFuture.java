@@ -0,0 +1,347 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.client.async;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Call;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * The pending result of {@link Call#invokeAsync(QName, Object[], long)}.
+ * <p>
+ * The call runs on a thread of an {@link AsyncExecutor}.  The result is
+ * collected with {@link #get()}, or handed to the callbacks registered with
+ * {@link #addCallback(IAsyncCallback)}, which run on the thread that
+ * completes the call.
+ * <p>
+ * Cancelling the call, or letting its deadline pass, completes it with a
+ * fault right away and aborts the request in flight: the thread running it
+ * is interrupted, and the socket registered by the transport through
+ * {@link #setSocket(Socket)} is closed, which makes a blocked read fail.
+ */
+public class CallFuture implements IAsyncResult, Runnable {
+    protected static Log log =
+        LogFactory.getLog(CallFuture.class.getName());
+
+    /** The future of the call running on the current thread */
+    private static final ThreadLocal current = new ThreadLocal();
+
+    private static Timer timer;
+
+    private final Call call;
+    private final QName opName;
+    private final Object[] params;
+
+    private Status status = Status.NONE;
+    private boolean done = false;
+    private Object response;
+    private Throwable exception;
+    private List callbacks;
+
+    private Thread runner;
+    private Socket socket;
+    private TimerTask deadline;
+
+    /**
+     * @param call   the call to invoke; it must not be used for anything
+     *               else until the future is done
+     * @param opName the operation, or <code>null</code> for the one set on
+     *               the call
+     * @param params the parameters
+     */
+    public CallFuture(Call call, QName opName, Object[] params) {
+        this.call = call;
+        this.opName = (opName == null) ? call.getOperationName() : opName;
+        this.params = params;
+    }
+
+    /**
+     * Return the future of the call made by the current thread, if it is
+     * an asynchronous one.
+     */
+    public static CallFuture getCurrent() {
+        return (CallFuture) current.get();
+    }
+
+    private static synchronized Timer getTimer() {
+        if (timer == null) {
+            timer = new Timer(true);
+        }
+        return timer;
+    }
+
+    /**
+     * Submit the call to <code>executor</code>.
+     *
+     * @param timeout the number of milliseconds after which the call is
+     *                aborted, or 0 for no limit
+     */
+    public void start(AsyncExecutor executor, final long timeout) {
+        if (timeout > 0) {
+            TimerTask task = new TimerTask() {
+                public void run() {
+                    abort(new AxisFault(Messages.getMessage("asyncTimedOut00",
+                                                            String.valueOf(timeout))));
+                }
+            };
+            synchronized (this) {
+                deadline = task;
+            }
+            getTimer().schedule(task, timeout);
+        }
+        executor.execute(this);
+    }
+
+    public void run() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        current.set(this);
+        try {
+            Object result = call.invoke(opName, params);
+            complete(Status.COMPLETED, result, null);
+        } catch (Throwable t) {
+            complete(Status.EXCEPTION, null, t);
+        } finally {
+            current.set(null);
+            synchronized (this) {
+                runner = null;
+                socket = null;
+            }
+            // clear an interrupt from a cancel that came too late
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Called by the transport with the socket the request is sent over.  If
+     * the call has already been aborted the socket is closed at once.
+     */
+    public void setSocket(Socket socket) {
+        synchronized (this) {
+            if (!done) {
+                this.socket = socket;
+                return;
+            }
+        }
+        close(socket);
+    }
+
+    /**
+     * Called by the transport when it is done with <code>socket</code>, e.g.
+     * before handing it back to a connection pool, so that aborting the
+     * call doesn't close it under another call that uses it next.
+     */
+    public synchronized void releaseSocket(Socket socket) {
+        if (this.socket == socket) {
+            this.socket = null;
+        }
+    }
+
+    /**
+     * Cancel the call, unless it has already completed.
+     *
+     * @return false if the call had already completed
+     */
+    public boolean cancel() {
+        return abort(new AxisFault(Messages.getMessage("asyncCancelled00")));
+    }
+
+    private boolean abort(AxisFault fault) {
+        return complete(Status.INTERRUPTED, null, fault);
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug(e.getMessage(), e);
+        }
+    }
+
+    private boolean complete(Status status, Object response,
+                             Throwable exception) {
+        List toNotify;
+        TimerTask task;
+        Socket s = null;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.status = status;
+            this.response = response;
+            this.exception = exception;
+            done = true;
+            notifyAll();
+            toNotify = callbacks;
+            callbacks = null;
+            task = deadline;
+            deadline = null;
+            if (status == Status.INTERRUPTED) {
+                // still under the lock, so the runner can't have moved on
+                // to another call yet
+                if (runner != null) {
+                    runner.interrupt();
+                }
+                s = socket;
+                socket = null;
+            }
+        }
+        if (task != null) {
+            task.cancel();
+        }
+        if (s != null) {
+            close(s);
+        }
+        if (toNotify != null) {
+            for (int i = 0; i < toNotify.size(); i++) {
+                notify((IAsyncCallback) toNotify.get(i));
+            }
+        }
+        return true;
+    }
+
+    private void notify(IAsyncCallback callback) {
+        try {
+            callback.onCompletion(this);
+        } catch (Throwable t) {
+            log.error(Messages.getMessage("asyncCallbackError00"), t);
+        }
+    }
+
+    /**
+     * Register a callback for the completion of the call.  If the call has
+     * already completed the callback runs right away.
+     */
+    public void addCallback(IAsyncCallback callback) {
+        synchronized (this) {
+            if (!done) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList(2);
+                }
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notify(callback);
+    }
+
+    /**
+     * Wait for the call to complete and return its result.
+     *
+     * @throws RemoteException the fault of a failed, cancelled or timed out
+     *                         call
+     */
+    public Object get() throws RemoteException, InterruptedException {
+        return get(0);
+    }
+
+    /**
+     * Wait at most <code>timeout</code> milliseconds for the call to
+     * complete and return its result.  The call itself goes on if the wait
+     * times out.
+     *
+     * @param timeout the time to wait, or 0 to wait as long as it takes
+     * @throws RemoteException the fault of a failed, cancelled or timed out
+     *                         call, or an <code>AxisFault</code> if the wait
+     *                         timed out
+     */
+    public Object get(long timeout)
+        throws RemoteException, InterruptedException {
+        waitFor(timeout);
+        synchronized (this) {
+            if (!done) {
+                throw new AxisFault(Messages.getMessage("asyncTimedOut00",
+                                                        String.valueOf(timeout)));
+            }
+            if (exception == null) {
+                return response;
+            }
+            if (exception instanceof RemoteException) {
+                throw (RemoteException) exception;
+            }
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            }
+            if (exception instanceof Error) {
+                throw (Error) exception;
+            }
+            throw AxisFault.makeFault((Exception) exception);
+        }
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized boolean isCancelled() {
+        return status == Status.INTERRUPTED;
+    }
+
+    /**
+     * Same as {@link #cancel()}.
+     */
+    public void abort() {
+        cancel();
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Wait at most <code>timeout</code> milliseconds, or as long as it
+     * takes if <code>timeout</code> is 0, for the call to complete.
+     */
+    public synchronized void waitFor(long timeout) throws InterruptedException {
+        if (timeout <= 0) {
+            while (!done) {
+                wait();
+            }
+            return;
+        }
+        long end = System.currentTimeMillis() + timeout;
+        while (!done) {
+            long wait = end - System.currentTimeMillis();
+            if (wait <= 0) {
+                return;
+            }
+            wait(wait);
+        }
+    }
+
+    public synchronized Object getResponse() {
+        return response;
+    }
+
+    public synchronized Throwable getException() {
+        return exception;
+    }
+}
@@ -54,12 +54,12 @@ public abstract class AbstractXMLEncoder implements XMLEncoder {
         if(xmlString == null) {
             return "";
         }
-        char[] characters = xmlString.toCharArray();
+        int length = xmlString.length();
         StringBuffer out = null;
         char character;
 
-        for (int i = 0; i < characters.length; i++) {
-            character = characters[i];
+        for (int i = 0; i < length; i++) {
+            character = xmlString.charAt(i);
             switch (character) {
                 // we don't care about single quotes since axis will
                 // use double quotes anyway
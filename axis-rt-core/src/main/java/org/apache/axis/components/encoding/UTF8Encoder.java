@@ -49,12 +49,27 @@ class UTF8Encoder extends AbstractXMLEncoder {
             return;
         }
         int length = xmlString.length();
+        // start of the current run of characters that are written as is
+        int start = 0;
         char character;
         for (int i = 0; i < length; i++) {
             character = xmlString.charAt( i );
-            switch (character) {
+            if (character >= 0x20 && character <= 0x7F) {
                 // we don't care about single quotes since axis will
                 // use double quotes anyway
+                if (character != '&' && character != '"'
+                        && character != '<' && character != '>') {
+                    continue;
+                }
+            } else if (character == '\n' || character == '\r'
+                    || character == '\t') {
+                continue;
+            }
+            if (i > start) {
+                writer.write(xmlString, start, i - start);
+            }
+            start = i + 1;
+            switch (character) {
                 case '&':
                     writer.write(AMP);
                     break;
@@ -67,30 +82,21 @@ class UTF8Encoder extends AbstractXMLEncoder {
                 case '>':
                     writer.write(GREATER);
                     break;
-                case '\n':
-                    writer.write(LF);
-                    break;
-                case '\r':
-                    writer.write(CR);
-                    break;
-                case '\t':
-                    writer.write(TAB);
-                    break;
                 default:
                     if (character < 0x20) {
                         throw new IllegalArgumentException(Messages.getMessage(
                                 "invalidXmlCharacter00",
                                 Integer.toHexString(character),
                                 xmlString.substring(0, i)));
-                    } else if (character > 0x7F) {
-                        writer.write("&#x");
-                        writer.write(Integer.toHexString(character).toUpperCase());
-                        writer.write(";");
-                    } else {
-                        writer.write(character);
                     }
+                    writer.write("&#x");
+                    writer.write(Integer.toHexString(character).toUpperCase());
+                    writer.write(";");
                     break;
             }
         }
+        if (length > start) {
+            writer.write(xmlString, start, length - start);
+        }
     }
 }
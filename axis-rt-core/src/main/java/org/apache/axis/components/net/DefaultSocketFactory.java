@@ -164,6 +164,37 @@ public class DefaultSocketFactory implements SocketFactory {
      * @return true/false
      */
     protected boolean isHostInNonProxyList(String host, String nonProxyHosts) {
+        return inNonProxyList(host, nonProxyHosts);
+    }
+
+    /**
+     * Returns the proxy, as <code>host:port</code>, through which the
+     * socket factories connect to the given host, or <code>null</code> if
+     * they connect to it directly.
+     *
+     * @param protocol the protocol, <code>http</code> or <code>https</code>
+     * @param host     host name
+     */
+    public static String getProxy(String protocol, String host) {
+        boolean https = "https".equalsIgnoreCase(protocol);
+        TransportClientProperties tcp =
+            TransportClientPropertiesFactory.create(https ? "https" : "http");
+        if (tcp.getProxyHost().length() == 0
+                || inNonProxyList(host, tcp.getNonProxyHosts())) {
+            return null;
+        }
+        String proxyPort = tcp.getProxyPort();
+        if (proxyPort.length() == 0) {
+            if (!https) {
+                return null;
+            }
+            // see JSSESocketFactory, the default proxy port is 80 for https
+            proxyPort = "80";
+        }
+        return tcp.getProxyHost().toLowerCase() + ":" + proxyPort;
+    }
+
+    private static boolean inNonProxyList(String host, String nonProxyHosts) {
 
         if ((nonProxyHosts == null) || (host == null)) {
             return false;
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.threads;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+
+/**
+ * Provides the {@link ThreadFactory} used by Axis.  Set the
+ * <code>axis.ThreadFactory</code> property to
+ * <code>org.apache.axis.components.threads.VirtualThreadFactory</code> to
+ * run asynchronous and one-way calls on virtual threads.
+ */
+public abstract class ThreadFactoryFactory {
+    protected static Log log =
+        LogFactory.getLog(ThreadFactoryFactory.class.getName());
+
+    static {
+        AxisProperties.setClassOverrideProperty(ThreadFactory.class, "axis.ThreadFactory");
+        AxisProperties.setClassDefault(ThreadFactory.class, "org.apache.axis.components.threads.DefaultThreadFactory");
+    }
+
+    private static ThreadFactory factory;
+
+    /**
+     * Returns the ThreadFactory, creating it on first use.
+     */
+    public static synchronized ThreadFactory getFactory() {
+        if (factory == null) {
+            factory = (ThreadFactory) AxisProperties.newInstance(ThreadFactory.class);
+            log.debug("axis.ThreadFactory:" + factory.getClass().getName());
+        }
+        return factory;
+    }
+
+    /**
+     * Replace the ThreadFactory, e.g. by a server that runs its requests on
+     * virtual threads.  <code>null</code> makes the next call to
+     * {@link #getFactory()} look up the configured one again.
+     */
+    public static synchronized void setFactory(ThreadFactory threadFactory) {
+        factory = threadFactory;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.threads;
+
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads, which don't tie up an operating system thread
+ * while they wait for I/O.  They need Java 21 or later; on older runtimes
+ * platform threads are created instead.
+ * <p>
+ * A virtual thread can't be unmounted while it holds a monitor (before
+ * Java 24), so code running on them should not block inside
+ * <code>synchronized</code> blocks.
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+    protected static Log log =
+        LogFactory.getLog(VirtualThreadFactory.class.getName());
+
+    /** Thread.ofVirtual(), or null if there are no virtual threads */
+    private static final Method ofVirtual;
+
+    /** Thread.Builder.unstarted(Runnable) */
+    private static final Method unstarted;
+
+    static {
+        Method builder = null;
+        Method create = null;
+        try {
+            builder = Thread.class.getMethod("ofVirtual", new Class[0]);
+            create = Class.forName("java.lang.Thread$Builder")
+                    .getMethod("unstarted", new Class[] { Runnable.class });
+        } catch (Exception e) {
+            builder = null;
+        }
+        ofVirtual = builder;
+        unstarted = create;
+    }
+
+    private static boolean warned = false;
+
+    /**
+     * Whether the Java runtime supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return ofVirtual != null;
+    }
+
+    public Thread newThread(Runnable runnable) {
+        if (ofVirtual != null) {
+            try {
+                Object builder = ofVirtual.invoke(null, new Object[0]);
+                return (Thread) unstarted.invoke(builder, new Object[] { runnable });
+            } catch (InvocationTargetException e) {
+                Throwable t = e.getTargetException();
+                if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                }
+                if (t instanceof Error) {
+                    throw (Error) t;
+                }
+                log.error(Messages.getMessage("exception00"), t);
+            } catch (IllegalAccessException e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        } else if (!warned) {
+            warned = true;
+            log.warn(Messages.getMessage("noVirtualThreads00"));
+        }
+        return new Thread(runnable);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.tracing;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.uuid.UUIDGen;
+import org.apache.axis.components.uuid.UUIDGenFactory;
+import org.apache.axis.transport.http.HTTPConstants;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import java.util.LinkedList;
+
+/**
+ * The default {@link Tracer}.  It traces one request in
+ * <code>axis.trace.sampleRate</code>, and logs those that take at least
+ * <code>axis.trace.slowThreshold</code> milliseconds with the time spent in
+ * each handler.  The most recent slow traces are kept and returned by
+ * {@link #getSlowTraces()}.
+ * <p>
+ * Requests made on behalf of a traced one are always traced under the same
+ * ID.  So are requests that arrive with a trace ID in an
+ * <code>X-Axis-Trace-Id</code> header, if <code>axis.trace.trustIncomingId</code>
+ * is <code>true</code> and the ID passes {@link Trace#isValidId}; otherwise
+ * the header is ignored, as any client may send it.  With the sample rate
+ * at 0, the default, nothing is traced.
+ * <p>
+ * Each thread counts its own requests for sampling, so with several
+ * threads the requests traced are one in the sample rate per thread.
+ */
+public class DefaultTracer implements Tracer {
+    protected static Log log =
+        LogFactory.getLog(DefaultTracer.class.getName());
+
+    public static final String PROP_SAMPLE_RATE = "axis.trace.sampleRate";
+    public static final String PROP_SLOW_THRESHOLD = "axis.trace.slowThreshold";
+    public static final String PROP_MAX_SPANS = "axis.trace.maxSpans";
+    public static final String PROP_TRUST_INCOMING_ID = "axis.trace.trustIncomingId";
+
+    public static final long DEFAULT_SLOW_THRESHOLD = 1000;
+    public static final int DEFAULT_MAX_SPANS = 64;
+
+    /** Slow traces kept */
+    private static final int MAX_SLOW_TRACES = 16;
+
+    private final int sampleRate;
+    private final long slowThreshold;
+    private final int maxSpans;
+    private final boolean trustIncomingId;
+
+    /** Requests of the current thread since it last traced one, an int[1] */
+    private final ThreadLocal skipped = new ThreadLocal() {
+        protected Object initialValue() {
+            return new int[1];
+        }
+    };
+
+    private UUIDGen uuidGen;
+
+    /** The most recent slow traces, newest first */
+    private final LinkedList slowTraces = new LinkedList();
+
+    /**
+     * Create a tracer configured by the <code>axis.trace.*</code>
+     * properties.
+     */
+    public DefaultTracer() {
+        this((int) getLongProperty(PROP_SAMPLE_RATE, 0),
+             getLongProperty(PROP_SLOW_THRESHOLD, DEFAULT_SLOW_THRESHOLD),
+             (int) getLongProperty(PROP_MAX_SPANS, DEFAULT_MAX_SPANS),
+             "true".equalsIgnoreCase(AxisProperties.getProperty(PROP_TRUST_INCOMING_ID)));
+    }
+
+    /**
+     * @param sampleRate    trace one request in this many; 0 traces none
+     * @param slowThreshold the duration in milliseconds from which a traced
+     *                      request is reported
+     * @param maxSpans      the number of spans recorded per request
+     */
+    public DefaultTracer(int sampleRate, long slowThreshold, int maxSpans) {
+        this(sampleRate, slowThreshold, maxSpans, false);
+    }
+
+    /**
+     * @param sampleRate      trace one request in this many; 0 traces none
+     * @param slowThreshold   the duration in milliseconds from which a
+     *                        traced request is reported
+     * @param maxSpans        the number of spans recorded per request
+     * @param trustIncomingId whether to trace the requests that arrive with
+     *                        a trace ID
+     */
+    public DefaultTracer(int sampleRate, long slowThreshold, int maxSpans,
+                         boolean trustIncomingId) {
+        this.sampleRate = sampleRate;
+        this.slowThreshold = slowThreshold;
+        this.maxSpans = maxSpans;
+        this.trustIncomingId = trustIncomingId;
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = AxisProperties.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(name + "=" + value, e);
+            }
+        }
+        return defaultValue;
+    }
+
+    public Trace startTrace(MessageContext msgContext, Trace parent) {
+        if (sampleRate <= 0) {
+            return null;
+        }
+        String id;
+        if (parent != null) {
+            id = parent.getId();
+        } else {
+            id = trustIncomingId ? getIncomingId(msgContext) : null;
+            if (id == null) {
+                if (!sample()) {
+                    return null;
+                }
+                id = nextId();
+            }
+        }
+        return new Trace(id, maxSpans);
+    }
+
+    public void endTrace(MessageContext msgContext, Trace trace) {
+        trace.end();
+        if (trace.getDuration() < slowThreshold) {
+            return;
+        }
+        if (log.isInfoEnabled()) {
+            // clients name the endpoint rather than the service
+            String target = msgContext.getTargetService();
+            if (target == null) {
+                target = msgContext.getStrProp(MessageContext.TRANS_URL);
+            }
+            log.info(Messages.getMessage("slowRequest00", target,
+                                         trace.toString()));
+        }
+        synchronized (slowTraces) {
+            slowTraces.addFirst(trace);
+            if (slowTraces.size() > MAX_SLOW_TRACES) {
+                slowTraces.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Return the most recent traces of slow requests, newest first.
+     */
+    public Trace[] getSlowTraces() {
+        synchronized (slowTraces) {
+            return (Trace[]) slowTraces.toArray(new Trace[slowTraces.size()]);
+        }
+    }
+
+    private boolean sample() {
+        int[] count = (int[]) skipped.get();
+        if (++count[0] < sampleRate) {
+            return false;
+        }
+        count[0] = 0;
+        return true;
+    }
+
+    private synchronized String nextId() {
+        if (uuidGen == null) {
+            uuidGen = UUIDGenFactory.getUUIDGen();
+        }
+        return uuidGen.nextUUID();
+    }
+
+    /**
+     * Return the trace ID the request arrived with, if any and valid.
+     */
+    private static String getIncomingId(MessageContext msgContext) {
+        Message request = msgContext.getRequestMessage();
+        if (request == null) {
+            return null;
+        }
+        String[] values = request.getMimeHeaders()
+                .getHeader(HTTPConstants.HEADER_TRACE_ID);
+        if (values == null || values.length == 0) {
+            return null;
+        }
+        if (!Trace.isValidId(values[0])) {
+            if (log.isDebugEnabled()) {
+                log.debug(Messages.getMessage("badTraceId00",
+                        String.valueOf(values[0].length())));
+            }
+            return null;
+        }
+        return values[0];
+    }
+}
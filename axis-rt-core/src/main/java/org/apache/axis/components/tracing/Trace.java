@@ -0,0 +1,236 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.tracing;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.Handler;
+import org.apache.axis.MessageContext;
+
+/**
+ * The handlers a traced request passed through, and the time spent in each
+ * of them.
+ * <p>
+ * Each handler invocation is a span, which nests in the span that was open
+ * when it started.  The spans are recorded into arrays allocated with the
+ * trace, so recording them does not allocate; spans beyond the capacity of
+ * the trace are only counted.  A trace belongs to one request and is not
+ * thread-safe.
+ */
+public class Trace {
+    /** The longest trace ID accepted from another process */
+    public static final int MAX_ID_LENGTH = 64;
+
+    private final String id;
+
+    private final Object[] names;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] depths;
+
+    private int count = 0;
+    private int depth = 0;
+    private int dropped = 0;
+
+    private final long startTime;
+    private long endTime = -1;
+
+    /**
+     * Invoke a handler, recording it as a span if the request is traced.
+     *
+     * @param handler    the <code>Handler</code> to invoke
+     * @param msgContext the request
+     * @throws AxisFault if the handler faults
+     */
+    public static void invoke(Handler handler, MessageContext msgContext)
+            throws AxisFault {
+        Trace trace = msgContext.getTrace();
+        if (trace == null) {
+            handler.invoke(msgContext);
+            return;
+        }
+        int span = trace.startSpan(handler);
+        try {
+            handler.invoke(msgContext);
+        } finally {
+            trace.endSpan(span);
+        }
+    }
+
+    /**
+     * @param id       the trace ID, shared by the requests made on behalf of
+     *                 one another
+     * @param capacity the number of spans recorded
+     */
+    public Trace(String id, int capacity) {
+        this.id = id;
+        capacity = Math.max(capacity, 1);
+        names = new Object[capacity];
+        starts = new long[capacity];
+        ends = new long[capacity];
+        depths = new int[capacity];
+        startTime = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Check a trace ID received from or sent to another process: at most
+     * {@link #MAX_ID_LENGTH} letters, digits, or the characters
+     * <code>-_.:</code>, so that it is safe to log and to put in a header.
+     */
+    public static boolean isValidId(String id) {
+        if (id == null || id.length() == 0 || id.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start a span.
+     *
+     * @param name what the span is for: a <code>Handler</code>, or a name
+     * @return the span, to be passed to {@link #endSpan(int)}
+     */
+    public int startSpan(Object name) {
+        if (count == names.length) {
+            dropped++;
+            depth++;
+            return -1;
+        }
+        names[count] = name;
+        starts[count] = System.currentTimeMillis();
+        ends[count] = -1;
+        depths[count] = depth++;
+        return count++;
+    }
+
+    /**
+     * End a span started with {@link #startSpan(Object)}.
+     */
+    public void endSpan(int span) {
+        depth--;
+        if (span >= 0) {
+            ends[span] = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * End the trace, when the request is complete.
+     */
+    public void end() {
+        if (endTime < 0) {
+            endTime = System.currentTimeMillis();
+        }
+    }
+
+    /** The time the trace started, in milliseconds since the epoch */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * The time from the start to the end of the trace, or to now if it
+     * has not ended yet, in milliseconds.
+     */
+    public long getDuration() {
+        return ((endTime < 0) ? System.currentTimeMillis() : endTime)
+                - startTime;
+    }
+
+    /** The number of spans recorded */
+    public int getSpanCount() {
+        return count;
+    }
+
+    /** The number of spans that did not fit into the trace */
+    public int getDroppedSpans() {
+        return dropped;
+    }
+
+    /**
+     * The name of a span: the name of its handler, or the class name if the
+     * handler has no name.
+     */
+    public String getSpanName(int span) {
+        Object name = names[span];
+        if (name instanceof Handler) {
+            Handler handler = (Handler) name;
+            if (handler.getName() != null) {
+                return handler.getName();
+            }
+            String className = handler.getClass().getName();
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+        return String.valueOf(name);
+    }
+
+    /** The nesting level of a span; 0 for the outermost spans */
+    public int getSpanDepth(int span) {
+        return depths[span];
+    }
+
+    /** The start of a span, in milliseconds after the start of the trace */
+    public long getSpanOffset(int span) {
+        return starts[span] - startTime;
+    }
+
+    /**
+     * The duration of a span in milliseconds, or -1 if it has not ended.
+     */
+    public long getSpanDuration(int span) {
+        return (ends[span] < 0) ? -1 : ends[span] - starts[span];
+    }
+
+    /**
+     * Return the spans one per line, indented by nesting level, with their
+     * start offset and duration.
+     */
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("trace ").append(id).append(": ")
+           .append(getDuration()).append(" ms");
+        for (int i = 0; i < count; i++) {
+            buf.append('\n');
+            for (int d = 0; d <= depths[i]; d++) {
+                buf.append("  ");
+            }
+            buf.append(getSpanName(i)).append(" +")
+               .append(getSpanOffset(i)).append(" ms: ");
+            long duration = getSpanDuration(i);
+            if (duration < 0) {
+                buf.append("not ended");
+            } else {
+                buf.append(duration).append(" ms");
+            }
+        }
+        if (dropped > 0) {
+            buf.append("\n  (").append(dropped)
+               .append(" more spans not recorded)");
+        }
+        return buf.toString();
+    }
+}
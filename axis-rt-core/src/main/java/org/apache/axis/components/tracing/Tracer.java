@@ -0,0 +1,48 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.tracing;
+
+import org.apache.axis.MessageContext;
+
+/**
+ * Decides which requests are traced, and receives their traces once they
+ * are complete.  The implementation is chosen with the
+ * <code>axis.Tracer</code> property; see {@link TracerFactory}.
+ * <p>
+ * {@link #startTrace} is called for every request, so an implementation
+ * that traces nothing should return as soon as possible.
+ */
+public interface Tracer {
+    /**
+     * Start tracing a request, if it is to be traced.
+     *
+     * @param msgContext the request
+     * @param parent     the trace of the request this one is made on behalf
+     *                   of, e.g. by a service calling another one; or
+     *                   <code>null</code>
+     * @return the trace, or <code>null</code> if the request is not traced
+     */
+    Trace startTrace(MessageContext msgContext, Trace parent);
+
+    /**
+     * The traced request is complete.
+     *
+     * @param msgContext the request
+     * @param trace      its trace, as returned by {@link #startTrace}
+     */
+    void endTrace(MessageContext msgContext, Trace trace);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.components.tracing;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+
+/**
+ * Provides the {@link Tracer} used by Axis.  The default one,
+ * {@link DefaultTracer}, traces nothing until a sample rate is set.
+ */
+public abstract class TracerFactory {
+    protected static Log log =
+        LogFactory.getLog(TracerFactory.class.getName());
+
+    static {
+        AxisProperties.setClassOverrideProperty(Tracer.class, "axis.Tracer");
+        AxisProperties.setClassDefault(Tracer.class, "org.apache.axis.components.tracing.DefaultTracer");
+    }
+
+    private static volatile Tracer tracer;
+
+    /**
+     * Returns the Tracer, creating it on first use.  This is called for
+     * every request, and only synchronizes the first time.
+     */
+    public static Tracer getTracer() {
+        Tracer result = tracer;
+        if (result == null) {
+            result = createTracer();
+        }
+        return result;
+    }
+
+    private static synchronized Tracer createTracer() {
+        if (tracer == null) {
+            tracer = (Tracer) AxisProperties.newInstance(Tracer.class);
+            log.debug("axis.Tracer:" + tracer.getClass().getName());
+        }
+        return tracer;
+    }
+
+    /**
+     * Replace the Tracer.  <code>null</code> makes the next call to
+     * {@link #getTracer()} look up the configured one again.
+     */
+    public static synchronized void setTracer(Tracer newTracer) {
+        tracer = newTracer;
+    }
+}
@@ -70,6 +70,9 @@ public class WSDDDeployment
         WSDDService oldService = (WSDDService) services.get(service.getQName());
         if (oldService != null) {
             oldService.removeNamespaceMappings(this);
+            if (oldService != service) {
+                oldService.releaseClasses();
+            }
         }
         services.put(service.getQName(), service);
     }
@@ -127,6 +130,7 @@ public class WSDDDeployment
         if (service != null) {
             service.removeNamespaceMappings(this);
             services.remove(qname);
+            service.releaseClasses();
         }
     }
 
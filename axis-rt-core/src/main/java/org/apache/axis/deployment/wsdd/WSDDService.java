@@ -38,6 +38,7 @@ import org.apache.axis.handlers.soap.SOAPService;
 import org.apache.axis.providers.java.JavaProvider;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.XMLUtils;
+import org.apache.axis.utils.cache.JavaClass;
 import org.w3c.dom.Element;
 import org.xml.sax.helpers.AttributesImpl;
 
@@ -95,6 +96,12 @@ public class WSDDService
      */
     private boolean streaming = false;
 
+    /**
+     * Should streaming be switched on whenever no handler needs the
+     * high-fidelity recording?
+     */
+    private boolean autoStreaming = false;
+
     /**
      * What attachment format should be used?
      */
@@ -141,6 +148,8 @@ public class WSDDService
         String streamStr = e.getAttribute(ATTR_STREAMING);
         if (streamStr != null && streamStr.equals("on")) {
             streaming = true;
+        } else if (streamStr != null && streamStr.equals("auto")) {
+            autoStreaming = true;
         }
 
         String attachmentStr = e.getAttribute(ATTR_ATTACHMENT_FORMAT);
@@ -454,6 +463,7 @@ public class WSDDService
         service.setServiceDescription(desc);
 
         service.setHighFidelityRecording(!streaming);
+        service.setAutoStreaming(autoStreaming);
         service.setSendType(sendType);
 
         if ( getQName() != null )
@@ -550,6 +560,9 @@ public class WSDDService
         if (streaming) {
             attrs.addAttribute("", ATTR_STREAMING, ATTR_STREAMING,
                                "CDATA", "on");
+        } else if (autoStreaming) {
+            attrs.addAttribute("", ATTR_STREAMING, ATTR_STREAMING,
+                               "CDATA", "auto");
         }
 
         if (sendType != Attachments.SEND_TYPE_NOTSET) {
@@ -634,6 +647,23 @@ public class WSDDService
         super.deployToRegistry(registry);
     }
 
+    /**
+     * Drop the cached reflection data of the service's classes when they
+     * come from a class loader of their own, so that the loader can be
+     * collected once the service is undeployed or replaced.
+     */
+    void releaseClasses()
+    {
+        Class implClass = desc.getImplClass();
+        if (implClass == null) {
+            return;
+        }
+        ClassLoader loader = implClass.getClassLoader();
+        if (loader != null && loader != WSDDService.class.getClassLoader()) {
+            JavaClass.clear(loader);
+        }
+    }
+
     public void removeNamespaceMappings(WSDDDeployment registry)
     {
         for (int i = 0; i < namespaces.size(); i++) {
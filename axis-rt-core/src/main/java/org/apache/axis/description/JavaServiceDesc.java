@@ -28,6 +28,7 @@ import org.apache.axis.message.SOAPEnvelope;
 import org.apache.axis.utils.JavaUtils;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.bytecode.ParamNameExtractor;
+import org.apache.axis.utils.cache.JavaClass;
 import org.apache.axis.wsdl.Skeleton;
 import org.apache.axis.wsdl.fromJava.Namespaces;
 import org.apache.commons.logging.Log;
@@ -790,7 +791,7 @@ public class JavaServiceDesc implements ServiceDesc {
         if (implClass.isInterface()){
             // only return methods that are not part of start classes
             List methodsList = new ArrayList();
-            Method[] methods = implClass.getMethods();
+            Method[] methods = JavaClass.find(implClass).getMethods();
             if (methods != null) {
                 for (int i = 0; i < methods.length; i++) {
                     String declaringClass = methods[i].getDeclaringClass().getName();
@@ -802,7 +803,7 @@ public class JavaServiceDesc implements ServiceDesc {
             }
             return (Method[])methodsList.toArray(new Method[]{}); 
         } else {
-            return implClass.getDeclaredMethods();
+            return JavaClass.find(implClass).getDeclaredMethods();
         }
     }
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A writer that decodes the base64 characters written to it into a stream
+ * of bytes, so that base64 text can be decoded in the pieces it arrives in
+ * instead of being collected into one String first.  Characters outside the
+ * base64 alphabet are skipped and an incomplete quantum at the end is
+ * dropped, just like {@link Base64#decode(String)} does.
+ */
+public class Base64DecodingWriter extends Writer {
+    private static final int BUFFER_SIZE = 3 * 1024;
+
+    private final OutputStream out;
+    private final char[] ibuf = new char[4];
+    private int ibufcount = 0;
+    private final byte[] obuf = new byte[BUFFER_SIZE];
+    private int obufcount = 0;
+
+    /**
+     * @param out the stream the decoded bytes are written to
+     */
+    public Base64DecodingWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(int c) throws IOException {
+        char ch = (char) c;
+        if (Base64.isBase64Char(ch)) {
+            ibuf[ibufcount++] = ch;
+            if (ibufcount == ibuf.length) {
+                decodeQuantum();
+            }
+        }
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            char ch = cbuf[i];
+            if (Base64.isBase64Char(ch)) {
+                ibuf[ibufcount++] = ch;
+                if (ibufcount == ibuf.length) {
+                    decodeQuantum();
+                }
+            }
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            char ch = str.charAt(i);
+            if (Base64.isBase64Char(ch)) {
+                ibuf[ibufcount++] = ch;
+                if (ibufcount == ibuf.length) {
+                    decodeQuantum();
+                }
+            }
+        }
+    }
+
+    private void decodeQuantum() throws IOException {
+        ibufcount = 0;
+        if (obufcount + 3 > obuf.length) {
+            flushBuffer();
+        }
+        obufcount += Base64.decode0(ibuf, obuf, obufcount);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (obufcount > 0) {
+            out.write(obuf, 0, obufcount);
+            obufcount = 0;
+        }
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+}
@@ -540,13 +540,17 @@ public class DeserializerImpl extends SOAPHandler
             !targets.isEmpty()) {
             StringWriter writer = new StringWriter();
             SerializationContext serContext =
-                        new SerializationContext(writer,
-                                                 context.getMessageContext());
-            serContext.setSendDecl(false);
-            
-            SAXOutputter so = null;
-            so = new SAXOutputter(serContext);
-            context.getCurElement().publishContents(so);
+                        SerializationContext.obtain(writer,
+                                                    context.getMessageContext());
+            try {
+                serContext.setSendDecl(false);
+
+                SAXOutputter so = null;
+                so = new SAXOutputter(serContext);
+                context.getCurElement().publishContents(so);
+            } finally {
+                serContext.release();
+            }
             if (!isNil) {
                 value = writer.getBuffer().toString();
             }
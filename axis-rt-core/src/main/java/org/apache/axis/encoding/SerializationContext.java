@@ -91,6 +91,26 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     // in heavily used code.
     private final boolean debugEnabled = log.isDebugEnabled();
 
+    /**
+     * System property that turns on the checking of recycled contexts:
+     * released contexts are then never handed out again, and remember
+     * where they were released, so that any later use of one fails with
+     * an <code>IllegalStateException</code> pointing at the release.
+     */
+    public static final String PROP_CHECK_RELEASE =
+            "axis.serializationContext.checkRelease";
+
+    private static boolean checkRelease = JavaUtils.isTrueExplicitly(
+            AxisProperties.getProperty(PROP_CHECK_RELEASE));
+
+    /** A released context per thread, ready to be handed out again */
+    private static final ThreadLocal cachedContext = new ThreadLocal();
+
+    /** Set once {@link #release()} has been called, cleared on reuse */
+    private boolean released = false;
+    /** Where the context was released, when checking is on */
+    private Throwable releasedAt;
+
     private NSStack nsStack = null;
     private boolean writingStartTag = false;
     private boolean onlyXML = true;
@@ -235,7 +255,11 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
                               Constants.NS_PREFIX_SCHEMA_XSI);
         preferredPrefixes.put(soapConstants.getEnvelopeURI(),
                               Constants.NS_PREFIX_SOAP_ENV);
-        nsStack = new NSStack(enableNamespacePrefixOptimization);
+        if (nsStack == null) {
+            nsStack = new NSStack(enableNamespacePrefixOptimization);
+        } else {
+            nsStack.reset(enableNamespacePrefixOptimization);
+        }
     }
 
 
@@ -248,7 +272,16 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     {
         this.writer = writer;
         this.msgContext = msgContext;
+        configure();
+    }
 
+    /**
+     * Take the settings that depend on the message context (SOAP and
+     * schema version, multi-refs, xsi:type, pretty printing) from
+     * <code>msgContext</code>, or from the system properties when there is
+     * none.
+     */
+    private void configure() {
         if ( msgContext != null ) {
             soapConstants = msgContext.getSOAPConstants();
 
@@ -323,6 +356,115 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
         initialize();
     }
 
+    /**
+     * Get a context for the given writer and message context.  This is the
+     * same as <code>new SerializationContext(writer, msgContext)</code>,
+     * except that a context released earlier on the current thread is
+     * reused if there is one.  The caller owns the context until it calls
+     * {@link #release()}, and must not use it after that.
+     *
+     * @param writer java.io.Writer
+     * @param msgContext is the MessageContext
+     */
+    public static SerializationContext obtain(Writer writer,
+                                              MessageContext msgContext) {
+        SerializationContext context =
+                (SerializationContext) cachedContext.get();
+        if (context == null) {
+            return new SerializationContext(writer, msgContext);
+        }
+        cachedContext.set(null);
+        context.released = false;
+        context.writer = writer;
+        context.msgContext = msgContext;
+        context.configure();
+        return context;
+    }
+
+    /**
+     * Reset this context and hand it back to the per-thread cache used by
+     * {@link #obtain(Writer, MessageContext)}.  The writer is neither
+     * flushed nor closed.  Any use of the context after this call, other
+     * than another release, is an error; it is reported as an
+     * <code>IllegalStateException</code> as long as the context has not
+     * been handed out again, which with the
+     * <code>axis.serializationContext.checkRelease</code> system property
+     * set is never.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        reset();
+        released = true;
+        if (checkRelease) {
+            releasedAt = new Throwable();
+        } else if (getClass() == SerializationContext.class
+                && cachedContext.get() == null) {
+            cachedContext.set(this);
+        }
+    }
+
+    /**
+     * Put every field back to the state of a newly constructed context,
+     * dropping all references to the message just written.
+     */
+    private void reset() {
+        writer = null;
+        msgContext = null;
+        writingStartTag = false;
+        onlyXML = true;
+        indent = 0;
+        elementStack.clear();
+        lastPrefixIndex = 1;
+        currentXMLType = null;
+        itemQName = null;
+        itemType = null;
+        soapConstants = SOAPConstants.SOAP11_CONSTANTS;
+        doMultiRefs = false;
+        disablePrettyXML = false;
+        enableNamespacePrefixOptimization = false;
+        pretty = false;
+        sendXMLDecl = true;
+        sendXSIType = true;
+        sendNull = Boolean.TRUE;
+        multiRefValues = null;
+        multiRefIndex = -1;
+        noNamespaceMappings = true;
+        writeXMLType = null;
+        encoder = null;
+        startOfDocument = true;
+        encoding = XMLEncoderFactory.DEFAULT_ENCODING;
+        secondLevelObjects = null;
+        forceSer = null;
+        outputMultiRefsFlag = false;
+        schemaVersion = SchemaVersion.SCHEMA_2001;
+        preferredPrefixes.clear();
+    }
+
+    /**
+     * Fail if this context has been released.
+     */
+    private void checkReleased() {
+        if (released) {
+            IllegalStateException e = new IllegalStateException(
+                    Messages.getMessage("serContextReleased00"));
+            if (releasedAt != null) {
+                e.initCause(releasedAt);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Turn the checking of released contexts on or off; see
+     * {@link #PROP_CHECK_RELEASE}.
+     */
+    public static void setCheckRelease(boolean check) {
+        checkRelease = check;
+        cachedContext.set(null);
+    }
+
     /**
      * Get whether the serialization should be pretty printed.
      * @return true/false
@@ -832,6 +974,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
                           Boolean sendType)
         throws IOException
     {
+        checkReleased();
         if (log.isDebugEnabled()) {
             log.debug("Start serializing element; elemQName=" + elemQName
                     + "; xmlType=" + xmlType + "; javaClass=" + javaClass
@@ -1099,6 +1242,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     public void startElement(QName qName, Attributes attributes)
         throws IOException
     {
+        checkReleased();
         java.util.ArrayList vecQNames = null;
         if (debugEnabled) {
             log.debug(Messages.getMessage("startElem00", qName.toString()));
@@ -1208,6 +1352,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     public void endElement()
         throws IOException
     {
+        checkReleased();
         String elementQName = (String)elementStack.pop();
 
         if (debugEnabled) {
@@ -1263,6 +1408,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     public void writeString(String string)
         throws IOException
     {
+        checkReleased();
         if (startOfDocument && sendXMLDecl) {
             writeXMLDeclaration();
         }
@@ -1283,6 +1429,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     public void writeSafeString(String string)
         throws IOException
     {
+        checkReleased();
         if (startOfDocument && sendXMLDecl) {
             writeXMLDeclaration();
         }
@@ -1303,6 +1450,7 @@ public class SerializationContext implements javax.xml.rpc.encoding.Serializatio
     public void writeDOMElement(Element el)
         throws IOException
     {
+        checkReleased();
         if (startOfDocument && sendXMLDecl) {
             writeXMLDeclaration();
         }
@@ -20,19 +20,48 @@ import org.apache.axis.utils.Messages;
 import javax.xml.namespace.QName;
 import javax.xml.rpc.JAXRPCException;
 
+import java.util.HashMap;
+
 /**
  * The TypeMapping delegate is used to simply delegate to 
  * the indicated type mapping.  It is used by the TypeMappingRegistry
  * to assist with chaining.
+ * <p>
+ * The results of the lookups that walk the chain, including the lookups
+ * that find nothing, are cached.  The cache is split into stripes, each of
+ * which publishes its entries as an immutable map, so hits take no lock.
+ * A change to a type mapping or a link of the chain drops the entries
+ * cached by the delegates whose chain it is part of.
  * 
  * @author Rich Scheuerle (scheu@us.ibm.com)
  */
 public class TypeMappingDelegate implements TypeMapping {
     static final TypeMappingImpl placeholder = new TypeMappingImpl();
 
+    private static final int STRIPES = 16;
+
+    /** The number of entries after which a stripe starts over */
+    private static final int MAX_STRIPE_SIZE = 256;
+
+    /** Cached result of a lookup that found nothing */
+    private static final Object NULL_OBJECT = new Object();
+
+    private static final int SERIALIZER = 0;
+    private static final int DESERIALIZER = 1;
+    private static final int TYPE_QNAME = 2;
+    private static final int TYPE_QNAME_EXACT = 3;
+    private static final int CLASS_FOR_QNAME = 4;
+    private static final int XML_TYPE = 5;
+    private static final int XML_TYPE_ENCODED = 6;
+
     TypeMappingImpl delegate;
     TypeMappingDelegate next;
 
+    /** Stamp of the last change to delegate or next */
+    private volatile int stamp = 0;
+
+    private transient volatile Stripe[] stripes;
+
     /**
      * Construct TypeMapping
      */
@@ -74,11 +103,38 @@ public class TypeMappingDelegate implements TypeMapping {
     public javax.xml.rpc.encoding.SerializerFactory 
         getSerializer(Class javaType, QName xmlType)
         throws JAXRPCException
+    {
+        // only the QName looked up for a missing xmlType depends on the
+        // .NET work-around
+        return getSerializer(javaType, xmlType,
+                xmlType == null && TypeMappingImpl.isDotNetSoapEncFixNeeded());
+    }
+
+    private javax.xml.rpc.encoding.SerializerFactory
+        getSerializer(Class javaType, QName xmlType, boolean dotNetFix)
+        throws JAXRPCException
+    {
+        Key key = new Key(SERIALIZER, javaType, xmlType, dotNetFix);
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null :
+                    (javax.xml.rpc.encoding.SerializerFactory) cached;
+        }
+        javax.xml.rpc.encoding.SerializerFactory sf =
+                findSerializer(javaType, xmlType, dotNetFix);
+        store(key, generation, sf);
+        return sf;
+    }
+
+    private javax.xml.rpc.encoding.SerializerFactory
+        findSerializer(Class javaType, QName xmlType, boolean dotNetFix)
+        throws JAXRPCException
     {
         javax.xml.rpc.encoding.SerializerFactory sf = delegate.getSerializer(javaType, xmlType);
 
         if (sf == null && next != null) {
-            sf = next.getSerializer(javaType, xmlType);
+            sf = next.getSerializer(javaType, xmlType, dotNetFix);
         }
 
         if (sf == null) {
@@ -97,7 +153,21 @@ public class TypeMappingDelegate implements TypeMapping {
     public javax.xml.rpc.encoding.DeserializerFactory
         getDeserializer(Class javaType, QName xmlType)
         throws JAXRPCException {
-        return getDeserializer(javaType, xmlType, this);
+        // the component type of an array is looked up by QName, which
+        // depends on the .NET work-around
+        Key key = new Key(DESERIALIZER, javaType, xmlType,
+                          javaType != null && javaType.isArray()
+                          && TypeMappingImpl.isDotNetSoapEncFixNeeded());
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null :
+                    (javax.xml.rpc.encoding.DeserializerFactory) cached;
+        }
+        javax.xml.rpc.encoding.DeserializerFactory df =
+                getDeserializer(javaType, xmlType, this);
+        store(key, generation, df);
+        return df;
     }
 
     public javax.xml.rpc.encoding.DeserializerFactory
@@ -146,7 +216,16 @@ public class TypeMappingDelegate implements TypeMapping {
      * @return xmlType qname or null
      */
     public QName getTypeQName(Class javaType) {
-        return delegate.getTypeQName(javaType, next);
+        Key key = new Key(TYPE_QNAME, javaType, null,
+                          TypeMappingImpl.isDotNetSoapEncFixNeeded());
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null : (QName) cached;
+        }
+        QName result = delegate.getTypeQName(javaType, next);
+        store(key, generation, result);
+        return result;
     }
     
     /**
@@ -165,7 +244,15 @@ public class TypeMappingDelegate implements TypeMapping {
      * @return javaType class for type or null for no mappingor delegate
      */
     public Class getClassForQName(QName xmlType, Class javaType) {
-        return delegate.getClassForQName(xmlType, javaType, next);
+        Key key = new Key(CLASS_FOR_QNAME, xmlType, javaType, false);
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null : (Class) cached;
+        }
+        Class result = delegate.getClassForQName(xmlType, javaType, next);
+        store(key, generation, result);
+        return result;
     }
 
     /**
@@ -177,8 +264,15 @@ public class TypeMappingDelegate implements TypeMapping {
      * @return
      */
     public QName getTypeQNameExact(Class javaType) {
+        Key key = new Key(TYPE_QNAME_EXACT, javaType, null,
+                          TypeMappingImpl.isDotNetSoapEncFixNeeded());
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null : (QName) cached;
+        }
         QName result = delegate.getTypeQNameExact(javaType, next);
-
+        store(key, generation, result);
         return result;
     }
 
@@ -190,6 +284,15 @@ public class TypeMappingDelegate implements TypeMapping {
             return; // Refuse to set up tight loops (throw exception?)
         }
         this.next = next;
+        stamp = TypeMappingImpl.nextStamp();
+    }
+
+    /**
+     * Delegate to another TypeMapping
+     */
+    void setDelegate(TypeMappingImpl delegate) {
+        this.delegate = delegate;
+        stamp = TypeMappingImpl.nextStamp();
     }
 
     /**
@@ -225,14 +328,155 @@ public class TypeMappingDelegate implements TypeMapping {
      */
     public QName getXMLType(Class javaType, QName xmlType, boolean encoded)
             throws JAXRPCException {
+        // only the QName looked up for a missing xmlType depends on the
+        // .NET work-around
+        return getXMLType(javaType, xmlType, encoded,
+                xmlType == null && TypeMappingImpl.isDotNetSoapEncFixNeeded());
+    }
+
+    private QName getXMLType(Class javaType, QName xmlType, boolean encoded,
+                             boolean dotNetFix)
+            throws JAXRPCException {
+        Key key = new Key(encoded ? XML_TYPE_ENCODED : XML_TYPE,
+                          javaType, xmlType, dotNetFix);
+        int generation = getGeneration();
+        Object cached = lookup(key, generation);
+        if (cached != null) {
+            return (cached == NULL_OBJECT) ? null : (QName) cached;
+        }
         QName result = delegate.getXMLType(javaType, xmlType, encoded);
         if (result == null && next != null) {
-            return next.getXMLType(javaType, xmlType, encoded);
+            result = next.getXMLType(javaType, xmlType, encoded, dotNetFix);
         }
+        store(key, generation, result);
         return result;
     }
 
     public void setDoAutoTypes(boolean doAutoTypes) {
         delegate.setDoAutoTypes(doAutoTypes);
     }
+
+    /**
+     * The newest stamp of the type mappings and links of this chain, which
+     * changes whenever any of them does.
+     */
+    private int getGeneration() {
+        int generation = 0;
+        for (TypeMappingDelegate tm = this; tm != null; tm = tm.next) {
+            generation = Math.max(generation,
+                    Math.max(tm.stamp, tm.delegate.getStamp()));
+        }
+        return generation;
+    }
+
+    private Stripe getStripe(Key key) {
+        Stripe[] stripes = this.stripes;
+        if (stripes == null) {
+            // a race may create the stripes twice; the entries put into
+            // the losing set are simply looked up again
+            stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+            this.stripes = stripes;
+        }
+        return stripes[key.hashCode() & (STRIPES - 1)];
+    }
+
+    /**
+     * @return the cached result, {@link #NULL_OBJECT} for a cached lookup
+     *         that found nothing, or <code>null</code> on a miss
+     */
+    private Object lookup(Key key, int generation) {
+        Entries entries = getStripe(key).entries;
+        if (entries == null || entries.generation != generation) {
+            return null;
+        }
+        return entries.map.get(key);
+    }
+
+    /**
+     * Cache the result of a lookup that was started when the type mappings
+     * were at <code>generation</code>.
+     */
+    private void store(Key key, int generation, Object value) {
+        Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            if (generation != getGeneration()) {
+                // the result may be out of date already
+                return;
+            }
+            Entries entries = stripe.entries;
+            HashMap map;
+            if (entries == null || entries.generation != generation
+                    || entries.map.size() >= MAX_STRIPE_SIZE) {
+                map = new HashMap();
+            } else {
+                map = new HashMap(entries.map);
+            }
+            map.put(key, (value == null) ? NULL_OBJECT : value);
+            stripe.entries = new Entries(generation, map);
+        }
+    }
+
+    private static class Stripe {
+        volatile Entries entries;
+    }
+
+    /**
+     * The cached lookups of a stripe; never modified once published.
+     */
+    private static class Entries {
+        final int generation;
+        final HashMap map;
+
+        Entries(int generation, HashMap map) {
+            this.generation = generation;
+            this.map = map;
+        }
+    }
+
+    /**
+     * A lookup and its arguments.  Lookups whose result depends on the
+     * .NET SOAP encoding work-around (see
+     * {@link TypeMappingImpl#dotnet_soapenc_bugfix}) include its current
+     * setting, which the caller looks up once per lookup.
+     */
+    private static class Key {
+        private final int kind;
+        private final Object a;
+        private final Object b;
+        private final boolean dotNetFix;
+        private final int hashCode;
+
+        Key(int kind, Object a, Object b, boolean dotNetFix) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.dotNetFix = dotNetFix;
+            int h = kind;
+            if (a != null) {
+                h = h * 31 + a.hashCode();
+            }
+            if (b != null) {
+                h = h * 31 + b.hashCode();
+            }
+            // spread the bits that select the stripe
+            hashCode = h ^ (h >>> 16) ^ (h >>> 8);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return kind == k.kind && dotNetFix == k.dotNetFix
+                    && (a == null ? k.a == null : a.equals(k.a))
+                    && (b == null ? k.b == null : b.equals(k.b));
+        }
+    }
 }
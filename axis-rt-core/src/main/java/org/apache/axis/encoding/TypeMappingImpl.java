@@ -119,10 +119,47 @@ public class TypeMappingImpl implements Serializable
         }
     }
 
-    private HashMap qName2Pair;     // QName to Pair Mapping
-    private HashMap class2Pair;     // Class Name to Pair Mapping
-    private HashMap pair2SF;        // Pair to Serialization Factory
-    private HashMap pair2DF;        // Pair to Deserialization Factory
+    /**
+     * The lookup tables.  Published tables are never modified: changes are
+     * made to a copy, which is published by the next lookup, so lookups
+     * take no lock and a batch of registrations copies the tables once.
+     */
+    private static class Tables implements Serializable {
+        final HashMap qName2Pair;     // QName to Pair Mapping
+        final HashMap class2Pair;     // Class Name to Pair Mapping
+        final HashMap pair2SF;        // Pair to Serialization Factory
+        final HashMap pair2DF;        // Pair to Deserialization Factory
+
+        Tables() {
+            qName2Pair  = new HashMap();
+            class2Pair  = new HashMap();
+            pair2SF     = new HashMap();
+            pair2DF     = new HashMap();
+        }
+
+        Tables(Tables tables) {
+            qName2Pair  = new HashMap(tables.qName2Pair);
+            class2Pair  = new HashMap(tables.class2Pair);
+            pair2SF     = new HashMap(tables.pair2SF);
+            pair2DF     = new HashMap(tables.pair2DF);
+        }
+    }
+
+    /** The last stamp handed out by {@link #nextStamp()} */
+    private static int lastStamp = 0;
+
+    /**
+     * Stamp of the last change to this type mapping.  The lookups cached by
+     * a {@link TypeMappingDelegate} are dropped when the newest stamp in its
+     * chain changes.
+     */
+    private volatile int stamp = 0;
+
+    /** The published tables, or null while changes are made to writable */
+    private volatile Tables tables;
+
+    /** The tables being changed; guarded by this */
+    private Tables writable;
     private ArrayList namespaces;   // Supported namespaces
 
     protected Boolean doAutoTypes = null;
@@ -131,13 +168,58 @@ public class TypeMappingImpl implements Serializable
      * Construct TypeMapping
      */
     public TypeMappingImpl() {
-        qName2Pair  = new HashMap();
-        class2Pair  = new HashMap();
-        pair2SF     = new HashMap();
-        pair2DF     = new HashMap();
+        tables      = new Tables();
         namespaces  = new ArrayList();
     }
 
+    /**
+     * Return a stamp newer than all stamps returned before.
+     */
+    static synchronized int nextStamp() {
+        return ++lastStamp;
+    }
+
+    int getStamp() {
+        return stamp;
+    }
+
+    /**
+     * Invalidate the lookups cached for the chains this type mapping is in.
+     */
+    void modified() {
+        stamp = nextStamp();
+    }
+
+    /**
+     * Return the tables to look up in, publishing the changes made since
+     * the last lookup.
+     */
+    private Tables getTables() {
+        Tables tables = this.tables;
+        if (tables != null) {
+            return tables;
+        }
+        synchronized (this) {
+            if (this.tables == null) {
+                this.tables = writable;
+                writable = null;
+            }
+            return this.tables;
+        }
+    }
+
+    /**
+     * Return the tables to change; called with the lock held.  They are
+     * copied from the published ones once per batch of changes.
+     */
+    private Tables getWritableTables() {
+        if (writable == null) {
+            writable = new Tables(tables);
+            tables = null;
+        }
+        return writable;
+    }
+
     private static boolean isArray(Class clazz)
     {
         return clazz.isArray() || java.util.Collection.class.isAssignableFrom(clazz);
@@ -196,7 +278,7 @@ public class TypeMappingImpl implements Serializable
                     Messages.getMessage(javaType == null ?
                                          "badJavaType" : "badXmlType"));
         }
-        if (pair2SF.keySet().contains(new Pair(javaType, xmlType))) {
+        if (getTables().pair2SF.keySet().contains(new Pair(javaType, xmlType))) {
             return true;
         }
         return false;
@@ -269,13 +351,17 @@ public class TypeMappingImpl implements Serializable
         // In particular, the mapping for java.lang.Object --> anyType
         // was coming out in WSDL generation under the 1999 XML Schema
         // namespace, which .NET doesn't understand (and is not great anyway).
-        qName2Pair.put(xmlType, pair);
-        class2Pair.put(javaType, pair);
+        synchronized (this) {
+            Tables copy = getWritableTables();
+            copy.qName2Pair.put(xmlType, pair);
+            copy.class2Pair.put(javaType, pair);
 
-        if (sf != null)
-            pair2SF.put(pair, sf);
-        if (dsf != null)
-            pair2DF.put(pair, dsf);
+            if (sf != null)
+                copy.pair2SF.put(pair, sf);
+            if (dsf != null)
+                copy.pair2DF.put(pair, dsf);
+        }
+        modified();
     }
 
     /**
@@ -312,7 +398,7 @@ public class TypeMappingImpl implements Serializable
         Pair pair = new Pair(javaType, xmlType);
 
         // Now get the serializer with the pair
-        sf = (javax.xml.rpc.encoding.SerializerFactory) pair2SF.get(pair);
+        sf = (javax.xml.rpc.encoding.SerializerFactory) getTables().pair2SF.get(pair);
 
         // Need to look into hierarchy of component type.
         // ex) java.util.GregorianCalendar[]
@@ -330,7 +416,7 @@ public class TypeMappingImpl implements Serializable
             while (componentType != null) {
     			superJavaType = Array.newInstance(componentType, dimensions).getClass();
                 pair = new Pair(superJavaType, xmlType);
-                sf = (javax.xml.rpc.encoding.SerializerFactory) pair2SF.get(pair);
+                sf = (javax.xml.rpc.encoding.SerializerFactory) getTables().pair2SF.get(pair);
                 if (sf != null) {
                     break;
                 }
@@ -340,12 +426,12 @@ public class TypeMappingImpl implements Serializable
         
         // check if ArrayOfT(xml)->T[](java) conversion is possible
         if (sf == null && javaType.isArray() && xmlType != null) {
-            Pair pair2 = (Pair) qName2Pair.get(xmlType);
+            Pair pair2 = (Pair) getTables().qName2Pair.get(xmlType);
             if (pair2 != null 
                     && pair2.javaType != null
                     && !pair2.javaType.isPrimitive() 
                     && ArrayUtil.isConvertable(pair2.javaType, javaType)) {
-                sf = (javax.xml.rpc.encoding.SerializerFactory) pair2SF.get(pair2);
+                sf = (javax.xml.rpc.encoding.SerializerFactory) getTables().pair2SF.get(pair2);
             }
         }
         
@@ -353,13 +439,13 @@ public class TypeMappingImpl implements Serializable
         if (sf == null && !javaType.isArray() 
                 && !Constants.isSchemaXSD(xmlType.getNamespaceURI()) 
                 && !Constants.isSOAP_ENC(xmlType.getNamespaceURI())) {
-            Pair pair2 = (Pair) qName2Pair.get(xmlType);
+            Pair pair2 = (Pair) getTables().qName2Pair.get(xmlType);
             if (pair2 != null && pair2.javaType != null 
                     && !pair2.javaType.isArray()                         // for array
                     && (javaType.isAssignableFrom(pair2.javaType) || 
                        (pair2.javaType.isPrimitive() && javaType == JavaUtils.getWrapperClass(pair2.javaType))))       // for derived type (xsd:restriction) 
             {
-                sf = (javax.xml.rpc.encoding.SerializerFactory) pair2SF.get(pair2);
+                sf = (javax.xml.rpc.encoding.SerializerFactory) getTables().pair2SF.get(pair2);
             }
         }
         
@@ -369,12 +455,12 @@ public class TypeMappingImpl implements Serializable
     public SerializerFactory finalGetSerializer(Class javaType) {
         Pair pair;
         if (isArray(javaType)) {
-            pair = (Pair) qName2Pair.get(Constants.SOAP_ARRAY);
+            pair = (Pair) getTables().qName2Pair.get(Constants.SOAP_ARRAY);
         } else {
-            pair = (Pair) class2Pair.get(javaType);
+            pair = (Pair) getTables().class2Pair.get(javaType);
         }
         if (pair != null) {
-            return (SerializerFactory)pair2SF.get(pair);
+            return (SerializerFactory)getTables().pair2SF.get(pair);
         }
 
         return null;
@@ -417,7 +503,7 @@ public class TypeMappingImpl implements Serializable
         Pair pair = new Pair(javaType, xmlType);
 
         // Now get the serializer with the pair
-        sf = (javax.xml.rpc.encoding.SerializerFactory) pair2SF.get(pair);
+        sf = (javax.xml.rpc.encoding.SerializerFactory) getTables().pair2SF.get(pair);
         if (sf != null)
             return xmlType;
 
@@ -428,12 +514,12 @@ public class TypeMappingImpl implements Serializable
             if (encoded) {
                 return Constants.SOAP_ARRAY;
             } else {
-                pair = (Pair) qName2Pair.get(xmlType);
+                pair = (Pair) getTables().qName2Pair.get(xmlType);
             }
         }
 
         if (pair == null) {
-            pair = (Pair) class2Pair.get(javaType);
+            pair = (Pair) getTables().class2Pair.get(javaType);
         }
 
         if (pair != null) {
@@ -470,7 +556,7 @@ public class TypeMappingImpl implements Serializable
 
         Pair pair = new Pair(javaType, xmlType);
 
-        return (javax.xml.rpc.encoding.DeserializerFactory) pair2DF.get(pair);
+        return (javax.xml.rpc.encoding.DeserializerFactory) getTables().pair2DF.get(pair);
     }
     
     public DeserializerFactory finalGetDeserializer(Class javaType,
@@ -494,8 +580,8 @@ public class TypeMappingImpl implements Serializable
 			return null;
                 }
             }
-            Pair pair = (Pair) qName2Pair.get(Constants.SOAP_ARRAY);
-            df = (DeserializerFactory) pair2DF.get(pair);
+            Pair pair = (Pair) getTables().qName2Pair.get(Constants.SOAP_ARRAY);
+            df = (DeserializerFactory) getTables().pair2DF.get(pair);
             if (df instanceof ArrayDeserializerFactory && javaType.isArray()) {
                 QName componentXmlType = start.getTypeQName(componentType);
                 if (componentXmlType != null) {
@@ -525,7 +611,10 @@ public class TypeMappingImpl implements Serializable
         }
 
         Pair pair = new Pair(javaType, xmlType);
-        pair2SF.remove(pair);
+        synchronized (this) {
+            getWritableTables().pair2SF.remove(pair);
+        }
+        modified();
     }
 
     /**
@@ -546,7 +635,10 @@ public class TypeMappingImpl implements Serializable
                                          "badJavaType" : "badXmlType"));
         }
         Pair pair = new Pair(javaType, xmlType);
-        pair2DF.remove(pair);
+        synchronized (this) {
+            getWritableTables().pair2DF.remove(pair);
+        }
+        modified();
     }
 
 
@@ -599,20 +691,19 @@ public class TypeMappingImpl implements Serializable
         }
        
         QName xmlType = null;
-        Pair pair = (Pair) class2Pair.get(javaType);
+        Pair pair = (Pair) getTables().class2Pair.get(javaType);
         if (log.isDebugEnabled()) {
             log.debug("class2Pair gives: " + pair);
         }
 
-        if (isDotNetSoapEncFixNeeded() && pair != null ) {
+        if (pair != null && Constants.isSOAP_ENC(pair.xmlType.getNamespaceURI())
+                && !pair.xmlType.getLocalPart().equals("Array")
+                && isDotNetSoapEncFixNeeded()) {
             // Hack alert!
             // If we are in .NET bug compensation mode, skip over any
             // SOAP Encoded types we my find and prefer XML Schema types
             xmlType = pair.xmlType;
-            if (Constants.isSOAP_ENC(xmlType.getNamespaceURI()) &&
-                    !xmlType.getLocalPart().equals("Array")) {
-                pair = null;
-            }
+            pair = null;
         }
 
         if (pair == null && next != null) {
@@ -636,7 +727,7 @@ public class TypeMappingImpl implements Serializable
      * check the service specific flag before using the global flag
      * @return
      */
-    private boolean isDotNetSoapEncFixNeeded() {
+    static boolean isDotNetSoapEncFixNeeded() {
         MessageContext msgContext = MessageContext.getCurrentContext();
         if (msgContext != null) {
             SOAPService service = msgContext.getService();
@@ -678,7 +769,7 @@ public class TypeMappingImpl implements Serializable
         if (xmlType == null && isArray(javaType)) {
 
             // get the registered array if any
-            Pair pair = (Pair) class2Pair.get(Object[].class);
+            Pair pair = (Pair) getTables().class2Pair.get(Object[].class);
             // TODO: it always returns the last registered one,
             //  so that's why the soap 1.2 typemappings have to 
             //  move to an other registry to differentiate them
@@ -724,7 +815,7 @@ public class TypeMappingImpl implements Serializable
         if (javaType != null) {
             // Looking for an exact match first
             Pair pair = new Pair(javaType, xmlType);
-            if (pair2DF.get(pair) == null) {
+            if (getTables().pair2DF.get(pair) == null) {
                 if (next != null) {
                     javaType = next.getClassForQName(xmlType, javaType);
                 }
@@ -733,7 +824,7 @@ public class TypeMappingImpl implements Serializable
 
         if (javaType == null) {
             //look for it in our map
-            Pair pair = (Pair) qName2Pair.get(xmlType);
+            Pair pair = (Pair) getTables().qName2Pair.get(xmlType);
             if (pair == null && next != null) {
                 //on no match, delegate
                 javaType = next.getClassForQName(xmlType);
@@ -765,6 +856,7 @@ public class TypeMappingImpl implements Serializable
 
     public void setDoAutoTypes(boolean doAutoTypes) {
         this.doAutoTypes = doAutoTypes ? Boolean.TRUE : Boolean.FALSE;
+        modified();
     }
     
     public boolean shouldDoAutoTypes() {
@@ -797,7 +889,7 @@ public class TypeMappingImpl implements Serializable
         {
             temp.addAll(java.util.Arrays.asList(next.getAllClasses()));
         }
-        temp.addAll(class2Pair.keySet());
+        temp.addAll(getTables().class2Pair.keySet());
         return (Class[])temp.toArray(new Class[temp.size()]);
     }
 }
\ No newline at end of file
@@ -208,7 +208,7 @@ public class TypeMappingRegistryImpl implements TypeMappingRegistry {
         if (defaultDelTM.delegate != TypeMappingDelegate.placeholder) {
             defaultDelTM.setNext(otherDefault);
         } else {
-            defaultDelTM.delegate = otherDefault.delegate;
+            defaultDelTM.setDelegate(otherDefault.delegate);
         }
         
     }            
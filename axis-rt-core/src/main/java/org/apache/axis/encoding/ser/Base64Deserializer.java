@@ -16,12 +16,39 @@
 
 package org.apache.axis.encoding.ser;
 
+import org.apache.axis.AxisFault;
+import org.apache.axis.Constants;
+import org.apache.axis.Part;
+import org.apache.axis.attachments.AttachmentUtils;
+import org.apache.axis.attachments.ManagedMemoryDataSource;
 import org.apache.axis.encoding.Base64;
+import org.apache.axis.encoding.Base64DecodingWriter;
+import org.apache.axis.encoding.DeserializationContext;
+import org.apache.axis.message.SOAPHandler;
+import org.apache.axis.utils.ByteArrayOutputStream;
+import org.apache.axis.utils.Messages;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
+import javax.activation.DataHandler;
 import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Deserializer for Base64
+ * <p>
+ * The characters of the element are decoded as they arrive rather than
+ * being collected into a String first.  If the java type is
+ * <code>javax.activation.DataHandler</code> or
+ * <code>java.io.InputStream</code> the decoded bytes go to a
+ * {@link ManagedMemoryDataSource}, which moves them to a file once they
+ * no longer fit in memory, so that large values never have to be held in
+ * memory as a whole.
+ * <p>
+ * An MTOM value, an <code>xop:Include</code> referring to a MIME part, is
+ * read from the attachment part without any base64 being involved.
  *
  * @author Sam Ruby (rubys@us.ibm.com)
  * Modified by @author Rich scheuerle (scheu@us.ibm.com)
@@ -29,10 +56,104 @@ import javax.xml.namespace.QName;
  */
 public class Base64Deserializer extends SimpleDeserializer  {
 
+    private ByteArrayOutputStream bytes = null;
+    private ManagedMemoryDataSource source = null;
+    private Base64DecodingWriter decoder = null;
+
+    /** The attachment an xop:Include child refers to */
+    private DataHandler include = null;
+
     public Base64Deserializer(Class javaType, QName xmlType) {
         super(javaType, xmlType);
     }
 
+    /**
+     * Reset deserializer for re-use
+     */
+    public void reset() {
+        super.reset();
+        bytes = null;
+        source = null;
+        decoder = null;
+        include = null;
+    }
+
+    /**
+     * Resolve an xop:Include child; any other child is an error.
+     */
+    public SOAPHandler onStartChild(String namespace,
+                                    String localName,
+                                    String prefix,
+                                    Attributes attributes,
+                                    DeserializationContext context)
+            throws SAXException
+    {
+        if (!Constants.URI_XOP_INCLUDE.equals(namespace)
+                || !Constants.ELEM_XOP_INCLUDE.equals(localName)) {
+            return super.onStartChild(namespace, localName, prefix,
+                                      attributes, context);
+        }
+        String href = attributes.getValue(Constants.ATTR_HREF);
+        Object ref = (href == null) ? null : context.getObjectByRef(href);
+        if (!(ref instanceof Part)) {
+            throw new SAXException(Messages.getMessage("noAttachment00", href));
+        }
+        try {
+            include = AttachmentUtils.getActivationDataHandler((Part) ref);
+        } catch (AxisFault e) {
+            throw new SAXException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Decode the characters received so far.
+     */
+    public void characters(char [] chars, int start, int end)
+            throws SAXException
+    {
+        try {
+            if (decoder == null) {
+                decoder = new Base64DecodingWriter(createOutputStream());
+            }
+            decoder.write(chars, start, end);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Build the value from the decoded bytes.
+     */
+    public void onEndElement(String namespace, String localName,
+                             DeserializationContext context)
+            throws SAXException
+    {
+        if (isNil) {
+            if (source != null) {
+                source.delete();
+            }
+            value = null;
+            return;
+        }
+        try {
+            if (include != null) {
+                if (source != null) {
+                    source.delete();
+                }
+                value = makeValue(include);
+                return;
+            }
+            if (decoder == null) {
+                decoder = new Base64DecodingWriter(createOutputStream());
+            }
+            decoder.close();
+            value = makeValue();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
     /**
      * Convert the string that has been accumulated into an Object.  Subclasses
      * may override this.  Note that if the javaType is a primitive, the returned
@@ -41,8 +162,18 @@ public class Base64Deserializer extends SimpleDeserializer  {
      * @throws Exception any exception thrown by this method will be wrapped
      */
     public Object makeValue(String source) throws Exception {
-        byte [] value = Base64.decode(source);
-        
+        if (isStreamed()) {
+            Base64DecodingWriter writer =
+                    new Base64DecodingWriter(createOutputStream());
+            writer.write(source);
+            writer.close();
+            return makeValue();
+        }
+
+        return makeValue(Base64.decode(source));
+    }
+
+    private Object makeValue(byte[] value) {
         if (value == null) {
             if (javaType == Byte[].class) {
                 return new Byte[0];
@@ -61,4 +192,60 @@ public class Base64Deserializer extends SimpleDeserializer  {
         }
         return value;
     }
+
+    /**
+     * Build the value from the bytes decoded into the output stream.
+     */
+    private Object makeValue() throws IOException {
+        if (javaType == DataHandler.class) {
+            return new DataHandler(source);
+        }
+        if (javaType == InputStream.class) {
+            return source.getInputStream();
+        }
+        return makeValue(bytes.toByteArray());
+    }
+
+    /**
+     * Build the value from an attachment.
+     */
+    private Object makeValue(DataHandler dh) throws IOException {
+        if (javaType == DataHandler.class) {
+            return dh;
+        }
+        InputStream in = dh.getInputStream();
+        if (javaType == InputStream.class) {
+            return in;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buf = new byte[ManagedMemoryDataSource.READ_CHUNK_SZ];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return makeValue(out.toByteArray());
+    }
+
+    /**
+     * Should the value be decoded into a data source rather than a byte
+     * array?
+     */
+    private boolean isStreamed() {
+        return javaType == DataHandler.class || javaType == InputStream.class;
+    }
+
+    private OutputStream createOutputStream() throws IOException {
+        if (isStreamed()) {
+            source = new ManagedMemoryDataSource(
+                    ManagedMemoryDataSource.MAX_MEMORY_DISK_CACHED,
+                    "application/octet-stream");
+            return source.getOutputStream();
+        }
+        bytes = new ByteArrayOutputStream();
+        return bytes;
+    }
 }
@@ -16,19 +16,41 @@
 
 package org.apache.axis.encoding.ser;
 
+import org.apache.axis.AxisEngine;
+import org.apache.axis.AxisProperties;
 import org.apache.axis.Constants;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.Part;
+import org.apache.axis.attachments.Attachments;
+import org.apache.axis.attachments.ManagedMemoryDataSource;
+import org.apache.axis.attachments.OctetStream;
+import org.apache.axis.attachments.OctetStreamDataSource;
 import org.apache.axis.encoding.Base64;
 import org.apache.axis.encoding.SerializationContext;
 import org.apache.axis.encoding.SimpleValueSerializer;
 import org.apache.axis.wsdl.fromJava.Types;
 import org.w3c.dom.Element;
 import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
 
+import javax.activation.DataHandler;
 import javax.xml.namespace.QName;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Serializer for Base64
+ * <p>
+ * Besides byte arrays, the content of a
+ * <code>javax.activation.DataHandler</code> or a
+ * <code>java.io.InputStream</code> can be serialized; it is encoded in
+ * chunks as it is read.
+ * <p>
+ * If the message is sent as MTOM, values of at least
+ * {@link AxisEngine#PROP_XOP_THRESHOLD} bytes (1024 by default) become MIME
+ * parts of their own, referenced from the element by an
+ * <code>xop:Include</code>; streams and data handlers always do.
  *
  * @author Sam Ruby (rubys@us.ibm.com)
  * Modified by @author Rich Scheuerle (scheu@us.ibm.com)
@@ -50,12 +72,161 @@ public class Base64Serializer implements SimpleValueSerializer {
                           Object value, SerializationContext context)
         throws IOException
     {
+        Attachments attachments = getXOPAttachments(value, context);
+        if (attachments != null) {
+            Part part = attachments.createAttachmentPart(getDataHandler(value));
+            context.startElement(name, attributes);
+            AttributesImpl includeAttrs = new AttributesImpl();
+            includeAttrs.addAttribute("", Constants.ATTR_HREF, Constants.ATTR_HREF,
+                                      "CDATA", part.getContentIdRef());
+            context.startElement(new QName(Constants.URI_XOP_INCLUDE,
+                                           Constants.ELEM_XOP_INCLUDE),
+                                 includeAttrs);
+            context.endElement();
+            context.endElement();
+            return;
+        }
+
         context.startElement(name, attributes);
-        context.writeString(getValueAsString(value, context));
+        if (value instanceof DataHandler || value instanceof InputStream) {
+            InputStream in = getInputStream(value);
+            try {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int length;
+                while ((length = readChunk(in, chunk)) > 0) {
+                    context.writeString(Base64.encode(chunk, 0, length));
+                }
+            } finally {
+                in.close();
+            }
+        } else {
+            context.writeString(getValueAsString(value, context));
+        }
         context.endElement();
     }
 
+    /**
+     * Return the attachments of the message if <code>value</code> is to be
+     * sent as an XOP attachment, <code>null</code> if it goes inline.
+     */
+    private static Attachments getXOPAttachments(Object value,
+                                                 SerializationContext context) {
+        Message message = context.getCurrentMessage();
+        if (message == null) {
+            return null;
+        }
+        Attachments attachments = message.getAttachmentsImpl();
+        if (attachments == null
+                || attachments.getSendType() != Attachments.SEND_TYPE_MTOM) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length >= getXOPThreshold(context)
+                    ? attachments : null;
+        }
+        if (value instanceof Byte[]) {
+            return ((Byte[]) value).length >= getXOPThreshold(context)
+                    ? attachments : null;
+        }
+        return attachments;
+    }
+
+    private static int getXOPThreshold(SerializationContext context) {
+        MessageContext msgContext = context.getMessageContext();
+        Object threshold = (msgContext == null)
+                ? null : msgContext.getProperty(AxisEngine.PROP_XOP_THRESHOLD);
+        if (threshold == null) {
+            threshold = AxisProperties.getProperty(
+                    AxisEngine.PROP_XOP_THRESHOLD, "1024");
+        }
+        if (threshold instanceof Number) {
+            return ((Number) threshold).intValue();
+        }
+        try {
+            return Integer.parseInt(threshold.toString().trim());
+        } catch (NumberFormatException e) {
+            return 1024;
+        }
+    }
+
+    /**
+     * Wrap the value into a data handler for its attachment part.
+     */
+    private static DataHandler getDataHandler(Object value) throws IOException {
+        if (value instanceof DataHandler) {
+            return (DataHandler) value;
+        }
+        if (value instanceof InputStream) {
+            return new DataHandler(new ManagedMemoryDataSource(
+                    (InputStream) value,
+                    ManagedMemoryDataSource.MAX_MEMORY_DISK_CACHED,
+                    "application/octet-stream", true));
+        }
+        return new DataHandler(new OctetStreamDataSource(null,
+                new OctetStream(getBytes(value))));
+    }
+
+    private static byte[] getBytes(Object value) {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        byte[] data = new byte[ ((Byte[]) value).length ];
+        for (int i=0; i<data.length; i++) {
+            Byte b = ((Byte[]) value)[i];
+            if (b != null)
+                data[i] = b.byteValue();
+        }
+        return data;
+    }
+
+    /** Bytes encoded at a time; a multiple of 3, so that no padding is added */
+    private static final int CHUNK_SIZE = 3 * 1024;
+
+    private static InputStream getInputStream(Object value) throws IOException {
+        if (value instanceof DataHandler) {
+            return ((DataHandler) value).getInputStream();
+        }
+        return (InputStream) value;
+    }
+
+    /**
+     * Fill <code>chunk</code> from the stream, unless it ends first.
+     *
+     * @return the number of bytes read
+     */
+    private static int readChunk(InputStream in, byte[] chunk)
+            throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = in.read(chunk, length, chunk.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
     public String getValueAsString(Object value, SerializationContext context) {
+        if (value instanceof DataHandler || value instanceof InputStream) {
+            try {
+                InputStream in = getInputStream(value);
+                try {
+                    StringBuffer buffer = new StringBuffer();
+                    byte[] chunk = new byte[CHUNK_SIZE];
+                    int length;
+                    while ((length = readChunk(in, chunk)) > 0) {
+                        buffer.append(Base64.encode(chunk, 0, length));
+                    }
+                    return buffer.toString();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.toString());
+            }
+        }
+
         byte[] data = null;
         if (javaType == byte[].class) {
             data = (byte[]) value;
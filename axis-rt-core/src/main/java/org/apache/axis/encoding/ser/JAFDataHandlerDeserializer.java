@@ -69,6 +69,10 @@ public class JAFDataHandlerDeserializer extends DeserializerImpl {
         }
 
         String href = attributes.getValue(soapConstants.getAttrHref());
+        if (href == null && Constants.URI_XOP_INCLUDE.equals(namespace)) {
+            // XOP uses href whatever the SOAP version
+            href = attributes.getValue(Constants.ATTR_HREF);
+        }
         if (href != null) {
             Object ref = context.getObjectByRef(href);
             try{
@@ -81,7 +81,8 @@ public class JAFDataHandlerSerializer implements Serializer {
             context.setWriteXMLType(null);
             context.startElement(name, attrs);
             AttributesImpl attrs2 = new AttributesImpl();
-            attrs2.addAttribute("", soapConstants.getAttrHref(), soapConstants.getAttrHref(),
+            // XOP uses href whatever the SOAP version
+            attrs2.addAttribute("", Constants.ATTR_HREF, Constants.ATTR_HREF,
                     "CDATA", attachmentPart.getContentIdRef());
             context.startElement(new QName(Constants.URI_XOP_INCLUDE, Constants.ELEM_XOP_INCLUDE), attrs2);
             context.endElement();
@@ -24,19 +24,16 @@ import org.apache.axis.MessageContext;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.message.SOAPEnvelope;
 import org.apache.axis.message.SOAPHeaderElement;
+import org.apache.axis.session.Session;
+import org.apache.axis.session.SessionStore;
+import org.apache.axis.session.ShardedSessionStore;
 import org.apache.axis.session.SimpleSession;
+import org.apache.axis.utils.ClassUtils;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.SessionUtils;
 import org.apache.commons.logging.Log;
 
 import javax.xml.namespace.QName;
-import javax.xml.rpc.server.ServiceLifecycle;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
 
 /** This handler uses SOAP headers to do simple session management.
  *
@@ -69,9 +66,15 @@ import java.util.Set;
  * <p>SimpleSessions are "reaped" periodically via a very simplistic
  * mechanism.  Each time the handler is invoke()d we check to see if more
  * than <b>reapPeriodicity</b> milliseconds have elapsed since the last
- * reap.  If so, we walk the collection of active Sessions, and for each
- * one, if it hasn't been "touched" (i.e. had a getProperty() or setProperty()
- * performed) in longer than its timeout, we remove it from the collection.</p>
+ * reap.  If so, we ask the {@link SessionStore} to remove the sessions that
+ * haven't been "touched" (i.e. had a getProperty() or setProperty()
+ * performed) in longer than their timeout.</p>
+ *
+ * <p>The sessions are kept in a {@link ShardedSessionStore} unless a
+ * different store class is named by the <b>sessionStore</b> option.  The
+ * <b>maxSessions</b> option limits the number of sessions kept by the
+ * default store; when it is reached, the least recently used session is
+ * dropped.</p>
  *
  * @author Glen Daniels (gdaniels@apache.org)
  */
@@ -86,12 +89,17 @@ public class SimpleSessionHandler extends BasicHandler
     public static final QName sessionHeaderName = new QName(SESSION_NS,
                                                             SESSION_LOCALPART);
 
-    private Hashtable activeSessions = new Hashtable();
+    /** The option naming the SessionStore class */
+    public static final String OPTION_SESSION_STORE = "sessionStore";
+    /** The option limiting the number of sessions in the default store */
+    public static final String OPTION_MAX_SESSIONS = "maxSessions";
+
+    private volatile SessionStore activeSessions = null;
 
     // Reap timed-out sessions on the first request after this many
     // seconds.
     private long reapPeriodicity = 30;
-    private long lastReapTime = 0;
+    private volatile long lastReapTime = 0;
 
     // By default, sessions time out after 1 minute of inactivity (60 sec)
     private int defaultSessionTimeout = 60;
@@ -106,51 +114,17 @@ public class SimpleSessionHandler extends BasicHandler
         boolean reap = false;
         
         // Minimize synchronicity, just check in here, do reap later.
-        synchronized (this) {
-            if (curTime > lastReapTime + (reapPeriodicity * 1000)) {
-                reap = true;
-                lastReapTime = curTime;
+        if (curTime > lastReapTime + (reapPeriodicity * 1000)) {
+            synchronized (this) {
+                if (curTime > lastReapTime + (reapPeriodicity * 1000)) {
+                    reap = true;
+                    lastReapTime = curTime;
+                }
             }
         }
         
         if (reap) {
-            Set entries = activeSessions.entrySet();
-            Set victims = new HashSet();
-            Object key;
-            Iterator i;
-            for (i = entries.iterator(); i.hasNext();) {
-                Map.Entry entry = (Map.Entry) i.next();
-                key = entry.getKey();
-                SimpleSession session = (SimpleSession) entry.getValue();
-                if ((curTime - session.getLastAccessTime()) >
-                     (session.getTimeout() * 1000)) {
-                    log.debug(Messages.getMessage("timeout00",
-                                                        key.toString()));
-
-                    // Don't modify the hashtable while we're iterating.
-                    victims.add(key);
-                }
-            }
-
-            // Now go remove all the victims we found during the iteration.
-            for (i = victims.iterator(); i.hasNext();) {
-                key = i.next();
-                SimpleSession session = (SimpleSession)activeSessions.get(key);
-                activeSessions.remove(key);
-
-                // For each victim, swing through the data looking for
-                // ServiceLifecycle objects, and calling destroy() on them.
-                // FIXME : This cleanup should probably happen on another
-                //         thread, as it might take a little while.
-                Enumeration keys = session.getKeys();
-                while (keys != null && keys.hasMoreElements()) {
-                    String keystr = (String)keys.nextElement();
-                    Object obj = session.get(keystr);
-                    if (obj != null && obj instanceof ServiceLifecycle) {
-                        ((ServiceLifecycle)obj).destroy();
-                    }
-                }
-            }
+            getSessionStore().expireSessions();
         }
         
         if (context.isClient()) {
@@ -236,7 +210,8 @@ public class SimpleSessionHandler extends BasicHandler
             SOAPEnvelope env = msg.getSOAPEnvelope();
             SOAPHeaderElement header = env.getHeaderByName(SESSION_NS,
                                                            SESSION_LOCALPART);
-            Long id;
+            Long id = null;
+            Session session = null;
             
             if (header != null) {
                 // Got one!
@@ -246,15 +221,15 @@ public class SimpleSessionHandler extends BasicHandler
                 } catch (Exception e) {
                     throw AxisFault.makeFault(e);
                 }
-            } else {
-                id = getNewSession();
+                session = getSessionStore().getSession(id);
             }
             
-            SimpleSession session = (SimpleSession)activeSessions.get(id);
             if (session == null) {
-                // Must have timed out, get a new one.
-                id = getNewSession();
-                session = (SimpleSession)activeSessions.get(id);
+                // No session yet, or it must have timed out: get a new one.
+                // The store may evict it right away when it is full, so
+                // use the session as created rather than looking it up.
+                id = SessionUtils.generateSession();
+                session = createSession(id);
             }
 
             // This session is still active...
@@ -267,17 +242,64 @@ public class SimpleSessionHandler extends BasicHandler
     }
     
     /**
-     * Generate a new session, register it, and return its ID.
+     * Create a new session and register it under the given ID.
      *
-     * @return the new session's ID for later lookup.
+     * @param id the new session's ID for later lookup.
+     * @return the new session
      */
-    private synchronized Long getNewSession()
+    private Session createSession(Long id)
     {
-        Long id = SessionUtils.generateSession();
         SimpleSession session = new SimpleSession();
         session.setTimeout(defaultSessionTimeout);
-        activeSessions.put(id, session);
-        return id;
+        getSessionStore().putSession(id, session);
+        return session;
+    }
+
+    /**
+     * Get the store holding the active sessions, creating it on first use.
+     */
+    protected SessionStore getSessionStore()
+    {
+        SessionStore store = activeSessions;
+        if (store == null) {
+            synchronized (this) {
+                store = activeSessions;
+                if (store == null) {
+                    activeSessions = store = createSessionStore();
+                }
+            }
+        }
+        return store;
+    }
+
+    private SessionStore createSessionStore()
+    {
+        String className = (String) getOption(OPTION_SESSION_STORE);
+        if (className != null) {
+            try {
+                return (SessionStore) ClassUtils.forName(className).newInstance();
+            } catch (Exception e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+        int maxSessions = 0;
+        String value = (String) getOption(OPTION_MAX_SESSIONS);
+        if (value != null) {
+            try {
+                maxSessions = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(OPTION_MAX_SESSIONS + ": " + e);
+            }
+        }
+        return new ShardedSessionStore(maxSessions);
+    }
+
+    /**
+     * Replace the store holding the active sessions.
+     */
+    public void setSessionStore(SessionStore store)
+    {
+        activeSessions = store;
     }
 
     /**
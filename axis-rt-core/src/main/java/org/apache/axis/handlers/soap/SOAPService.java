@@ -18,6 +18,8 @@ package org.apache.axis.handlers.soap;
 
 import org.apache.axis.AxisEngine;
 import org.apache.axis.AxisFault;
+import org.apache.axis.Chain;
+import org.apache.axis.ConfigurationException;
 import org.apache.axis.Constants;
 import org.apache.axis.Handler;
 import org.apache.axis.Message;
@@ -34,7 +36,11 @@ import org.apache.axis.handlers.HandlerChainImpl;
 import org.apache.axis.handlers.HandlerInfoChainFactory;
 import org.apache.axis.message.SOAPEnvelope;
 import org.apache.axis.message.SOAPFault;
+import org.apache.axis.monitoring.Metrics;
+import org.apache.axis.monitoring.MetricsRegistry;
+import org.apache.axis.monitoring.ServiceMetrics;
 import org.apache.axis.providers.BasicProvider;
+import org.apache.axis.providers.java.RPCProvider;
 import org.apache.axis.utils.LockableHashtable;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.XMLUtils;
@@ -80,6 +86,13 @@ public class SOAPService extends SimpleTargetedChain
      */
     private boolean highFidelityRecording = true;
 
+    /**
+     * Should high-fidelity recording be switched off automatically if
+     * nothing but the provider is going to look at the request body?
+     * (default is false)
+     */
+    private boolean autoStreaming = false;
+
     /**
      * How does this service wish data which would normally be sent as
      * an attachment to be sent?  Default for requests is
@@ -388,6 +401,76 @@ public class SOAPService extends SimpleTargetedChain
         this.highFidelityRecording = highFidelityRecording;
     }
 
+    public boolean isAutoStreaming() {
+        return autoStreaming;
+    }
+
+    /**
+     * In auto streaming mode, the request is deserialized on the fly
+     * (i.e. without a high-fidelity recording) whenever no handler may need
+     * to replay the body.
+     *
+     * @see #needsHighFidelityRecording(MessageContext)
+     */
+    public void setAutoStreaming(boolean autoStreaming) {
+        this.autoStreaming = autoStreaming;
+    }
+
+    /**
+     * Does a request to this service in <code>msgContext</code> need a
+     * high-fidelity recording?  In auto streaming mode, no recording is made
+     * if the service is dispatched by an RPCProvider and neither the
+     * service, the global nor the transport request chain nor a JAX-RPC
+     * handler chain gets to see the request first.  RPC parameters are then
+     * deserialized straight from the parser when the operation is known.
+     */
+    public boolean needsHighFidelityRecording(MessageContext msgContext) {
+        if (!highFidelityRecording) {
+            return false;
+        }
+        if (!autoStreaming || getStyle() == Style.MESSAGE
+                || !(getPivotHandler() instanceof RPCProvider)
+                || !isEmpty(getRequestHandler())
+                || getOption(Constants.ATTR_HANDLERINFOCHAIN) != null) {
+            return true;
+        }
+        AxisEngine engine = (msgContext == null) ? null : msgContext.getAxisEngine();
+        if (engine == null) {
+            return true;
+        }
+        try {
+            if (!isEmpty(engine.getGlobalRequest())) {
+                return true;
+            }
+            // the handlers after the one that picked the service may read
+            // the body as well
+            String transportName = msgContext.getTransportName();
+            if (transportName != null) {
+                Handler transport = engine.getTransport(transportName);
+                if (transport instanceof SimpleTargetedChain
+                        && !isEmpty(((SimpleTargetedChain) transport).getRequestHandler())) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (ConfigurationException e) {
+            return true;
+        } catch (AxisFault e) {
+            return true;
+        }
+    }
+
+    private static boolean isEmpty(Handler handler) {
+        if (handler == null) {
+            return true;
+        }
+        if (handler instanceof Chain) {
+            Handler[] handlers = ((Chain) handler).getHandlers();
+            return handlers == null || handlers.length == 0;
+        }
+        return false;
+    }
+
     // see org.apache.axis.attachments.Attachments
     public int getSendType() {
         return sendType;
@@ -403,6 +486,14 @@ public class SOAPService extends SimpleTargetedChain
         if (handlerFactory != null) handlerImpl = (HandlerChainImpl) handlerFactory.createHandlerChain();
         boolean result = true;
 
+        ServiceMetrics metrics = MetricsRegistry.getServiceMetrics(msgContext);
+        long start = 0;
+        boolean failed = true;
+        if (metrics != null) {
+            start = System.currentTimeMillis();
+            metrics.requestStarted();
+        }
+
         try {
             if (handlerImpl != null) {
                 try {
@@ -432,6 +523,7 @@ public class SOAPService extends SimpleTargetedChain
             if ( handlerImpl != null) {
                 handlerImpl.handleResponse(msgContext);
             }
+            failed = false;
         } catch (SOAPFaultException e) {
             msgContext.setPastPivot(true);
             throw AxisFault.makeFault(e);
@@ -449,6 +541,14 @@ public class SOAPService extends SimpleTargetedChain
             if (handlerImpl != null) {
                 handlerImpl.destroy();
             }
+            if (metrics != null) {
+                long elapsed = System.currentTimeMillis() - start;
+                metrics.requestFinished(elapsed, failed);
+                Metrics operation = MetricsRegistry.getOperationMetrics(msgContext);
+                if (operation != null) {
+                    operation.requestCompleted(elapsed, failed);
+                }
+            }
         }
     }
 }
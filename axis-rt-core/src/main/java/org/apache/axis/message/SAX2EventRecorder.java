@@ -22,116 +22,145 @@ import org.xml.sax.ext.LexicalHandler;
 
 /**
  * This class records SAX2 Events and allows
- * the events to be replayed by start and stop index
+ * the events to be replayed by start and stop index.
+ * <p>
+ * Events are kept in a compact form: every event is a fixed size record of
+ * ints holding an opcode and its arguments.  Names are stored once in an
+ * interning table and referenced by index, character data is appended to a
+ * single shared char array and referenced by offset and length, and the
+ * remaining objects (attributes, elements) go into an object table.
  */
 public class SAX2EventRecorder { 
     
-    private static final Integer Z = new Integer(0);
-
-    private static final Integer STATE_START_DOCUMENT = new Integer(1);
-    private static final Integer STATE_END_DOCUMENT = new Integer(2);
-    private static final Integer STATE_START_PREFIX_MAPPING = new Integer(3);
-    private static final Integer STATE_END_PREFIX_MAPPING = new Integer(4);
-    private static final Integer STATE_START_ELEMENT = new Integer(5);
-    private static final Integer STATE_END_ELEMENT = new Integer(6);
-    private static final Integer STATE_CHARACTERS = new Integer(7);
-    private static final Integer STATE_IGNORABLE_WHITESPACE = new Integer(8);
-    private static final Integer STATE_PROCESSING_INSTRUCTION = new Integer(9);
-    private static final Integer STATE_SKIPPED_ENTITY = new Integer(10);
+    private static final int STATE_START_DOCUMENT = 1;
+    private static final int STATE_END_DOCUMENT = 2;
+    private static final int STATE_START_PREFIX_MAPPING = 3;
+    private static final int STATE_END_PREFIX_MAPPING = 4;
+    private static final int STATE_START_ELEMENT = 5;
+    private static final int STATE_END_ELEMENT = 6;
+    private static final int STATE_CHARACTERS = 7;
+    private static final int STATE_IGNORABLE_WHITESPACE = 8;
+    private static final int STATE_PROCESSING_INSTRUCTION = 9;
+    private static final int STATE_SKIPPED_ENTITY = 10;
     
     // This is a "custom" event which tells DeserializationContexts
     // that the current element is moving down the stack...
-    private static final Integer STATE_NEWELEMENT = new Integer(11);
+    private static final int STATE_NEWELEMENT = 11;
 
     // Lexical handler events...
-    private static final Integer STATE_START_DTD = new Integer(12);
-    private static final Integer STATE_END_DTD = new Integer(13);
-    private static final Integer STATE_START_ENTITY = new Integer(14);
-    private static final Integer STATE_END_ENTITY = new Integer(15);
-    private static final Integer STATE_START_CDATA = new Integer(16);
-    private static final Integer STATE_END_CDATA = new Integer(17);
-    private static final Integer STATE_COMMENT = new Integer(18);
-    
-    objArrayVector events = new objArrayVector();
+    private static final int STATE_START_DTD = 12;
+    private static final int STATE_END_DTD = 13;
+    private static final int STATE_START_ENTITY = 14;
+    private static final int STATE_END_ENTITY = 15;
+    private static final int STATE_START_CDATA = 16;
+    private static final int STATE_END_CDATA = 17;
+    private static final int STATE_COMMENT = 18;
     
+    /** opcode followed by up to four arguments */
+    private static final int RECORD_SIZE = 5;
+
+    /** the index used for a <code>null</code> name or object */
+    private static final int NULL = -1;
+
+    private int[] events;
+    private int eventCount;
+
+    private char[] text;
+    private int textLength;
+
+    private Object[] objects;
+    private int objectCount;
+
+    private String[] names;
+    private int nameCount;
+    /** open addressing hash table of indexes into <code>names</code>, plus one */
+    private int[] nameSlots;
+
+    public SAX2EventRecorder() {
+        clear();
+    }
+
     public void clear() {
-        events = new objArrayVector();
+        events = new int[50 * RECORD_SIZE];  // default to 50 records
+        eventCount = 0;
+        text = new char[256];
+        textLength = 0;
+        objects = new Object[16];
+        objectCount = 0;
+        names = new String[32];
+        nameCount = 0;
+        nameSlots = new int[64];
     }
+
     public int getLength()
     {
-        return events.getLength();
+        return eventCount;
     }
     
     public int startDocument() {
-        return events.add(STATE_START_DOCUMENT, Z,Z,Z,Z);
+        return add(STATE_START_DOCUMENT, 0, 0, 0, 0);
     }
     public int endDocument() {
-        return events.add(STATE_END_DOCUMENT, Z,Z,Z,Z);
+        return add(STATE_END_DOCUMENT, 0, 0, 0, 0);
     }
     public int startPrefixMapping(String p1, String p2) {
-        return events.add(STATE_START_PREFIX_MAPPING, p1, p2, Z,Z);
+        return add(STATE_START_PREFIX_MAPPING, name(p1), name(p2), 0, 0);
     }
     public int endPrefixMapping(String p1) {
-        return events.add(STATE_END_PREFIX_MAPPING, p1,Z,Z,Z);
+        return add(STATE_END_PREFIX_MAPPING, name(p1), 0, 0, 0);
     }
     public int startElement(String p1, String p2, String p3, org.xml.sax.Attributes p4) {
-        return events.add(STATE_START_ELEMENT, p1, p2, p3, p4);
+        return add(STATE_START_ELEMENT, name(p1), name(p2), name(p3), object(p4));
     }
     public int endElement(String p1, String p2, String p3) {
-        return events.add(STATE_END_ELEMENT, p1, p2, p3, Z);
+        return add(STATE_END_ELEMENT, name(p1), name(p2), name(p3), 0);
     }
     public int characters(char[] p1, int p2, int p3) {
-        return events.add(STATE_CHARACTERS, 
-                          (Object)clone(p1, p2, p3), 
-                          Z, Z, Z);
+        return add(STATE_CHARACTERS, text(p1, p2, p3), p3, 0, 0);
     }
     public int ignorableWhitespace(char[] p1, int p2, int p3) {
-        return events.add(STATE_IGNORABLE_WHITESPACE,
-                          (Object)clone(p1, p2, p3),
-                          Z, Z, Z);
+        return add(STATE_IGNORABLE_WHITESPACE, text(p1, p2, p3), p3, 0, 0);
     }
     public int processingInstruction(String p1, String p2) {
-        return events.add(STATE_PROCESSING_INSTRUCTION, p1, p2, Z,Z);
+        return add(STATE_PROCESSING_INSTRUCTION, name(p1), object(p2), 0, 0);
     }
     public int skippedEntity(String p1) {
-        return events.add(STATE_SKIPPED_ENTITY, p1, Z,Z,Z);
+        return add(STATE_SKIPPED_ENTITY, name(p1), 0, 0, 0);
     }
     
     public void startDTD(java.lang.String name,
                      java.lang.String publicId,
                      java.lang.String systemId) {
-        events.add(STATE_START_DTD, name, publicId, systemId, Z);
+        add(STATE_START_DTD, name(name), object(publicId), object(systemId), 0);
     }
     public void endDTD() {
-        events.add(STATE_END_DTD, Z, Z, Z, Z);
+        add(STATE_END_DTD, 0, 0, 0, 0);
     }
     public void startEntity(java.lang.String name) {
-        events.add(STATE_START_ENTITY, name, Z, Z, Z);
+        add(STATE_START_ENTITY, name(name), 0, 0, 0);
     }
     public void endEntity(java.lang.String name) {
-        events.add(STATE_END_ENTITY, name, Z, Z, Z);
+        add(STATE_END_ENTITY, name(name), 0, 0, 0);
     }
     public void startCDATA() {
-        events.add(STATE_START_CDATA, Z, Z, Z, Z);
+        add(STATE_START_CDATA, 0, 0, 0, 0);
     }
     public void endCDATA() {
-        events.add(STATE_END_CDATA, Z, Z, Z, Z);
+        add(STATE_END_CDATA, 0, 0, 0, 0);
     }
     public void comment(char[] ch,
                     int start,
                     int length) {
-        events.add(STATE_COMMENT, 
-                   (Object)clone(ch, start, length), 
-                   Z, Z, Z);
+        add(STATE_COMMENT, text(ch, start, length), length, 0, 0);
     }
     
     public int newElement(MessageElement elem) {
-        return events.add(STATE_NEWELEMENT, elem, Z,Z,Z);
+        return add(STATE_NEWELEMENT, object(elem), 0, 0, 0);
     }
     
     public void replay(ContentHandler handler) throws SAXException {
-        if (events.getLength() > 0) {
-            replay(0, events.getLength() - 1, handler);
+        if (eventCount > 0) {
+            replay(0, eventCount - 1, handler);
         }
     }
     
@@ -142,7 +171,7 @@ public class SAX2EventRecorder {
             return;
         }
         
-        if (stop + 1 > events.getLength() ||
+        if (stop + 1 > eventCount ||
             stop < start) {
             return; // should throw an error here
         }        
@@ -153,115 +182,209 @@ public class SAX2EventRecorder {
         }
         
         for (int n = start; n <= stop; n++) {
-            Object event = events.get(n,0);
-            if (event == STATE_START_ELEMENT) {
-                handler.startElement((String)events.get(n,1), 
-                                     (String)events.get(n,2),
-                                     (String)events.get(n,3),
-                                     (org.xml.sax.Attributes)events.get(n,4));
+            // The handler may record into this recorder while we replay, so
+            // the arrays must be looked up again for every event.
+            int pos = n * RECORD_SIZE;
+            int event = events[pos];
+            int a1 = events[pos + 1];
+            int a2 = events[pos + 2];
+            int a3 = events[pos + 3];
+            int a4 = events[pos + 4];
+            switch (event) {
+            case STATE_START_ELEMENT:
+                handler.startElement(getName(a1), getName(a2), getName(a3),
+                                     (org.xml.sax.Attributes)getObject(a4));
+                break;
                 
-            } else if (event == STATE_END_ELEMENT) {
-                handler.endElement((String)events.get(n,1), 
-                                   (String)events.get(n,2),
-                                   (String)events.get(n,3));
+            case STATE_END_ELEMENT:
+                handler.endElement(getName(a1), getName(a2), getName(a3));
+                break;
                 
-            } else if (event == STATE_CHARACTERS) {
-                char[] data = (char[])events.get(n,1);
-                handler.characters(data, 0, data.length);
+            case STATE_CHARACTERS:
+                handler.characters(text, a1, a2);
+                break;
                 
-            } else if (event == STATE_IGNORABLE_WHITESPACE) {
-                char[] data = (char[])events.get(n,1);
-                handler.ignorableWhitespace(data, 0, data.length);
+            case STATE_IGNORABLE_WHITESPACE:
+                handler.ignorableWhitespace(text, a1, a2);
+                break;
                 
-            } else if (event == STATE_PROCESSING_INSTRUCTION) {
-                handler.processingInstruction((String)events.get(n,1),
-                                              (String)events.get(n,2));
+            case STATE_PROCESSING_INSTRUCTION:
+                handler.processingInstruction(getName(a1),
+                                              (String)getObject(a2));
+                break;
                 
-            } else if (event == STATE_SKIPPED_ENTITY) {
-                handler.skippedEntity((String)events.get(n,1));
+            case STATE_SKIPPED_ENTITY:
+                handler.skippedEntity(getName(a1));
+                break;
                 
-            } else if (event == STATE_START_DOCUMENT) {
+            case STATE_START_DOCUMENT:
                 handler.startDocument();
+                break;
                 
-            } else if (event == STATE_END_DOCUMENT) {
+            case STATE_END_DOCUMENT:
                 handler.endDocument();
+                break;
                 
-            } else if (event == STATE_START_PREFIX_MAPPING) {
-                handler.startPrefixMapping((String)events.get(n, 1),
-                                           (String)events.get(n, 2));
+            case STATE_START_PREFIX_MAPPING:
+                handler.startPrefixMapping(getName(a1), getName(a2));
+                break;
                 
-            } else if (event == STATE_END_PREFIX_MAPPING) {
-                handler.endPrefixMapping((String)events.get(n, 1));
+            case STATE_END_PREFIX_MAPPING:
+                handler.endPrefixMapping(getName(a1));
+                break;
                 
-            } else if (event == STATE_START_DTD && lexicalHandler != null) {
-                lexicalHandler.startDTD((String)events.get(n,1), 
-                                   (String)events.get(n,2),
-                                   (String)events.get(n,3));
-            } else if (event == STATE_END_DTD && lexicalHandler != null) {
-                lexicalHandler.endDTD();
+            case STATE_START_DTD:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startDTD(getName(a1),
+                                            (String)getObject(a2),
+                                            (String)getObject(a3));
+                }
+                break;
+
+            case STATE_END_DTD:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endDTD();
+                }
+                break;
             
-            } else if (event == STATE_START_ENTITY && lexicalHandler != null) {
-                lexicalHandler.startEntity((String)events.get(n,1));
+            case STATE_START_ENTITY:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startEntity(getName(a1));
+                }
+                break;
             
-            } else if (event == STATE_END_ENTITY && lexicalHandler != null) {
-                lexicalHandler.endEntity((String)events.get(n,1));
+            case STATE_END_ENTITY:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endEntity(getName(a1));
+                }
+                break;
             
-            } else if (event == STATE_START_CDATA && lexicalHandler != null) {
-                lexicalHandler.startCDATA();
+            case STATE_START_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startCDATA();
+                }
+                break;
             
-            } else if (event == STATE_END_CDATA && lexicalHandler != null) {
-                lexicalHandler.endCDATA();
+            case STATE_END_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endCDATA();
+                }
+                break;
             
-            } else if (event == STATE_COMMENT && lexicalHandler != null) {
-                char[] data = (char[])events.get(n,1);
-                lexicalHandler.comment(data, 0, data.length);
+            case STATE_COMMENT:
+                if (lexicalHandler != null) {
+                    lexicalHandler.comment(text, a1, a2);
+                }
+                break;
             
-            } else if (event == STATE_NEWELEMENT) {
+            case STATE_NEWELEMENT:
                 if (handler instanceof DeserializationContext) {
                     DeserializationContext context =
                               (DeserializationContext)handler;
-                    context.setCurElement(
-                              (MessageElement)(events.get(n,1)));
+                    context.setCurElement((MessageElement)getObject(a1));
                 }
+                break;
             }
         }
     }
 
-    private static char[] clone(char[] in, int off, int len) {
-        char[] out = new char[len];
-        System.arraycopy(in, off, out, 0, len);
-        return out;
+    private int add(int event, int a1, int a2, int a3, int a4) {
+        int pos = eventCount * RECORD_SIZE;
+        if (pos + RECORD_SIZE > events.length) {
+            int[] newarray = new int[events.length * 2];
+            System.arraycopy(events, 0, newarray, 0, pos);
+            events = newarray;
+        }
+        events[pos] = event;
+        events[pos + 1] = a1;
+        events[pos + 2] = a2;
+        events[pos + 3] = a3;
+        events[pos + 4] = a4;
+        return eventCount++;
     }
-    
-/////////////////////////////////////////////
-    class objArrayVector {
-        private int RECORD_SIZE = 5;
-        private int currentSize = 0;
-        private Object[] objarray = new Object[50 * RECORD_SIZE];  // default to 50 5 field records
-        
-        public int add(Object p1, Object p2, Object p3, Object p4, Object p5) {
-            if (currentSize == objarray.length) {
-                Object[] newarray = new Object[currentSize * 2];
-                System.arraycopy(objarray, 0, newarray, 0, currentSize);
-                objarray = newarray;
-            }
-            int pos = currentSize / RECORD_SIZE;
-            objarray[currentSize++] = p1;
-            objarray[currentSize++] = p2;
-            objarray[currentSize++] = p3;
-            objarray[currentSize++] = p4;
-            objarray[currentSize++] = p5;
-            return pos;
+
+    /**
+     * Appends character data to the text buffer and returns its offset.
+     */
+    private int text(char[] in, int off, int len) {
+        int offset = textLength;
+        if (offset + len > text.length) {
+            char[] newtext = new char[Math.max(text.length * 2, offset + len)];
+            System.arraycopy(text, 0, newtext, 0, offset);
+            text = newtext;
         }
+        System.arraycopy(in, off, text, offset, len);
+        textLength = offset + len;
+        return offset;
+    }
 
-        public Object get(int pos, int fld) {
-            return objarray[(pos * RECORD_SIZE) + fld];
+    private int object(Object o) {
+        if (o == null) {
+            return NULL;
         }
-    
-        public int getLength() {
-            return (currentSize / RECORD_SIZE);
+        if (objectCount == objects.length) {
+            Object[] newarray = new Object[objectCount * 2];
+            System.arraycopy(objects, 0, newarray, 0, objectCount);
+            objects = newarray;
         }
+        objects[objectCount] = o;
+        return objectCount++;
+    }
+
+    private Object getObject(int index) {
+        return index == NULL ? null : objects[index];
+    }
+
+    /**
+     * Returns the index of <code>name</code> in the name table, adding it
+     * if it hasn't been seen before.
+     */
+    private int name(String name) {
+        if (name == null) {
+            return NULL;
+        }
+        int mask = nameSlots.length - 1;
+        int slot = name.hashCode() & mask;
+        while (true) {
+            int index = nameSlots[slot] - 1;
+            if (index < 0) {
+                break;
+            }
+            String candidate = names[index];
+            if (candidate == name || candidate.equals(name)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (nameCount == names.length) {
+            String[] newnames = new String[nameCount * 2];
+            System.arraycopy(names, 0, newnames, 0, nameCount);
+            names = newnames;
+        }
+        int index = nameCount++;
+        names[index] = name;
+        if (nameCount * 2 > nameSlots.length) {
+            rehashNames();
+        } else {
+            nameSlots[slot] = index + 1;
+        }
+        return index;
+    }
+
+    private void rehashNames() {
+        int[] slots = new int[nameSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < nameCount; i++) {
+            int slot = names[i].hashCode() & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        nameSlots = slots;
+    }
+
+    private String getName(int index) {
+        return index == NULL ? null : names[index];
     }
-/////////////////////////////////////////////
-            
 }
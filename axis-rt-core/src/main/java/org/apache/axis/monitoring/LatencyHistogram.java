@@ -0,0 +1,162 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.monitoring;
+
+/**
+ * A histogram of durations in milliseconds, with fixed buckets from 1 ms
+ * to one minute.  Recording a duration takes no allocation and locks only
+ * the stripe of the recording thread; reading the histogram sums the
+ * stripes into a copy.
+ */
+public class LatencyHistogram {
+    /**
+     * The upper bounds of the buckets, inclusive.  Durations above the last
+     * bound go into an extra, unbounded bucket.
+     */
+    private static final long[] BOUNDS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500,
+        1000, 2000, 5000, 10000, 30000, 60000
+    };
+
+    private final Stripe[] stripes = new Stripe[Stripes.COUNT];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Return the upper bounds of the buckets, in milliseconds.  The last
+     * bucket, which is not included, has no bound.
+     */
+    public static long[] getBucketBounds() {
+        return (long[]) BOUNDS.clone();
+    }
+
+    public void record(long millis) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        int i = 0;
+        while (i < BOUNDS.length && millis > BOUNDS[i]) {
+            i++;
+        }
+        Stripe stripe = stripes[Stripes.index()];
+        synchronized (stripe) {
+            stripe.counts[i]++;
+            stripe.count++;
+            stripe.sum += millis;
+            if (millis > stripe.max) {
+                stripe.max = millis;
+            }
+        }
+    }
+
+    /**
+     * Return the number of durations per bucket; one more than there are
+     * bucket bounds.
+     */
+    public long[] getCounts() {
+        return snapshot().counts;
+    }
+
+    public long getCount() {
+        return snapshot().count;
+    }
+
+    /** The sum of all durations, in milliseconds */
+    public long getSum() {
+        return snapshot().sum;
+    }
+
+    /** The longest duration, in milliseconds */
+    public long getMax() {
+        return snapshot().max;
+    }
+
+    public double getMean() {
+        Stripe total = snapshot();
+        return (total.count == 0) ? 0 : (double) total.sum / total.count;
+    }
+
+    /**
+     * Estimate a percentile as the upper bound of the bucket it falls into,
+     * or the longest duration if that is smaller.
+     *
+     * @param percentile between 0 and 100
+     * @return the estimate in milliseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        Stripe total = snapshot();
+        if (total.count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total.count * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += total.counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(BOUNDS[i], total.max);
+            }
+        }
+        return total.max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            synchronized (stripe) {
+                for (int j = 0; j < stripe.counts.length; j++) {
+                    stripe.counts[j] = 0;
+                }
+                stripe.count = 0;
+                stripe.sum = 0;
+                stripe.max = 0;
+            }
+        }
+    }
+
+    /**
+     * Sum the stripes.  Durations recorded while summing may be missing
+     * from the result, or counted in some totals and not yet in others.
+     */
+    private Stripe snapshot() {
+        Stripe total = new Stripe();
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            synchronized (stripe) {
+                for (int j = 0; j < stripe.counts.length; j++) {
+                    total.counts[j] += stripe.counts[j];
+                }
+                total.count += stripe.count;
+                total.sum += stripe.sum;
+                if (stripe.max > total.max) {
+                    total.max = stripe.max;
+                }
+            }
+        }
+        return total;
+    }
+
+    /** The durations recorded by the threads of one stripe */
+    private static final class Stripe {
+        final long[] counts = new long[BOUNDS.length + 1];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+    }
+}
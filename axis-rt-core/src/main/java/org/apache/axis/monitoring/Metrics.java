@@ -0,0 +1,209 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.monitoring;
+
+/**
+ * The counters and timings of the requests to the server, to one service or
+ * to one operation of a service.
+ * <p>
+ * Besides the total time of a request, the time spent in each of its
+ * phases is recorded: deserializing the arguments (parse), running the
+ * service method (invoke) and writing the response (serialize).
+ *
+ * @see MetricsRegistry
+ */
+public class Metrics {
+    private final String serviceName;
+    private final String operationName;
+
+    /**
+     * The counters, striped like those of {@link LatencyHistogram}.  A
+     * request may finish on another stripe than it started on, so only the
+     * sum of the stripes is meaningful.
+     */
+    private final Counters[] stripes = new Counters[Stripes.COUNT];
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram invokeTime = new LatencyHistogram();
+    private final LatencyHistogram serializeTime = new LatencyHistogram();
+
+    /**
+     * @param serviceName the service, or <code>null</code> for the server
+     * @param operationName the operation, or <code>null</code> for all
+     *                      operations
+     */
+    public Metrics(String serviceName, String operationName) {
+        this.serviceName = serviceName;
+        this.operationName = operationName;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Counters();
+        }
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Count a request, which is in flight until {@link #requestFinished}
+     * is called for it.
+     */
+    public void requestStarted() {
+        Counters counters = stripe();
+        synchronized (counters) {
+            counters.requests++;
+            counters.inFlight++;
+        }
+    }
+
+    /**
+     * @param millis the time since the request started
+     * @param fault whether the request ended with a fault
+     */
+    public void requestFinished(long millis, boolean fault) {
+        Counters counters = stripe();
+        synchronized (counters) {
+            counters.inFlight--;
+            if (fault) {
+                counters.faults++;
+            }
+        }
+        latency.record(millis);
+    }
+
+    /**
+     * Count a request that has already finished.  Used where a request is
+     * only attributed to these metrics at its end, as with operations.
+     *
+     * @param millis the time the request took
+     * @param fault whether the request ended with a fault
+     */
+    public void requestCompleted(long millis, boolean fault) {
+        Counters counters = stripe();
+        synchronized (counters) {
+            counters.requests++;
+            if (fault) {
+                counters.faults++;
+            }
+        }
+        latency.record(millis);
+    }
+
+    public void addBytesIn(long bytes) {
+        Counters counters = stripe();
+        synchronized (counters) {
+            counters.bytesIn += bytes;
+        }
+    }
+
+    public void addBytesOut(long bytes) {
+        Counters counters = stripe();
+        synchronized (counters) {
+            counters.bytesOut += bytes;
+        }
+    }
+
+    public long getRequestCount() {
+        return snapshot().requests;
+    }
+
+    public long getFaultCount() {
+        return snapshot().faults;
+    }
+
+    public long getInFlightCount() {
+        return snapshot().inFlight;
+    }
+
+    public long getBytesIn() {
+        return snapshot().bytesIn;
+    }
+
+    public long getBytesOut() {
+        return snapshot().bytesOut;
+    }
+
+    /** The total time of the requests */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getParseTime() {
+        return parseTime;
+    }
+
+    public LatencyHistogram getInvokeTime() {
+        return invokeTime;
+    }
+
+    public LatencyHistogram getSerializeTime() {
+        return serializeTime;
+    }
+
+    /**
+     * Clear the counters and timings.  The requests in flight are still
+     * counted.
+     */
+    public void reset() {
+        for (int i = 0; i < stripes.length; i++) {
+            Counters counters = stripes[i];
+            synchronized (counters) {
+                counters.requests = 0;
+                counters.faults = 0;
+                counters.bytesIn = 0;
+                counters.bytesOut = 0;
+            }
+        }
+        latency.reset();
+        parseTime.reset();
+        invokeTime.reset();
+        serializeTime.reset();
+    }
+
+    private Counters stripe() {
+        return stripes[Stripes.index()];
+    }
+
+    /** Sum the stripes */
+    private Counters snapshot() {
+        Counters total = new Counters();
+        for (int i = 0; i < stripes.length; i++) {
+            Counters counters = stripes[i];
+            synchronized (counters) {
+                total.requests += counters.requests;
+                total.faults += counters.faults;
+                total.inFlight += counters.inFlight;
+                total.bytesIn += counters.bytesIn;
+                total.bytesOut += counters.bytesOut;
+            }
+        }
+        return total;
+    }
+
+    /** The counts of the threads of one stripe */
+    private static final class Counters {
+        long requests = 0;
+        long faults = 0;
+        long inFlight = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.monitoring;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.MessageContext;
+import org.apache.axis.description.OperationDesc;
+import org.apache.axis.handlers.soap.SOAPService;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The metrics of the server and of the services and operations it has
+ * run, recorded by the engine, the providers and the transports.
+ * <p>
+ * The registry is shared by all engines of the class loader, like the
+ * MBeans of the management module.  Recording is switched on by default;
+ * it is switched off with the <code>axis.metrics.enabled</code> property
+ * or {@link #setEnabled}.  Recording takes no allocation once a service
+ * and operation have been seen.  Durations are measured with
+ * <code>System.currentTimeMillis()</code>, so their resolution is that of
+ * the system clock.
+ */
+public class MetricsRegistry {
+    public static final String PROP_ENABLED = "axis.metrics.enabled";
+
+    private static volatile boolean enabled =
+        !"false".equalsIgnoreCase(AxisProperties.getProperty(PROP_ENABLED));
+
+    private static final Metrics serverMetrics = new Metrics(null, null);
+
+    /** service name -> ServiceMetrics, replaced as a whole when one is added */
+    private static volatile Map services = new HashMap();
+    private static final Object servicesLock = new Object();
+
+    private static final String[] PHASES = {"total", "parse", "invoke", "serialize"};
+
+    private MetricsRegistry() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Return the metrics of all requests to the server.
+     */
+    public static Metrics getServerMetrics() {
+        return serverMetrics;
+    }
+
+    /**
+     * Return the metrics of a service, creating them on first use.
+     */
+    public static ServiceMetrics getServiceMetrics(String serviceName) {
+        ServiceMetrics result = (ServiceMetrics) services.get(serviceName);
+        if (result == null) {
+            synchronized (servicesLock) {
+                result = (ServiceMetrics) services.get(serviceName);
+                if (result == null) {
+                    result = new ServiceMetrics(serviceName);
+                    Map copy = new HashMap(services);
+                    copy.put(serviceName, result);
+                    services = copy;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the metrics of the service a message is for.
+     *
+     * @return the metrics, or <code>null</code> if recording is switched
+     *         off or the service hasn't been found yet
+     */
+    public static ServiceMetrics getServiceMetrics(MessageContext msgContext) {
+        if (!enabled || msgContext == null) {
+            return null;
+        }
+        SOAPService service = msgContext.getService();
+        if (service == null) {
+            return null;
+        }
+        String name = service.getName();
+        if (name == null) {
+            name = msgContext.getTargetService();
+        }
+        return (name == null) ? null : getServiceMetrics(name);
+    }
+
+    /**
+     * Return the metrics of the operation a message is for.
+     *
+     * @return the metrics, or <code>null</code> if recording is switched
+     *         off or the operation isn't known yet
+     */
+    public static Metrics getOperationMetrics(MessageContext msgContext) {
+        OperationDesc operation = msgContext.getOperation();
+        if (operation == null || operation.getName() == null) {
+            return null;
+        }
+        ServiceMetrics service = getServiceMetrics(msgContext);
+        return (service == null) ? null : service.getOperation(operation.getName());
+    }
+
+    /**
+     * Return the metrics of a service or operation that has been called.
+     *
+     * @param serviceName the service, or <code>null</code> for the server
+     * @param operationName the operation, or <code>null</code> for the
+     *                      whole service
+     * @return the metrics, or <code>null</code> if there are none
+     */
+    public static Metrics findMetrics(String serviceName, String operationName) {
+        if (serviceName == null) {
+            return serverMetrics;
+        }
+        ServiceMetrics service = (ServiceMetrics) services.get(serviceName);
+        if (service == null || operationName == null) {
+            return service;
+        }
+        return service.findOperation(operationName);
+    }
+
+    /**
+     * Return the names of the services that have been called, sorted.
+     */
+    public static String[] getServiceNames() {
+        TreeSet names = new TreeSet(services.keySet());
+        return (String[]) names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Record what a transport has done for a request: the size of the
+     * request and the response, and the time it took to write the response.
+     * Sizes and times that aren't known are passed as -1.
+     */
+    public static void recordTransfer(MessageContext msgContext,
+                                      long bytesIn, long bytesOut,
+                                      long serializeMillis) {
+        if (!enabled) {
+            return;
+        }
+        record(serverMetrics, bytesIn, bytesOut, serializeMillis);
+        ServiceMetrics service = getServiceMetrics(msgContext);
+        if (service != null) {
+            record(service, bytesIn, bytesOut, serializeMillis);
+            Metrics operation = getOperationMetrics(msgContext);
+            if (operation != null) {
+                record(operation, bytesIn, bytesOut, serializeMillis);
+            }
+        }
+    }
+
+    private static void record(Metrics metrics, long bytesIn, long bytesOut,
+                               long serializeMillis) {
+        if (bytesIn >= 0) {
+            metrics.addBytesIn(bytesIn);
+        }
+        if (bytesOut >= 0) {
+            metrics.addBytesOut(bytesOut);
+        }
+        if (serializeMillis >= 0) {
+            metrics.getSerializeTime().record(serializeMillis);
+        }
+    }
+
+    /**
+     * Clear all counters and timings.
+     */
+    public static void reset() {
+        serverMetrics.reset();
+        synchronized (servicesLock) {
+            services = new HashMap();
+        }
+    }
+
+    /**
+     * Write all metrics in the text format of Prometheus.
+     */
+    public static void writeText(Writer writer) throws IOException {
+        Metrics[] all = getAllMetrics();
+
+        writeHeader(writer, "axis_requests_total", "counter", "Requests received");
+        for (int i = 0; i < all.length; i++) {
+            writeSample(writer, "axis_requests_total", all[i], null, null,
+                        all[i].getRequestCount());
+        }
+        writeHeader(writer, "axis_faults_total", "counter", "Requests that ended with a fault");
+        for (int i = 0; i < all.length; i++) {
+            writeSample(writer, "axis_faults_total", all[i], null, null,
+                        all[i].getFaultCount());
+        }
+        writeHeader(writer, "axis_requests_in_flight", "gauge", "Requests being processed");
+        for (int i = 0; i < all.length; i++) {
+            writeSample(writer, "axis_requests_in_flight", all[i], null, null,
+                        all[i].getInFlightCount());
+        }
+        writeHeader(writer, "axis_request_bytes_total", "counter", "Bytes received");
+        for (int i = 0; i < all.length; i++) {
+            writeSample(writer, "axis_request_bytes_total", all[i], null, null,
+                        all[i].getBytesIn());
+        }
+        writeHeader(writer, "axis_response_bytes_total", "counter", "Bytes sent");
+        for (int i = 0; i < all.length; i++) {
+            writeSample(writer, "axis_response_bytes_total", all[i], null, null,
+                        all[i].getBytesOut());
+        }
+
+        long[] bounds = LatencyHistogram.getBucketBounds();
+        writeHeader(writer, "axis_duration_milliseconds", "histogram",
+                    "Time spent per request and phase");
+        for (int i = 0; i < all.length; i++) {
+            for (int p = 0; p < PHASES.length; p++) {
+                LatencyHistogram histogram = getPhase(all[i], p);
+                // The count is that of the buckets, even if more durations
+                // are recorded meanwhile
+                long[] counts = histogram.getCounts();
+                long sum = histogram.getSum();
+                long cumulative = 0;
+                for (int b = 0; b < counts.length; b++) {
+                    cumulative += counts[b];
+                    writeSample(writer, "axis_duration_milliseconds_bucket",
+                                all[i], PHASES[p],
+                                (b < bounds.length) ? String.valueOf(bounds[b]) : "+Inf",
+                                cumulative);
+                }
+                writeSample(writer, "axis_duration_milliseconds_sum",
+                            all[i], PHASES[p], null, sum);
+                writeSample(writer, "axis_duration_milliseconds_count",
+                            all[i], PHASES[p], null, cumulative);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * The server metrics, followed by those of each service and its
+     * operations.
+     */
+    private static Metrics[] getAllMetrics() {
+        ArrayList result = new java.util.ArrayList();
+        result.add(serverMetrics);
+        String[] names = getServiceNames();
+        Map services = MetricsRegistry.services;
+        for (int i = 0; i < names.length; i++) {
+            ServiceMetrics service = (ServiceMetrics) services.get(names[i]);
+            result.add(service);
+            String[] operations = service.getOperationNames();
+            for (int j = 0; j < operations.length; j++) {
+                result.add(service.findOperation(operations[j]));
+            }
+        }
+        return (Metrics[]) result.toArray(new Metrics[result.size()]);
+    }
+
+    private static LatencyHistogram getPhase(Metrics metrics, int phase) {
+        switch (phase) {
+            case 1:
+                return metrics.getParseTime();
+            case 2:
+                return metrics.getInvokeTime();
+            case 3:
+                return metrics.getSerializeTime();
+            default:
+                return metrics.getLatency();
+        }
+    }
+
+    private static void writeHeader(Writer writer, String name, String type,
+                                    String help) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void writeSample(Writer writer, String name,
+                                    Metrics metrics, String phase, String le,
+                                    long value) throws IOException {
+        StringBuffer line = new StringBuffer(name);
+        String separator = "{";
+        if (metrics.getServiceName() != null) {
+            line.append(separator);
+            appendLabel(line, "service", metrics.getServiceName());
+            separator = ",";
+        }
+        if (metrics.getOperationName() != null) {
+            line.append(separator);
+            appendLabel(line, "operation", metrics.getOperationName());
+            separator = ",";
+        }
+        if (phase != null) {
+            line.append(separator);
+            appendLabel(line, "phase", phase);
+            separator = ",";
+        }
+        if (le != null) {
+            line.append(separator);
+            appendLabel(line, "le", le);
+            separator = ",";
+        }
+        if (separator.equals(",")) {
+            line.append('}');
+        }
+        line.append(' ').append(value).append('\n');
+        writer.write(line.toString());
+    }
+
+    private static void appendLabel(StringBuffer line, String name,
+                                    String value) {
+        line.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
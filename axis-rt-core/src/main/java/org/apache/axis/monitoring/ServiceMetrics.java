@@ -0,0 +1,76 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.monitoring;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The metrics of a service, and of each of its operations.
+ */
+public class ServiceMetrics extends Metrics {
+    /** operation name -> Metrics, replaced as a whole when one is added */
+    private volatile Map operations = new HashMap();
+    private final Object operationsLock = new Object();
+
+    public ServiceMetrics(String serviceName) {
+        super(serviceName, null);
+    }
+
+    /**
+     * Return the metrics of an operation, creating them on first use.
+     */
+    public Metrics getOperation(String operationName) {
+        Metrics result = (Metrics) operations.get(operationName);
+        if (result == null) {
+            synchronized (operationsLock) {
+                result = (Metrics) operations.get(operationName);
+                if (result == null) {
+                    result = new Metrics(getServiceName(), operationName);
+                    Map copy = new HashMap(operations);
+                    copy.put(operationName, result);
+                    operations = copy;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the metrics of an operation, or <code>null</code> if it hasn't
+     * been called yet.
+     */
+    public Metrics findOperation(String operationName) {
+        return (Metrics) operations.get(operationName);
+    }
+
+    /**
+     * Return the names of the operations that have been called, sorted.
+     */
+    public String[] getOperationNames() {
+        TreeSet names = new TreeSet(operations.keySet());
+        return (String[]) names.toArray(new String[names.size()]);
+    }
+
+    public void reset() {
+        super.reset();
+        for (Iterator it = operations.values().iterator(); it.hasNext();) {
+            ((Metrics) it.next()).reset();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.monitoring;
+
+/**
+ * Picks the stripe of the counters a thread records into.  The counters
+ * are split into stripes, each with its own lock, so that threads
+ * recording at the same time rarely wait for each other; readers sum the
+ * stripes.
+ */
+final class Stripes {
+    /** The number of stripes; a power of two */
+    static final int COUNT = 8;
+
+    private Stripes() {
+    }
+
+    /**
+     * Return the stripe of the current thread, from 0 to
+     * <code>COUNT - 1</code>.
+     */
+    static int index() {
+        int h = System.identityHashCode(Thread.currentThread());
+        h ^= (h >>> 16);
+        h ^= (h >>> 8);
+        return h & (COUNT - 1);
+    }
+}
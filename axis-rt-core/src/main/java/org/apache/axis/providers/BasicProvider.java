@@ -16,7 +16,10 @@
 
 package org.apache.axis.providers;
 
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.xml.namespace.QName;
 
@@ -27,12 +30,15 @@ import org.apache.axis.AxisEngine;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.description.ServiceDesc;
 import org.apache.axis.description.JavaServiceDesc;
+import org.apache.axis.encoding.TypeMappingRegistry;
 import org.apache.axis.handlers.BasicHandler;
 import org.apache.axis.handlers.soap.SOAPService;
 import org.apache.axis.utils.Messages;
+import org.apache.axis.utils.XMLUtils;
 import org.apache.axis.wsdl.fromJava.Emitter;
 import org.apache.commons.logging.Log;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 /**
  * This class has one way of keeping track of the
@@ -49,6 +55,14 @@ public abstract class BasicProvider extends BasicHandler {
     public static final String OPTION_WSDL_SOAPACTION_MODE = "wsdlSoapActionMode";
     public static final String OPTION_EXTRACLASSES = "extraClasses";
 
+    /**
+     * Set on the message context by a caller of {@link #generateWSDL} that
+     * doesn't modify the document it gets, so that the cached WSDL can be
+     * handed out without a copy.  Services with request or response
+     * handlers always get a copy, since those may modify it.
+     */
+    public static final String PROP_SHARED_WSDL = "axis.wsdl.shared";
+
     protected static Log log =
             LogFactory.getLog(BasicProvider.class.getName());
 
@@ -57,6 +71,17 @@ public abstract class BasicProvider extends BasicHandler {
     // be nothing more than a nuisance.
     protected static Log entLog =
             LogFactory.getLog(Constants.ENTERPRISE_LOG_CATEGORY);
+
+    /** The maximum number of generated WSDL documents kept per service */
+    private static final int MAX_CACHED_WSDL = 8;
+
+    /**
+     * The WSDL generated so far, per service, type mapping registry and
+     * set of emitter settings.  The cache goes away with the service (and
+     * this provider) when the service is redeployed, and with a registry
+     * that is no longer used.
+     */
+    private final Map wsdlCache = new WeakHashMap();
     
     /**
      * This method returns a ServiceDesc that contains the correct 
@@ -172,6 +197,24 @@ public abstract class BasicProvider extends BasicHandler {
             //              }
             //          }
 
+            boolean emitAllTypes =
+                    msgContext.isPropertyTrue(AxisEngine.PROP_EMIT_ALL_TYPES);
+            boolean useCache =
+                    msgContext.isPropertyTrue(AxisEngine.PROP_WSDL_CACHE, true);
+            TypeMappingRegistry tmr = msgContext.getTypeMappingRegistry();
+            String cacheKey = locationUrl + " " + interfaceNamespace + " "
+                    + emitAllTypes;
+            boolean shared = msgContext.isPropertyTrue(PROP_SHARED_WSDL)
+                    && service.getRequestHandler() == null
+                    && service.getResponseHandler() == null;
+            if (useCache) {
+                Document cached = getCachedWSDL(service, tmr, cacheKey, !shared);
+                if (cached != null) {
+                    msgContext.setProperty("WSDL", cached);
+                    return;
+                }
+            }
+
             Emitter emitter = new Emitter();
 
             // This seems like a good idea, but in fact isn't because the
@@ -234,12 +277,17 @@ public abstract class BasicProvider extends BasicHandler {
                 emitter.setExtraClasses(extraClasses, msgContext.getClassLoader());
             }
 
-            if (msgContext.isPropertyTrue(AxisEngine.PROP_EMIT_ALL_TYPES)) {
+            if (emitAllTypes) {
                 emitter.setEmitAllTypes(true);
             }
 
             Document doc = emitter.emit(Emitter.MODE_ALL);
 
+            if (useCache) {
+                // unless shared, the document handed out may be modified
+                putCachedWSDL(service, tmr, cacheKey,
+                              shared ? doc : copyDocument(doc));
+            }
             msgContext.setProperty("WSDL", doc);
         } catch (NoClassDefFoundError e) {
             entLog.info(Messages.getMessage("toAxisFault00"), e);
@@ -252,4 +300,68 @@ public abstract class BasicProvider extends BasicHandler {
         if (log.isDebugEnabled())
             log.debug("Exit: BasicProvider::generateWSDL (" + this +")");
     }
+
+    /**
+     * Get the WSDL generated earlier for the given settings.
+     *
+     * @param copy whether to return a copy rather than the cached document
+     */
+    private Document getCachedWSDL(SOAPService service,
+                                   TypeMappingRegistry tmr, String key,
+                                   boolean copy)
+            throws Exception {
+        Document doc;
+        synchronized (wsdlCache) {
+            Map registries = (Map) wsdlCache.get(service);
+            Map documents = (registries == null)
+                    ? null : (Map) registries.get(tmr);
+            if (documents == null) {
+                return null;
+            }
+            doc = (Document) documents.get(key);
+        }
+        if (doc == null || !copy) {
+            return doc;
+        }
+        return copyWSDL(doc);
+    }
+
+    /**
+     * Copy a WSDL document that may be shared, as one generated with
+     * {@link #PROP_SHARED_WSDL} set.
+     */
+    public static Document copyWSDL(Document doc) throws Exception {
+        // DOM documents aren't safe for concurrent reads either
+        synchronized (doc) {
+            return copyDocument(doc);
+        }
+    }
+
+    private void putCachedWSDL(SOAPService service, TypeMappingRegistry tmr,
+                               String key, Document doc) {
+        synchronized (wsdlCache) {
+            Map registries = (Map) wsdlCache.get(service);
+            if (registries == null) {
+                registries = new WeakHashMap();
+                wsdlCache.put(service, registries);
+            }
+            Map documents = (Map) registries.get(tmr);
+            if (documents == null || documents.size() >= MAX_CACHED_WSDL) {
+                documents = new HashMap();
+                registries.put(tmr, documents);
+            }
+            documents.put(key, doc);
+        }
+    }
+
+    private static Document copyDocument(Document doc) throws Exception {
+        Document copy = XMLUtils.newDocument();
+        for (Node child = doc.getFirstChild(); child != null;
+             child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.DOCUMENT_TYPE_NODE) {
+                copy.appendChild(copy.importNode(child, true));
+            }
+        }
+        return copy;
+    }
 }
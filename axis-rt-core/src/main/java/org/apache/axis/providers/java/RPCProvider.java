@@ -30,6 +30,9 @@ import org.apache.axis.message.RPCHeaderParam;
 import org.apache.axis.message.RPCParam;
 import org.apache.axis.message.SOAPBodyElement;
 import org.apache.axis.message.SOAPEnvelope;
+import org.apache.axis.monitoring.Metrics;
+import org.apache.axis.monitoring.MetricsRegistry;
+import org.apache.axis.monitoring.ServiceMetrics;
 import org.apache.axis.soap.SOAPConstants;
 import org.apache.axis.utils.JavaUtils;
 import org.apache.axis.utils.Messages;
@@ -72,6 +75,9 @@ public class RPCProvider extends JavaProvider {
             log.debug("Enter: RPCProvider.processMessage()");
         }
 
+        ServiceMetrics serviceMetrics = MetricsRegistry.getServiceMetrics(msgContext);
+        long start = (serviceMetrics == null) ? 0 : System.currentTimeMillis();
+
         SOAPService service = msgContext.getService();
         ServiceDesc serviceDesc = service.getServiceDescription();
         RPCElement body = getBody(reqEnv, msgContext);
@@ -137,6 +143,16 @@ public class RPCProvider extends JavaProvider {
             }
         }
 
+        // The arguments are deserialized now
+        Metrics operationMetrics = null;
+        if (serviceMetrics != null) {
+            operationMetrics = serviceMetrics.getOperation(operation.getName());
+            long now = System.currentTimeMillis();
+            serviceMetrics.getParseTime().record(now - start);
+            operationMetrics.getParseTime().record(now - start);
+            start = now;
+        }
+
         // See if any subclasses want a crack at faulting on a bad operation
         // FIXME : Does this make sense here???
         String allowedMethods = (String) service.getOption("allowedMethods");
@@ -205,6 +221,13 @@ public class RPCProvider extends JavaProvider {
             throw new AxisFault(Messages.getMessage("dispatchIAE00",
                     new String[]{methodSig, argClasses}),
                     e);
+        } finally {
+            // Faults thrown by the service method take time too
+            if (serviceMetrics != null) {
+                long elapsed = System.currentTimeMillis() - start;
+                serviceMetrics.getInvokeTime().record(elapsed);
+                operationMetrics.getInvokeTime().record(elapsed);
+            }
         }
 
         /** If this is a one-way operation, there is nothing more to do.
@@ -29,7 +29,12 @@ import org.apache.axis.message.SOAPEnvelope;
 import org.apache.axis.soap.SOAPConstants;
 import org.apache.axis.client.AxisClient;
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.tracing.Trace;
+import org.apache.axis.components.tracing.Tracer;
+import org.apache.axis.components.tracing.TracerFactory;
 import org.apache.axis.configuration.EngineConfigurationFactoryFinder;
+import org.apache.axis.monitoring.Metrics;
+import org.apache.axis.monitoring.MetricsRegistry;
 import org.apache.axis.utils.ClassUtils;
 import org.apache.axis.utils.Messages;
 import org.apache.commons.logging.Log;
@@ -147,6 +152,18 @@ public class AxisServer extends AxisEngine
         String  hName = null ;
         Handler h     = null ;
 
+        Metrics metrics = MetricsRegistry.isEnabled()
+                ? MetricsRegistry.getServerMetrics() : null;
+        long start = 0;
+        boolean failed = true;
+        if (metrics != null) {
+            start = System.currentTimeMillis();
+            metrics.requestStarted();
+        }
+
+        Tracer tracer = TracerFactory.getTracer();
+        Trace trace = null;
+
         // save previous context
         MessageContext previousContext = getCurrentMessageContext();
 
@@ -154,6 +171,14 @@ public class AxisServer extends AxisEngine
             // set active context
             setCurrentMessageContext(msgContext);
 
+            // a request made locally while serving a traced one is traced
+            // as well
+            if (msgContext.getTrace() == null) {
+                trace = tracer.startTrace(msgContext, (previousContext == null)
+                        ? null : previousContext.getTrace());
+                msgContext.setTrace(trace);
+            }
+
             hName = msgContext.getStrProp( MessageContext.ENGINE_HANDLER );
             if ( hName != null ) {
                 if ( (h = getHandler(hName)) == null ) {
@@ -171,7 +196,7 @@ public class AxisServer extends AxisEngine
                     t1=System.currentTimeMillis();
                 }
                 if ( h != null )
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
                 else
                     throw new AxisFault( "Server.error",
                                          Messages.getMessage("noHandler00", hName),
@@ -236,7 +261,7 @@ public class AxisServer extends AxisEngine
                         transportChain = (SimpleTargetedChain)h;
                         h = transportChain.getRequestHandler();
                         if (h != null)
-                            h.invoke(msgContext);
+                            Trace.invoke(h, msgContext);
                     }
                 }
 
@@ -246,7 +271,7 @@ public class AxisServer extends AxisEngine
                 /* Process the Global Request Chain */
                 /**********************************/
                 if ((h = getGlobalRequest()) != null ) {
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
                 }
 
                 /**
@@ -278,7 +303,7 @@ public class AxisServer extends AxisEngine
                 
                 initSOAPConstants(msgContext);
                 try {
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
                 } catch (AxisFault ae) {
                     if ((h = getGlobalRequest()) != null ) {
                         h.onFault(msgContext);
@@ -293,14 +318,14 @@ public class AxisServer extends AxisEngine
                 /* Process the Global Response Chain */
                 /***********************************/
                 if ((h = getGlobalResponse()) != null)
-                    h.invoke(msgContext);
+                    Trace.invoke(h, msgContext);
 
                 /* Process the Transport Specific Response Chain */
                 /***********************************************/
                 if (transportChain != null) {
                     h = transportChain.getResponseHandler();
                     if (h != null)
-                        h.invoke(msgContext);
+                        Trace.invoke(h, msgContext);
                 }
                 
                 if( tlog.isDebugEnabled() ) {
@@ -317,6 +342,7 @@ public class AxisServer extends AxisEngine
                 }
 
             }
+            failed = false;
         } catch (AxisFault e) {
             throw e;
         } catch (Exception e) {
@@ -326,6 +352,14 @@ public class AxisServer extends AxisEngine
         } finally {
             // restore previous state
             setCurrentMessageContext(previousContext);
+            if (trace != null) {
+                msgContext.setTrace(null);
+                tracer.endTrace(msgContext, trace);
+            }
+            if (metrics != null) {
+                metrics.requestFinished(System.currentTimeMillis() - start,
+                                        failed);
+            }
         }
         
         if (log.isDebugEnabled()) {
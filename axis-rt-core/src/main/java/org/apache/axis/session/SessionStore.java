@@ -0,0 +1,65 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.session;
+
+/**
+ * Keeps the server side sessions of a
+ * {@link org.apache.axis.handlers.SimpleSessionHandler}, keyed by session ID.
+ * <p>
+ * The default implementation is {@link ShardedSessionStore}, which keeps
+ * the sessions in memory.  Other implementations, e.g. ones that keep the
+ * sessions in an external store, can be configured with the
+ * <code>sessionStore</code> option of the handler; they need a public
+ * no-arg constructor.  Implementations must be thread-safe.
+ */
+public interface SessionStore
+{
+    /**
+     * Look up a session.
+     *
+     * @param id the session ID
+     * @return the session, or <code>null</code> if there is no such session
+     *         or it has timed out
+     */
+    public Session getSession(Long id);
+
+    /**
+     * Register a new session.
+     *
+     * @param id the session ID
+     * @param session the session
+     */
+    public void putSession(Long id, Session session);
+
+    /**
+     * Remove a session, e.g. because it has been invalidated.
+     *
+     * @param id the session ID
+     */
+    public void removeSession(Long id);
+
+    /**
+     * Remove all sessions that have timed out.  Called periodically by the
+     * session handler.
+     */
+    public void expireSessions();
+
+    /**
+     * @return the number of sessions in the store
+     */
+    public int size();
+}
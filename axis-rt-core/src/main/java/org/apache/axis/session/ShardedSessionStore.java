@@ -0,0 +1,327 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.session;
+
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import javax.xml.rpc.server.ServiceLifecycle;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The default {@link SessionStore}, which keeps sessions in memory.
+ * <p>
+ * The sessions are spread over a number of shards by ID, and every shard
+ * has its own lock, so lookups of different sessions rarely wait for each
+ * other.  Each shard keeps its sessions in least recently used order; if a
+ * maximum number of sessions is set, the least recently used session of a
+ * shard is evicted when the shard is full.
+ * <p>
+ * Timed out sessions are found with a timer wheel of one second ticks
+ * instead of a walk over all sessions: every session sits in the slot of
+ * the tick at which it would time out if it isn't touched again.
+ * {@link #expireSessions()} only looks at the slots of the ticks that have
+ * passed since its last run, removes the sessions in them that have really
+ * timed out, and moves the others (those touched in the meantime) to the
+ * slot of their new timeout.  A session that is looked up after it has
+ * timed out is removed right away.
+ * <p>
+ * When a session is removed because it has timed out or has been evicted,
+ * {@link ServiceLifecycle#destroy()} is called on all
+ * <code>ServiceLifecycle</code> objects in it.
+ */
+public class ShardedSessionStore implements SessionStore
+{
+    protected static Log log =
+        LogFactory.getLog(ShardedSessionStore.class.getName());
+
+    private static final int SHARDS = 16;
+    private static final int WHEEL_SIZE = 64;
+    private static final long TICK = 1000;
+
+    private final Shard[] shards = new Shard[SHARDS];
+
+    /**
+     * Create a store without a limit on the number of sessions.
+     */
+    public ShardedSessionStore()
+    {
+        this(0);
+    }
+
+    /**
+     * @param maxSessions the maximum number of sessions kept; 0 or less for
+     *                    no limit
+     */
+    public ShardedSessionStore(int maxSessions)
+    {
+        int maxPerShard = 0;
+        if (maxSessions > 0) {
+            maxPerShard = (maxSessions + SHARDS - 1) / SHARDS;
+        }
+        long tick = System.currentTimeMillis() / TICK;
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(maxPerShard, tick);
+        }
+    }
+
+    private Shard getShard(Long id)
+    {
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARDS - 1)];
+    }
+
+    public Session getSession(Long id)
+    {
+        long now = System.currentTimeMillis();
+        Shard shard = getShard(id);
+        Entry entry;
+        synchronized (shard) {
+            entry = (Entry) shard.sessions.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.isExpired(now)) {
+                entry.lastAccess = now;
+                return entry.session;
+            }
+            shard.sessions.remove(id);
+            entry.removed = true;
+        }
+        destroy(entry);
+        return null;
+    }
+
+    public void putSession(Long id, Session session)
+    {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(id, session, now);
+        Shard shard = getShard(id);
+        List evicted;
+        synchronized (shard) {
+            Entry old = (Entry) shard.sessions.put(id, entry);
+            if (old != null) {
+                old.removed = true;
+            }
+            shard.schedule(entry);
+            evicted = shard.takeEvicted();
+        }
+        destroyAll(evicted);
+    }
+
+    public void removeSession(Long id)
+    {
+        Shard shard = getShard(id);
+        synchronized (shard) {
+            Entry entry = (Entry) shard.sessions.remove(id);
+            if (entry != null) {
+                entry.removed = true;
+            }
+        }
+    }
+
+    public void expireSessions()
+    {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SHARDS; i++) {
+            List expired;
+            synchronized (shards[i]) {
+                expired = shards[i].expire(now);
+            }
+            destroyAll(expired);
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            synchronized (shards[i]) {
+                size += shards[i].sessions.size();
+            }
+        }
+        return size;
+    }
+
+    private void destroyAll(List entries)
+    {
+        if (entries == null) {
+            return;
+        }
+        for (Iterator i = entries.iterator(); i.hasNext();) {
+            destroy((Entry) i.next());
+        }
+    }
+
+    /**
+     * Called (without holding any lock) for every session that has timed
+     * out or has been evicted.  Calls destroy() on all ServiceLifecycle
+     * objects in the session.
+     */
+    protected void destroy(Entry entry)
+    {
+        if (log.isDebugEnabled()) {
+            log.debug(Messages.getMessage("timeout00", entry.id.toString()));
+        }
+        Session session = entry.session;
+        Enumeration keys = session.getKeys();
+        while (keys != null && keys.hasMoreElements()) {
+            String keystr = (String)keys.nextElement();
+            Object obj = session.get(keystr);
+            if (obj != null && obj instanceof ServiceLifecycle) {
+                ((ServiceLifecycle)obj).destroy();
+            }
+        }
+    }
+
+    /**
+     * A session in the store.
+     */
+    protected static class Entry
+    {
+        protected final Long id;
+        protected final Session session;
+        long lastAccess;
+        boolean removed = false;
+
+        Entry(Long id, Session session, long now)
+        {
+            this.id = id;
+            this.session = session;
+            this.lastAccess = now;
+        }
+
+        long getLastAccessTime()
+        {
+            if (session instanceof SimpleSession) {
+                return ((SimpleSession) session).getLastAccessTime();
+            }
+            return lastAccess;
+        }
+
+        long getExpiryTime()
+        {
+            return getLastAccessTime() + (session.getTimeout() * 1000L);
+        }
+
+        boolean isExpired(long now)
+        {
+            return now > getExpiryTime();
+        }
+    }
+
+    private static class Shard
+    {
+        final LinkedHashMap sessions;
+        final List[] wheel = new List[WHEEL_SIZE];
+        long currentTick;
+        List evicted = null;
+
+        Shard(final int maxSessions, long tick)
+        {
+            currentTick = tick;
+            sessions = new LinkedHashMap(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    if (maxSessions <= 0 || size() <= maxSessions) {
+                        return false;
+                    }
+                    Entry entry = (Entry) eldest.getValue();
+                    entry.removed = true;
+                    if (evicted == null) {
+                        evicted = new ArrayList();
+                    }
+                    evicted.add(entry);
+                    return true;
+                }
+            };
+        }
+
+        List takeEvicted()
+        {
+            List result = evicted;
+            evicted = null;
+            return result;
+        }
+
+        /**
+         * Put <code>entry</code> into the slot of the tick at which it
+         * will time out, but at least the next tick.
+         */
+        void schedule(Entry entry)
+        {
+            long expiryTick = (entry.getExpiryTime() + TICK - 1) / TICK;
+            if (expiryTick <= currentTick) {
+                expiryTick = currentTick + 1;
+            }
+            int slot = (int) (expiryTick % WHEEL_SIZE);
+            if (wheel[slot] == null) {
+                wheel[slot] = new ArrayList();
+            }
+            wheel[slot].add(entry);
+        }
+
+        /**
+         * Advance the wheel to <code>now</code>.
+         *
+         * @return the entries that have timed out, or <code>null</code>
+         */
+        List expire(long now)
+        {
+            long nowTick = now / TICK;
+            if (nowTick <= currentTick) {
+                return null;
+            }
+            // one turn of the wheel visits every slot
+            long ticks = Math.min(nowTick - currentTick, WHEEL_SIZE);
+            List due = new ArrayList();
+            for (long t = nowTick - ticks + 1; t <= nowTick; t++) {
+                int slot = (int) (t % WHEEL_SIZE);
+                if (wheel[slot] != null) {
+                    due.addAll(wheel[slot]);
+                    wheel[slot] = null;
+                }
+            }
+            currentTick = nowTick;
+
+            List expired = null;
+            for (Iterator i = due.iterator(); i.hasNext();) {
+                Entry entry = (Entry) i.next();
+                if (entry.removed) {
+                    continue;
+                }
+                if (entry.isExpired(now)) {
+                    sessions.remove(entry.id);
+                    entry.removed = true;
+                    if (expired == null) {
+                        expired = new ArrayList();
+                    }
+                    expired.add(entry);
+                } else {
+                    schedule(entry);
+                }
+            }
+            return expired;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.axis.transport.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
@@ -25,6 +26,8 @@ import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.StringTokenizer;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -48,6 +51,7 @@ import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.description.OperationDesc;
 import org.apache.axis.description.ServiceDesc;
 import org.apache.axis.handlers.soap.SOAPService;
+import org.apache.axis.monitoring.MetricsRegistry;
 import org.apache.axis.security.servlet.ServletSecurityProvider;
 import org.apache.axis.utils.JavaUtils;
 import org.apache.axis.utils.Messages;
@@ -100,6 +104,15 @@ public class AxisServlet extends AxisServletBase {
     public static final String INIT_PROPERTY_SERVICES_PATH =
             "axis.servicesPath";
 
+    // Responses up to this many bytes are buffered and sent with a
+    // Content-Length header; larger ones are streamed.  0 turns it off.
+    public static final String INIT_PROPERTY_RESPONSE_BUFFER_LIMIT =
+            "axis.http.responseBufferLimit";
+
+    // Compress responses for clients that accept gzip
+    public static final String INIT_PROPERTY_GZIP_RESPONSE =
+            "axis.http.gzipResponse";
+
     // These have default values.
     private String transportName;
 
@@ -132,6 +145,16 @@ public class AxisServlet extends AxisServletBase {
      * Cached path to JWS output directory
      */
     private String jwsClassDir = null;
+
+    /**
+     * Responses up to this size are sent with a Content-Length header
+     */
+    private int responseBufferLimit = 65536;
+
+    /**
+     * Should responses be compressed for clients that accept gzip?
+     */
+    private boolean gzipResponse = false;
     protected String getJWSClassDir() {return jwsClassDir;
     }
 
@@ -175,6 +198,19 @@ public class AxisServlet extends AxisServletBase {
         servicesPath = getOption(context, INIT_PROPERTY_SERVICES_PATH,
                                  "/services/");
 
+        String limit = getOption(context, INIT_PROPERTY_RESPONSE_BUFFER_LIMIT,
+                                 null);
+        if (limit != null) {
+            try {
+                responseBufferLimit = Integer.parseInt(limit.trim());
+            } catch (NumberFormatException e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+
+        gzipResponse = JavaUtils.isTrueExplicitly(getOption(context,
+                INIT_PROPERTY_GZIP_RESPONSE, null));
+
         /**
          * There are DEFINATE problems here if
          * getHomeDir and/or getDefaultJWSClassDir return null
@@ -759,10 +795,20 @@ public class AxisServlet extends AxisServletBase {
             //determine content type from message response
             contentType = responseMsg.getContentType(msgContext.
                     getSOAPConstants());
-            sendResponse(contentType, res, responseMsg);
+            long start = System.currentTimeMillis();
+            long sent = sendResponse(contentType, req, res, responseMsg);
+            if (msgContext != null) {
+                MetricsRegistry.recordTransfer(msgContext,
+                        req.getContentLength(), sent,
+                        System.currentTimeMillis() - start);
+            }
         } else {
             // No content, so just indicate accepted
             res.setStatus(HttpServletResponse.SC_ACCEPTED);
+            if (msgContext != null) {
+                MetricsRegistry.recordTransfer(msgContext,
+                        req.getContentLength(), 0, -1);
+            }
         }
         
         if (isDebug) {
@@ -843,16 +889,21 @@ public class AxisServlet extends AxisServletBase {
     /**
      * write a message to the response, set appropriate headers for content
      * type..etc.
+     * @param req   request, for the encodings the client accepts
      * @param res   response
      * @param responseMsg message to write
+     * @return the number of bytes sent, or -1 if it isn't known
      * @throws AxisFault
      * @throws IOException if the response stream can not be written to
      */
-    private void sendResponse(String contentType,
+    private long sendResponse(String contentType,
+                              HttpServletRequest req,
                               HttpServletResponse res,
                               Message responseMsg) throws AxisFault,
             IOException {
+        long sent = -1;
         if (responseMsg == null) {
+            sent = 0;
             res.setStatus(HttpServletResponse.SC_NO_CONTENT);
             if (isDebug) {
                 log.debug("NO AXIS MESSAGE TO RETURN!");
@@ -878,13 +929,55 @@ public class AxisServlet extends AxisServletBase {
                  *  - Either Content-Length or HTTP Chunking is required.
                  *   Most servlet engines will do chunking if content-length is not specified.
                  *
-                 *
+                 * The message is serialized once into a buffer, so that the
+                 * length is known without serializing it twice; messages
+                 * too large for the buffer are streamed (chunked) instead.
                  */
+                OutputStream out;
+                BufferedResponseStream buffer = null;
+                if (responseBufferLimit > 0) {
+                    buffer = new BufferedResponseStream(res,
+                                                        responseBufferLimit);
+                    out = buffer;
+                } else {
+                    out = res.getOutputStream();
+                }
+
+                ResponseGZIPOutputStream gzip = null;
+                try {
+                    if (gzipResponse) {
+                        res.addHeader("Vary",
+                                      HTTPConstants.HEADER_ACCEPT_ENCODING);
+                        if (acceptsGzip(req)) {
+                            res.setHeader(HTTPConstants.HEADER_CONTENT_ENCODING,
+                                          HTTPConstants.COMPRESSION_GZIP);
+                            out = gzip = new ResponseGZIPOutputStream(out);
+                        }
+                    }
 
-                //if(clientVersion == HTTPConstants.HEADER_PROTOCOL_V10) //do chunking if necessary.
-                //     res.setContentLength(responseMsg.getContentLength());
+                    responseMsg.writeTo(out);
 
-                responseMsg.writeTo(res.getOutputStream());
+                    if (gzip != null) {
+                        gzip.finish();
+                    }
+                    if (buffer != null) {
+                        buffer.close();
+                        sent = buffer.getByteCount();
+                        if (isDebug) {
+                            log.debug("Response streamed: " +
+                                      buffer.isStreaming());
+                        }
+                    }
+                } finally {
+                    // Free the deflater and the per-thread buffer even if
+                    // the write failed half way
+                    if (gzip != null) {
+                        gzip.end();
+                    }
+                    if (buffer != null) {
+                        buffer.release();
+                    }
+                }
             } catch (SOAPException e) {
                 logException(e);
             }
@@ -893,6 +986,44 @@ public class AxisServlet extends AxisServletBase {
         if (!res.isCommitted()) {
             res.flushBuffer(); // Force it right now.
         }
+        return sent;
+    }
+
+    /**
+     * Does the client accept gzip encoded responses?  A coding listed with
+     * a quality of 0 ("gzip;q=0") is refused.
+     */
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        Enumeration headers =
+                req.getHeaders(HTTPConstants.HEADER_ACCEPT_ENCODING);
+        while (headers != null && headers.hasMoreElements()) {
+            StringTokenizer tokens =
+                    new StringTokenizer((String) headers.nextElement(), ",");
+            while (tokens.hasMoreTokens()) {
+                String coding = tokens.nextToken().trim();
+                String params = "";
+                int semi = coding.indexOf(';');
+                if (semi >= 0) {
+                    params = coding.substring(semi + 1).trim();
+                    coding = coding.substring(0, semi).trim();
+                }
+                if (coding.equalsIgnoreCase(HTTPConstants.COMPRESSION_GZIP)) {
+                    return !isZeroQuality(params);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        if (!params.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(params.substring(2).trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     /**
@@ -1053,6 +1184,8 @@ public class AxisServlet extends AxisServletBase {
                                          "org.apache.axis.transport.http.QSMethodHandler");
                 this.transport.setOption("qs.wsdl",
                                          "org.apache.axis.transport.http.QSWSDLHandler");
+                this.transport.setOption("qs.metrics",
+                                         "org.apache.axis.transport.http.QSMetricsHandler");
 
                 return;
             }
@@ -1079,6 +1212,8 @@ public class AxisServlet extends AxisServletBase {
                                              "org.apache.axis.transport.http.QSMethodHandler");
                     this.transport.setOption("qs.wsdl",
                                              "org.apache.axis.transport.http.QSWSDLHandler");
+                    this.transport.setOption("qs.metrics",
+                                             "org.apache.axis.transport.http.QSMetricsHandler");
                 }
             }
         }
@@ -1094,6 +1229,8 @@ public class AxisServlet extends AxisServletBase {
                                      "org.apache.axis.transport.http.QSMethodHandler");
             this.transport.setOption("qs.wsdl",
                                      "org.apache.axis.transport.http.QSWSDLHandler");
+            this.transport.setOption("qs.metrics",
+                                     "org.apache.axis.transport.http.QSMetricsHandler");
 
             return;
         }
@@ -1244,4 +1381,19 @@ public class AxisServlet extends AxisServletBase {
         return request.getServletPath() + ((request.getPathInfo() != null) ?
                                            request.getPathInfo() : "");
     }
+
+    /**
+     * GZIPOutputStream whose deflater can be ended without closing the
+     * underlying stream; finish() alone leaves it allocated until
+     * finalization.
+     */
+    private static class ResponseGZIPOutputStream extends GZIPOutputStream {
+        ResponseGZIPOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.http;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream {@link AxisServlet} writes responses to.
+ * <p>
+ * The response is collected in a buffer until it is complete, so that it
+ * can be sent with a Content-Length header instead of being chunked.  If
+ * the response grows beyond the limit, the buffered part is sent and the
+ * rest streams through to the servlet output stream.  Buffers are reused by
+ * the same thread for the next response.
+ */
+public class BufferedResponseStream extends OutputStream {
+    private static final int INITIAL_SIZE = 8192;
+
+    private static final ThreadLocal cachedBuffer = new ThreadLocal();
+
+    private final HttpServletResponse response;
+    private final int limit;
+
+    private byte[] buf;
+    private int count = 0;
+
+    /** The number of bytes written, buffered or not */
+    private long total = 0;
+
+    /** The servlet output stream, once the buffer has been sent */
+    private OutputStream out = null;
+
+    private boolean streaming = false;
+
+    /**
+     * @param response the servlet response
+     * @param limit the largest response that is sent with a Content-Length
+     *              header
+     */
+    public BufferedResponseStream(HttpServletResponse response, int limit) {
+        this.response = response;
+        this.limit = limit;
+    }
+
+    public void write(int b) throws IOException {
+        total++;
+        if (out == null && count < limit) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        } else {
+            startStreaming().write(b);
+        }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        total += len;
+        if (out == null && count + len <= limit) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        } else {
+            startStreaming().write(b, off, len);
+        }
+    }
+
+    /**
+     * Flushes the servlet output stream once we are streaming; until then
+     * nothing is sent, so that the Content-Length can still be set.
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Send what is left of the response.  The servlet output stream is not
+     * closed.
+     */
+    public void close() throws IOException {
+        if (out == null) {
+            response.setContentLength(count);
+            out = response.getOutputStream();
+            try {
+                if (count > 0) {
+                    out.write(buf, 0, count);
+                }
+            } finally {
+                releaseBuffer();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Give the buffer back for reuse without sending it, e.g. when writing
+     * the response failed.  Does nothing once the stream has been closed.
+     */
+    public void release() {
+        releaseBuffer();
+    }
+
+    /**
+     * The number of bytes written to this stream.
+     */
+    public long getByteCount() {
+        return total;
+    }
+
+    /**
+     * Whether the response was too large to be buffered.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    private OutputStream startStreaming() throws IOException {
+        if (out == null) {
+            streaming = true;
+            out = response.getOutputStream();
+            try {
+                if (count > 0) {
+                    out.write(buf, 0, count);
+                }
+            } finally {
+                releaseBuffer();
+            }
+        }
+        return out;
+    }
+
+    private void ensureCapacity(int size) {
+        if (buf == null) {
+            buf = (byte[]) cachedBuffer.get();
+            if (buf == null) {
+                buf = new byte[Math.min(INITIAL_SIZE, limit)];
+            } else {
+                cachedBuffer.set(null);
+            }
+        }
+        if (size > buf.length) {
+            int newSize = Math.min(Math.max(buf.length * 2, size), limit);
+            byte[] newBuf = new byte[newSize];
+            System.arraycopy(buf, 0, newBuf, 0, count);
+            buf = newBuf;
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buf != null) {
+            byte[] cached = (byte[]) cachedBuffer.get();
+            if (cached == null || cached.length < buf.length) {
+                cachedBuffer.set(buf);
+            }
+            buf = null;
+            count = 0;
+        }
+    }
+}
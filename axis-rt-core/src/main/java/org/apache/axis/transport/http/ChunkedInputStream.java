@@ -43,7 +43,7 @@ public class ChunkedInputStream extends java.io.FilterInputStream {
         super(is);
     }
 
-    public synchronized int read()
+    public int read()
         throws IOException {
         if (closed) {
             return -1;
@@ -70,9 +70,9 @@ public class ChunkedInputStream extends java.io.FilterInputStream {
         return read(b, 0, b.length);
     }
 
-    public synchronized int read(byte[] b,
-                                 int off,
-                                 int len)
+    public int read(byte[] b,
+                    int off,
+                    int len)
         throws IOException {
         if (closed) {
             return -1;
@@ -186,9 +186,10 @@ public class ChunkedInputStream extends java.io.FilterInputStream {
             if (closed) {
                 return;
             }
-            closed = true;
         }
 
+        // Consume the remaining chunks (including the trailing zero-length
+        // chunk) so that the connection can be reused.
         byte[] b = new byte[1024];
         int bread = -1;
 
@@ -196,6 +197,7 @@ public class ChunkedInputStream extends java.io.FilterInputStream {
             bread = read(b, 0, b.length);
         }
         while (bread != -1);
+        closed = true;
     }
 
     /*
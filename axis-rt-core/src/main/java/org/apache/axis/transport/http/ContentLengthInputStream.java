@@ -0,0 +1,105 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.http;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Limits an HTTP message body to the number of bytes announced in its
+ * Content-Length header.  Closing the stream skips the rest of the body
+ * but leaves the underlying stream (and the connection) open, so that the
+ * connection can be reused.
+ */
+public class ContentLengthInputStream extends java.io.FilterInputStream {
+
+    protected long remaining;
+    protected volatile boolean closed = false;
+
+    public ContentLengthInputStream(InputStream is, long contentLength) {
+        super(is);
+        this.remaining = contentLength;
+    }
+
+    public int read() throws IOException {
+        if (closed || remaining <= 0) {
+            return -1;
+        }
+        int rc = in.read();
+        if (rc < 0) {
+            throw new IOException("HTTP stream closed before Content-Length was reached");
+        }
+        remaining--;
+        return rc;
+    }
+
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed || remaining <= 0) {
+            return -1;
+        }
+        int rc = in.read(b, off, (int) Math.min(len, remaining));
+        if (rc < 0) {
+            throw new IOException("HTTP stream closed before Content-Length was reached");
+        }
+        remaining -= rc;
+        return rc;
+    }
+
+    public long skip(long n) throws IOException {
+        byte[] b = new byte[1024];
+        long skipped = 0;
+        while (skipped < n) {
+            int bread = read(b, 0, (int) Math.min(b.length, n - skipped));
+            if (bread < 0) {
+                break;
+            }
+            skipped += bread;
+        }
+        return skipped;
+    }
+
+    public int available() throws IOException {
+        if (closed) {
+            return 0;
+        }
+        return (int) Math.min(remaining, in.available());
+    }
+
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        byte[] b = new byte[1024];
+        while (read(b, 0, b.length) != -1) {
+            // drain the rest of the body
+        }
+        closed = true;
+    }
+
+    public void reset() throws IOException {
+        throw new IOException("Don't support marked streams");
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+}
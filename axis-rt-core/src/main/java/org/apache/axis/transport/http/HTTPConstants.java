@@ -52,6 +52,7 @@ public class HTTPConstants {
     public static final String HEADER_CACHE_CONTROL_NOCACHE = "no-cache";
     public static final String HEADER_PRAGMA = "Pragma";
     public static final String HEADER_LOCATION = "Location";
+    public static final String HEADER_TRACE_ID = "X-Axis-Trace-Id";
 
 
 
@@ -118,6 +119,13 @@ public class HTTPConstants {
      * context property to true to have the request body gzip compressed.
      */
     public static final String MC_GZIP_REQUEST = "transport.http.gzipRequest";
+
+    /**
+     * An {@link HTTPPipeline} to send the request over, pipelined with the
+     * requests of other calls using the same pipeline.  Only used for
+     * HTTP/1.1 requests when keep-alive is enabled.
+     */
+    public static final String MC_HTTP_PIPELINE = "transport.http.pipeline";
  
     /**
      * @deprecated Should use javax.xml.rpc.Call.SOAPACTION_URI_PROPERTY instead.
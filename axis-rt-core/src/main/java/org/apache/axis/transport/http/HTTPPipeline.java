@@ -0,0 +1,225 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.http;
+
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * A keep-alive connection shared by calls that are pipelined, i.e. sent one
+ * after the other without waiting for the responses in between.
+ * <p>
+ * {@link HTTPSender} uses the pipeline set as the
+ * {@link HTTPConstants#MC_HTTP_PIPELINE} property of a call.  Requests are
+ * written under a lock and numbered in the order they are sent; since the
+ * server answers in the same order, a call reads its response as soon as
+ * the calls before it have read theirs.  Each response is read completely
+ * before the next call gets its turn.
+ * <p>
+ * A call that fails only affects the calls behind it if the connection
+ * itself is lost; those calls then fail as well, and later calls open a
+ * new connection.  The connection is taken from, and finally returned to,
+ * the {@link SocketPool} of the sender.  A pipeline only serves a single
+ * endpoint; calls to other endpoints are sent the usual way.
+ */
+public class HTTPPipeline {
+    protected static Log log =
+        LogFactory.getLog(HTTPPipeline.class.getName());
+
+    private String key;
+    private SocketPool pool;
+    private SocketPool.Entry entry;
+    private InputStream in;
+
+    private boolean writing = false;
+    private int written = 0;
+    private int read = 0;
+    private boolean closed = false;
+
+    /**
+     * Tie the pipeline to the endpoint with the given pool key, unless it
+     * is already tied to another one.
+     *
+     * @return whether calls to the endpoint may use the pipeline
+     */
+    synchronized boolean bind(String key) {
+        if (this.key == null) {
+            this.key = key;
+        }
+        return this.key.equals(key);
+    }
+
+    /**
+     * Wait until no other call is writing a request, and return the current
+     * connection.  {@link #endWrite} must be called once the request has
+     * been sent.
+     *
+     * @return the connection, or <code>null</code> if a new one has to be
+     *         opened and passed to {@link #setConnection}
+     */
+    synchronized SocketPool.Entry beginWrite() throws IOException {
+        while (writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+        if (closed) {
+            throw new IOException(Messages.getMessage("pipelineClosed00"));
+        }
+        writing = true;
+        return entry;
+    }
+
+    /**
+     * Use a newly opened connection for the request being written.
+     */
+    synchronized void setConnection(SocketPool pool, SocketPool.Entry entry)
+        throws IOException {
+        this.pool = pool;
+        this.entry = entry;
+        in = new BufferedInputStream(entry.getSocket().getInputStream());
+        written = 0;
+        read = 0;
+    }
+
+    /**
+     * End the write started by {@link #beginWrite}.
+     *
+     * @param ok whether the request has been sent completely; if not the
+     *           connection is closed
+     * @return the ticket for reading the response, or <code>null</code> if
+     *         <code>ok</code> is false
+     * @throws IOException if the connection was lost while writing
+     */
+    synchronized Ticket endWrite(boolean ok) throws IOException {
+        writing = false;
+        notifyAll();
+        if (!ok) {
+            fail();
+            return null;
+        }
+        if (entry == null) {
+            throw new IOException(Messages.getMessage("pipelineBroken00"));
+        }
+        return new Ticket(entry, written++);
+    }
+
+    /**
+     * Wait until the responses to the requests sent before the one of
+     * <code>ticket</code> have been read.  {@link #endRead} must be called
+     * once the response has been read.
+     *
+     * @return the input of the connection
+     * @throws IOException if the connection was lost first
+     */
+    synchronized InputStream beginRead(Ticket ticket) throws IOException {
+        while (ticket.entry == entry && read != ticket.number) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // nobody would read the response to this request
+                if (ticket.entry == entry) {
+                    fail();
+                }
+                throw new InterruptedIOException();
+            }
+        }
+        if (ticket.entry != entry) {
+            throw new IOException(Messages.getMessage("pipelineBroken00"));
+        }
+        return in;
+    }
+
+    /**
+     * Pass the turn on to the next response.
+     *
+     * @param keepAlive false if the connection can't be used any more, e.g.
+     *                  because the response could not be read
+     */
+    synchronized void endRead(Ticket ticket, boolean keepAlive) {
+        if (ticket.entry != entry) {
+            return;
+        }
+        read++;
+        notifyAll();
+        if (!keepAlive) {
+            fail();
+        } else if (closed) {
+            releaseIfIdle();
+        }
+    }
+
+    /**
+     * Stop accepting calls.  The connection goes back to the pool once the
+     * responses to all requests sent have been read.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+        releaseIfIdle();
+    }
+
+    /**
+     * Whether the calls sent so far have all been answered.
+     */
+    public synchronized boolean isIdle() {
+        return !writing && read == written;
+    }
+
+    private void releaseIfIdle() {
+        if (entry != null && isIdle()) {
+            pool.release(entry);
+            entry = null;
+            in = null;
+        }
+    }
+
+    private void fail() {
+        if (entry != null) {
+            try {
+                entry.getSocket().close();
+            } catch (IOException e) {
+                log.debug(e.getMessage(), e);
+            }
+            // a closed socket only ends its lease
+            pool.release(entry);
+            entry = null;
+            in = null;
+            notifyAll();
+        }
+    }
+
+    /**
+     * The place of a request on a connection.
+     */
+    static class Ticket {
+        final SocketPool.Entry entry;
+        final int number;
+
+        Ticket(SocketPool.Entry entry, int number) {
+            this.entry = entry;
+            this.number = number;
+        }
+    }
+}
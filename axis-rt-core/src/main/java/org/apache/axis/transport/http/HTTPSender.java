@@ -19,11 +19,13 @@ import org.apache.axis.AxisFault;
 import org.apache.axis.Message;
 import org.apache.axis.MessageContext;
 import org.apache.axis.Constants;
+import org.apache.axis.client.async.CallFuture;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.components.net.BooleanHolder;
 import org.apache.axis.components.net.SocketFactory;
 import org.apache.axis.components.net.SocketFactoryFactory;
 import org.apache.axis.components.net.DefaultSocketFactory;
+import org.apache.axis.components.tracing.Trace;
 import org.apache.axis.encoding.Base64;
 import org.apache.axis.handlers.BasicHandler;
 import org.apache.axis.soap.SOAP12Constants;
@@ -37,6 +39,7 @@ import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPException;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -105,6 +108,9 @@ public class HTTPSender extends BasicHandler {
     private static final String HEADER_TRANSFER_ENCODING_LC = 
         HTTPConstants.HEADER_TRANSFER_ENCODING.toLowerCase();
 
+    private static final String HEADER_CONNECTION_LC =
+        HTTPConstants.HEADER_CONNECTION.toLowerCase();
+
     /**
      * the url; used for error reporting
      */
@@ -134,17 +140,34 @@ public class HTTPSender extends BasicHandler {
             int port = targetURL.getPort();
             
             // Send the SOAP request to the server
-            InputStream inp = writeToSocket(socketHolder, msgContext, targetURL,
+            InputStream inp;
+            HTTPPipeline.Ticket ticket = null;
+            boolean written = false;
+            try {
+                inp = writeToSocket(socketHolder, msgContext, targetURL,
                         otherHeaders, host, port, msgContext.getTimeout(), useFullURL);
+                written = true;
+            } finally {
+                if (socketHolder.getPipeline() != null) {
+                    ticket = socketHolder.getPipeline().endWrite(written);
+                }
+            }
 
             // Read the response back from the server
-            Hashtable headers = new Hashtable();
-            inp = readHeadersFromSocket(socketHolder, msgContext, inp, headers);
-            readFromSocket(socketHolder, msgContext, inp, headers);
+            if (ticket != null) {
+                readPipelined(socketHolder, msgContext, ticket);
+            } else {
+                Hashtable headers = new Hashtable();
+                inp = readHeadersFromSocket(socketHolder, msgContext, inp, headers);
+                readFromSocket(socketHolder, msgContext, inp, headers);
+            }
         } catch (Exception e) {
             log.debug(e);
             try {
-	            if (socketHolder.getSocket() != null ) {
+                // the connection of a pipeline is shared, and closed by
+                // the pipeline if need be
+	            if (socketHolder.getSocket() != null
+	                    && socketHolder.getPipeline() == null) {
 	            	socketHolder.getSocket().close();
 	            }
             } catch (IOException ie) {
@@ -158,6 +181,14 @@ public class HTTPSender extends BasicHandler {
         }
     }
 
+    /**
+     * Returns the pool used to keep HTTP/1.1 connections alive between
+     * calls, or <code>null</code> to close every connection after use.
+     */
+    protected SocketPool getSocketPool() {
+        return SocketPool.getDefaultPool();
+    }
+
     /**
      * Creates a socket connection to the SOAP server
      *
@@ -321,10 +352,15 @@ public class HTTPSender extends BasicHandler {
             }
         }
 
+        SocketPool pool = null;
         if (!http10) {
-            //Force close for now.
-            //TODO HTTP/1.1
-            httpConnection = HTTPConstants.HEADER_CONNECTION_CLOSE;
+            if (httpConnection == null) {
+                // HTTP/1.1 connections are persistent by default
+                pool = getSocketPool();
+            }
+            if (pool == null) {
+                httpConnection = HTTPConstants.HEADER_CONNECTION_CLOSE;
+            }
         }
 
         header2.append(" ");
@@ -393,6 +429,15 @@ public class HTTPSender extends BasicHandler {
             }
         }
 
+        // Pass the trace ID on, so the server traces the request as well.
+        Trace trace = msgContext.getTrace();
+        if (trace != null && Trace.isValidId(trace.getId())) {
+            header2.append(HTTPConstants.HEADER_TRACE_ID)
+                    .append(": ")
+                    .append(trace.getId())
+                    .append("\r\n");
+        }
+
         if (null != httpConnection) {
             header2.append(HTTPConstants.HEADER_CONNECTION);
             header2.append(": ");
@@ -400,8 +445,41 @@ public class HTTPSender extends BasicHandler {
             header2.append("\r\n");
         }
 
-        getSocket(sockHolder, msgContext, targetURL.getProtocol(),
-                  host, port, timeout, otherHeaders, useFullURL);
+        HTTPPipeline pipeline = null;
+        if (pool != null && !httpContinueExpected) {
+            pipeline = (HTTPPipeline) msgContext.getProperty(
+                    HTTPConstants.MC_HTTP_PIPELINE);
+            if (pipeline != null && !pipeline.bind(SocketPool.getKey(
+                    targetURL.getProtocol(), host, port))) {
+                pipeline = null;
+            }
+        }
+
+        if (pipeline != null) {
+            SocketPool.Entry entry = pipeline.beginWrite();
+            // from here on invoke() has to end the write
+            sockHolder.setPipeline(pipeline);
+            if (entry != null) {
+                useEntry(entry, sockHolder, timeout, otherHeaders, useFullURL);
+            } else {
+                getPooledSocket(pool, sockHolder, msgContext, targetURL.getProtocol(),
+                                host, port, timeout, otherHeaders, useFullURL);
+                pipeline.setConnection(pool, sockHolder.getPoolEntry());
+            }
+        } else if (pool != null) {
+            getPooledSocket(pool, sockHolder, msgContext, targetURL.getProtocol(),
+                            host, port, timeout, otherHeaders, useFullURL);
+        } else {
+            getSocket(sockHolder, msgContext, targetURL.getProtocol(),
+                      host, port, timeout, otherHeaders, useFullURL);
+        }
+
+        // let a cancelled asynchronous call abort a blocked read; the
+        // connection of a pipeline is shared with other calls though
+        CallFuture future = CallFuture.getCurrent();
+        if (future != null && pipeline == null) {
+            future.setSocket(sockHolder.getSocket());
+        }
         
         if (null != otherHeaders) {
             //Add other headers to the end.
@@ -521,6 +599,94 @@ public class HTTPSender extends BasicHandler {
         return inp;
     }
 
+    /**
+     * Takes a kept-alive socket from the pool, or creates a new one that
+     * may be returned to the pool once the response has been read.
+     */
+    private void getPooledSocket(SocketPool pool,
+                                 SocketHolder sockHolder,
+                                 MessageContext msgContext,
+                                 String protocol,
+                                 String host, int port, int timeout,
+                                 StringBuffer otherHeaders,
+                                 BooleanHolder useFullURL)
+        throws Exception {
+        String key = SocketPool.getKey(protocol, host, port);
+        SocketPool.Entry entry = pool.acquire(key, timeout);
+        if (entry != null) {
+            useEntry(entry, sockHolder, timeout, otherHeaders, useFullURL);
+        } else {
+            // remember what the socket factory adds, so that it can be
+            // sent again when the socket is reused
+            int mark = otherHeaders.length();
+            try {
+                getSocket(sockHolder, msgContext, protocol, host, port,
+                          timeout, otherHeaders, useFullURL);
+            } catch (Exception e) {
+                pool.cancel(key);
+                throw e;
+            }
+            entry = new SocketPool.Entry(key, sockHolder.getSocket(),
+                                         useFullURL.value,
+                                         otherHeaders.substring(mark));
+            pool.register(entry);
+            sockHolder.setPoolEntry(entry);
+        }
+    }
+
+    /**
+     * Sends the request over the kept-alive socket of <code>entry</code>.
+     */
+    private void useEntry(SocketPool.Entry entry,
+                          SocketHolder sockHolder,
+                          int timeout,
+                          StringBuffer otherHeaders,
+                          BooleanHolder useFullURL)
+        throws IOException {
+        Socket sock = entry.getSocket();
+        sock.setSoTimeout(timeout > 0 ? timeout : 0);
+        useFullURL.value = entry.isUseFullURL();
+        otherHeaders.append(entry.getFactoryHeaders());
+        sockHolder.setSocket(sock);
+        sockHolder.setPoolEntry(entry);
+    }
+
+    /**
+     * Reads the response to a pipelined request once it is its turn.  The
+     * body is read completely, so that the next response can be read right
+     * away.
+     */
+    private void readPipelined(SocketHolder socketHolder,
+                               MessageContext msgContext,
+                               HTTPPipeline.Ticket ticket)
+            throws IOException {
+        HTTPPipeline pipeline = socketHolder.getPipeline();
+        InputStream inp = pipeline.beginRead(ticket);
+        Hashtable headers = new Hashtable();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(4097);
+        boolean keepAlive = false;
+        try {
+            readHeadersFromSocket(socketHolder, msgContext, inp, headers);
+            // null for an HTTP/1.0 response, or one without framing
+            InputStream body = getKeepAliveBody(socketHolder, inp, headers);
+            keepAlive = (body != null);
+            if (body == null) {
+                body = inp;
+            }
+            byte[] bytes = new byte[4096];
+            int n;
+            while ((n = body.read(bytes)) != -1) {
+                buf.write(bytes, 0, n);
+            }
+        } finally {
+            pipeline.endRead(ticket, keepAlive);
+        }
+        headers.remove(HEADER_TRANSFER_ENCODING_LC);
+        headers.put(HEADER_CONTENT_LENGTH_LC, Integer.toString(buf.size()));
+        readFromSocket(new SocketHolder(null), msgContext,
+                       new ByteArrayInputStream(buf.toByteArray()), headers);
+    }
+
     /**
      * Get cookies from message context and add it to the headers 
      * @param msgContext
@@ -637,6 +803,10 @@ public class HTTPSender extends BasicHandler {
                         tmp = tmp.substring(0, end);
                     }
                     returnCode = Integer.parseInt(tmp);
+                    if (name.startsWith(HTTPConstants.HEADER_PROTOCOL_10)) {
+                        // HTTP/1.0 servers close the connection
+                        sockHolder.setPoolEntry(null);
+                    }
                     msgContext.setProperty(HTTPConstants.MC_HTTP_STATUS_CODE,
                             new Integer(returnCode));
                     msgContext.setProperty(HTTPConstants.MC_HTTP_STATUS_MESSAGE,
@@ -703,6 +873,11 @@ public class HTTPSender extends BasicHandler {
                 
         if ((returnCode > 199) && (returnCode < 300)) {
             if (returnCode == 202) {
+                InputStream body = getKeepAliveBody(socketHolder, inp, headers);
+                if (body != null) {
+                    new SocketInputStream(body, getSocketPool(),
+                            socketHolder.getPoolEntry()).close();
+                }
                 return inp;
             }
             // SOAP return is OK - so fall through
@@ -718,7 +893,9 @@ public class HTTPSender extends BasicHandler {
             // Temporary Redirect (HTTP: 302/307)            
             // close old connection
                 inp.close();
-                socketHolder.getSocket().close();    
+                if (socketHolder.getSocket() != null) {
+                    socketHolder.getSocket().close();
+                }
             // remove former result and set new target url
                 msgContext.removeProperty(HTTPConstants.MC_HTTP_STATUS_CODE);
                 msgContext.setProperty(MessageContext.TRANS_URL, location);
@@ -735,6 +912,12 @@ public class HTTPSender extends BasicHandler {
             // SOAP Fault.
             ByteArrayOutputStream buf = new ByteArrayOutputStream(4097);
 
+            InputStream body = getKeepAliveBody(socketHolder, inp, headers);
+            if (body != null) {
+                // don't wait for a kept-alive connection to be closed
+                inp = body;
+            }
+
             while (-1 != (b = (byte) inp.read())) {
                 buf.write(b);
             }
@@ -767,15 +950,24 @@ public class HTTPSender extends BasicHandler {
         String transferEncoding =
             (String) headers.get(HEADER_TRANSFER_ENCODING_LC);
 
-        if (null != transferEncoding) {
-            transferEncoding = transferEncoding.trim().toLowerCase();
-            if (transferEncoding.equals(
-                   HTTPConstants.HEADER_TRANSFER_ENCODING_CHUNKED)) {
-                inp = new ChunkedInputStream(inp);
+        InputStream body = getKeepAliveBody(socketHolder, inp, headers);
+        if (body != null) {
+            inp = new SocketInputStream(body, getSocketPool(),
+                                        socketHolder.getPoolEntry());
+        } else {
+            if (null != transferEncoding) {
+                transferEncoding = transferEncoding.trim().toLowerCase();
+                if (transferEncoding.equals(
+                       HTTPConstants.HEADER_TRANSFER_ENCODING_CHUNKED)) {
+                    inp = new ChunkedInputStream(inp);
+                }
+            }
+            if (socketHolder.getSocket() != null) {
+                inp = new SocketInputStream(inp, socketHolder.getSocket());
             }
         }
 
-        outMsg = new Message( new SocketInputStream(inp, socketHolder.getSocket()), false,
+        outMsg = new Message( inp, false,
                               contentType, contentLocation);
         // Transfer HTTP headers of HTTP message to MIME headers of SOAP message
         MimeHeaders mimeHeaders = outMsg.getMimeHeaders();
@@ -798,6 +990,46 @@ public class HTTPSender extends BasicHandler {
         return inp;
     }
 
+    /**
+     * Delimits the response body if the connection can be kept alive after
+     * the response, i.e. the response is framed by chunking or by
+     * Content-Length and the server did not ask to close the connection.
+     *
+     * @return the delimited body, or <code>null</code> if the connection has
+     *         to be closed after the response
+     */
+    private InputStream getKeepAliveBody(SocketHolder socketHolder,
+                                         InputStream inp,
+                                         Hashtable headers) {
+        if (socketHolder.getPoolEntry() == null || getSocketPool() == null) {
+            return null;
+        }
+        String connection = (String) headers.get(HEADER_CONNECTION_LC);
+        if (connection != null && connection.trim().equalsIgnoreCase(
+                HTTPConstants.HEADER_CONNECTION_CLOSE)) {
+            return null;
+        }
+        String transferEncoding =
+            (String) headers.get(HEADER_TRANSFER_ENCODING_LC);
+        if (transferEncoding != null) {
+            if (transferEncoding.trim().equalsIgnoreCase(
+                    HTTPConstants.HEADER_TRANSFER_ENCODING_CHUNKED)) {
+                return new ChunkedInputStream(inp);
+            }
+            return null;
+        }
+        String contentLength = (String) headers.get(HEADER_CONTENT_LENGTH_LC);
+        if (contentLength != null) {
+            try {
+                return new ContentLengthInputStream(inp,
+                        Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                // fall through and read until the server closes
+            }
+        }
+        return null;
+    }
+
     /**
      * little helper function for cookies. fills up the message context with
      * a string or an array of strings (if there are more than one Set-Cookie)
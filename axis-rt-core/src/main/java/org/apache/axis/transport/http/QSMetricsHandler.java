@@ -0,0 +1,75 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.transport.http;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.MessageContext;
+import org.apache.axis.monitoring.MetricsRegistry;
+import org.apache.axis.utils.Messages;
+
+/**
+ * The QSMetricsHandler class is a handler which writes the request counts
+ * and timings recorded by the {@link MetricsRegistry}, in the text format
+ * of Prometheus, when the query string "metrics" is encountered in an AXIS
+ * servlet invocation.  Like the "list" query string, it is only enabled
+ * together with <code>axis.enableListQuery</code>.
+ */
+
+public class QSMetricsHandler extends AbstractQueryStringHandler {
+     /**
+      * Performs the action associated with this particular query string
+      * handler.
+      *
+      * @param msgContext a MessageContext object containing message context
+      *        information for this query string handler.
+      * @throws AxisFault if an error occurs.
+      */
+
+     public void invoke (MessageContext msgContext) throws AxisFault {
+          boolean enableList = ((Boolean) msgContext.getProperty
+               (HTTPConstants.PLUGIN_ENABLE_LIST)).booleanValue();
+          PrintWriter writer = (PrintWriter) msgContext.getProperty
+               (HTTPConstants.PLUGIN_WRITER);
+          HttpServletResponse response = (HttpServletResponse)
+               msgContext.getProperty (HTTPConstants.MC_HTTP_SERVLETRESPONSE);
+
+          if (enableList) {
+               response.setContentType ("text/plain; version=0.0.4");
+               try {
+                    MetricsRegistry.writeText (writer);
+               } catch (IOException e) {
+                    throw AxisFault.makeFault (e);
+               }
+          }
+
+          else {
+               response.setStatus (HttpURLConnection.HTTP_FORBIDDEN);
+               response.setContentType ("text/html");
+
+               writer.println ("<h2>" + Messages.getMessage ("error00") +
+                    "</h2>");
+               writer.println ("<p><i>?metrics</i> " +
+                    Messages.getMessage ("disabled00") + "</p>");
+          }
+     }
+}
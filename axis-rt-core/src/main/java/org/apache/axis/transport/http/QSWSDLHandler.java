@@ -16,11 +16,14 @@
 
 package org.apache.axis.transport.http;
 
+import org.apache.axis.AxisEngine;
 import org.apache.axis.AxisFault;
 import org.apache.axis.Constants;
 import org.apache.axis.MessageContext;
 import org.apache.axis.ConfigurationException;
 import org.apache.axis.description.ServiceDesc;
+import org.apache.axis.handlers.soap.SOAPService;
+import org.apache.axis.providers.BasicProvider;
 import org.apache.axis.server.AxisServer;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.XMLUtils;
@@ -29,12 +32,18 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Element;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.WeakHashMap;
 
 /**
  * The QSWSDLHandler class is a handler which provides an AXIS service's WSDL
@@ -47,6 +56,16 @@ import java.util.HashSet;
  * @author Ian P. Springer, Sal Campana
  */
 public class QSWSDLHandler extends AbstractQueryStringHandler {
+    /** The maximum number of WSDL documents kept per service */
+    private static final int MAX_CACHED_WSDL = 16;
+
+    /**
+     * The serialized WSDL per service, keyed by configuration generation and
+     * request URL, as {@link CachedWSDL} objects.  Entries go away with the
+     * service when it is redeployed.
+     */
+    private static final Map wsdlCache = new WeakHashMap();
+
     /**
      * Performs the action associated with this particular query string handler.
      *
@@ -64,21 +83,48 @@ public class QSWSDLHandler extends AbstractQueryStringHandler {
                 (HTTPConstants.PLUGIN_WRITER);
         HttpServletResponse response = (HttpServletResponse)
                 msgContext.getProperty(HTTPConstants.MC_HTTP_SERVLETRESPONSE);
+        boolean useCache =
+                msgContext.isPropertyTrue(AxisEngine.PROP_WSDL_CACHE, true);
         try {
+            // The WSDL always goes through the handler chains, so that a
+            // stopped server or a client that is refused doesn't get it
+            // from the cache.  The provider caches the emitted document and
+            // hands it out without a copy, since it is only read here.
+            if (useCache) {
+                msgContext.setProperty(BasicProvider.PROP_SHARED_WSDL,
+                                       Boolean.TRUE);
+            }
             engine.generateWSDL(msgContext);
             Document wsdlDoc = (Document) msgContext.getProperty("WSDL");
             if (wsdlDoc != null) {
-                try {
-                    updateSoapAddressLocationURLs(wsdlDoc, msgContext);
-                } catch (RuntimeException re) {
-                    log.warn(
-                            "Failed to update soap:address location URL(s) in WSDL.",
-                            re);
+                SOAPService service = msgContext.getService();
+                // the handlers of the service may change the WSDL each time
+                if (useCache && service != null
+                        && service.getRequestHandler() == null
+                        && service.getResponseHandler() == null) {
+                    String cacheKey = engine.getConfigGeneration() + " "
+                            + msgContext.getStrProp(MessageContext.TRANS_URL);
+                    CachedWSDL cached = getCachedWSDL(service, cacheKey);
+                    if (cached == null) {
+                        try {
+                            wsdlDoc = BasicProvider.copyWSDL(wsdlDoc);
+                        } catch (Exception e) {
+                            throw AxisFault.makeFault(e);
+                        }
+                        updateLocations(wsdlDoc, msgContext);
+                        StringWriter sw = new StringWriter();
+                        reportWSDL(wsdlDoc, new PrintWriter(sw));
+                        cached = new CachedWSDL(sw.toString());
+                        putCachedWSDL(service, cacheKey, cached);
+                    }
+                    reportCachedWSDL(cached, msgContext, response, writer);
+                } else {
+                    updateLocations(wsdlDoc, msgContext);
+                    response.setContentType(
+                            "text/xml; charset=" +
+                            XMLUtils.getEncoding().toLowerCase());
+                    reportWSDL(wsdlDoc, writer);
                 }
-                response.setContentType(
-                        "text/xml; charset=" +
-                        XMLUtils.getEncoding().toLowerCase());
-                reportWSDL(wsdlDoc, writer);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("processWsdlRequest: failed to create WSDL");
@@ -102,6 +148,69 @@ public class QSWSDLHandler extends AbstractQueryStringHandler {
         }
     }
 
+    private void updateLocations(Document wsdlDoc, MessageContext msgContext)
+            throws AxisFault {
+        try {
+            updateSoapAddressLocationURLs(wsdlDoc, msgContext);
+        } catch (RuntimeException re) {
+            log.warn(
+                    "Failed to update soap:address location URL(s) in WSDL.",
+                    re);
+        }
+    }
+
+    /**
+     * Look up the WSDL cached for the service.
+     *
+     * @return the cached WSDL, or <code>null</code>
+     */
+    private static CachedWSDL getCachedWSDL(SOAPService service,
+                                            String cacheKey) {
+        synchronized (wsdlCache) {
+            Map documents = (Map) wsdlCache.get(service);
+            return (documents == null) ? null
+                    : (CachedWSDL) documents.get(cacheKey);
+        }
+    }
+
+    private static void putCachedWSDL(SOAPService service, String cacheKey,
+                                      CachedWSDL cached) {
+        synchronized (wsdlCache) {
+            Map documents = (Map) wsdlCache.get(service);
+            // the request URL comes from the client, so don't let the
+            // number of entries grow without bounds
+            if (documents == null || documents.size() >= MAX_CACHED_WSDL) {
+                documents = new HashMap();
+                wsdlCache.put(service, documents);
+            }
+            documents.put(cacheKey, cached);
+        }
+    }
+
+    /**
+     * Send serialized WSDL, or only a 304 status if the client already has
+     * the current version.
+     */
+    private void reportCachedWSDL(CachedWSDL cached, MessageContext msgContext,
+                                  HttpServletResponse response,
+                                  PrintWriter writer) {
+        HttpServletRequest request = (HttpServletRequest)
+                msgContext.getProperty(HTTPConstants.MC_HTTP_SERVLETREQUEST);
+        response.setHeader("ETag", cached.etag);
+        if (request != null) {
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*")
+                    || ifNoneMatch.indexOf(cached.etag) >= 0)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        response.setContentType(
+                "text/xml; charset=" +
+                XMLUtils.getEncoding().toLowerCase());
+        writer.write(cached.wsdl);
+    }
+
     /**
      * Report WSDL.
      *
@@ -248,4 +357,37 @@ public class QSWSDLHandler extends AbstractQueryStringHandler {
         }
         return locationUrl;
     }
+
+    /**
+     * Serialized WSDL together with its entity tag.
+     */
+    private static class CachedWSDL {
+        final String wsdl;
+        final String etag;
+
+        CachedWSDL(String wsdl) {
+            this.wsdl = wsdl;
+            this.etag = computeETag(wsdl);
+        }
+
+        private static String computeETag(String wsdl) {
+            StringBuffer etag = new StringBuffer("\"");
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                byte[] digest = md.digest(wsdl.getBytes("UTF-8"));
+                for (int i = 0; i < digest.length; i++) {
+                    int b = digest[i] & 0xFF;
+                    if (b < 0x10) {
+                        etag.append('0');
+                    }
+                    etag.append(Integer.toHexString(b));
+                }
+            } catch (Exception e) {
+                // fall back to a weaker tag
+                etag.append(Integer.toHexString(wsdl.hashCode()))
+                    .append(Integer.toHexString(wsdl.length()));
+            }
+            return etag.append('"').toString();
+        }
+    }
 }
@@ -36,4 +36,26 @@ public class SocketHolder {
     public void setSocket(Socket value) {
         this.value = value;
     }
+
+    /** The pool entry, if the socket may be kept alive after the response */
+    private SocketPool.Entry poolEntry = null;
+
+    public SocketPool.Entry getPoolEntry() {
+        return poolEntry;
+    }
+
+    public void setPoolEntry(SocketPool.Entry poolEntry) {
+        this.poolEntry = poolEntry;
+    }
+
+    /** The pipeline the request is sent over, while it is being written */
+    private HTTPPipeline pipeline = null;
+
+    public HTTPPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(HTTPPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
 }
@@ -16,6 +16,8 @@
 package org.apache.axis.transport.http;
 
 
+import org.apache.axis.client.async.CallFuture;
+
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -39,19 +41,59 @@ public class SocketInputStream extends java.io.FilterInputStream {
     }
 
 
+    SocketPool pool= null;
+    SocketPool.Entry poolEntry= null;
+    // the asynchronous call the socket may be registered with
+    CallFuture future= null;
+
     public SocketInputStream(InputStream is, java.net.Socket socket) {
         super(is);
         this.socket= socket;
     }
 
+    /**
+     * Creates a stream that hands its socket back to <code>pool</code>
+     * instead of closing it.  <code>is</code> must end with the response
+     * body, and closing it must consume the remainder of the body without
+     * closing the socket.
+     */
+    public SocketInputStream(InputStream is, SocketPool pool, SocketPool.Entry poolEntry) {
+        super(is);
+        this.socket= poolEntry.getSocket();
+        this.pool= pool;
+        this.poolEntry= poolEntry;
+        this.future= CallFuture.getCurrent();
+    }
+
     public void close() throws IOException {
        synchronized(this){
        if(closed) return;
        closed= true;
        }
+       if(pool != null){
+           try{
+               in.close();
+           } catch(IOException e){
+               socket.close();
+               release();
+               throw e;
+           } finally {
+               in= null;
+           }
+           release();
+           socket= null;
+           return;
+       }
        in.close();
        in= null;
        socket.close();
        socket= null;
     }
+
+    private void release() {
+        if(future != null){
+            future.releaseSocket(socket);
+        }
+        pool.release(poolEntry);
+    }
 }
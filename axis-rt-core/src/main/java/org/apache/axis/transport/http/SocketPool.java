@@ -0,0 +1,678 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.http;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.components.net.DefaultSocketFactory;
+import org.apache.axis.utils.Messages;
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * A pool of idle keep-alive sockets used by {@link HTTPSender}.
+ * <p>
+ * Sockets are grouped by protocol, host, port and proxy.  A socket is handed out
+ * by {@link #acquire} to a single caller at a time and goes back to the pool
+ * through {@link #release} once the response has been read completely.
+ * Sockets that have been idle for longer than the idle timeout are closed
+ * lazily, and a socket that has been idle for more than a moment is checked
+ * for a close by the peer before it is reused.  A socket that is released
+ * while the idle sockets of its host (or of the pool as a whole) are at
+ * their limit is closed.
+ * <p>
+ * The number of open sockets, in use or idle, can be limited per host and
+ * in total as well.  When a limit is reached {@link #acquire} waits for a
+ * socket to be released or closed.  A socket opened for a call that
+ * {@link #acquire} did not find an idle socket for must be passed to
+ * {@link #register}, or {@link #cancel} called if it could not be opened.
+ * Sockets in use that are closed rather than released are noticed when
+ * the limits are checked, and so are sockets that have been in use for
+ * longer than the idle timeout: their response stream was most likely
+ * abandoned without being closed, and they are no longer counted (but left
+ * open, in case the call is merely slow).  Without these limits, the
+ * default, sockets in use are not tracked.
+ */
+public class SocketPool {
+
+    protected static Log log = LogFactory.getLog(SocketPool.class.getName());
+
+    /** the key for the Axis Property that enables the keep-alive pool */
+    public static final String KEEPALIVE_ENABLED_KEY =
+        "axis.http.client.keepalive";
+
+    /** the key for the Axis Property that sets the maximum number of idle
+        sockets kept per protocol, host and port */
+    public static final String MAXIMUM_IDLE_PER_HOST_KEY =
+        "axis.http.client.keepalive.maximum.idle.per.host";
+
+    /** the key for the Axis Property that sets the maximum number of idle
+        sockets kept in total */
+    public static final String MAXIMUM_IDLE_TOTAL_KEY =
+        "axis.http.client.keepalive.maximum.idle.total";
+
+    /** the key for the Axis Property that sets the time (in milliseconds)
+        after which an idle socket is closed */
+    public static final String IDLE_TIMEOUT_KEY =
+        "axis.http.client.keepalive.idle.timeout";
+
+    /** the key for the Axis Property that sets the maximum number of open
+        sockets per protocol, host and port; 0 for no limit */
+    public static final String MAXIMUM_PER_HOST_KEY =
+        "axis.http.client.keepalive.maximum.per.host";
+
+    /** the key for the Axis Property that sets the maximum number of open
+        sockets in total; 0 for no limit */
+    public static final String MAXIMUM_TOTAL_KEY =
+        "axis.http.client.keepalive.maximum.total";
+
+    /** the key for the Axis Property that sets the time (in milliseconds)
+        a socket may be idle before it is checked for a close by the peer */
+    public static final String STALE_CHECK_THRESHOLD_KEY =
+        "axis.http.client.keepalive.stale.check.threshold";
+
+    /** the longest wait for a socket before the limits are checked again */
+    private static final long MAX_WAIT_SLICE = 1000;
+
+    private static SocketPool defaultPool;
+
+    private final Map idle = new HashMap();
+    private final int maxIdlePerHost;
+    private final int maxIdleTotal;
+    private final long idleTimeout;
+    private int idleCount = 0;
+
+    /** key -> Lease of the sockets in use; only kept with open limits */
+    private final Map leased = new HashMap();
+    private int maxPerHost = 0;
+    private int maxTotal = 0;
+    private int leasedCount = 0;
+    private long staleCheckThreshold = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long stale = 0;
+    private long evictions = 0;
+
+    /**
+     * Returns the pool shared by all <code>HTTPSender</code> instances, or
+     * <code>null</code> if keep-alive has been disabled through the
+     * <code>axis.http.client.keepalive</code> property.
+     */
+    public static synchronized SocketPool getDefaultPool() {
+        if (defaultPool == null) {
+            if (!"true".equalsIgnoreCase(
+                    AxisProperties.getProperty(KEEPALIVE_ENABLED_KEY, "true"))) {
+                return null;
+            }
+            defaultPool = new SocketPool(
+                    getIntegerProperty(MAXIMUM_IDLE_PER_HOST_KEY, 8),
+                    getIntegerProperty(MAXIMUM_IDLE_TOTAL_KEY, 64),
+                    getIntegerProperty(IDLE_TIMEOUT_KEY, 15000));
+            defaultPool.setLimits(
+                    getIntegerProperty(MAXIMUM_PER_HOST_KEY, 0),
+                    getIntegerProperty(MAXIMUM_TOTAL_KEY, 0));
+            defaultPool.setStaleCheckThreshold(
+                    getIntegerProperty(STALE_CHECK_THRESHOLD_KEY, 500));
+        }
+        return defaultPool;
+    }
+
+    private static int getIntegerProperty(String property, int dephault) {
+        String value = AxisProperties.getProperty(property);
+        if (value == null) {
+            return dephault;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(property + ": " + e);
+            return dephault;
+        }
+    }
+
+    public SocketPool(int maxIdlePerHost, int maxIdleTotal, long idleTimeout) {
+        this.maxIdlePerHost = maxIdlePerHost;
+        this.maxIdleTotal = maxIdleTotal;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Limit the number of open sockets.  Must be called before the pool is
+     * used.
+     *
+     * @param maxPerHost the maximum per protocol, host and port; 0 for no
+     *                   limit
+     * @param maxTotal   the maximum in total; 0 for no limit
+     */
+    public synchronized void setLimits(int maxPerHost, int maxTotal) {
+        this.maxPerHost = Math.max(maxPerHost, 0);
+        this.maxTotal = Math.max(maxTotal, 0);
+    }
+
+    /**
+     * Set the time in milliseconds a socket may be idle before it is
+     * checked for a close by the peer when it is reused.  The check costs
+     * a short blocking read, which is not worth it for a socket that was
+     * released a moment ago.
+     */
+    public synchronized void setStaleCheckThreshold(long staleCheckThreshold) {
+        this.staleCheckThreshold = staleCheckThreshold;
+    }
+
+    /**
+     * Builds the key under which sockets for the given endpoint are pooled.
+     * The proxy the endpoint is currently reached through is part of the
+     * key, so that a socket is not reused after the proxy settings change.
+     */
+    public static String getKey(String protocol, String host, int port) {
+        return getKey(protocol, host, port,
+                      DefaultSocketFactory.getProxy(protocol, host));
+    }
+
+    /**
+     * Builds the key under which sockets for the given endpoint are pooled
+     * when they are connected through the given proxy.
+     *
+     * @param proxy the proxy as <code>host:port</code>, or <code>null</code>
+     *              for a direct connection
+     */
+    public static String getKey(String protocol, String host, int port,
+                                String proxy) {
+        String key = protocol.toLowerCase() + "://" + host.toLowerCase()
+                + ":" + port;
+        return (proxy == null) ? key : key + " via " + proxy;
+    }
+
+    /**
+     * Takes an idle socket for the given key out of the pool.  If there is
+     * none and the limits on open sockets are reached, waits until a socket
+     * is released or closed.
+     *
+     * @param maxWait the time to wait in milliseconds; 0 to wait as long as
+     *                it takes
+     * @return a live entry, or <code>null</code> if a new socket has to be
+     *         created, which must then be passed to {@link #register}
+     * @throws IOException if no socket became available in time
+     */
+    public Entry acquire(String key, long maxWait) throws IOException {
+        long now = System.currentTimeMillis();
+        long deadline = (maxWait > 0) ? now + maxWait : 0;
+        while (true) {
+            Entry entry = null;
+            boolean reserved = false;
+            LinkedList expired;
+            long threshold;
+            synchronized (this) {
+                expired = evictExpired(now);
+                if (expired == null && maxTotal > 0) {
+                    // for idle sockets closed to make room
+                    expired = new LinkedList();
+                }
+                while (true) {
+                    LinkedList list = (LinkedList) idle.get(key);
+                    if (list != null && !list.isEmpty()) {
+                        // most recently used first; it is the least likely
+                        // to have been closed by the server
+                        entry = (Entry) list.removeLast();
+                        idleCount--;
+                        if (list.isEmpty()) {
+                            idle.remove(key);
+                        }
+                        lease(entry);
+                        break;
+                    }
+                    if (reserve(key, expired)) {
+                        reserved = true;
+                        misses++;
+                        break;
+                    }
+                    long wait = MAX_WAIT_SLICE;
+                    if (deadline > 0) {
+                        long left = deadline - System.currentTimeMillis();
+                        if (left <= 0) {
+                            break;
+                        }
+                        wait = Math.min(wait, left);
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        closeAll(expired);
+                        throw new InterruptedIOException();
+                    }
+                }
+                threshold = staleCheckThreshold;
+            }
+            closeAll(expired);
+            if (entry == null) {
+                if (!reserved) {
+                    throw new IOException(Messages.getMessage(
+                            "socketPoolExhausted00", key));
+                }
+                return null;
+            }
+            if (now - entry.lastUsed < threshold
+                    ? !isClosed(entry.getSocket())
+                    : !isStale(entry.getSocket())) {
+                synchronized (this) {
+                    hits++;
+                }
+                return entry;
+            }
+            synchronized (this) {
+                stale++;
+                endLease(entry);
+            }
+            close(entry);
+            now = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Takes an idle socket for the given key out of the pool, waiting as
+     * long as it takes if the limits on open sockets are reached.
+     *
+     * @see #acquire(String, long)
+     */
+    public Entry acquire(String key) throws IOException {
+        return acquire(key, 0);
+    }
+
+    /**
+     * Hand out the socket created after {@link #acquire} returned
+     * <code>null</code>.
+     */
+    public synchronized void register(Entry entry) {
+        Lease lease = (Lease) leased.get(entry.getKey());
+        if (lease != null && lease.reserved > 0) {
+            lease.reserved--;
+            entry.leasedAt = System.currentTimeMillis();
+            lease.entries.add(entry);
+        }
+    }
+
+    /**
+     * Give up the socket {@link #acquire} returned <code>null</code> for,
+     * because it could not be created.
+     */
+    public synchronized void cancel(String key) {
+        Lease lease = (Lease) leased.get(key);
+        if (lease != null && lease.reserved > 0) {
+            lease.reserved--;
+            leasedCount--;
+            if (lease.isEmpty()) {
+                leased.remove(key);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Reserve a socket to be opened for the key, if the limits allow it.
+     * An idle socket of another host is taken out of the pool to make room
+     * under the total limit; it is added to <code>expired</code>, to be
+     * closed once the lock has been released.
+     *
+     * @return whether a socket may be opened
+     */
+    private boolean reserve(String key, LinkedList expired) {
+        if (maxPerHost == 0 && maxTotal == 0) {
+            return true;
+        }
+        Lease lease = (Lease) leased.get(key);
+        long now = System.currentTimeMillis();
+        if (maxPerHost > 0 && lease != null) {
+            if (lease.size() >= maxPerHost) {
+                purgeAbandoned(lease, now);
+            }
+            if (lease.size() >= maxPerHost) {
+                return false;
+            }
+        }
+        if (maxTotal > 0 && leasedCount + idleCount >= maxTotal) {
+            for (Iterator it = leased.values().iterator(); it.hasNext();) {
+                Lease other = (Lease) it.next();
+                purgeAbandoned(other, now);
+                if (other.isEmpty()) {
+                    it.remove();
+                }
+            }
+            if (leasedCount + idleCount >= maxTotal) {
+                if (idleCount == 0) {
+                    return false;
+                }
+                expired.add(evictOldest());
+            }
+        }
+        lease = (Lease) leased.get(key);
+        if (lease == null) {
+            lease = new Lease();
+            leased.put(key, lease);
+        }
+        lease.reserved++;
+        leasedCount++;
+        return true;
+    }
+
+    /**
+     * Count a socket taken out of the idle sockets as in use.
+     */
+    private void lease(Entry entry) {
+        if (maxPerHost == 0 && maxTotal == 0) {
+            return;
+        }
+        Lease lease = (Lease) leased.get(entry.getKey());
+        if (lease == null) {
+            lease = new Lease();
+            leased.put(entry.getKey(), lease);
+        }
+        entry.leasedAt = System.currentTimeMillis();
+        lease.entries.add(entry);
+        leasedCount++;
+    }
+
+    /**
+     * Stop counting a socket as in use.
+     */
+    private void endLease(Entry entry) {
+        Lease lease = (Lease) leased.get(entry.getKey());
+        if (lease != null && lease.entries.remove(entry)) {
+            leasedCount--;
+            if (lease.isEmpty()) {
+                leased.remove(entry.getKey());
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stop counting the sockets that were closed instead of released, and
+     * those that have been in use for longer than the idle timeout.
+     */
+    private void purgeAbandoned(Lease lease, long now) {
+        for (Iterator it = lease.entries.iterator(); it.hasNext();) {
+            Entry entry = (Entry) it.next();
+            if (entry.getSocket().isClosed()) {
+                it.remove();
+                leasedCount--;
+            } else if (now - entry.leasedAt > idleTimeout) {
+                it.remove();
+                leasedCount--;
+                if (log.isDebugEnabled()) {
+                    log.debug(Messages.getMessage("socketLeaseExpired00",
+                            entry.getKey(), String.valueOf(now - entry.leasedAt)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the idle socket that has been idle longest out of the pool.
+     */
+    private Entry evictOldest() {
+        LinkedList oldest = null;
+        for (Iterator it = idle.values().iterator(); it.hasNext();) {
+            LinkedList list = (LinkedList) it.next();
+            if (oldest == null || ((Entry) list.getFirst()).lastUsed
+                    < ((Entry) oldest.getFirst()).lastUsed) {
+                oldest = list;
+            }
+        }
+        Entry entry = (Entry) oldest.removeFirst();
+        if (oldest.isEmpty()) {
+            idle.remove(entry.getKey());
+        }
+        idleCount--;
+        evictions++;
+        return entry;
+    }
+
+    /**
+     * Returns a socket to the pool after its response has been consumed.
+     */
+    public void release(Entry entry) {
+        Socket socket = entry.getSocket();
+        if (socket.isClosed()) {
+            synchronized (this) {
+                endLease(entry);
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        LinkedList expired;
+        boolean pooled = false;
+        synchronized (this) {
+            endLease(entry);
+            expired = evictExpired(now);
+            LinkedList list = (LinkedList) idle.get(entry.getKey());
+            int size = (list == null) ? 0 : list.size();
+            if (size < maxIdlePerHost && idleCount < maxIdleTotal) {
+                if (list == null) {
+                    list = new LinkedList();
+                    idle.put(entry.getKey(), list);
+                }
+                entry.lastUsed = now;
+                list.addLast(entry);
+                idleCount++;
+                pooled = true;
+            } else {
+                evictions++;
+            }
+        }
+        closeAll(expired);
+        if (!pooled) {
+            close(entry);
+        }
+    }
+
+    /**
+     * Closes all idle sockets.
+     */
+    public void clear() {
+        LinkedList closing = new LinkedList();
+        synchronized (this) {
+            for (Iterator it = idle.values().iterator(); it.hasNext();) {
+                closing.addAll((LinkedList) it.next());
+            }
+            idle.clear();
+            idleCount = 0;
+        }
+        closeAll(closing);
+    }
+
+    /**
+     * Takes the entries that have been idle for too long out of the pool.
+     * They are closed by the caller once it has released the lock, so that
+     * no thread blocks in a close while holding it.
+     *
+     * @return the expired entries, or <code>null</code> if there are none
+     */
+    private LinkedList evictExpired(long now) {
+        if (idleCount == 0) {
+            return null;
+        }
+        LinkedList expired = null;
+        for (Iterator it = idle.values().iterator(); it.hasNext();) {
+            LinkedList list = (LinkedList) it.next();
+            // entries are appended in release order, so the oldest come first
+            while (!list.isEmpty()
+                    && now - ((Entry) list.getFirst()).lastUsed > idleTimeout) {
+                if (expired == null) {
+                    expired = new LinkedList();
+                }
+                expired.add(list.removeFirst());
+                idleCount--;
+                evictions++;
+            }
+            if (list.isEmpty()) {
+                it.remove();
+            }
+        }
+        return expired;
+    }
+
+    private static void closeAll(LinkedList entries) {
+        if (entries != null) {
+            for (Iterator it = entries.iterator(); it.hasNext();) {
+                close((Entry) it.next());
+            }
+        }
+    }
+
+    private static boolean isClosed(Socket socket) {
+        return socket.isClosed() || socket.isInputShutdown()
+                || socket.isOutputShutdown();
+    }
+
+    /**
+     * Checks whether the peer has closed the connection (or sent unexpected
+     * data) while the socket was idle.
+     */
+    private static boolean isStale(Socket socket) {
+        if (isClosed(socket)) {
+            return true;
+        }
+        try {
+            InputStream in = socket.getInputStream();
+            if (in.available() > 0) {
+                return true;
+            }
+            int timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                // either end of stream or garbage; both mean we can't use it
+                in.read();
+                return true;
+            } catch (InterruptedIOException e) {
+                // nothing to read, the connection is still alive
+                return false;
+            } finally {
+                socket.setSoTimeout(timeout);
+            }
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void close(Entry entry) {
+        try {
+            entry.getSocket().close();
+        } catch (IOException e) {
+            log.debug(e);
+        }
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * The number of sockets in use, or about to be opened.  Only counted
+     * when the number of open sockets is limited.
+     */
+    public synchronized int getLeasedCount() {
+        return leasedCount;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getStaleCount() {
+        return stale;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * The sockets of one key that are in use, and the number of sockets
+     * about to be opened for it.
+     */
+    private static class Lease {
+        final LinkedList entries = new LinkedList();
+        int reserved = 0;
+
+        int size() {
+            return entries.size() + reserved;
+        }
+
+        boolean isEmpty() {
+            return reserved == 0 && entries.isEmpty();
+        }
+    }
+
+    /**
+     * A pooled socket together with the information that the
+     * {@link org.apache.axis.components.net.SocketFactory} returned when it
+     * created the socket, so that a reused socket is addressed the same way
+     * as a new one.
+     */
+    public static class Entry {
+        private final String key;
+        private final Socket socket;
+        private final boolean useFullURL;
+        private final String factoryHeaders;
+        long lastUsed;
+        long leasedAt;
+
+        public Entry(String key, Socket socket, boolean useFullURL,
+                     String factoryHeaders) {
+            this.key = key;
+            this.socket = socket;
+            this.useFullURL = useFullURL;
+            this.factoryHeaders = factoryHeaders;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Socket getSocket() {
+            return socket;
+        }
+
+        /**
+         * Whether requests on this socket must use the full URL
+         * (i.e. the socket is connected to a proxy).
+         */
+        public boolean isUseFullURL() {
+            return useFullURL;
+        }
+
+        /**
+         * The headers (e.g. proxy credentials) the socket factory added
+         * when the socket was created.
+         */
+        public String getFactoryHeaders() {
+            return factoryHeaders;
+        }
+    }
+}
@@ -21,7 +21,6 @@ import org.apache.commons.logging.Log;
 import java.beans.IndexedPropertyDescriptor;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Array;
-import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
 
 
@@ -50,6 +49,8 @@ public class BeanPropertyDescriptor
 
     protected static final Object[] noArgs = new Object[] {};
 
+    private PropertyAccessor accessor = null;
+
     /**
      * Constructor (takes a PropertyDescriptor)
      *
@@ -122,12 +123,7 @@ public class BeanPropertyDescriptor
      */
     public Object get(Object obj) 
         throws InvocationTargetException, IllegalAccessException {
-        Method readMethod = myPD.getReadMethod();
-        if (readMethod != null) {
-            return readMethod.invoke(obj, noArgs);
-        } else {
-            throw new IllegalAccessException(Messages.getMessage("badGetter00"));
-        }
+        return getAccessor().get(obj);
     }
 
     /**
@@ -137,14 +133,29 @@ public class BeanPropertyDescriptor
      */
     public void set(Object obj, Object newValue) 
         throws InvocationTargetException, IllegalAccessException {
-        Method writeMethod = myPD.getWriteMethod();
-        if (writeMethod != null) {
-            writeMethod.invoke(obj, new Object[] {newValue});
-        } else {
-            throw new IllegalAccessException(Messages.getMessage("badSetter00"));
-        }
+        getAccessor().set(obj, newValue);
     }    
 
+    /**
+     * Get the accessor used to read and write the property, creating it on
+     * first use.
+     */
+    protected PropertyAccessor getAccessor() {
+        PropertyAccessor result = accessor;
+        if (result == null) {
+            accessor = result = createAccessor();
+        }
+        return result;
+    }
+
+    /**
+     * Create the accessor for this property.
+     */
+    protected PropertyAccessor createAccessor() {
+        return PropertyAccessorFactory.getFactory().createAccessor(
+                myPD.getReadMethod(), myPD.getWriteMethod());
+    }
+
     /** 
      * Get an indexed property
      * @param obj is the object
@@ -15,21 +15,18 @@
  */
 package org.apache.axis.utils;
 
-import org.apache.axis.AxisFault;
 import org.apache.axis.Constants;
 import org.apache.axis.InternalException;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.description.FieldDesc;
 import org.apache.axis.description.TypeDesc;
+import org.apache.axis.utils.cache.JavaClass;
 import org.apache.commons.logging.Log;
 
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Vector;
 
@@ -57,10 +54,7 @@ public class BeanUtils {
     public static BeanPropertyDescriptor[] getPd(Class javaType, TypeDesc typeDesc) {
         BeanPropertyDescriptor[] pd;
         try {
-            final Class secJavaType = javaType;
-
-            // Need doPrivileged access to do introspection.
-            PropertyDescriptor[] rawPd = getPropertyDescriptors(secJavaType);
+            PropertyDescriptor[] rawPd = getPropertyDescriptors(javaType);
             pd = processPropertyDescriptors(rawPd,javaType,typeDesc);
         } catch (Exception e) {
             // this should never happen
@@ -69,36 +63,8 @@ public class BeanUtils {
         return pd;
     }
 
-    private static PropertyDescriptor[] getPropertyDescriptors(final Class secJavaType) {
-        return (PropertyDescriptor[])AccessController.doPrivileged(
-                new PrivilegedAction() {
-                    public Object run() {
-                        PropertyDescriptor[] result = null;
-// START FIX http://nagoya.apache.org/bugzilla/showattachment.cgi?attach_id=4937
-                        try {
-                            // privileged code goes here
-                            if (AxisFault.class.isAssignableFrom(secJavaType)) {
-                                // Don't include AxisFault data
-                                result = Introspector.
-                                        getBeanInfo(secJavaType,AxisFault.class).
-                                        getPropertyDescriptors();
-                            } else if (Throwable.class != secJavaType && Throwable.class.isAssignableFrom(secJavaType)) {
-                                // Don't include Throwable data
-                                result = Introspector.
-                                        getBeanInfo(secJavaType,Throwable.class).
-                                        getPropertyDescriptors();
-                            } else {
-                                // privileged code goes here
-                                result = Introspector.
-                                        getBeanInfo(secJavaType).
-                                        getPropertyDescriptors();
-                            }
-// END FIX http://nagoya.apache.org/bugzilla/showattachment.cgi?attach_id=4937
-                        } catch (java.beans.IntrospectionException Iie) {
-                        }
-                        return result;
-                    }
-                });
+    private static PropertyDescriptor[] getPropertyDescriptors(Class javaType) {
+        return JavaClass.find(javaType).getPropertyDescriptors();
     }
 
     /**
@@ -173,7 +139,7 @@ public class BeanUtils {
             }
 
             // Now look for public fields
-            Field fields[] = cls.getFields();
+            Field fields[] = JavaClass.find(cls).getFields();
             if (fields != null && fields.length > 0) {
                 // See if the field is in the list of properties
                 // add it if not.
@@ -44,6 +44,7 @@ public class ByteArray extends OutputStream {
     protected int max_size = 0;
     protected File bs_handle = null;
     protected OutputStream bs_stream = null;
+    private TempFileJanitor.Reservation bs_reservation = null;
     protected long count = 0;
     protected boolean enableBackingStore = DEFAULT_ENABLE_BACKING_STORE;
 
@@ -166,6 +167,7 @@ public class ByteArray extends OutputStream {
         if (cache != null) {
             cache.write(bytes, start, length);
         } else if (bs_stream != null) {
+            bs_reservation.use(length);
             bs_stream.write(bytes, start, length);
         } else {
             throw new IOException("ByteArray does not have a backing store!");
@@ -186,6 +188,7 @@ public class ByteArray extends OutputStream {
         if (cache != null) {
             cache.write(b);
         } else if (bs_stream != null) {
+            bs_reservation.use(1);
             bs_stream.write(b);
         } else {
             throw new IOException("ByteArray does not have a backing store!");
@@ -293,11 +296,17 @@ public class ByteArray extends OutputStream {
      * @throws IOException
      */
     protected void switchToBackingStore() throws IOException {
-        bs_handle = File.createTempFile("Axis", ".msg");
-        bs_handle.createNewFile();
+        bs_handle = TempFileJanitor.createTempFile("Axis", ".msg", null);
         bs_handle.deleteOnExit();
+        try {
+            bs_reservation =
+                    new TempFileJanitor.Reservation(bs_handle, cache.size());
+        } catch (IOException e) {
+            discardBackingStore();
+            throw e;
+        }
         bs_stream = new FileOutputStream(bs_handle);
-        bs_stream.write(cache.toByteArray());
+        cache.writeTo(bs_stream);
         cache = null;
     }
 
@@ -319,8 +328,9 @@ public class ByteArray extends OutputStream {
      */
     protected void discardBackingStore() {
         if (bs_handle != null) {
-            bs_handle.delete();
+            TempFileJanitor.delete(bs_handle);
             bs_handle = null;
+            bs_reservation = null;
         }
     }
 
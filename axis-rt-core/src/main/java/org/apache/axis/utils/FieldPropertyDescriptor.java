@@ -86,7 +86,7 @@ public class FieldPropertyDescriptor extends BeanPropertyDescriptor {
      */
     public Object get(Object obj)
             throws InvocationTargetException, IllegalAccessException {
-        return field.get(obj);
+        return getAccessor().get(obj);
     }
 
     /**
@@ -96,7 +96,14 @@ public class FieldPropertyDescriptor extends BeanPropertyDescriptor {
      */
     public void set(Object obj, Object newValue)
             throws InvocationTargetException, IllegalAccessException {
-        field.set(obj, newValue);
+        getAccessor().set(obj, newValue);
+    }
+
+    /**
+     * Create the accessor for the field.
+     */
+    protected PropertyAccessor createAccessor() {
+        return PropertyAccessorFactory.getFactory().createAccessor(field);
     }
 
     /**
@@ -111,7 +118,7 @@ public class FieldPropertyDescriptor extends BeanPropertyDescriptor {
             throw new IllegalAccessException("Not an indexed property");
         }
 
-        Object array = field.get(obj);
+        Object array = get(obj);
         return Array.get(array, i);
     }
 
@@ -67,6 +67,20 @@ public class NSStack {
         stack[0] = null;
     }
     
+    /**
+     * Drop all frames and mappings, so that the stack can be used again
+     * for another document.
+     */
+    public void reset(boolean optimizePrefixes) {
+        this.optimizePrefixes = optimizePrefixes;
+        for (int i = 0; i <= top; i++) {
+            stack[i] = null;
+        }
+        top = 0;
+        iterator = 0;
+        currentDefaultNS = -1;
+    }
+
     /**
      * Create a new frame at the top of the stack.
      */
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.utils;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads and writes one property of a bean.  Accessors are created by the
+ * {@link PropertyAccessorFactory} the first time a
+ * {@link BeanPropertyDescriptor} is used, and are shared by all threads.
+ */
+public interface PropertyAccessor {
+    /**
+     * Get the property value
+     * @param obj is the object
+     * @return the entire property value
+     */
+    public Object get(Object obj)
+        throws InvocationTargetException, IllegalAccessException;
+
+    /**
+     * Set the property value
+     * @param obj is the object
+     * @param newValue is the new value
+     */
+    public void set(Object obj, Object newValue)
+        throws InvocationTargetException, IllegalAccessException;
+}
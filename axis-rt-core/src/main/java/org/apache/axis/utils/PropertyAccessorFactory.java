@@ -0,0 +1,161 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.utils;
+
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates the {@link PropertyAccessor}s used by
+ * {@link BeanPropertyDescriptor} and {@link FieldPropertyDescriptor}.
+ * <p>
+ * The default implementation holds on to the resolved getter, setter or
+ * field, and switches off the access checks that reflection otherwise
+ * repeats on every call.  If the security manager doesn't allow that, the
+ * accessors fall back to plain checked reflection.  A different factory,
+ * e.g. one that generates accessor classes, can be plugged in with the
+ * <code>axis.bean.accessorFactory</code> property; it needs a public no-arg
+ * constructor.
+ */
+public class PropertyAccessorFactory {
+    protected static Log log =
+        LogFactory.getLog(PropertyAccessorFactory.class.getName());
+
+    /** the key for the Axis Property that names the factory class */
+    public static final String ACCESSOR_FACTORY_KEY = "axis.bean.accessorFactory";
+
+    private static PropertyAccessorFactory factory;
+
+    /**
+     * Get the factory in use, creating it on first use.
+     */
+    public static synchronized PropertyAccessorFactory getFactory() {
+        if (factory == null) {
+            factory = createFactory();
+        }
+        return factory;
+    }
+
+    /**
+     * Replace the factory in use.  Accessors that have been created
+     * already are kept.
+     *
+     * @param newFactory the new factory, or <code>null</code> to go back to
+     *                   the configured one
+     */
+    public static synchronized void setFactory(PropertyAccessorFactory newFactory) {
+        factory = newFactory;
+    }
+
+    private static PropertyAccessorFactory createFactory() {
+        String className = AxisProperties.getProperty(ACCESSOR_FACTORY_KEY);
+        if (className != null) {
+            try {
+                return (PropertyAccessorFactory) ClassUtils.forName(className).newInstance();
+            } catch (Exception e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+        return new PropertyAccessorFactory();
+    }
+
+    /**
+     * Create an accessor for a bean property.
+     *
+     * @param readMethod the getter, or <code>null</code>
+     * @param writeMethod the setter, or <code>null</code>
+     */
+    public PropertyAccessor createAccessor(Method readMethod, Method writeMethod) {
+        return new MethodAccessor(makeAccessible(readMethod),
+                                  makeAccessible(writeMethod));
+    }
+
+    /**
+     * Create an accessor for a public field.
+     */
+    public PropertyAccessor createAccessor(Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            // an accessible final field could be written to
+            return new FieldAccessor(field);
+        }
+        return new FieldAccessor(makeAccessible(field));
+    }
+
+    /**
+     * Suppress the access checks on <code>member</code> if that is allowed.
+     */
+    protected static AccessibleObject makeAccessible(AccessibleObject member) {
+        if (member != null) {
+            try {
+                member.setAccessible(true);
+            } catch (RuntimeException e) {
+                // denied by the security manager or the module system;
+                // checked reflection still works for public members
+                log.debug(e);
+            }
+        }
+        return member;
+    }
+
+    private static class MethodAccessor implements PropertyAccessor {
+        private final Method readMethod;
+        private final Method writeMethod;
+
+        MethodAccessor(AccessibleObject readMethod, AccessibleObject writeMethod) {
+            this.readMethod = (Method) readMethod;
+            this.writeMethod = (Method) writeMethod;
+        }
+
+        public Object get(Object obj)
+            throws InvocationTargetException, IllegalAccessException {
+            if (readMethod == null) {
+                throw new IllegalAccessException(Messages.getMessage("badGetter00"));
+            }
+            return readMethod.invoke(obj, BeanPropertyDescriptor.noArgs);
+        }
+
+        public void set(Object obj, Object newValue)
+            throws InvocationTargetException, IllegalAccessException {
+            if (writeMethod == null) {
+                throw new IllegalAccessException(Messages.getMessage("badSetter00"));
+            }
+            writeMethod.invoke(obj, new Object[] {newValue});
+        }
+    }
+
+    private static class FieldAccessor implements PropertyAccessor {
+        private final Field field;
+
+        FieldAccessor(AccessibleObject field) {
+            this.field = (Field) field;
+        }
+
+        public Object get(Object obj) throws IllegalAccessException {
+            return field.get(obj);
+        }
+
+        public void set(Object obj, Object newValue) throws IllegalAccessException {
+            field.set(obj, newValue);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.utils;
+
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParser;
+
+/**
+ * The pool of SAX parsers behind {@link XMLUtils#getSAXParser()} and
+ * {@link XMLUtils#releaseSAXParser(SAXParser)}.
+ * <p>
+ * Every thread first looks in its own slot, which holds the parser it
+ * released last; this path takes no lock.  Only if the slot is empty does
+ * it fall back to a bounded pool shared by all threads, and only if that
+ * one is empty too is a new parser created.  A released parser goes back
+ * into the slot of the releasing thread if that is free, and into the shared
+ * pool otherwise; parsers that don't fit are dropped.
+ * <p>
+ * Subclasses may be plugged in with the <code>axis.xml.parserPool</code>
+ * property; they need a public constructor taking the maximum size of the
+ * shared pool and the thread affinity flag.
+ * <p>
+ * The counters are updated without synchronization on the thread-local
+ * path and are therefore approximate.
+ */
+public class SAXParserPool {
+    protected static Log log =
+        LogFactory.getLog(SAXParserPool.class.getName());
+
+    private static final DefaultHandler doNothingContentHandler = new DefaultHandler();
+    private static final LexicalHandler doNothingLexicalHandler = new NullLexicalHandler();
+
+    private final int maxSize;
+    private final boolean threadAffinity;
+    private final ThreadLocal threadSlot = new ThreadLocal();
+
+    private final SAXParser[] shared;
+    private int sharedCount = 0;
+
+    /** Incremented by {@link #clear()} to invalidate thread-local parsers */
+    private volatile int generation = 0;
+
+    /** Set to false once a parser failed to reset */
+    private volatile boolean reusable = true;
+
+    private long threadHits = 0;
+    private long sharedHits = 0;
+    private long misses = 0;
+    private long discards = 0;
+
+    /**
+     * @param maxSize the number of parsers kept in the shared pool
+     * @param threadAffinity whether every thread keeps the last parser it
+     *                       released for itself
+     */
+    public SAXParserPool(int maxSize, boolean threadAffinity) {
+        this.maxSize = Math.max(maxSize, 0);
+        this.threadAffinity = threadAffinity;
+        this.shared = new SAXParser[this.maxSize];
+    }
+
+    /**
+     * Get a parser from the pool, or a new one if the pool is empty.
+     *
+     * @return a SAXParser instance, or <code>null</code> if none could be
+     *         created
+     */
+    public SAXParser getSAXParser() {
+        if (threadAffinity) {
+            Slot slot = (Slot) threadSlot.get();
+            if (slot != null && slot.parser != null) {
+                SAXParser parser = slot.parser;
+                slot.parser = null;
+                if (slot.generation == generation) {
+                    threadHits++;
+                    return parser;
+                }
+            }
+        }
+        synchronized (this) {
+            if (sharedCount > 0) {
+                SAXParser parser = shared[--sharedCount];
+                shared[sharedCount] = null;
+                sharedHits++;
+                return parser;
+            }
+            misses++;
+        }
+        return createSAXParser();
+    }
+
+    /**
+     * Return a parser to the pool.  The parser is reset first, and dropped
+     * if that fails.
+     */
+    public void releaseSAXParser(SAXParser parser) {
+        if (parser == null || !reusable) {
+            return;
+        }
+        if (!reset(parser)) {
+            reusable = false;
+            return;
+        }
+        int currentGeneration = generation;
+        if (threadAffinity) {
+            Slot slot = (Slot) threadSlot.get();
+            if (slot == null) {
+                slot = new Slot();
+                threadSlot.set(slot);
+            }
+            if (slot.parser == null) {
+                slot.parser = parser;
+                slot.generation = currentGeneration;
+                return;
+            }
+        }
+        synchronized (this) {
+            if (sharedCount < maxSize && currentGeneration == generation) {
+                shared[sharedCount++] = parser;
+                return;
+            }
+            discards++;
+        }
+    }
+
+    /**
+     * Discard all pooled parsers, e.g. because the parser factory has
+     * changed.  Parsers held in thread-local slots are dropped the next time
+     * their thread asks for a parser.
+     */
+    public synchronized void clear() {
+        generation++;
+        for (int i = 0; i < sharedCount; i++) {
+            shared[i] = null;
+        }
+        sharedCount = 0;
+    }
+
+    /**
+     * Create a new parser.
+     */
+    protected SAXParser createSAXParser() {
+        return XMLUtils.createSAXParser();
+    }
+
+    /**
+     * Clear the state a parse has left in <code>parser</code>, in
+     * particular any references to handlers.
+     *
+     * @return false if the parser can't be reset and must not be reused
+     */
+    protected boolean reset(SAXParser parser) {
+        //Free up possible ref. held by past contenthandler.
+        try {
+            XMLReader xmlReader = parser.getXMLReader();
+            if (null == xmlReader) {
+                return false;
+            }
+            xmlReader.setContentHandler(doNothingContentHandler);
+            xmlReader.setDTDHandler(doNothingContentHandler);
+            try {
+                xmlReader.setEntityResolver(doNothingContentHandler);
+            } catch (Throwable t) {
+                log.debug("Failed to set EntityResolver on DocumentBuilder", t);
+            }
+            try {
+                xmlReader.setErrorHandler(doNothingContentHandler);
+            } catch (Throwable t) {
+                log.debug("Failed to set ErrorHandler on DocumentBuilder", t);
+            }
+            try {
+                xmlReader.setProperty("http://xml.org/sax/properties/lexical-handler",
+                                      doNothingLexicalHandler);
+            } catch (SAXException e) {
+                // lexical handlers not supported
+            }
+            return true;
+        } catch (SAXException e) {
+            return false;
+        }
+    }
+
+    /** Number of requests served from the calling thread's own slot */
+    public long getThreadHits() {
+        return threadHits;
+    }
+
+    /** Number of requests served from the shared pool */
+    public synchronized long getSharedHits() {
+        return sharedHits;
+    }
+
+    /** Number of requests that had to create a new parser */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Number of released parsers dropped because the pool was full */
+    public synchronized long getDiscards() {
+        return discards;
+    }
+
+    /** Number of parsers currently in the shared pool */
+    public synchronized int getSharedSize() {
+        return sharedCount;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isThreadAffinity() {
+        return threadAffinity;
+    }
+
+    private static class Slot {
+        SAXParser parser;
+        int generation;
+    }
+
+    /**
+     * It is illegal to set the lexical-handler property to null, so this
+     * handler replaces the one used for the last parse.
+     */
+    private static class NullLexicalHandler implements LexicalHandler {
+        public void startDTD(String name, String publicId, String systemId) {}
+        public void endDTD() {}
+        public void startEntity(String name) {}
+        public void endEntity(String name) {}
+        public void startCDATA() {}
+        public void endCDATA() {}
+        public void comment(char[] ch, int start, int length) {}
+    }
+}
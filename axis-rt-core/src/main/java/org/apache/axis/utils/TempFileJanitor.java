@@ -0,0 +1,249 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.utils;
+
+import org.apache.axis.AxisEngine;
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps track of the temporary files that attachments
+ * ({@link org.apache.axis.attachments.ManagedMemoryDataSource}) and buffered
+ * messages ({@link ByteArray}) spill to, and enforces a limit on the disk
+ * space they take together.
+ * <p>
+ * The limit is set with the <code>axis.attachments.diskQuota</code>
+ * property, in bytes; by default there is none.  Writers announce the bytes
+ * they are about to write with {@link #reserve(File, long)}, which fails
+ * with an <code>IOException</code> if the quota would be exceeded.  Before
+ * it does, files that have disappeared in the meantime, e.g. because an
+ * application moved a detached attachment file, are swept from the books.
+ * Writers that write a file a piece at a time use a {@link Reservation},
+ * which reserves space in chunks rather than for every write.  Without a
+ * quota no file is kept track of.
+ */
+public class TempFileJanitor {
+    protected static Log log =
+        LogFactory.getLog(TempFileJanitor.class.getName());
+
+    /** The number of bytes reserved so far, by file */
+    private static final Map files = new HashMap();
+
+    private static long usage = 0;
+
+    /** The smallest chunk a {@link Reservation} grows by */
+    private static final long MIN_CHUNK = 8192;
+
+    /** The largest chunk a {@link Reservation} grows by */
+    private static final long MAX_CHUNK = 1024 * 1024;
+
+    private static long quota = getDefaultQuota();
+
+    private static long getDefaultQuota() {
+        String value = AxisProperties.getProperty(
+                AxisEngine.PROP_ATTACHMENT_DISK_QUOTA);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+        return 0;
+    }
+
+    private TempFileJanitor() {
+    }
+
+    /**
+     * Create a temporary file and start keeping track of it, if there is a
+     * quota.
+     *
+     * @param dir the directory to create the file in, or <code>null</code>
+     *            for the default temporary directory
+     * @throws IOException if the file can't be created or the quota is
+     *                     used up
+     */
+    public static File createTempFile(String prefix, String suffix, File dir)
+            throws IOException {
+        synchronized (files) {
+            checkQuota(0);
+        }
+        File file = File.createTempFile(prefix, suffix, dir);
+        synchronized (files) {
+            if (quota > 0) {
+                files.put(file, new long[1]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Account for <code>bytes</code> more bytes to be written to
+     * <code>file</code>.
+     *
+     * @throws IOException if this would exceed the quota
+     */
+    public static void reserve(File file, long bytes) throws IOException {
+        synchronized (files) {
+            if (quota <= 0) {
+                return;
+            }
+            long[] size = (long[]) files.get(file);
+            if (size == null) {
+                size = new long[1];
+                files.put(file, size);
+            }
+            checkQuota(bytes);
+            size[0] += bytes;
+            usage += bytes;
+        }
+    }
+
+    /**
+     * Delete a file and stop keeping track of it.
+     *
+     * @return whether the file was deleted
+     */
+    public static boolean delete(File file) {
+        release(file);
+        return file.delete();
+    }
+
+    /**
+     * Stop keeping track of a file without deleting it.
+     */
+    public static void release(File file) {
+        synchronized (files) {
+            long[] size = (long[]) files.remove(file);
+            if (size != null) {
+                usage -= size[0];
+            }
+        }
+    }
+
+    /** Bytes taken by the files being kept track of; 0 without a quota */
+    public static long getUsage() {
+        synchronized (files) {
+            return usage;
+        }
+    }
+
+    /** The quota in bytes; 0 or less means there is none */
+    public static long getQuota() {
+        synchronized (files) {
+            return quota;
+        }
+    }
+
+    /**
+     * Set the quota in bytes; 0 or less for none, which stops keeping track
+     * of the files.  Files created before a quota is set don't count
+     * against it.
+     */
+    public static void setQuota(long quota) {
+        synchronized (files) {
+            TempFileJanitor.quota = quota;
+            if (quota <= 0) {
+                files.clear();
+                usage = 0;
+            }
+        }
+    }
+
+    /**
+     * Make sure <code>bytes</code> more bytes fit into the quota, sweeping
+     * files that no longer exist if they don't.  Called with the lock held.
+     */
+    private static void checkQuota(long bytes) throws IOException {
+        if (quota <= 0 || usage + bytes <= quota) {
+            return;
+        }
+        for (Iterator it = files.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry) it.next();
+            if (!((File) entry.getKey()).exists()) {
+                usage -= ((long[]) entry.getValue())[0];
+                it.remove();
+            }
+        }
+        if (usage + bytes > quota) {
+            throw new IOException(Messages.getMessage("diskQuota00",
+                    "" + quota, "" + (usage + bytes)));
+        }
+    }
+
+    /**
+     * The space reserved for a file that is written a piece at a time.
+     * Space is taken from the quota in chunks that grow with the file, so
+     * that the janitor's lock is taken once per chunk instead of once per
+     * write.  Space reserved but not written yet is given back when the
+     * file is deleted or released.  Not thread safe; meant to be used by
+     * the one writer of the file.
+     */
+    public static class Reservation {
+        private final File file;
+        private long reserved;
+        private long used;
+
+        /**
+         * Reserve <code>bytes</code> for <code>file</code>, usually what is
+         * about to be written to it at once.
+         *
+         * @throws IOException if this would exceed the quota
+         */
+        public Reservation(File file, long bytes) throws IOException {
+            this.file = file;
+            reserve(file, bytes);
+            reserved = bytes;
+            used = bytes;
+        }
+
+        /**
+         * Account for <code>bytes</code> more bytes to be written.
+         *
+         * @throws IOException if this would exceed the quota
+         */
+        public void use(long bytes) throws IOException {
+            long needed = used + bytes - reserved;
+            if (needed > 0) {
+                long chunk = Math.min(Math.max(reserved, MIN_CHUNK),
+                                      MAX_CHUNK);
+                if (chunk < needed) {
+                    chunk = needed;
+                }
+                try {
+                    reserve(file, chunk);
+                } catch (IOException e) {
+                    // Close to the quota; take no more than is needed
+                    if (chunk == needed) {
+                        throw e;
+                    }
+                    chunk = needed;
+                    reserve(file, chunk);
+                }
+                reserved += chunk;
+            }
+            used += bytes;
+        }
+    }
+}
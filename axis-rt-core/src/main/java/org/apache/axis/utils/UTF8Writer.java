@@ -0,0 +1,195 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A buffered, unsynchronized writer that encodes characters as UTF-8
+ * straight into a byte buffer, which is written to the underlying stream
+ * when it is full or flushed.  It replaces the
+ * <code>OutputStreamWriter</code>/<code>BufferedWriter</code> stack used
+ * to serialize messages, and produces the same bytes as an
+ * <code>OutputStreamWriter</code> for UTF-8, including the replacement of
+ * unpaired surrogates by '?'.
+ * <p>
+ * The byte buffer is borrowed from a per-thread cache and handed back by
+ * {@link #release()}.  Instances must not be shared between threads.
+ */
+public class UTF8Writer extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal cachedBuffer = new ThreadLocal();
+
+    private OutputStream out;
+    private byte[] buf;
+    private int count = 0;
+
+    /** A high surrogate written without its low surrogate yet, or 0 */
+    private char pendingHighSurrogate = 0;
+
+    public UTF8Writer(OutputStream out) {
+        this.out = out;
+    }
+
+    private byte[] getBuffer() {
+        if (buf == null) {
+            buf = (byte[]) cachedBuffer.get();
+            if (buf == null) {
+                buf = new byte[BUFFER_SIZE];
+            } else {
+                cachedBuffer.set(null);
+            }
+        }
+        return buf;
+    }
+
+    public void write(int c) throws IOException {
+        byte[] b = getBuffer();
+        if (c < 0x80 && pendingHighSurrogate == 0) {
+            if (count == b.length) {
+                flushBuffer();
+            }
+            b[count++] = (byte) c;
+        } else {
+            writeChar((char) c);
+        }
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        byte[] b = getBuffer();
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char c = cbuf[i];
+            if (c < 0x80 && pendingHighSurrogate == 0) {
+                if (count == b.length) {
+                    flushBuffer();
+                }
+                b[count++] = (byte) c;
+            } else {
+                writeChar(c);
+            }
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+        byte[] b = getBuffer();
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80 && pendingHighSurrogate == 0) {
+                if (count == b.length) {
+                    flushBuffer();
+                }
+                b[count++] = (byte) c;
+            } else {
+                writeChar(c);
+            }
+        }
+    }
+
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    /**
+     * Encode a character that is outside the ASCII range, or that follows
+     * a high surrogate.
+     */
+    private void writeChar(char c) throws IOException {
+        if (count + 4 > buf.length) {
+            flushBuffer();
+        }
+        if (pendingHighSurrogate != 0) {
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (c >= '\uDC00' && c <= '\uDFFF') {
+                int cp = ((high - 0xD800) << 10) + (c - 0xDC00) + 0x10000;
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            // unpaired high surrogate
+            buf[count++] = (byte) '?';
+            if (count + 3 > buf.length) {
+                flushBuffer();
+            }
+        }
+        if (c < 0x80) {
+            buf[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c >= '\uD800' && c <= '\uDBFF') {
+            pendingHighSurrogate = c;
+        } else if (c >= '\uDC00' && c <= '\uDFFF') {
+            // unpaired low surrogate
+            buf[count++] = (byte) '?';
+        } else {
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    public void flush() throws IOException {
+        if (buf != null) {
+            flushBuffer();
+        }
+        out.flush();
+    }
+
+    /**
+     * Flush the buffered bytes (but not the underlying stream) and hand the
+     * byte buffer back to the per-thread cache.  The buffer is handed back
+     * even if the flush fails.  The writer may still be used afterwards.
+     */
+    public void release() throws IOException {
+        if (buf != null) {
+            try {
+                flushBuffer();
+            } finally {
+                count = 0;
+                cachedBuffer.set(buf);
+                buf = null;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            getBuffer();
+            if (count == buf.length) {
+                flushBuffer();
+            }
+            buf[count++] = (byte) '?';
+        }
+        release();
+        out.close();
+    }
+}
@@ -39,7 +39,6 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
@@ -69,7 +68,6 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
 
 
 public class XMLUtils {
@@ -82,14 +80,11 @@ public class XMLUtils {
 
     private static DocumentBuilderFactory dbf = getDOMFactory();
     private static SAXParserFactory       saxFactory;
-    private static Stack                  saxParsers = new Stack();
-    private static DefaultHandler doNothingContentHandler = new DefaultHandler();
+    private static SAXParserPool          saxParserPool;
 
     private static String EMPTY = "";
     private static ByteArrayInputStream bais = new ByteArrayInputStream(EMPTY.getBytes());
 
-    private static boolean tryReset= true;
-
     protected static boolean enableParserReuse = false;
 
     private static class ThreadLocalDocumentBuilder extends ThreadLocal {
@@ -118,6 +113,55 @@ public class XMLUtils {
         } else {
             enableParserReuse = false;
         }
+        if (enableParserReuse) {
+            saxParserPool = createSAXParserPool();
+        }
+    }
+
+    private static SAXParserPool createSAXParserPool() {
+        int size = 32;
+        String value = AxisProperties.getProperty(AxisEngine.PROP_XML_PARSER_POOL_SIZE);
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(AxisEngine.PROP_XML_PARSER_POOL_SIZE + ": " + e);
+            }
+        }
+        boolean threadAffinity = !"false".equalsIgnoreCase(AxisProperties.getProperty(
+                AxisEngine.PROP_XML_PARSER_POOL_THREAD_AFFINITY, "true"));
+
+        String className = AxisProperties.getProperty(AxisEngine.PROP_XML_PARSER_POOL);
+        if (className != null) {
+            try {
+                return (SAXParserPool) ClassUtils.forName(className)
+                        .getConstructor(new Class[] { int.class, boolean.class })
+                        .newInstance(new Object[] { new Integer(size),
+                                                    Boolean.valueOf(threadAffinity) });
+            } catch (Exception e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
+        return new SAXParserPool(size, threadAffinity);
+    }
+
+    /**
+     * Get the pool behind {@link #getSAXParser()}.
+     *
+     * @return the pool, or <code>null</code> if parser reuse is disabled
+     */
+    public static SAXParserPool getSAXParserPool() {
+        return saxParserPool;
+    }
+
+    /**
+     * Replace the pool behind {@link #getSAXParser()}.
+     *
+     * @param pool the new pool, or <code>null</code> to disable parser reuse
+     */
+    public static void setSAXParserPool(SAXParserPool pool) {
+        saxParserPool = pool;
+        enableParserReuse = (pool != null);
     }
 
     /**
@@ -212,7 +256,10 @@ public class XMLUtils {
         saxFactory.setValidating(validating);
 
         // Discard existing parsers
-        saxParsers.clear();
+        SAXParserPool pool = saxParserPool;
+        if (pool != null) {
+            pool.clear();
+        }
     }
 
     private static DocumentBuilderFactory getDOMFactory() {
@@ -260,11 +307,20 @@ public class XMLUtils {
      *
      * @return a SAXParser instance.
      */
-    public static synchronized SAXParser getSAXParser() {
-        if(enableParserReuse && !saxParsers.empty()) {
-            return (SAXParser )saxParsers.pop();
+    public static SAXParser getSAXParser() {
+        SAXParserPool pool = saxParserPool;
+        if (pool != null) {
+            return pool.getSAXParser();
         }
+        return createSAXParser();
+    }
 
+    /**
+     * Create a new SAX parser instance from the JAXP factory.
+     *
+     * @return a SAXParser instance.
+     */
+    static SAXParser createSAXParser() {
         try {
             SAXParser parser = saxFactory.newSAXParser();
             XMLReader reader = parser.getXMLReader();
@@ -294,34 +350,9 @@ public class XMLUtils {
      * @param parser A SAX parser that is available for reuse
      */
     public static void releaseSAXParser(SAXParser parser) {
-        if(!tryReset || !enableParserReuse) return;
-
-        //Free up possible ref. held by past contenthandler.
-        try{
-            XMLReader xmlReader= parser.getXMLReader();
-            if(null != xmlReader){
-                xmlReader.setContentHandler(doNothingContentHandler);
-                xmlReader.setDTDHandler(doNothingContentHandler);
-                try {
-                    xmlReader.setEntityResolver(doNothingContentHandler);
-                } catch (Throwable t) {
-                    log.debug("Failed to set EntityResolver on DocumentBuilder", t);
-                }
-                try {
-                    xmlReader.setErrorHandler(doNothingContentHandler);
-                } catch (Throwable t) {
-                    log.debug("Failed to set ErrorHandler on DocumentBuilder", t);
-                }
-
-                synchronized (XMLUtils.class ) {
-                    saxParsers.push(parser);
-                }
-            }
-            else {
-                tryReset= false;
-            }
-        } catch (org.xml.sax.SAXException e) {
-            tryReset= false;
+        SAXParserPool pool = saxParserPool;
+        if (pool != null) {
+            pool.releaseSAXParser(parser);
         }
     }
     /**
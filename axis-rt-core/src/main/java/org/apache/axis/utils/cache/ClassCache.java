@@ -45,7 +45,7 @@ public class ClassCache {
         if (name == null) return; // ??? Should we let this NPE?
         JavaClass oldClass = (JavaClass) classCache.get(name);
         if (oldClass != null && oldClass.getJavaClass() == cls) return;
-        classCache.put(name, new JavaClass(cls));
+        classCache.put(name, JavaClass.find(cls));
     }
 
     /**
@@ -83,7 +83,7 @@ public class ClassCache {
         if ((jc == null) && (cl != null)) {
             // Try to load the class with the specified classloader
             Class cls = ClassUtils.forName(className, true, cl);
-            jc = new JavaClass(cls);
+            jc = JavaClass.find(cls);
         }
         return jc;
     }
@@ -1,12 +1,12 @@
 /*
  * Copyright 2001-2004 The Apache Software Foundation.
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -16,19 +16,58 @@
 
 package org.apache.axis.utils.cache;
 
-import java.lang.reflect.Method;
-import java.util.Hashtable;
+import org.apache.axis.AxisFault;
+import org.apache.axis.utils.ClassUtils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
- * A simple cache of previously loaded classes, and their methods.
+ * A cache of previously loaded classes and their reflective metadata:
+ * methods by name and by signature, public fields and bean properties.
+ * <p>
+ * There is one entry per class, shared by all threads.  The table of
+ * entries is split into segments with a lock of their own, keyed weakly on
+ * the class.  Since the cached metadata refers back to the class, the
+ * entries themselves are only softly reachable from the table; together
+ * with {@link #clear(ClassLoader)}, which is called when a service loaded
+ * by a class loader of its own is undeployed or replaced, this lets the
+ * classes of that service be collected.  Within an entry lookups take no
+ * lock; the rare updates replace the lookup tables as a whole.
  *
  * @author Sam Ruby (rubys@us.ibm.com)
  */
 public class JavaClass implements Serializable {
 
-    private static Hashtable classes = new Hashtable();
-    private Hashtable methods = new Hashtable();
+    private static final int SEGMENTS = 16;
+
+    private static final Map[] classes = new Map[SEGMENTS];
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            classes[i] = new WeakHashMap();
+        }
+    }
+
+    /** used to track methods we've sought but not found in the past */
+    private static final Object NULL_OBJECT = new Object();
+
+    private transient volatile Map methods = new HashMap();
+    private transient volatile Map signatures = new HashMap();
+    private transient volatile Method[] allMethods;
+    private transient volatile Method[] declaredMethods;
+    private transient volatile Field[] fields;
+    private transient volatile PropertyDescriptor[] propertyDescriptors;
 
     private Class jc;
 
@@ -36,15 +75,49 @@ public class JavaClass implements Serializable {
      * Find (or create if necessary) a JavaClass associated with a given
      * class
      */
-    public static synchronized JavaClass find(Class jc) {
-        JavaClass result = (JavaClass) classes.get(jc);
+    public static JavaClass find(Class jc) {
+        Map segment = getSegment(jc);
+        synchronized (segment) {
+            SoftReference ref = (SoftReference) segment.get(jc);
+            JavaClass result = (ref == null) ? null : (JavaClass) ref.get();
+            if (result != null) {
+                return result;
+            }
+        }
+        // the constructor registers the new entry
+        return new JavaClass(jc);
+    }
 
-        if (result == null) {
-            result = new JavaClass(jc);
-            classes.put(jc, result);
+    /**
+     * Drop the entries of all classes loaded by the given class loader, e.g.
+     * when the service they belong to is undeployed.
+     */
+    public static void clear(ClassLoader loader) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            synchronized (classes[i]) {
+                for (Iterator it = classes[i].keySet().iterator(); it.hasNext();) {
+                    Class cls = (Class) it.next();
+                    if (cls != null && cls.getClassLoader() == loader) {
+                        it.remove();
+                    }
+                }
+            }
         }
+    }
 
-        return result;
+    /**
+     * Drop all entries.
+     */
+    public static void clear() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            synchronized (classes[i]) {
+                classes[i].clear();
+            }
+        }
+    }
+
+    private static Map getSegment(Class jc) {
+        return classes[System.identityHashCode(jc) & (SEGMENTS - 1)];
     }
 
     /**
@@ -52,9 +125,19 @@ public class JavaClass implements Serializable {
      */
     public JavaClass(Class jc) {
         this.jc = jc;
-        classes.put(jc, this);
+        Map segment = getSegment(jc);
+        synchronized (segment) {
+            segment.put(jc, new SoftReference(this));
+        }
     }
-    
+
+    /**
+     * A deserialized entry is replaced by the cached one for its class.
+     */
+    private Object readResolve() {
+        return find(jc);
+    }
+
     /**
      * Return the java.lang.Class associated with this entry
      */
@@ -68,12 +151,147 @@ public class JavaClass implements Serializable {
      * @param name name of method
      */
     public Method[] getMethod(String name) {
+        Map methods = this.methods;
         JavaMethod jm = (JavaMethod) methods.get(name);
 
         if (jm == null) {
-            methods.put(name, jm=new JavaMethod(jc, name));
+            jm = new JavaMethod(getMethods(), name);
+            synchronized (this) {
+                Map copy = new HashMap(this.methods);
+                copy.put(name, jm);
+                this.methods = copy;
+            }
         }
 
         return jm.getMethod();
     }
+
+    /**
+     * Lookup a public method based on its signature.  If the class doesn't
+     * have the method, its <code>_Helper</code> class is searched as well.
+     *
+     * @param name name of method
+     * @param parameterTypes the parameters of the method
+     * @return the method, or <code>null</code> if neither the class nor a
+     *         helper class exists that could have it
+     * @throws NoSuchMethodException if there is a helper class, but it
+     *         doesn't have the method either
+     */
+    public Method getMethod(String name, Class[] parameterTypes)
+        throws NoSuchMethodException {
+        MethodCache.MethodKey key =
+            new MethodCache.MethodKey(name, parameterTypes);
+        Object o = signatures.get(key);
+        if (o != null) {
+            return (o == NULL_OBJECT) ? null : (Method) o;
+        }
+
+        Method method = null;
+        String className = jc.getName();
+        try {
+            method = jc.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e1) {
+            if (!jc.isPrimitive() && !className.startsWith("java.") && !className.startsWith("javax.")) {
+                try {
+                    Class helper = ClassUtils.forName(className + "_Helper");
+                    method = helper.getMethod(name, parameterTypes);
+                } catch (ClassNotFoundException e2) {
+                }
+            }
+        }
+
+        // when no method is found, cache the NULL_OBJECT
+        // so that we don't have to repeat worst-case searches
+        // every time.
+        synchronized (this) {
+            Map copy = new HashMap(signatures);
+            copy.put(key, (method == null) ? NULL_OBJECT : method);
+            signatures = copy;
+        }
+        return method;
+    }
+
+    /**
+     * Return the public methods of the class, including inherited ones.
+     * The array is shared and must not be modified.
+     */
+    public Method[] getMethods() {
+        Method[] result = allMethods;
+        if (result == null) {
+            allMethods = result = jc.getMethods();
+        }
+        return result;
+    }
+
+    /**
+     * Return the methods declared by the class itself.
+     * The array is shared and must not be modified.
+     */
+    public Method[] getDeclaredMethods() {
+        Method[] result = declaredMethods;
+        if (result == null) {
+            declaredMethods = result = jc.getDeclaredMethods();
+        }
+        return result;
+    }
+
+    /**
+     * Return the public fields of the class.
+     * The array is shared and must not be modified.
+     */
+    public Field[] getFields() {
+        Field[] result = fields;
+        if (result == null) {
+            fields = result = jc.getFields();
+        }
+        return result;
+    }
+
+    /**
+     * Return the bean properties of the class.  The properties of
+     * <code>AxisFault</code> and <code>Throwable</code> are left out for
+     * exception classes.  The array is shared and must not be modified.
+     *
+     * @return the properties, or <code>null</code> if introspection failed
+     */
+    public PropertyDescriptor[] getPropertyDescriptors() {
+        PropertyDescriptor[] result = propertyDescriptors;
+        if (result == null) {
+            propertyDescriptors = result = introspect(jc);
+        }
+        return result;
+    }
+
+    private static PropertyDescriptor[] introspect(final Class secJavaType) {
+        // Need doPrivileged access to do introspection.
+        return (PropertyDescriptor[])AccessController.doPrivileged(
+                new PrivilegedAction() {
+                    public Object run() {
+                        PropertyDescriptor[] result = null;
+// START FIX http://nagoya.apache.org/bugzilla/showattachment.cgi?attach_id=4937
+                        try {
+                            // privileged code goes here
+                            if (AxisFault.class.isAssignableFrom(secJavaType)) {
+                                // Don't include AxisFault data
+                                result = Introspector.
+                                        getBeanInfo(secJavaType,AxisFault.class).
+                                        getPropertyDescriptors();
+                            } else if (Throwable.class != secJavaType && Throwable.class.isAssignableFrom(secJavaType)) {
+                                // Don't include Throwable data
+                                result = Introspector.
+                                        getBeanInfo(secJavaType,Throwable.class).
+                                        getPropertyDescriptors();
+                            } else {
+                                // privileged code goes here
+                                result = Introspector.
+                                        getBeanInfo(secJavaType).
+                                        getPropertyDescriptors();
+                            }
+// END FIX http://nagoya.apache.org/bugzilla/showattachment.cgi?attach_id=4937
+                        } catch (IntrospectionException Iie) {
+                        }
+                        return result;
+                    }
+                });
+    }
 };
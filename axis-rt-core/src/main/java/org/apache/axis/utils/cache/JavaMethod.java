@@ -35,7 +35,15 @@ public class JavaMethod {
      * @param name name of the method
      */
     public JavaMethod(Class jc, String name) {
-        Method[] methods = jc.getMethods();
+        this(jc.getMethods(), name);
+    }
+
+    /**
+     * Create a cache entry for the methods with the given name
+     * @param methods the methods of a class
+     * @param name name of the method
+     */
+    public JavaMethod(Method[] methods, String name) {
         Vector workinglist = new Vector();
 
         // scan for matching names, saving the match if it is unique,
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.attachments;
+
+import junit.framework.TestCase;
+import org.apache.axis.attachments.ManagedMemoryDataSource;
+import org.apache.axis.utils.TempFileJanitor;
+import test.utils.ByteArrays;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Checks the disk cache of ManagedMemoryDataSource and its quota.
+ */
+public class TestManagedMemoryDataSource extends TestCase {
+    private long savedQuota;
+
+    protected void setUp() {
+        savedQuota = TempFileJanitor.getQuota();
+    }
+
+    protected void tearDown() {
+        TempFileJanitor.setQuota(savedQuota);
+    }
+
+    private static ManagedMemoryDataSource createSource(byte[] data)
+            throws IOException {
+        ManagedMemoryDataSource source = new ManagedMemoryDataSource(
+                ManagedMemoryDataSource.MAX_MEMORY_DISK_CACHED, null);
+        OutputStream out = source.getOutputStream();
+        for (int i = 0; i < data.length; i += 5000) {
+            out.write(data, i, Math.min(5000, data.length - i));
+        }
+        out.close();
+        return source;
+    }
+
+    public void testDiskCache() throws Exception {
+        TempFileJanitor.setQuota(Integer.MAX_VALUE);
+        long usage = TempFileJanitor.getUsage();
+        byte[] data = ByteArrays.createData(100000);
+        ManagedMemoryDataSource source = createSource(data);
+        File file = source.getDiskCacheFile();
+        assertNotNull(file);
+        assertEquals(data.length, file.length());
+        // space is reserved in chunks, so possibly a bit more
+        assertTrue(TempFileJanitor.getUsage() >= usage + data.length);
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(source.getInputStream()));
+
+        source.delete();
+        assertFalse(file.exists());
+        assertEquals(usage, TempFileJanitor.getUsage());
+    }
+
+    public void testMemoryOnly() throws Exception {
+        byte[] data = ByteArrays.createData(1000);
+        ManagedMemoryDataSource source = createSource(data);
+        assertNull(source.getDiskCacheFile());
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(source.getInputStream()));
+    }
+
+    public void testQuota() throws Exception {
+        TempFileJanitor.setQuota(TempFileJanitor.getUsage() + 50000);
+        try {
+            createSource(ByteArrays.createData(100000));
+            fail("quota not enforced");
+        } catch (IOException e) {
+            // expected
+        }
+        // smaller sources still fit
+        ManagedMemoryDataSource source =
+                createSource(ByteArrays.createData(40000));
+        source.delete();
+    }
+
+    public void testReservation() throws Exception {
+        TempFileJanitor.setQuota(Integer.MAX_VALUE);
+        long usage = TempFileJanitor.getUsage();
+        File file = TempFileJanitor.createTempFile("Axis", ".tst", null);
+        TempFileJanitor.Reservation reservation =
+                new TempFileJanitor.Reservation(file, 100);
+        assertEquals(usage + 100, TempFileJanitor.getUsage());
+        reservation.use(1);
+        long reserved = TempFileJanitor.getUsage() - usage;
+        assertTrue(reserved > 101);
+        for (int i = 0; i < 1000; i++) {
+            reservation.use(1);
+        }
+        assertEquals(reserved, TempFileJanitor.getUsage() - usage);
+
+        // what was reserved but not written is given back too
+        TempFileJanitor.delete(file);
+        assertEquals(usage, TempFileJanitor.getUsage());
+    }
+
+    public void testNoQuota() throws Exception {
+        TempFileJanitor.setQuota(0);
+        File file = TempFileJanitor.createTempFile("Axis", ".tst", null);
+        try {
+            TempFileJanitor.Reservation reservation =
+                    new TempFileJanitor.Reservation(file, 100);
+            reservation.use(100000);
+            // nothing is kept track of without a quota
+            assertEquals(0, TempFileJanitor.getUsage());
+        } finally {
+            TempFileJanitor.delete(file);
+        }
+    }
+
+    public void testReservationNearQuota() throws Exception {
+        TempFileJanitor.setQuota(TempFileJanitor.getUsage() + 150);
+        File file = TempFileJanitor.createTempFile("Axis", ".tst", null);
+        try {
+            TempFileJanitor.Reservation reservation =
+                    new TempFileJanitor.Reservation(file, 100);
+            reservation.use(50);
+            try {
+                reservation.use(1);
+                fail("quota not enforced");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            TempFileJanitor.delete(file);
+        }
+    }
+
+    public void testConcurrentReaders() throws Exception {
+        final byte[] data = ByteArrays.createData(70000);
+        final ManagedMemoryDataSource source = createSource(data);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            ByteArrays.assertEquals(data,
+                                    ByteArrays.readAll(
+                                            source.getInputStream()));
+                        }
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        source.delete();
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.attachments;
+
+import junit.framework.TestCase;
+import org.apache.axis.Part;
+import org.apache.axis.attachments.AttachmentUtils;
+import org.apache.axis.attachments.MultiPartRelatedInputStream;
+import test.utils.ByteArrays;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Checks that MultiPartRelatedInputStream splits a message into its parts
+ * where the MIME boundaries are, and only there.
+ */
+public class TestMultiPartRelatedInputStream extends TestCase {
+    private static final String BOUNDARY = "MIMEBoundary_0123456789abcdef";
+    private static final String CONTENT_TYPE =
+            "multipart/related; type=\"text/xml\"; start=\"<root>\"; " +
+            "boundary=\"" + BOUNDARY + "\"";
+    private static final String ENVELOPE =
+            "<soapenv:Envelope xmlns:soapenv=" +
+            "\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+            "<soapenv:Body/></soapenv:Envelope>";
+
+    private static void writePart(ByteArrayOutputStream out, String id,
+                                  byte[] content) throws IOException {
+        out.write(("--" + BOUNDARY + "\r\n" +
+                   "Content-Type: application/octet-stream\r\n" +
+                   "Content-Id: <" + id + ">\r\n\r\n").getBytes("US-ASCII"));
+        out.write(content);
+        out.write("\r\n".getBytes("US-ASCII"));
+    }
+
+    private static byte[] createMessage(byte[][] attachments)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePart(out, "root", ENVELOPE.getBytes("US-ASCII"));
+        for (int i = 0; i < attachments.length; i++) {
+            writePart(out, "part" + i, attachments[i]);
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes("US-ASCII"));
+        return out.toByteArray();
+    }
+
+    private static void assertContent(byte[] expected, Part part)
+            throws Exception {
+        ByteArrays.assertEquals(expected, ByteArrays.readAll(
+                AttachmentUtils.getActivationDataHandler(part)
+                               .getInputStream()));
+    }
+
+    private static void check(byte[][] attachments) throws Exception {
+        MultiPartRelatedInputStream stream = new MultiPartRelatedInputStream(
+                CONTENT_TYPE,
+                new ByteArrayInputStream(createMessage(attachments)));
+        assertEquals(ENVELOPE,
+                     new String(ByteArrays.readAll(stream), "US-ASCII"));
+        for (int i = attachments.length - 1; i >= 0; i--) {
+            Part part = stream.getAttachmentByReference(
+                    new String[] {"part" + i});
+            assertNotNull("part" + i, part);
+            assertContent(attachments[i], part);
+        }
+    }
+
+    public void testSmallParts() throws Exception {
+        check(new byte[][] { "a".getBytes(), new byte[0], "bc".getBytes() });
+    }
+
+    public void testLargePart() throws Exception {
+        check(new byte[][] { ByteArrays.createData(200000),
+                             "tail".getBytes() });
+    }
+
+    /**
+     * Content that looks like a boundary but isn't followed by CRLF or "--"
+     * must not end the part, nor hide a real boundary behind it.
+     */
+    public void testFalseBoundary() throws Exception {
+        byte[] data = ("x\r\n--" + BOUNDARY + "Z\r\n--" + BOUNDARY + "  y")
+                .getBytes("US-ASCII");
+        check(new byte[][] { data, "next".getBytes() });
+    }
+
+    public void testBoundaryBytesAcrossBuffers() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        while (sb.length() < 100000) {
+            sb.append("\r\n--").append(BOUNDARY.substring(0, 20)).append('-');
+        }
+        check(new byte[][] { sb.toString().getBytes("US-ASCII"),
+                             "end".getBytes() });
+    }
+}
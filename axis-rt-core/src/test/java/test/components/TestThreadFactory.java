@@ -0,0 +1,59 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.components;
+
+import junit.framework.TestCase;
+import org.apache.axis.components.threads.DefaultThreadFactory;
+import org.apache.axis.components.threads.ThreadFactory;
+import org.apache.axis.components.threads.ThreadFactoryFactory;
+import org.apache.axis.components.threads.VirtualThreadFactory;
+
+public class TestThreadFactory extends TestCase {
+    protected void tearDown() {
+        ThreadFactoryFactory.setFactory(null);
+    }
+
+    public void testDefaultFactory() {
+        assertTrue(ThreadFactoryFactory.getFactory() instanceof DefaultThreadFactory);
+    }
+
+    public void testSetFactory() {
+        ThreadFactory factory = new VirtualThreadFactory();
+        ThreadFactoryFactory.setFactory(factory);
+        assertSame(factory, ThreadFactoryFactory.getFactory());
+    }
+
+    /**
+     * Virtual threads are created where the runtime has them, platform
+     * threads otherwise; either way the runnable must be run.
+     */
+    public void testVirtualThreadFactory() throws Exception {
+        final boolean[] ran = new boolean[1];
+        Thread thread = new VirtualThreadFactory().newThread(new Runnable() {
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        assertFalse(thread.isAlive());
+        thread.start();
+        thread.join(10000);
+        assertTrue(ran[0]);
+        if (VirtualThreadFactory.isSupported()) {
+            assertTrue(thread.isDaemon());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2002-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.components;
+
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.Call;
+import org.apache.axis.components.tracing.DefaultTracer;
+import org.apache.axis.components.tracing.Trace;
+import org.apache.axis.components.tracing.TracerFactory;
+import org.apache.axis.transport.http.HTTPConstants;
+import test.GenericLocalTest;
+
+/**
+ * Test the traces recorded for the handlers of sampled requests.
+ */
+public class TestTracing extends GenericLocalTest {
+    /** For the instances created to serve the calls */
+    public TestTracing() {
+    }
+
+    public TestTracing(String s) {
+        super(s);
+    }
+
+    protected void tearDown() throws Exception {
+        TracerFactory.setTracer(null);
+        super.tearDown();
+    }
+
+    public String echo(String s) {
+        return s;
+    }
+
+    public void testNothingTracedByDefault() throws Exception {
+        DefaultTracer tracer = new DefaultTracer(0, 0, 64);
+        TracerFactory.setTracer(tracer);
+
+        assertEquals("hi", getCall().invoke("echo", new Object[] {"hi"}));
+        assertEquals(0, tracer.getSlowTraces().length);
+    }
+
+    public void testLocalCallTraced() throws Exception {
+        DefaultTracer tracer = new DefaultTracer(1, 0, 64);
+        TracerFactory.setTracer(tracer);
+
+        Call call = getCall();
+        assertEquals("hi", call.invoke("echo", new Object[] {"hi"}));
+        assertNull(call.getMessageContext().getTrace());
+
+        // the server request is made on behalf of the client call and
+        // completes first
+        Trace[] traces = tracer.getSlowTraces();
+        assertEquals(2, traces.length);
+        Trace client = traces[0];
+        Trace server = traces[1];
+        assertEquals(client.getId(), server.getId());
+        assertTrue(client.getDuration() >= server.getDuration());
+
+        assertTrue(hasSpan(client, "LocalSender", 1));
+        assertTrue(hasSpan(server, "RPCProvider", 1));
+        for (int i = 0; i < server.getSpanCount(); i++) {
+            assertTrue(server.getSpanDuration(i) >= 0);
+        }
+    }
+
+    public void testSampleRate() throws Exception {
+        DefaultTracer tracer = new DefaultTracer(3, 0, 64);
+        TracerFactory.setTracer(tracer);
+
+        Call call = getCall();
+        for (int i = 0; i < 6; i++) {
+            assertEquals("hi", call.invoke("echo", new Object[] {"hi"}));
+        }
+
+        // One in three of the calls and of the server requests not made
+        // on behalf of a traced call is sampled; here both are counted by
+        // one tracer, so every other call is traced along with its request.
+        Trace[] traces = tracer.getSlowTraces();
+        assertEquals(6, traces.length);
+        for (int i = 0; i < traces.length; i += 2) {
+            assertEquals(traces[i].getId(), traces[i + 1].getId());
+        }
+        assertFalse(traces[0].getId().equals(traces[2].getId()));
+    }
+
+    public void testSlowThreshold() throws Exception {
+        DefaultTracer tracer = new DefaultTracer(1, 60000, 64);
+        TracerFactory.setTracer(tracer);
+
+        assertEquals("hi", getCall().invoke("echo", new Object[] {"hi"}));
+        assertEquals(0, tracer.getSlowTraces().length);
+    }
+
+    public void testIncomingId() throws Exception {
+        // a sample rate this high traces nothing but incoming IDs here
+        DefaultTracer trusting = new DefaultTracer(1000, 0, 64, true);
+        Trace trace = trusting.startTrace(createRequest("abc-123"), null);
+        assertNotNull(trace);
+        assertEquals("abc-123", trace.getId());
+
+        assertNull(trusting.startTrace(createRequest("abc\r\nX-Injected: 1"), null));
+        StringBuffer tooLong = new StringBuffer();
+        for (int i = 0; i <= Trace.MAX_ID_LENGTH; i++) {
+            tooLong.append('a');
+        }
+        assertNull(trusting.startTrace(createRequest(tooLong.toString()), null));
+
+        DefaultTracer distrusting = new DefaultTracer(1000, 0, 64);
+        assertNull(distrusting.startTrace(createRequest("abc-123"), null));
+    }
+
+    public void testValidId() throws Exception {
+        assertTrue(Trace.isValidId("e4f2a1c0-5b7d-11e0-8000-0a1b2c3d4e5f"));
+        assertTrue(Trace.isValidId("uuid:A.b_c"));
+        assertFalse(Trace.isValidId(null));
+        assertFalse(Trace.isValidId(""));
+        assertFalse(Trace.isValidId("a b"));
+        assertFalse(Trace.isValidId("a\nb"));
+    }
+
+    public void testSpanCapacity() throws Exception {
+        Trace trace = new Trace("id", 2);
+        int outer = trace.startSpan("outer");
+        int inner = trace.startSpan("inner");
+        int dropped = trace.startSpan("dropped");
+        assertEquals(-1, dropped);
+        trace.endSpan(dropped);
+        trace.endSpan(inner);
+        int next = trace.startSpan("next");
+        trace.endSpan(next);
+        trace.endSpan(outer);
+        trace.end();
+
+        assertEquals(2, trace.getSpanCount());
+        assertEquals(2, trace.getDroppedSpans());
+        assertEquals("outer", trace.getSpanName(0));
+        assertEquals(0, trace.getSpanDepth(0));
+        assertEquals("inner", trace.getSpanName(1));
+        assertEquals(1, trace.getSpanDepth(1));
+        assertTrue(trace.getSpanDuration(1) >= 0);
+    }
+
+    private static MessageContext createRequest(String traceId) {
+        Message request = new Message("");
+        request.getMimeHeaders().addHeader(HTTPConstants.HEADER_TRACE_ID, traceId);
+        MessageContext msgContext = new MessageContext(null);
+        msgContext.setRequestMessage(request);
+        return msgContext;
+    }
+
+    private static boolean hasSpan(Trace trace, String name, int depth) {
+        for (int i = 0; i < trace.getSpanCount(); i++) {
+            if (trace.getSpanName(i).equals(name)
+                    && trace.getSpanDepth(i) == depth) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
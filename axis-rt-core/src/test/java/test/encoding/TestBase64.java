@@ -0,0 +1,172 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.encoding;
+
+import junit.framework.TestCase;
+import org.apache.axis.Constants;
+import org.apache.axis.Message;
+import org.apache.axis.MessageContext;
+import org.apache.axis.attachments.Attachments;
+import org.apache.axis.encoding.Base64;
+import org.apache.axis.encoding.ser.Base64Deserializer;
+import org.apache.axis.encoding.ser.Base64Serializer;
+import org.apache.axis.message.RPCElement;
+import org.apache.axis.message.RPCParam;
+import org.apache.axis.message.SOAPEnvelope;
+import org.apache.axis.server.AxisServer;
+import test.utils.ByteArrays;
+
+import javax.activation.DataHandler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+/**
+ * Test the incremental decoding of base64 values.
+ */
+public class TestBase64 extends TestCase {
+
+    /**
+     * Feed the base64 text of <code>data</code>, with line breaks, to a
+     * deserializer in small pieces.
+     */
+    private static Object deserialize(Class javaType, byte[] data)
+            throws Exception {
+        StringWriter writer = new StringWriter();
+        Base64.encode(data, 0, data.length, writer);
+        char[] chars = writer.toString().toCharArray();
+
+        Base64Deserializer dser =
+                new Base64Deserializer(javaType, Constants.XSD_BASE64);
+        for (int i = 0; i < chars.length; i += 7) {
+            dser.characters(chars, i, Math.min(7, chars.length - i));
+        }
+        dser.onEndElement(null, null, null);
+        return dser.getValue();
+    }
+
+    public void testByteArray() throws Exception {
+        for (int size = 0; size < 10; size++) {
+            byte[] data = ByteArrays.createData(size);
+            ByteArrays.assertEquals(data,
+                    (byte[]) deserialize(byte[].class, data));
+        }
+        byte[] data = ByteArrays.createData(50000);
+        ByteArrays.assertEquals(data,
+                (byte[]) deserialize(byte[].class, data));
+    }
+
+    public void testByteObjectArray() throws Exception {
+        byte[] data = ByteArrays.createData(100);
+        Byte[] value = (Byte[]) deserialize(Byte[].class, data);
+        assertEquals(data.length, value.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], value[i].byteValue());
+        }
+    }
+
+    public void testDataHandler() throws Exception {
+        // large enough to be moved to disk
+        byte[] data = ByteArrays.createData(100000);
+        DataHandler dh = (DataHandler) deserialize(DataHandler.class, data);
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(dh.getInputStream(), 1000));
+        // the data can be read more than once
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(dh.getInputStream(), 1000));
+    }
+
+    public void testSmallDataHandler() throws Exception {
+        byte[] data = ByteArrays.createData(100);
+        DataHandler dh = (DataHandler) deserialize(DataHandler.class, data);
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(dh.getInputStream(), 1000));
+    }
+
+    public void testInputStream() throws Exception {
+        byte[] data = ByteArrays.createData(40000);
+        InputStream in = (InputStream) deserialize(InputStream.class, data);
+        ByteArrays.assertEquals(data, ByteArrays.readAll(in, 1000));
+    }
+
+    public void testMakeValue() throws Exception {
+        byte[] data = ByteArrays.createData(1000);
+        Base64Deserializer dser =
+                new Base64Deserializer(DataHandler.class, Constants.XSD_BASE64);
+        DataHandler dh = (DataHandler) dser.makeValue(Base64.encode(data));
+        ByteArrays.assertEquals(data,
+                ByteArrays.readAll(dh.getInputStream(), 1000));
+    }
+
+    public void testSerializeStream() throws Exception {
+        byte[] data = ByteArrays.createData(10000);
+        Base64Serializer ser =
+                new Base64Serializer(InputStream.class, Constants.XSD_BASE64);
+        String value = ser.getValueAsString(new ByteArrayInputStream(data), null);
+        assertEquals(Base64.encode(data), value);
+    }
+
+    /**
+     * Send <code>data</code> in an MTOM message and read it back.
+     *
+     * @return the value read back, and the wire format of the message
+     */
+    private static Object[] sendMTOM(byte[] data) throws Exception {
+        AxisServer server = new AxisServer();
+        MessageContext msgContext = new MessageContext(server);
+        SOAPEnvelope env = new SOAPEnvelope();
+        env.addBodyElement(new RPCElement("urn:test", "echo",
+                new Object[] { new RPCParam("", "data", data) }));
+        Message msg = new Message(env);
+        msg.setMessageContext(msgContext);
+        msgContext.setRequestMessage(msg);
+        msg.getAttachmentsImpl().setSendType(Attachments.SEND_TYPE_MTOM);
+
+        String contentType = msg.getContentType(msgContext.getSOAPConstants());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        msg.writeTo(out);
+        byte[] wire = out.toByteArray();
+
+        Message received = new Message(new ByteArrayInputStream(wire), false,
+                                       contentType, null);
+        MessageContext receiveContext = new MessageContext(server);
+        received.setMessageContext(receiveContext);
+        receiveContext.setRequestMessage(received);
+        RPCElement body = (RPCElement) received.getSOAPEnvelope().getFirstBody();
+        RPCParam param = (RPCParam) body.getParams().get(0);
+        return new Object[] { param.getObjectValue(),
+                              new String(wire, "ISO-8859-1") };
+    }
+
+    public void testXOPRoundTrip() throws Exception {
+        byte[] data = ByteArrays.createData(5000);
+        Object[] result = sendMTOM(data);
+        String wire = (String) result[1];
+        assertTrue(wire.indexOf(Constants.ELEM_XOP_INCLUDE) >= 0);
+        assertTrue(wire.indexOf(Base64.encode(data, 0, 100)) < 0);
+        ByteArrays.assertEquals(data, (byte[]) result[0]);
+    }
+
+    public void testSmallValueInline() throws Exception {
+        byte[] data = ByteArrays.createData(100);
+        Object[] result = sendMTOM(data);
+        String wire = (String) result[1];
+        assertTrue(wire.indexOf(Constants.ELEM_XOP_INCLUDE) < 0);
+        ByteArrays.assertEquals(data, (byte[]) result[0]);
+    }
+}
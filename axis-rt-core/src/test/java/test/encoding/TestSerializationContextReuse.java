@@ -0,0 +1,128 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.encoding;
+
+import junit.framework.TestCase;
+import org.apache.axis.MessageContext;
+import org.apache.axis.encoding.SerializationContext;
+import org.apache.axis.message.RPCElement;
+import org.apache.axis.message.RPCParam;
+import org.apache.axis.message.SOAPEnvelope;
+import org.apache.axis.server.AxisServer;
+
+import javax.xml.namespace.QName;
+import java.io.StringWriter;
+
+/**
+ * Tests the recycling of serialization contexts through
+ * {@link SerializationContext#obtain} and {@link SerializationContext#release}.
+ */
+public class TestSerializationContextReuse extends TestCase {
+    private MessageContext msgContext;
+
+    protected void setUp() throws Exception {
+        msgContext = new MessageContext(new AxisServer());
+    }
+
+    protected void tearDown() throws Exception {
+        SerializationContext.setCheckRelease(false);
+    }
+
+    private String write(SerializationContext context, StringWriter writer)
+            throws Exception {
+        SOAPEnvelope env = new SOAPEnvelope();
+        RPCElement body = new RPCElement("urn:reuse", "echo",
+                new Object[] {
+                    new RPCParam("urn:reuse", "text", "a < b"),
+                    new RPCParam("urn:other", "count", new Integer(3))
+                });
+        env.addBodyElement(body);
+        env.output(context);
+        return writer.toString();
+    }
+
+    public void testReusedContextWritesSameOutput() throws Exception {
+        StringWriter w1 = new StringWriter();
+        String expected = write(new SerializationContext(w1, msgContext), w1);
+
+        StringWriter w2 = new StringWriter();
+        SerializationContext first = SerializationContext.obtain(w2, msgContext);
+        assertEquals(expected, write(first, w2));
+        first.release();
+
+        StringWriter w3 = new StringWriter();
+        SerializationContext second = SerializationContext.obtain(w3, msgContext);
+        assertSame(first, second);
+        assertEquals(expected, write(second, w3));
+        second.release();
+    }
+
+    public void testReleaseResetsState() throws Exception {
+        SerializationContext context =
+                SerializationContext.obtain(new StringWriter(), msgContext);
+        context.setPretty(true);
+        context.setDoMultiRefs(true);
+        context.registerPrefixForURI("mine", "urn:mine");
+        context.startElement(new QName("urn:mine", "open"), null);
+        context.release();
+
+        SerializationContext reused =
+                SerializationContext.obtain(new StringWriter(), msgContext);
+        assertSame(context, reused);
+        assertFalse(reused.getPretty());
+        assertFalse(reused.getDoMultiRefs());
+        SerializationContext fresh =
+                new SerializationContext(new StringWriter(), msgContext);
+        assertEquals(fresh.getPrefixForURI("urn:mine"),
+                     reused.getPrefixForURI("urn:mine"));
+        assertNull(reused.getItemQName());
+        reused.release();
+    }
+
+    public void testUseAfterRelease() throws Exception {
+        SerializationContext context =
+                SerializationContext.obtain(new StringWriter(), msgContext);
+        context.release();
+        try {
+            context.writeString("late");
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // releasing twice is harmless
+        context.release();
+        assertSame(context,
+                SerializationContext.obtain(new StringWriter(), msgContext));
+    }
+
+    public void testCheckReleaseNeverReuses() throws Exception {
+        SerializationContext.setCheckRelease(true);
+        SerializationContext context =
+                SerializationContext.obtain(new StringWriter(), msgContext);
+        context.release();
+        SerializationContext other =
+                SerializationContext.obtain(new StringWriter(), msgContext);
+        assertNotSame(context, other);
+        other.release();
+        try {
+            context.startElement(new QName("late"), null);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertNotNull(e.getCause());
+        }
+    }
+}
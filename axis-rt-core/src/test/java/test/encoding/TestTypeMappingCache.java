@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.encoding;
+
+import junit.framework.TestCase;
+import org.apache.axis.Constants;
+import org.apache.axis.encoding.TypeMapping;
+import org.apache.axis.encoding.TypeMappingRegistryImpl;
+import org.apache.axis.encoding.ser.BeanDeserializerFactory;
+import org.apache.axis.encoding.ser.BeanSerializerFactory;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Checks that the lookups cached by the type mappings follow registrations
+ * and removals.
+ */
+public class TestTypeMappingCache extends TestCase {
+    private static final QName BEAN_QNAME = new QName("urn:test", "SimpleBean");
+
+    private TypeMapping createTypeMapping() {
+        TypeMappingRegistryImpl tmr = new TypeMappingRegistryImpl();
+        TypeMapping tm = (TypeMapping) tmr.createTypeMapping();
+        tmr.register(Constants.URI_DEFAULT_SOAP_ENC, tm);
+        return tm;
+    }
+
+    public void testRegisterAfterMiss() throws Exception {
+        TypeMapping tm = createTypeMapping();
+        assertNull(tm.getTypeQName(SimpleBean.class));
+        assertNull(tm.getClassForQName(BEAN_QNAME));
+        assertNull(tm.getDeserializer(null, BEAN_QNAME));
+
+        BeanSerializerFactory sf = new BeanSerializerFactory(SimpleBean.class, BEAN_QNAME);
+        BeanDeserializerFactory df = new BeanDeserializerFactory(SimpleBean.class, BEAN_QNAME);
+        tm.register(SimpleBean.class, BEAN_QNAME, sf, df);
+
+        assertEquals(BEAN_QNAME, tm.getTypeQName(SimpleBean.class));
+        assertEquals(SimpleBean.class, tm.getClassForQName(BEAN_QNAME));
+        assertSame(sf, tm.getSerializer(SimpleBean.class));
+        assertSame(df, tm.getDeserializer(null, BEAN_QNAME));
+    }
+
+    public void testRemove() throws Exception {
+        TypeMapping tm = createTypeMapping();
+        tm.register(SimpleBean.class, BEAN_QNAME,
+                    new BeanSerializerFactory(SimpleBean.class, BEAN_QNAME),
+                    new BeanDeserializerFactory(SimpleBean.class, BEAN_QNAME));
+        assertNotNull(tm.getSerializer(SimpleBean.class, BEAN_QNAME));
+        assertNotNull(tm.getDeserializer(SimpleBean.class, BEAN_QNAME));
+
+        tm.removeSerializer(SimpleBean.class, BEAN_QNAME);
+        assertNull(tm.getSerializer(SimpleBean.class, BEAN_QNAME));
+        tm.removeDeserializer(SimpleBean.class, BEAN_QNAME);
+        assertNull(tm.getDeserializer(SimpleBean.class, BEAN_QNAME));
+    }
+
+    /**
+     * Linking in the type mappings of another registry must drop what was
+     * cached for the chain before.
+     */
+    public void testDelegateAfterMiss() throws Exception {
+        TypeMappingRegistryImpl primary = new TypeMappingRegistryImpl();
+        TypeMapping tm = primary.getOrMakeTypeMapping(
+                Constants.URI_DEFAULT_SOAP_ENC);
+        assertNull(tm.getTypeQName(SimpleBean.class));
+
+        TypeMappingRegistryImpl secondary = new TypeMappingRegistryImpl();
+        secondary.getOrMakeTypeMapping(Constants.URI_DEFAULT_SOAP_ENC)
+                .register(SimpleBean.class, BEAN_QNAME,
+                          new BeanSerializerFactory(SimpleBean.class, BEAN_QNAME),
+                          new BeanDeserializerFactory(SimpleBean.class, BEAN_QNAME));
+        // a change to an unrelated registry leaves the cached miss alone
+        assertNull(tm.getTypeQName(SimpleBean.class));
+
+        primary.delegate(secondary);
+        assertEquals(BEAN_QNAME, tm.getTypeQName(SimpleBean.class));
+    }
+
+    /**
+     * Lookups of a registered type must keep working while other types are
+     * registered concurrently.
+     */
+    public void testConcurrentRegistration() throws Exception {
+        final TypeMapping tm = createTypeMapping();
+        final BeanSerializerFactory sf = new BeanSerializerFactory(SimpleBean.class, BEAN_QNAME);
+        tm.register(SimpleBean.class, BEAN_QNAME, sf,
+                    new BeanDeserializerFactory(SimpleBean.class, BEAN_QNAME));
+
+        final String[] failure = new String[1];
+        final boolean[] done = new boolean[1];
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                public void run() {
+                    while (true) {
+                        synchronized (done) {
+                            if (done[0] || failure[0] != null) {
+                                return;
+                            }
+                        }
+                        if (tm.getSerializer(SimpleBean.class) != sf
+                                || !BEAN_QNAME.equals(tm.getTypeQName(SimpleBean.class))
+                                || tm.getDeserializer(null, Constants.XSD_STRING) == null) {
+                            synchronized (done) {
+                                failure[0] = "lookup failed during registration";
+                            }
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        for (int i = 0; i < 500; i++) {
+            QName qname = new QName("urn:test", "Other" + i);
+            tm.register(Data.class, qname,
+                        new BeanSerializerFactory(Data.class, qname),
+                        new BeanDeserializerFactory(Data.class, qname));
+            assertEquals(qname, tm.getTypeQName(Data.class));
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        for (int i = 0; i < readers.length; i++) {
+            readers[i].join();
+        }
+        assertNull(failure[0], failure[0]);
+    }
+}
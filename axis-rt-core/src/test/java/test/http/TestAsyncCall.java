@@ -0,0 +1,233 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.http;
+
+import junit.framework.TestCase;
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.Service;
+import org.apache.axis.client.async.CallFuture;
+import org.apache.axis.client.async.IAsyncCallback;
+import org.apache.axis.client.async.IAsyncResult;
+import org.apache.axis.client.async.Status;
+
+import javax.xml.namespace.QName;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Tests Call.invokeAsync against a minimal HTTP server.
+ */
+public class TestAsyncCall extends TestCase {
+    private static final String RESPONSE =
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"" +
+        " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"" +
+        " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">" +
+        "<soapenv:Body><echoResponse><return xsi:type=\"xsd:string\">hi</return>" +
+        "</echoResponse></soapenv:Body></soapenv:Envelope>";
+
+    private static final QName ECHO = new QName("urn:echo", "echo");
+
+    private ServerSocket serverSocket;
+    private boolean respond = true;
+    private int closedByClient;
+
+    protected void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        Thread server = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        Thread handler = new Thread() {
+                            public void run() {
+                                serve(socket);
+                            }
+                        };
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    private Call createCall() throws Exception {
+        Call call = (Call) new Service().createCall();
+        call.setTargetEndpointAddress("http://localhost:" + serverSocket.getLocalPort() + "/axis/services/echo");
+        return call;
+    }
+
+    public void testFanOut() throws Exception {
+        CallFuture[] futures = new CallFuture[40];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = createCall().invokeAsync(ECHO, new Object[] { "hi" });
+        }
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals("hi", futures[i].get(10000));
+            assertEquals(Status.COMPLETED, futures[i].getStatus());
+        }
+    }
+
+    public void testCallback() throws Exception {
+        final IAsyncResult[] completed = new IAsyncResult[1];
+        CallFuture future = createCall().invokeAsync(ECHO, new Object[] { "hi" });
+        future.addCallback(new IAsyncCallback() {
+            public void onCompletion(IAsyncResult event) {
+                synchronized (completed) {
+                    completed[0] = event;
+                    completed.notifyAll();
+                }
+            }
+        });
+        assertEquals("hi", future.get(10000));
+        synchronized (completed) {
+            long end = System.currentTimeMillis() + 10000;
+            while (completed[0] == null && System.currentTimeMillis() < end) {
+                completed.wait(1000);
+            }
+        }
+        assertSame(future, completed[0]);
+    }
+
+    public void testTimeout() throws Exception {
+        respond = false;
+        long start = System.currentTimeMillis();
+        CallFuture future = createCall().invokeAsync(ECHO, new Object[] { "hi" }, 500);
+        try {
+            future.get(10000);
+            fail("expected a fault");
+        } catch (AxisFault expected) {
+        }
+        assertTrue(future.isCancelled());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        waitForClose();
+    }
+
+    public void testCancel() throws Exception {
+        respond = false;
+        CallFuture future = createCall().invokeAsync(ECHO, new Object[] { "hi" });
+        future.waitFor(500);
+        assertFalse(String.valueOf(future.getException()), future.isDone());
+        assertTrue(future.cancel());
+        assertTrue(future.isDone());
+        assertEquals(Status.INTERRUPTED, future.getStatus());
+        assertFalse(future.cancel());
+        waitForClose();
+    }
+
+    /**
+     * A socket the transport has handed back, e.g. to its pool, may be used
+     * by another call already and must survive a late cancel.
+     */
+    public void testCancelAfterSocketReleased() throws Exception {
+        CallFuture future = new CallFuture(createCall(), ECHO,
+                                           new Object[] { "hi" });
+        Socket released = new Socket();
+        Socket registered = new Socket();
+        future.setSocket(released);
+        future.releaseSocket(released);
+        future.setSocket(registered);
+        future.releaseSocket(released);
+        assertTrue(future.cancel());
+        assertFalse(released.isClosed());
+        assertTrue(registered.isClosed());
+        released.close();
+    }
+
+    /**
+     * The server only sees the end of the connection if the transport
+     * closed the socket of the aborted call.
+     */
+    private synchronized void waitForClose() throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (closedByClient == 0 && System.currentTimeMillis() < end) {
+            wait(1000);
+        }
+        assertEquals(1, closedByClient);
+    }
+
+    void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            int contentLength = readHeaders(in);
+            for (int i = 0; i < contentLength; i++) {
+                in.read();
+            }
+            if (!respond) {
+                if (in.read() == -1) {
+                    synchronized (this) {
+                        closedByClient++;
+                        notifyAll();
+                    }
+                }
+                return;
+            }
+            byte[] body = RESPONSE.getBytes("UTF-8");
+            out.write(("HTTP/1.0 200 OK\r\n" +
+                       "Content-Type: text/xml; charset=utf-8\r\n" +
+                       "Content-Length: " + body.length + "\r\n\r\n").getBytes("ASCII"));
+            out.write(body);
+            out.flush();
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    private static int readHeaders(InputStream in) throws IOException {
+        int contentLength = 0;
+        StringBuffer line = new StringBuffer();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                return 0;
+            }
+            if (b == '\r') {
+                continue;
+            }
+            if (b != '\n') {
+                line.append((char) b);
+                continue;
+            }
+            String header = line.toString();
+            line.setLength(0);
+            if (header.length() == 0) {
+                return contentLength;
+            }
+            if (header.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+    }
+}
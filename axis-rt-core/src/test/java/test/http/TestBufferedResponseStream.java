@@ -0,0 +1,116 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.http;
+
+import junit.framework.TestCase;
+import org.apache.axis.transport.http.BufferedResponseStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Checks when BufferedResponseStream sets the Content-Length header.
+ */
+public class TestBufferedResponseStream extends TestCase {
+    private ByteArrayOutputStream body;
+    private int contentLength;
+    private HttpServletResponse response;
+
+    protected void setUp() {
+        body = new ByteArrayOutputStream();
+        contentLength = -1;
+        final ServletOutputStream out = new ServletOutputStream() {
+            public void write(int b) {
+                body.write(b);
+            }
+        };
+        response = (HttpServletResponse) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[] { HttpServletResponse.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                                         Object[] args) {
+                        if (method.getName().equals("getOutputStream")) {
+                            return out;
+                        }
+                        if (method.getName().equals("setContentLength")) {
+                            assertEquals("body written before Content-Length",
+                                         0, body.size());
+                            contentLength = ((Integer) args[0]).intValue();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    public void testSmallResponse() throws IOException {
+        BufferedResponseStream stream =
+                new BufferedResponseStream(response, 100);
+        stream.write("hello ".getBytes());
+        stream.write('w');
+        stream.flush();
+        assertEquals(0, body.size());
+        stream.write("orld".getBytes());
+        stream.close();
+        assertFalse(stream.isStreaming());
+        assertEquals(11, contentLength);
+        assertEquals("hello world", body.toString());
+    }
+
+    public void testLargeResponse() throws IOException {
+        BufferedResponseStream stream =
+                new BufferedResponseStream(response, 10);
+        stream.write("hello ".getBytes());
+        stream.write("world".getBytes());
+        assertTrue(stream.isStreaming());
+        stream.write('!');
+        stream.close();
+        assertEquals(-1, contentLength);
+        assertEquals("hello world!", body.toString());
+    }
+
+    public void testEmptyResponse() throws IOException {
+        BufferedResponseStream stream =
+                new BufferedResponseStream(response, 10);
+        stream.close();
+        assertEquals(0, contentLength);
+        assertEquals(0, body.size());
+    }
+
+    public void testBufferGrowsToLimit() throws IOException {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        BufferedResponseStream stream =
+                new BufferedResponseStream(response, 20000);
+        for (int i = 0; i < data.length; i += 1000) {
+            stream.write(data, i, 1000);
+        }
+        stream.close();
+        assertEquals(20000, contentLength);
+        byte[] written = body.toByteArray();
+        assertEquals(data.length, written.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], written[i]);
+        }
+    }
+}
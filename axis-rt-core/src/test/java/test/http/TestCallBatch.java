@@ -0,0 +1,206 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.http;
+
+import junit.framework.TestCase;
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.CallBatch;
+import org.apache.axis.client.Service;
+import org.apache.axis.client.async.CallFuture;
+
+import javax.xml.namespace.QName;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Checks that the calls of a CallBatch are pipelined over one connection
+ * and get their own responses.
+ */
+public class TestCallBatch extends TestCase {
+    private static final QName ECHO = new QName("urn:echo", "echo");
+
+    private static final int CALLS = 10;
+
+    private ServerSocket serverSocket;
+    private int connections;
+    private int requests;
+    private boolean pipelined;
+
+    protected void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        Thread server = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        synchronized (TestCallBatch.this) {
+                            connections++;
+                        }
+                        Thread handler = new Thread() {
+                            public void run() {
+                                serve(socket);
+                            }
+                        };
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    public void testPipelining() throws Exception {
+        Service service = new Service();
+        CallBatch batch = service.createBatch();
+        CallFuture[] futures = new CallFuture[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            Call call = batch.createCall();
+            call.setTargetEndpointAddress("http://localhost:" + serverSocket.getLocalPort() + "/axis/services/echo");
+            futures[i] = batch.invoke(call, ECHO, new Object[] { "v" + i });
+        }
+        for (int i = 0; i < CALLS; i++) {
+            if (i == 3) {
+                try {
+                    futures[i].get(10000);
+                    fail("expected a fault");
+                } catch (AxisFault expected) {
+                    assertEquals("v3", expected.getFaultString());
+                }
+            } else {
+                assertEquals("v" + i, futures[i].get(10000));
+            }
+        }
+        batch.close();
+        synchronized (this) {
+            assertEquals(CALLS, requests);
+            assertEquals(1, connections);
+            assertTrue("requests were not pipelined", pipelined);
+        }
+    }
+
+    /**
+     * Answers the requests on a connection in order, but only once a few of
+     * them are waiting, so that the client has to pipeline them.
+     */
+    void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String request = readRequest(in);
+                if (request == null) {
+                    return;
+                }
+                synchronized (this) {
+                    requests++;
+                }
+                // wait a little for more requests to come in
+                long end = System.currentTimeMillis() + 200;
+                while (in.available() == 0 && System.currentTimeMillis() < end) {
+                    Thread.sleep(10);
+                }
+                if (in.available() > 0) {
+                    synchronized (this) {
+                        pipelined = true;
+                    }
+                }
+                int start = request.indexOf(">v") + 1;
+                String value = request.substring(start, request.indexOf('<', start));
+                String status;
+                String body;
+                if (value.equals("v3")) {
+                    status = "500 Internal Server Error";
+                    body = "<soapenv:Fault><faultcode>soapenv:Server</faultcode>" +
+                        "<faultstring>" + value + "</faultstring></soapenv:Fault>";
+                } else {
+                    status = "200 OK";
+                    body = "<echoResponse><return xsi:type=\"xsd:string\">" + value +
+                        "</return></echoResponse>";
+                }
+                byte[] bytes = ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"" +
+                    " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"" +
+                    " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">" +
+                    "<soapenv:Body>" + body + "</soapenv:Body></soapenv:Envelope>").getBytes("UTF-8");
+                out.write(("HTTP/1.1 " + status + "\r\n" +
+                           "Content-Type: text/xml; charset=utf-8\r\n" +
+                           "Content-Length: " + bytes.length + "\r\n\r\n").getBytes("ASCII"));
+                out.write(bytes);
+                out.flush();
+            }
+        } catch (Exception e) {
+            // client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Reads a request and returns its body, or null at the end of the
+     * connection.
+     */
+    private static String readRequest(InputStream in) throws IOException {
+        int contentLength = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            if (b == '\r') {
+                continue;
+            }
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            String header = line.toString("ASCII");
+            line.reset();
+            if (header.length() == 0) {
+                break;
+            }
+            if (header.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        byte[] body = new byte[contentLength];
+        int n = 0;
+        while (n < contentLength) {
+            int r = in.read(body, n, contentLength - n);
+            if (r == -1) {
+                return null;
+            }
+            n += r;
+        }
+        return new String(body, "UTF-8");
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.http;
+
+import junit.framework.TestCase;
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.Service;
+import org.apache.axis.transport.http.HTTPConstants;
+import org.apache.axis.transport.http.SocketPool;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Checks that HTTPSender reuses HTTP/1.1 connections between calls.
+ */
+public class TestHTTPSenderKeepAlive extends TestCase {
+    private static final String RESPONSE =
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"" +
+        " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"" +
+        " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">" +
+        "<soapenv:Body><echoResponse><return xsi:type=\"xsd:string\">hi</return>" +
+        "</echoResponse></soapenv:Body></soapenv:Envelope>";
+
+    private ServerSocket serverSocket;
+    private int connections;
+    private int requests;
+
+    protected void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+    }
+
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    public void testContentLength() throws Exception {
+        doTest(false);
+    }
+
+    public void testChunked() throws Exception {
+        doTest(true);
+    }
+
+    public void testConnectionLimit() throws Exception {
+        SocketPool pool = new SocketPool(8, 64, 15000);
+        pool.setLimits(1, 0);
+        String key = SocketPool.getKey("http", "localhost",
+                                       serverSocket.getLocalPort());
+
+        assertNull(pool.acquire(key, 100));
+        SocketPool.Entry entry = new SocketPool.Entry(key,
+                new Socket("localhost", serverSocket.getLocalPort()),
+                false, "");
+        pool.register(entry);
+        assertEquals(1, pool.getLeasedCount());
+        try {
+            pool.acquire(key, 100);
+            fail("Expected the limit to be reached");
+        } catch (IOException e) {
+        }
+
+        // a released socket is handed out again
+        pool.release(entry);
+        assertSame(entry, pool.acquire(key, 100));
+
+        // a socket that is closed instead of released makes room
+        entry.getSocket().close();
+        assertNull(pool.acquire(key, 100));
+        pool.cancel(key);
+        assertEquals(0, pool.getLeasedCount());
+    }
+
+    public void testAbandonedLease() throws Exception {
+        SocketPool pool = new SocketPool(8, 64, 200);
+        pool.setLimits(1, 1);
+        String key = SocketPool.getKey("http", "localhost",
+                                       serverSocket.getLocalPort());
+
+        assertNull(pool.acquire(key, 100));
+        Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+        pool.register(new SocketPool.Entry(key, socket, false, ""));
+        try {
+            pool.acquire(key, 50);
+            fail("Expected the limit to be reached");
+        } catch (IOException e) {
+        }
+
+        // the first entry is never released, as if its response stream had
+        // not been closed; once it is older than the idle timeout it no
+        // longer counts against the limits
+        assertNull(pool.acquire(key, 2000));
+        assertEquals(1, pool.getLeasedCount());
+        pool.cancel(key);
+        assertEquals(0, pool.getLeasedCount());
+        socket.close();
+    }
+
+    public void testProxyKey() throws Exception {
+        String direct = SocketPool.getKey("http", "Example.org", 80, null);
+        assertEquals("http://example.org:80", direct);
+        assertFalse(direct.equals(SocketPool.getKey("http", "example.org", 80,
+                                                    "proxy:8080")));
+        assertFalse(SocketPool.getKey("http", "example.org", 80, "proxy:8080")
+                .equals(SocketPool.getKey("http", "example.org", 80,
+                                          "proxy:3128")));
+    }
+
+    private void doTest(final boolean chunked) throws Exception {
+        Thread server = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        synchronized (TestHTTPSenderKeepAlive.this) {
+                            connections++;
+                        }
+                        serve(socket, chunked);
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+
+        Call call = (Call) new Service().createCall();
+        call.setTargetEndpointAddress("http://localhost:" + serverSocket.getLocalPort() + "/axis/services/echo");
+        call.setProperty(MessageContext.HTTP_TRANSPORT_VERSION, HTTPConstants.HEADER_PROTOCOL_V11);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hi", call.invoke("urn:echo", "echo", new Object[] { "hi" }));
+        }
+        synchronized (this) {
+            assertEquals(3, requests);
+            assertEquals(1, connections);
+        }
+    }
+
+    void serve(Socket socket, boolean chunked) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        try {
+            while (true) {
+                int contentLength = readHeaders(in);
+                if (contentLength < 0) {
+                    return;
+                }
+                for (int i = 0; i < contentLength; i++) {
+                    in.read();
+                }
+                synchronized (this) {
+                    requests++;
+                }
+                byte[] body = RESPONSE.getBytes("UTF-8");
+                StringBuffer header = new StringBuffer("HTTP/1.1 200 OK\r\n");
+                header.append("Content-Type: text/xml; charset=utf-8\r\n");
+                if (chunked) {
+                    header.append("Transfer-Encoding: chunked\r\n\r\n");
+                    header.append(Integer.toHexString(body.length)).append("\r\n");
+                    out.write(header.toString().getBytes("ASCII"));
+                    out.write(body);
+                    out.write("\r\n0\r\n\r\n".getBytes("ASCII"));
+                } else {
+                    header.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+                    out.write(header.toString().getBytes("ASCII"));
+                    out.write(body);
+                }
+                out.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Reads the request headers and returns the content length, or -1 if
+     * the client closed the connection.
+     */
+    private static int readHeaders(InputStream in) throws IOException {
+        int contentLength = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                return -1;
+            }
+            if (b == '\r') {
+                continue;
+            }
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            String header = line.toString("ASCII");
+            line.reset();
+            if (header.length() == 0) {
+                return contentLength;
+            }
+            if (header.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+    }
+}
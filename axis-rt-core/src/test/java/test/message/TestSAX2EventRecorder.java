@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.message;
+
+import junit.framework.TestCase;
+import org.apache.axis.message.SAX2EventRecorder;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Test {@link SAX2EventRecorder} class.
+ */
+public class TestSAX2EventRecorder extends TestCase {
+    /**
+     * Logs the events it receives in a compact textual form.
+     */
+    static class LoggingHandler extends DefaultHandler {
+        StringBuffer log = new StringBuffer();
+
+        public void startPrefixMapping(String prefix, String uri) {
+            log.append("[").append(prefix).append("=").append(uri);
+        }
+        public void endPrefixMapping(String prefix) {
+            log.append("]").append(prefix);
+        }
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            log.append("<").append(uri).append("|").append(localName).append("|").append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                log.append(" ").append(attributes.getQName(i)).append("=").append(attributes.getValue(i));
+            }
+            log.append(">");
+        }
+        public void endElement(String uri, String localName, String qName) {
+            log.append("</").append(qName).append(">");
+        }
+        public void characters(char[] ch, int start, int length) {
+            log.append(ch, start, length);
+        }
+    }
+
+    public void testReplay() throws Exception {
+        SAX2EventRecorder recorder = new SAX2EventRecorder();
+        AttributesImpl attrs = new AttributesImpl();
+        attrs.addAttribute("", "id", "id", "CDATA", "1");
+        char[] text = "xxhelloxx".toCharArray();
+
+        recorder.startPrefixMapping("ns", "urn:test");
+        int start = recorder.startElement("urn:test", "a", "ns:a", attrs);
+        recorder.characters(text, 2, 5);
+        recorder.startElement("", "b", "b", new AttributesImpl());
+        recorder.characters(" world".toCharArray(), 0, 6);
+        recorder.endElement("", "b", "b");
+        int stop = recorder.endElement("urn:test", "a", "ns:a");
+        recorder.endPrefixMapping("ns");
+        assertEquals(8, recorder.getLength());
+
+        LoggingHandler handler = new LoggingHandler();
+        recorder.replay(handler);
+        assertEquals("[ns=urn:test<urn:test|a|ns:a id=1>hello<|b|b> world</b></ns:a>]ns",
+                     handler.log.toString());
+
+        handler = new LoggingHandler();
+        recorder.replay(start + 2, stop - 1, handler);
+        assertEquals("<|b|b> world</b>", handler.log.toString());
+    }
+
+    public void testGrowth() throws Exception {
+        SAX2EventRecorder recorder = new SAX2EventRecorder();
+        StringBuffer expected = new StringBuffer();
+        char[] text = "0123456789".toCharArray();
+        for (int i = 0; i < 1000; i++) {
+            String name = "e" + (i % 100);
+            recorder.startElement("", name, name, new AttributesImpl());
+            recorder.characters(text, i % 10, 10 - i % 10);
+            recorder.endElement("", name, name);
+            expected.append("<|").append(name).append("|").append(name).append(">").append(text, i % 10, 10 - i % 10)
+                    .append("</").append(name).append(">");
+        }
+        LoggingHandler handler = new LoggingHandler();
+        recorder.replay(handler);
+        assertEquals(expected.toString(), handler.log.toString());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.monitoring;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Call;
+import org.apache.axis.monitoring.LatencyHistogram;
+import org.apache.axis.monitoring.Metrics;
+import org.apache.axis.monitoring.MetricsRegistry;
+import org.apache.axis.monitoring.ServiceMetrics;
+import test.GenericLocalTest;
+
+import java.io.StringWriter;
+
+/**
+ * Test the request metrics recorded by the server, the service and the
+ * RPC provider.
+ */
+public class TestMetrics extends GenericLocalTest {
+    /** For the instances created to serve the calls */
+    public TestMetrics() {
+    }
+
+    public TestMetrics(String s) {
+        super(s);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        MetricsRegistry.setEnabled(true);
+        MetricsRegistry.reset();
+    }
+
+    protected void tearDown() throws Exception {
+        MetricsRegistry.reset();
+        super.tearDown();
+    }
+
+    public String echo(String s) {
+        return s;
+    }
+
+    public void explode(String s) throws Exception {
+        throw new Exception(s);
+    }
+
+    public void testRequestsAndFaults() throws Exception {
+        Call call = getCall();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hi", call.invoke("echo", new Object[] {"hi"}));
+        }
+        try {
+            getCall().invoke("explode", new Object[] {"oops"});
+            fail("Expected a fault");
+        } catch (AxisFault e) {
+        }
+
+        assertEquals(4, MetricsRegistry.getServerMetrics().getRequestCount());
+        assertEquals(1, MetricsRegistry.getServerMetrics().getFaultCount());
+        assertEquals(0, MetricsRegistry.getServerMetrics().getInFlightCount());
+
+        ServiceMetrics service = MetricsRegistry.getServiceMetrics("service");
+        assertEquals(4, service.getRequestCount());
+        assertEquals(1, service.getFaultCount());
+        assertEquals(0, service.getInFlightCount());
+        assertEquals(4, service.getLatency().getCount());
+        assertEquals(4, service.getParseTime().getCount());
+        assertEquals(4, service.getInvokeTime().getCount());
+
+        Metrics echo = MetricsRegistry.findMetrics("service", "echo");
+        assertNotNull(echo);
+        assertEquals(3, echo.getRequestCount());
+        assertEquals(0, echo.getFaultCount());
+        assertEquals(3, echo.getParseTime().getCount());
+        assertEquals(3, echo.getInvokeTime().getCount());
+
+        Metrics explode = MetricsRegistry.findMetrics("service", "explode");
+        assertNotNull(explode);
+        assertEquals(1, explode.getRequestCount());
+        assertEquals(1, explode.getFaultCount());
+        assertEquals(1, explode.getInvokeTime().getCount());
+    }
+
+    public void testDisabled() throws Exception {
+        MetricsRegistry.setEnabled(false);
+        try {
+            getCall().invoke("echo", new Object[] {"hi"});
+        } finally {
+            MetricsRegistry.setEnabled(true);
+        }
+        assertEquals(0, MetricsRegistry.getServerMetrics().getRequestCount());
+        assertEquals(0, MetricsRegistry.getServiceNames().length);
+    }
+
+    public void testText() throws Exception {
+        getCall().invoke("echo", new Object[] {"hi"});
+
+        StringWriter writer = new StringWriter();
+        MetricsRegistry.writeText(writer);
+        String text = writer.toString();
+        assertTrue(text, text.indexOf("\naxis_requests_total 1\n") != -1);
+        assertTrue(text, text.indexOf(
+                "\naxis_requests_total{service=\"service\",operation=\"echo\"} 1\n") != -1);
+        assertTrue(text, text.indexOf(
+                "\naxis_duration_milliseconds_bucket{service=\"service\",phase=\"invoke\",le=\"+Inf\"} 1\n") != -1);
+        assertTrue(text, text.indexOf(
+                "\naxis_duration_milliseconds_count{phase=\"total\"} 1\n") != -1);
+    }
+
+    public void testHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(700);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(90 * 3 + 10 * 700, histogram.getSum());
+        assertEquals(700, histogram.getMax());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(5, histogram.getPercentile(90));
+        assertEquals(700, histogram.getPercentile(99));
+
+        long[] counts = histogram.getCounts();
+        assertEquals(LatencyHistogram.getBucketBounds().length + 1, counts.length);
+        assertEquals(90, counts[2]);
+    }
+
+    public void testConcurrentRecording() throws Exception {
+        final Metrics metrics = new Metrics(null, null);
+        final int perThread = 1000;
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final long millis = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        metrics.requestStarted();
+                        metrics.addBytesIn(10);
+                        metrics.requestFinished(millis, j % 10 == 0);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        long total = threads.length * perThread;
+        assertEquals(total, metrics.getRequestCount());
+        assertEquals(total / 10, metrics.getFaultCount());
+        assertEquals(0, metrics.getInFlightCount());
+        assertEquals(total * 10, metrics.getBytesIn());
+        assertEquals(total, metrics.getLatency().getCount());
+        assertEquals(perThread * (0 + 1 + 2 + 3 + 4 + 5 + 6 + 7),
+                     metrics.getLatency().getSum());
+        assertEquals(threads.length - 1, metrics.getLatency().getMax());
+
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount());
+        assertEquals(0, metrics.getLatency().getCount());
+    }
+}
@@ -28,10 +28,12 @@ import org.apache.axis.MessageContext;
 import org.apache.axis.configuration.XMLStringProvider;
 import org.apache.axis.deployment.wsdd.WSDDConstants;
 import org.apache.axis.deployment.wsdd.WSDDProvider;
+import org.apache.axis.handlers.EchoHandler;
 import org.apache.axis.handlers.soap.SOAPService;
 import org.apache.axis.providers.BasicProvider;
 import org.apache.axis.server.AxisServer;
 import org.apache.axis.transport.local.LocalTransport;
+import org.apache.axis.utils.XMLUtils;
 import org.w3c.dom.Document;
 
 import junit.framework.TestCase;
@@ -112,4 +114,58 @@ public class TestBasicProvider extends TestCase {
         assertEquals( "wrong type for part", part.getTypeName().getLocalPart(), "string");
 
     }
+
+    public void testGeneratedWSDLIsCached() throws Exception {
+        SOAPService soapService = server.getService(SERVICE_NAME);
+        BasicProvider provider = (BasicProvider) soapService.getPivotHandler();
+
+        MessageContext mc = new MessageContext(server);
+        mc.setService(soapService);
+        mc.setProperty(MessageContext.TRANS_URL, "local");
+        provider.generateWSDL(mc);
+        Document first = (Document) mc.getProperty("WSDL");
+
+        // callers may modify the document they get
+        first.getDocumentElement().setAttribute("modified", "true");
+
+        mc = new MessageContext(server);
+        mc.setService(soapService);
+        mc.setProperty(MessageContext.TRANS_URL, "local");
+        provider.generateWSDL(mc);
+        Document second = (Document) mc.getProperty("WSDL");
+
+        assertNotSame(first, second);
+        assertEquals("", second.getDocumentElement().getAttribute("modified"));
+        assertEquals(XMLUtils.DocumentToString(first).length() - " modified=\"true\"".length(),
+                     XMLUtils.DocumentToString(second).length());
+    }
+
+    public void testSharedWSDL() throws Exception {
+        SOAPService soapService = server.getService(SERVICE_NAME);
+        BasicProvider provider = (BasicProvider) soapService.getPivotHandler();
+
+        // the first run settles the namespace the cached WSDL is kept under
+        generateSharedWSDL(soapService, provider);
+        Document first = generateSharedWSDL(soapService, provider);
+        assertSame(first, generateSharedWSDL(soapService, provider));
+
+        // the handlers of a service may modify the document
+        SOAPService withHandlers =
+            new SOAPService(new EchoHandler(), provider, null);
+        withHandlers.setEngine(server);
+        withHandlers.setServiceDescription(soapService.getServiceDescription());
+        generateSharedWSDL(withHandlers, provider);
+        Document copy = generateSharedWSDL(withHandlers, provider);
+        assertNotSame(copy, generateSharedWSDL(withHandlers, provider));
+    }
+
+    private Document generateSharedWSDL(SOAPService soapService,
+                                        BasicProvider provider) throws Exception {
+        MessageContext mc = new MessageContext(server);
+        mc.setService(soapService);
+        mc.setProperty(MessageContext.TRANS_URL, "local");
+        mc.setProperty(BasicProvider.PROP_SHARED_WSDL, Boolean.TRUE);
+        provider.generateWSDL(mc);
+        return (Document) mc.getProperty("WSDL");
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.session;
+
+import junit.framework.TestCase;
+import org.apache.axis.session.ShardedSessionStore;
+import org.apache.axis.session.SimpleSession;
+
+import javax.xml.rpc.server.ServiceLifecycle;
+
+public class TestShardedSessionStore extends TestCase
+{
+    private int destroyed = 0;
+
+    private SimpleSession newSession(int timeout)
+    {
+        SimpleSession session = new SimpleSession();
+        session.setTimeout(timeout);
+        session.set("service", new ServiceLifecycle() {
+            public void init(Object context) {}
+            public void destroy() { destroyed++; }
+        });
+        return session;
+    }
+
+    public void testGetAndRemove()
+    {
+        ShardedSessionStore store = new ShardedSessionStore();
+        SimpleSession session = newSession(60);
+        store.putSession(new Long(1), session);
+        assertSame(session, store.getSession(new Long(1)));
+        assertNull(store.getSession(new Long(2)));
+        store.removeSession(new Long(1));
+        assertNull(store.getSession(new Long(1)));
+        assertEquals(0, store.size());
+        assertEquals(0, destroyed);
+    }
+
+    public void testExpiry() throws Exception
+    {
+        ShardedSessionStore store = new ShardedSessionStore();
+        store.putSession(new Long(1), newSession(1));
+        store.putSession(new Long(2), newSession(1));
+        store.putSession(new Long(3), newSession(60));
+        Thread.sleep(2100);
+        // a timed out session is dropped as soon as it is asked for
+        assertNull(store.getSession(new Long(1)));
+        assertEquals(1, destroyed);
+        store.expireSessions();
+        assertEquals(2, destroyed);
+        assertEquals(1, store.size());
+        assertNotNull(store.getSession(new Long(3)));
+    }
+
+    public void testTouchedSessionSurvives() throws Exception
+    {
+        ShardedSessionStore store = new ShardedSessionStore();
+        SimpleSession session = newSession(2);
+        store.putSession(new Long(1), session);
+        Thread.sleep(1500);
+        session.touch();
+        Thread.sleep(1500);
+        store.expireSessions();
+        assertSame(session, store.getSession(new Long(1)));
+        assertEquals(0, destroyed);
+    }
+
+    public void testLeastRecentlyUsedIsEvicted()
+    {
+        // 16 shards of one session each
+        ShardedSessionStore store = new ShardedSessionStore(16);
+        for (long i = 0; i < 64; i++) {
+            store.putSession(new Long(i), newSession(60));
+        }
+        assertTrue(store.size() <= 16);
+        assertEquals(64 - store.size(), destroyed);
+        assertNotNull(store.getSession(new Long(63)));
+    }
+}
@@ -1,7 +1,9 @@
 package test.session;
 
 import junit.framework.TestCase;
+import org.apache.axis.Constants;
 import org.apache.axis.EngineConfiguration;
+import org.apache.axis.Message;
 import org.apache.axis.MessageContext;
 import org.apache.axis.client.Call;
 import org.apache.axis.client.Service;
@@ -14,6 +16,7 @@ import org.apache.axis.handlers.soap.SOAPService;
 import org.apache.axis.providers.java.RPCProvider;
 import org.apache.axis.server.AxisServer;
 import org.apache.axis.session.Session;
+import org.apache.axis.session.ShardedSessionStore;
 import org.apache.axis.session.SimpleSession;
 import org.apache.axis.transport.local.LocalTransport;
 
@@ -138,6 +141,28 @@ public class TestSimpleSession extends TestCase implements ServiceLifecycle {
         assertEquals("Wrong # of calls to destroy()!", 2, destroyCalls);
     }
 
+    /**
+     * A new session is used even if the store has already evicted it.
+     */
+    public void testSessionEvictedOnCreation() throws Exception
+    {
+        SimpleSessionHandler sessionHandler = new SimpleSessionHandler();
+        sessionHandler.setSessionStore(new ShardedSessionStore() {
+            public Session getSession(Long id) {
+                return null;
+            }
+        });
+
+        MessageContext context = new MessageContext(new AxisServer());
+        context.setRequestMessage(new Message(
+                "<soapenv:Envelope xmlns:soapenv=\"" +
+                Constants.URI_SOAP11_ENV + "\"><soapenv:Body/></soapenv:Envelope>"));
+        sessionHandler.invoke(context);
+
+        assertNotNull(context.getSession());
+        assertNotNull(context.getProperty(SimpleSessionHandler.SESSION_ID));
+    }
+
     /**
      * This is our service method for testing session data.  Simply
      * increments a session-scoped counter.
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package test.utils;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Byte array helpers shared by the stream and attachment tests.
+ */
+public class ByteArrays {
+    private ByteArrays() {
+    }
+
+    /**
+     * Create <code>size</code> bytes of data that doesn't repeat with any
+     * short period, so that misplaced or dropped bytes are noticed.
+     */
+    public static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return data;
+    }
+
+    /**
+     * Read <code>in</code> to its end, in reads of <code>bufferSize</code>
+     * bytes, and close it.
+     */
+    public static byte[] readAll(InputStream in, int bufferSize)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[bufferSize];
+        int read;
+        try {
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        return readAll(in, 4096);
+    }
+
+    public static void assertEquals(byte[] expected, byte[] actual) {
+        Assert.assertEquals("length", expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals("byte " + i, expected[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.utils;
+
+import junit.framework.TestCase;
+import org.apache.axis.utils.BeanPropertyDescriptor;
+import org.apache.axis.utils.BeanUtils;
+import org.apache.axis.utils.FieldPropertyDescriptor;
+import org.apache.axis.utils.PropertyAccessor;
+import org.apache.axis.utils.PropertyAccessorFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+public class TestPropertyAccessorFactory extends TestCase
+{
+    public static class Bean {
+        private String name;
+        public int count;
+        public final String constant = "constant";
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+    }
+
+    private static BeanPropertyDescriptor getPd(String name)
+    {
+        return BeanUtils.getSpecificPD(BeanUtils.getPd(Bean.class), name);
+    }
+
+    public void testBeanProperty() throws Exception
+    {
+        Bean bean = new Bean();
+        BeanPropertyDescriptor pd = getPd("name");
+        pd.set(bean, "value");
+        assertEquals("value", bean.getName());
+        assertEquals("value", pd.get(bean));
+    }
+
+    public void testPublicField() throws Exception
+    {
+        Bean bean = new Bean();
+        BeanPropertyDescriptor pd = getPd("count");
+        assertTrue(pd instanceof FieldPropertyDescriptor);
+        pd.set(bean, new Integer(3));
+        assertEquals(3, bean.count);
+        assertEquals(new Integer(3), pd.get(bean));
+    }
+
+    public void testFinalFieldIsNotWritable() throws Exception
+    {
+        Field field = Bean.class.getField("constant");
+        FieldPropertyDescriptor pd = new FieldPropertyDescriptor("constant", field);
+        try {
+            pd.set(new Bean(), "changed");
+            fail("final field was written");
+        } catch (IllegalAccessException e) {
+        }
+    }
+
+    public void testPluggableFactory() throws Exception
+    {
+        final int[] created = new int[1];
+        PropertyAccessorFactory.setFactory(new PropertyAccessorFactory() {
+            public PropertyAccessor createAccessor(Method readMethod,
+                                                   Method writeMethod) {
+                created[0]++;
+                return super.createAccessor(readMethod, writeMethod);
+            }
+        });
+        try {
+            BeanPropertyDescriptor pd = getPd("name");
+            Bean bean = new Bean();
+            pd.set(bean, "a");
+            pd.get(bean);
+            // one accessor per descriptor, created on first use
+            assertEquals(1, created[0]);
+        } finally {
+            PropertyAccessorFactory.setFactory(null);
+        }
+    }
+}
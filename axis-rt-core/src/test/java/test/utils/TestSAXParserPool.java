@@ -0,0 +1,78 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.utils;
+
+import junit.framework.TestCase;
+import org.apache.axis.utils.SAXParserPool;
+
+import javax.xml.parsers.SAXParser;
+
+public class TestSAXParserPool extends TestCase
+{
+    public void testThreadAffinity() throws Exception
+    {
+        SAXParserPool pool = new SAXParserPool(2, true);
+        SAXParser parser = pool.getSAXParser();
+        assertNotNull(parser);
+        assertEquals(1, pool.getMisses());
+        pool.releaseSAXParser(parser);
+        assertEquals(0, pool.getSharedSize());
+        assertSame(parser, pool.getSAXParser());
+        assertEquals(1, pool.getThreadHits());
+    }
+
+    public void testSharedPoolIsBounded() throws Exception
+    {
+        SAXParserPool pool = new SAXParserPool(2, false);
+        SAXParser[] parsers = new SAXParser[3];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = pool.getSAXParser();
+        }
+        for (int i = 0; i < parsers.length; i++) {
+            pool.releaseSAXParser(parsers[i]);
+        }
+        assertEquals(2, pool.getSharedSize());
+        assertEquals(1, pool.getDiscards());
+        pool.getSAXParser();
+        assertEquals(1, pool.getSharedHits());
+    }
+
+    public void testParserFromOtherThread() throws Exception
+    {
+        final SAXParserPool pool = new SAXParserPool(2, true);
+        final SAXParser parser = pool.getSAXParser();
+        pool.releaseSAXParser(parser);
+        final SAXParser[] result = new SAXParser[1];
+        Thread thread = new Thread() {
+            public void run() {
+                result[0] = pool.getSAXParser();
+            }
+        };
+        thread.start();
+        thread.join();
+        // the parser is held by this thread's slot
+        assertNotSame(parser, result[0]);
+    }
+
+    public void testClear() throws Exception
+    {
+        SAXParserPool pool = new SAXParserPool(2, true);
+        SAXParser parser = pool.getSAXParser();
+        pool.releaseSAXParser(parser);
+        pool.clear();
+        assertNotSame(parser, pool.getSAXParser());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.utils;
+
+import junit.framework.TestCase;
+import org.apache.axis.utils.UTF8Writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class TestUTF8Writer extends TestCase
+{
+    private static final String[] STRINGS = {
+        "",
+        "plain ascii <soapenv:Envelope/>",
+        "latin-1 \u00e4\u00f6\u00fc\u00df",
+        "bmp \u20ac \u4e2d\u6587 \uffff",
+        "supplementary \ud834\udd1e end",
+        "lone high \ud834 and lone low \udd1e",
+        "trailing high \ud834",
+    };
+
+    private static byte[] expected(String s) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(baos, "UTF-8");
+        writer.write(s);
+        writer.close();
+        return baos.toByteArray();
+    }
+
+    private static void assertBytes(byte[] expected, byte[] actual)
+    {
+        assertEquals(new String(expected, 0), new String(actual, 0));
+    }
+
+    public void testSameBytesAsOutputStreamWriter() throws Exception
+    {
+        for (int i = 0; i < STRINGS.length; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            UTF8Writer writer = new UTF8Writer(baos);
+            writer.write(STRINGS[i]);
+            writer.close();
+            assertBytes(expected(STRINGS[i]), baos.toByteArray());
+        }
+    }
+
+    public void testSurrogatePairSplitAcrossWrites() throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        UTF8Writer writer = new UTF8Writer(baos);
+        writer.write('\ud834');
+        writer.write(new char[] {'\udd1e', 'x'}, 0, 2);
+        writer.flush();
+        assertBytes(expected("\ud834\udd1ex"), baos.toByteArray());
+    }
+
+    public void testLargeOutputAndRelease() throws Exception
+    {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("a\u00e9\u20ac\ud834\udd1e");
+        }
+        String s = sb.toString();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        UTF8Writer writer = new UTF8Writer(baos);
+        writer.write(s, 0, 10000);
+        writer.release();
+        writer.write(s, 10000, s.length() - 10000);
+        writer.flush();
+        writer.release();
+        assertBytes(expected(s), baos.toByteArray());
+    }
+}
@@ -1,8 +1,14 @@
 package test.utils.cache;
 
 import junit.framework.TestCase;
+import org.apache.axis.deployment.wsdd.WSDDDeployment;
+import org.apache.axis.deployment.wsdd.WSDDService;
+import org.apache.axis.description.JavaServiceDesc;
 import org.apache.axis.utils.cache.JavaClass;
 
+import javax.xml.namespace.QName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 
 public class TestJavaClass extends TestCase
@@ -59,4 +65,74 @@ public class TestJavaClass extends TestCase
         Method[] gorp = jcVec.getMethod("gorp");
         assertNull("gorp was not null", gorp);
     }
+
+    public void testFindIsShared()
+    {
+        JavaClass jc = JavaClass.find(java.util.Hashtable.class);
+        assertSame(jc, JavaClass.find(java.util.Hashtable.class));
+        assertSame(jc.getMethods(), jc.getMethods());
+        assertSame(jc.getPropertyDescriptors(), jc.getPropertyDescriptors());
+    }
+
+    public void testGetMethodBySignature() throws Exception
+    {
+        JavaClass jc = JavaClass.find(java.util.Vector.class);
+        Method add = jc.getMethod("add", new Class[] {Object.class});
+        assertNotNull(add);
+        assertSame(add, jc.getMethod("add", new Class[] {Object.class}));
+        assertNull(jc.getMethod("gorp", new Class[0]));
+        assertNull(jc.getMethod("gorp", new Class[0]));
+    }
+
+    public void testClear()
+    {
+        JavaClass jc = JavaClass.find(java.util.Stack.class);
+        JavaClass.clear(java.util.Stack.class.getClassLoader());
+        assertNotSame(jc, JavaClass.find(java.util.Stack.class));
+    }
+
+    public void testUndeployClearsServiceClasses() throws Exception
+    {
+        Class serviceClass = new ServiceLoader().loadService();
+        JavaClass jc = JavaClass.find(serviceClass);
+
+        WSDDService service = new WSDDService();
+        service.setQName(new QName("Isolated"));
+        ((JavaServiceDesc) service.getServiceDesc()).setImplClass(serviceClass);
+        WSDDDeployment deployment = new WSDDDeployment();
+        deployment.deployService(service);
+        assertSame(jc, JavaClass.find(serviceClass));
+
+        deployment.undeployService(service.getQName());
+        assertNotSame(jc, JavaClass.find(serviceClass));
+    }
+
+    /** A service class with no dependencies */
+    public static class Isolated
+    {
+        public String echo(String s)
+        {
+            return s;
+        }
+    }
+
+    /** Loads {@link Isolated} by itself, like a class loader per service */
+    private static class ServiceLoader extends ClassLoader
+    {
+        Class loadService() throws Exception
+        {
+            String name = Isolated.class.getName();
+            InputStream in = Isolated.class.getResourceAsStream(
+                    name.substring(name.lastIndexOf('.') + 1) + ".class");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            in.close();
+            byte[] bytes = out.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test.wsdd;
+
+import junit.framework.TestCase;
+import org.apache.axis.MessageContext;
+import org.apache.axis.client.Call;
+import org.apache.axis.client.Service;
+import org.apache.axis.configuration.XMLStringProvider;
+import org.apache.axis.deployment.wsdd.WSDDConstants;
+import org.apache.axis.handlers.soap.SOAPService;
+import org.apache.axis.server.AxisServer;
+import org.apache.axis.transport.local.LocalTransport;
+
+/**
+ * Test the "auto" value of the streaming attribute of a service.
+ */
+public class TestAutoStreaming extends TestCase
+{
+    static final String deployDoc =
+            "<deployment xmlns=\"http://xml.apache.org/axis/wsdd/\" " +
+                  "xmlns:java=\"" + WSDDConstants.URI_WSDD_JAVA + "\">\n" +
+            " <service name=\"plain\" provider=\"java:RPC\" streaming=\"auto\">\n" +
+            "  <parameter name=\"className\" value=\"test.wsdd.TestAutoStreaming\"/>\n" +
+            "  <parameter name=\"allowedMethods\" value=\"echo\"/>\n" +
+            " </service>\n" +
+            " <service name=\"withHandler\" provider=\"java:RPC\" streaming=\"auto\">\n" +
+            "  <requestFlow>\n" +
+            "   <handler type=\"java:org.apache.axis.handlers.EchoHandler\"/>\n" +
+            "  </requestFlow>\n" +
+            "  <parameter name=\"className\" value=\"test.wsdd.TestAutoStreaming\"/>\n" +
+            " </service>\n" +
+            " <service name=\"message\" provider=\"java:MSG\" streaming=\"auto\">\n" +
+            "  <parameter name=\"className\" value=\"test.wsdd.TestAutoStreaming\"/>\n" +
+            " </service>\n" +
+            " <service name=\"default\" provider=\"java:RPC\">\n" +
+            "  <parameter name=\"className\" value=\"test.wsdd.TestAutoStreaming\"/>\n" +
+            " </service>\n" +
+            "</deployment>";
+
+    public String echo(String s) {
+        assertFalse(MessageContext.getCurrentContext().isHighFidelity());
+        return s;
+    }
+
+    static final String transportDeployDoc =
+            "<deployment xmlns=\"http://xml.apache.org/axis/wsdd/\" " +
+                  "xmlns:java=\"" + WSDDConstants.URI_WSDD_JAVA + "\">\n" +
+            " <transport name=\"checked\">\n" +
+            "  <requestFlow>\n" +
+            "   <handler type=\"java:org.apache.axis.handlers.EchoHandler\"/>\n" +
+            "  </requestFlow>\n" +
+            " </transport>\n" +
+            " <transport name=\"plain\"/>\n" +
+            " <service name=\"plain\" provider=\"java:RPC\" streaming=\"auto\">\n" +
+            "  <parameter name=\"className\" value=\"test.wsdd.TestAutoStreaming\"/>\n" +
+            "  <parameter name=\"allowedMethods\" value=\"echo\"/>\n" +
+            " </service>\n" +
+            "</deployment>";
+
+    private boolean isHighFidelity(AxisServer server, String serviceName) throws Exception {
+        return isHighFidelity(server, serviceName, null);
+    }
+
+    private boolean isHighFidelity(AxisServer server, String serviceName,
+                                   String transportName) throws Exception {
+        MessageContext msgContext = new MessageContext(server);
+        if (transportName != null) {
+            msgContext.setTransportName(transportName);
+        }
+        msgContext.setService((SOAPService) server.getService(serviceName));
+        return msgContext.isHighFidelity();
+    }
+
+    public void testFidelity() throws Exception
+    {
+        AxisServer server = new AxisServer(new XMLStringProvider(deployDoc));
+        assertFalse(isHighFidelity(server, "plain"));
+        assertTrue(isHighFidelity(server, "withHandler"));
+        assertTrue(isHighFidelity(server, "message"));
+        assertTrue(isHighFidelity(server, "default"));
+    }
+
+    public void testTransportHandler() throws Exception
+    {
+        AxisServer server = new AxisServer(new XMLStringProvider(transportDeployDoc));
+        assertTrue(isHighFidelity(server, "plain", "checked"));
+        assertFalse(isHighFidelity(server, "plain", "plain"));
+        assertFalse(isHighFidelity(server, "plain", "unknown"));
+    }
+
+    public void testInvoke() throws Exception
+    {
+        AxisServer server = new AxisServer(new XMLStringProvider(deployDoc));
+        Call call = (Call) new Service().createCall();
+        call.setTransport(new LocalTransport(server));
+        assertEquals("hello", call.invoke("plain", "echo", new Object[] { "hello" }));
+    }
+}
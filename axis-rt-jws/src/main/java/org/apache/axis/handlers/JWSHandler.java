@@ -27,6 +27,7 @@ import org.apache.axis.utils.ClasspathUtils;
 import org.apache.axis.utils.JWSClassLoader;
 import org.apache.axis.utils.Messages;
 import org.apache.axis.utils.XMLUtils;
+import org.apache.axis.utils.cache.JavaClass;
 import org.apache.commons.logging.Log;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -244,7 +245,11 @@ public class JWSHandler extends BasicHandler
                                          Messages.getMessage("badCompile00", jFile),
                                          null, new Element[] { root } );
                 }
-                classloaders.remove( clsName );
+                ClassLoader oldLoader = (ClassLoader) classloaders.remove( clsName );
+                if (oldLoader != null) {
+                    // Let the classes of the old version be collected.
+                    JavaClass.clear(oldLoader);
+                }
                 // And clean out the cached service.
                 soapServices.remove(clsName);
             }
@@ -27,6 +27,7 @@ import org.apache.axis.description.ServiceDesc;
 import org.apache.axis.handlers.soap.SOAPService;
 import org.apache.axis.management.jmx.DeploymentAdministrator;
 import org.apache.axis.management.jmx.DeploymentQuery;
+import org.apache.axis.management.jmx.MetricsQuery;
 import org.apache.axis.management.jmx.ServiceAdministrator;
 import org.apache.axis.server.AxisServer;
 
@@ -142,6 +143,7 @@ public class ServiceAdmin {
         Registrar.register(new ServiceAdministrator(), "axis:type=server", "ServiceAdministrator");
         Registrar.register(new DeploymentAdministrator(), "axis:type=deploy", "DeploymentAdministrator");
         Registrar.register(new DeploymentQuery(), "axis:type=query", "DeploymentQuery");
+        Registrar.register(new MetricsQuery(), "axis:type=metrics", "MetricsQuery");
     }
 
     static public void start() {
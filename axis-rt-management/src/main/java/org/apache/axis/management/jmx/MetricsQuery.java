@@ -0,0 +1,117 @@
+/*
+ * Copyright 2003,2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.management.jmx;
+
+import org.apache.axis.monitoring.LatencyHistogram;
+import org.apache.axis.monitoring.Metrics;
+import org.apache.axis.monitoring.MetricsRegistry;
+import org.apache.axis.monitoring.ServiceMetrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class MetricsQuery implements MetricsQueryMBean {
+    public MetricsQuery() {
+    }
+
+    public boolean isEnabled() {
+        return MetricsRegistry.isEnabled();
+    }
+
+    public void setEnabled(boolean enabled) {
+        MetricsRegistry.setEnabled(enabled);
+    }
+
+    public String[] getServiceNames() {
+        return MetricsRegistry.getServiceNames();
+    }
+
+    public String[] getOperationNames(String serviceName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, null);
+        if (metrics instanceof ServiceMetrics) {
+            return ((ServiceMetrics) metrics).getOperationNames();
+        }
+        return new String[0];
+    }
+
+    public long getRequestCount(String serviceName, String operationName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, operationName);
+        return (metrics == null) ? 0 : metrics.getRequestCount();
+    }
+
+    public long getFaultCount(String serviceName, String operationName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, operationName);
+        return (metrics == null) ? 0 : metrics.getFaultCount();
+    }
+
+    public long getInFlightCount(String serviceName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, null);
+        return (metrics == null) ? 0 : metrics.getInFlightCount();
+    }
+
+    public long getBytesIn(String serviceName, String operationName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, operationName);
+        return (metrics == null) ? 0 : metrics.getBytesIn();
+    }
+
+    public long getBytesOut(String serviceName, String operationName) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, operationName);
+        return (metrics == null) ? 0 : metrics.getBytesOut();
+    }
+
+    public double getMeanTime(String serviceName, String operationName,
+                              String phase) {
+        LatencyHistogram histogram = getHistogram(serviceName, operationName, phase);
+        return (histogram == null) ? 0 : histogram.getMean();
+    }
+
+    public long getPercentileTime(String serviceName, String operationName,
+                                  String phase, double percentile) {
+        LatencyHistogram histogram = getHistogram(serviceName, operationName, phase);
+        return (histogram == null) ? 0 : histogram.getPercentile(percentile);
+    }
+
+    public String getText() {
+        StringWriter writer = new StringWriter();
+        try {
+            MetricsRegistry.writeText(writer);
+        } catch (IOException e) {
+            // cannot happen with a StringWriter
+        }
+        return writer.toString();
+    }
+
+    public void reset() {
+        MetricsRegistry.reset();
+    }
+
+    private static LatencyHistogram getHistogram(String serviceName,
+                                                 String operationName,
+                                                 String phase) {
+        Metrics metrics = MetricsRegistry.findMetrics(serviceName, operationName);
+        if (metrics == null) {
+            return null;
+        }
+        if ("parse".equals(phase)) {
+            return metrics.getParseTime();
+        } else if ("invoke".equals(phase)) {
+            return metrics.getInvokeTime();
+        } else if ("serialize".equals(phase)) {
+            return metrics.getSerializeTime();
+        }
+        return metrics.getLatency();
+    }
+}
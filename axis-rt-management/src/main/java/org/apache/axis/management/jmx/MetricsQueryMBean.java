@@ -0,0 +1,134 @@
+/*
+ * Copyright 2003,2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.management.jmx;
+
+/**
+ * The MetricsQuery MBean exposes the request counts and timings recorded
+ * by org.apache.axis.monitoring.MetricsRegistry.  In all methods a
+ * <code>null</code> service name stands for the whole server, and a
+ * <code>null</code> operation name for the whole service.
+ */
+public interface MetricsQueryMBean {
+    /**
+     * Is recording switched on?
+     *
+     * @return
+     */
+    public boolean isEnabled();
+
+    /**
+     * Switch recording on or off
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled);
+
+    /**
+     * List the services that have been called
+     *
+     * @return
+     */
+    public String[] getServiceNames();
+
+    /**
+     * List the operations of a service that have been called
+     *
+     * @param serviceName
+     * @return
+     */
+    public String[] getOperationNames(String serviceName);
+
+    /**
+     * get the number of requests
+     *
+     * @param serviceName
+     * @param operationName
+     * @return
+     */
+    public long getRequestCount(String serviceName, String operationName);
+
+    /**
+     * get the number of requests that ended with a fault
+     *
+     * @param serviceName
+     * @param operationName
+     * @return
+     */
+    public long getFaultCount(String serviceName, String operationName);
+
+    /**
+     * get the number of requests being processed; not recorded per
+     * operation
+     *
+     * @param serviceName
+     * @return
+     */
+    public long getInFlightCount(String serviceName);
+
+    /**
+     * get the number of bytes received
+     *
+     * @param serviceName
+     * @param operationName
+     * @return
+     */
+    public long getBytesIn(String serviceName, String operationName);
+
+    /**
+     * get the number of bytes sent
+     *
+     * @param serviceName
+     * @param operationName
+     * @return
+     */
+    public long getBytesOut(String serviceName, String operationName);
+
+    /**
+     * get the mean time in milliseconds of a phase of the requests
+     *
+     * @param serviceName
+     * @param operationName
+     * @param phase "total", "parse", "invoke" or "serialize"
+     * @return
+     */
+    public double getMeanTime(String serviceName, String operationName,
+                              String phase);
+
+    /**
+     * get a percentile in milliseconds of the time of a phase of the
+     * requests
+     *
+     * @param serviceName
+     * @param operationName
+     * @param phase "total", "parse", "invoke" or "serialize"
+     * @param percentile between 0 and 100
+     * @return
+     */
+    public long getPercentileTime(String serviceName, String operationName,
+                                  String phase, double percentile);
+
+    /**
+     * get all metrics in the text format of Prometheus
+     *
+     * @return
+     */
+    public String getText();
+
+    /**
+     * clear all counters and timings
+     */
+    public void reset();
+}
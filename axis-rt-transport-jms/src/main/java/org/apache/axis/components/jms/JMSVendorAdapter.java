@@ -132,6 +132,11 @@ public abstract class JMSVendorAdapter
         if (timeoutTime != null)
             connectorProps.put(JMSConstants.TIMEOUT_TIME, timeoutTime);
 
+        // JMSConstants.SHARED_REPLY_DESTINATION
+        String sharedReply = jmsurl.getPropertyValue(JMSConstants._SHARED_REPLY_DESTINATION);
+        if (sharedReply != null)
+            connectorProps.put(JMSConstants.SHARED_REPLY_DESTINATION, sharedReply);
+
         return connectorProps;
     }
 
@@ -17,6 +17,7 @@
 package org.apache.axis.transport.jms;
 
 import org.apache.axis.components.jms.JMSVendorAdapter;
+import org.apache.axis.components.uuid.UUIDGenFactory;
 
 import javax.jms.BytesMessage;
 import javax.jms.ConnectionFactory;
@@ -25,6 +26,7 @@ import javax.jms.ExceptionListener;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 import java.io.ByteArrayOutputStream;
@@ -44,6 +46,12 @@ import java.util.Map;
  *   It also implements the capability to retry connections in the event of
  *   failures.
  *
+ * By default every request/response call creates a temporary destination
+ *   for its response and deletes it afterwards.  A connector with a shared
+ *   reply destination instead keeps one temporary destination and consumer
+ *   for as long as its connection lasts, and hands each response to the
+ *   waiting caller with the same JMSCorrelationID.
+ *
  * @author Jaime Meritt  (jmeritt@sonicsoftware.com)
  * @author Richard Chung (rchung@sonicsoftware.com)
  * @author Dave Chappell (chappell@sonicsoftware.com)
@@ -62,6 +70,7 @@ public abstract class JMSConnector
     protected boolean           m_allowReceive;
     protected JMSVendorAdapter  m_adapter;
     protected JMSURLHelper      m_jmsurl;
+    protected boolean           m_sharedReplyDestination;
 
     public JMSConnector(ConnectionFactory connectionFactory,
                         int numRetries,
@@ -159,6 +168,21 @@ public abstract class JMSConnector
         return m_jmsurl;
     }
 
+    public boolean isSharedReplyDestination()
+    {
+        return m_sharedReplyDestination;
+    }
+
+    /**
+     * Choose between one temporary reply destination per call (the
+     * default) and one shared by all calls of this connector; see
+     * {@link JMSConstants#SHARED_REPLY_DESTINATION}.
+     */
+    public void setSharedReplyDestination(boolean sharedReplyDestination)
+    {
+        m_sharedReplyDestination = sharedReplyDestination;
+    }
+
     protected javax.jms.Connection createConnectionWithRetry(
                                             ConnectionFactory connectionFactory,
                                             String username,
@@ -434,6 +458,7 @@ public abstract class JMSConnector
         LinkedList m_senders;
         int        m_numSessions;
         Object     m_senderLock;
+        ReplyDestination m_replyDestination;
 
         SyncConnection(ConnectionFactory connectionFactory,
                        javax.jms.Connection connection,
@@ -567,6 +592,8 @@ public abstract class JMSConnector
             synchronized(m_senderLock)
             {
                 m_senders.clear();
+                // the callers retry once the connection is back
+                closeReplyDestination(new JMSException("The reply destination has been closed"));
             }
         }
 
@@ -581,6 +608,32 @@ public abstract class JMSConnector
                     session.cleanup();
                 }
                 m_senders.clear();
+                // not recoverable, so that the callers give up at once
+                closeReplyDestination(new InvokeException("The connector has been shut down"));
+            }
+        }
+
+        /**
+         * Return the reply destination shared by the calls on this
+         * connection, creating it on first use.
+         */
+        private ReplyDestination getReplyDestination()
+            throws JMSException
+        {
+            synchronized(m_senderLock)
+            {
+                if(m_replyDestination == null)
+                    m_replyDestination = new ReplyDestination(createSendSession(m_connection));
+                return m_replyDestination;
+            }
+        }
+
+        private void closeReplyDestination(Exception failure)
+        {
+            if(m_replyDestination != null)
+            {
+                m_replyDestination.close(failure);
+                m_replyDestination = null;
             }
         }
 
@@ -671,6 +724,9 @@ public abstract class JMSConnector
                         HashMap properties)
                 throws Exception
             {
+                if(m_sharedReplyDestination)
+                    return callShared(endpoint, message, timeout, properties);
+
                 Destination reply = createTemporaryDestination();
                 MessageConsumer subscriber = createConsumer(reply);
                 BytesMessage jmsMessage = m_session.createBytesMessage();
@@ -686,28 +742,69 @@ public abstract class JMSConnector
 
                 send(endpoint.getDestination(m_session), jmsMessage, deliveryMode,
                      priority, timeToLive);
+                byte[] respBytes = readResponse(subscriber.receive(timeout));
+                subscriber.close();
+                deleteTemporaryDestination(reply);
+                return respBytes;
+            }
+
+            /**
+             * Send the request with the reply destination of the connection
+             * and wait for the response with the same JMSCorrelationID.  The
+             * transport assigns a correlation id unless the caller sets one.
+             */
+            private byte[] callShared(JMSEndpoint endpoint, byte[] message,
+                                      long timeout, HashMap properties)
+                throws Exception
+            {
+                ReplyDestination replies = getReplyDestination();
+                BytesMessage jmsMessage = m_session.createBytesMessage();
+                jmsMessage.writeBytes(message);
+                jmsMessage.setJMSReplyTo(replies.m_destination);
+                jmsMessage.setJMSCorrelationID(replies.nextCorrelationID());
+
+                int deliveryMode = extractDeliveryMode(properties);
+                int priority = extractPriority(properties);
+                long timeToLive = extractTimeToLive(properties);
+
+                if(properties != null && !properties.isEmpty())
+                    setProperties(properties, jmsMessage);
+
+                // register before sending, the response may be quick
+                String correlationID = jmsMessage.getJMSCorrelationID();
+                PendingReply pending = replies.expect(correlationID);
+                try
+                {
+                    send(endpoint.getDestination(m_session), jmsMessage, deliveryMode,
+                         priority, timeToLive);
+                    return readResponse(pending.waitFor(timeout));
+                }
+                finally
+                {
+                    replies.forget(correlationID, pending);
+                }
+            }
+
+            private byte[] readResponse(Message message)
+                throws JMSException
+            {
+                if(message == null)
+                    return null;
                 BytesMessage response = null;
                 try {
-                    response = (BytesMessage)subscriber.receive(timeout);
+                    response = (BytesMessage)message;
                 } catch (ClassCastException cce) {
                     throw new InvokeException
                             ("Error: unexpected message type received - expected BytesMessage");
                 }
-                byte[] respBytes = null;
-                if(response != null)
+                byte[] buffer = new byte[8 * 1024];
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for(int bytesRead = response.readBytes(buffer);
+                    bytesRead != -1; bytesRead = response.readBytes(buffer))
                 {
-                    byte[] buffer = new byte[8 * 1024];
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    for(int bytesRead = response.readBytes(buffer);
-                        bytesRead != -1; bytesRead = response.readBytes(buffer))
-                    {
-                        out.write(buffer, 0, bytesRead);
-                    }
-                    respBytes = out.toByteArray();
+                    out.write(buffer, 0, bytesRead);
                 }
-                subscriber.close();
-                deleteTemporaryDestination(reply);
-                return respBytes;
+                return out.toByteArray();
             }
 
             private int extractPriority(HashMap properties)
@@ -757,6 +854,155 @@ public abstract class JMSConnector
         }
     }
 
+    /**
+     * The reply destination shared by the calls of a connection, with the
+     * callers still waiting for their response by JMSCorrelationID.  Its
+     * session is used for nothing else, since the consumer delivers the
+     * responses asynchronously.
+     */
+    final class ReplyDestination implements MessageListener
+    {
+        SyncConnection.SendSession m_replySession;
+        Destination m_destination;
+        MessageConsumer m_consumer;
+
+        private HashMap m_pending = new HashMap();
+        private boolean m_closed = false;
+        private String m_idPrefix;
+        private long m_nextID = 0;
+
+        ReplyDestination(SyncConnection.SendSession replySession)
+            throws JMSException
+        {
+            m_replySession = replySession;
+            try
+            {
+                m_destination = replySession.createTemporaryDestination();
+                m_consumer = replySession.createConsumer(m_destination);
+                m_consumer.setMessageListener(this);
+            }
+            catch(JMSException jmse)
+            {
+                replySession.cleanup();
+                throw jmse;
+            }
+            m_idPrefix = "axis-" + UUIDGenFactory.getUUIDGen().nextUUID() + "-";
+        }
+
+        synchronized String nextCorrelationID()
+        {
+            return m_idPrefix + (m_nextID++);
+        }
+
+        PendingReply expect(String correlationID)
+            throws JMSException
+        {
+            synchronized(m_pending)
+            {
+                if(m_closed)
+                    throw new JMSException("The reply destination has been closed");
+                if(m_pending.containsKey(correlationID))
+                    throw new InvokeException("Error: a call with JMSCorrelationID "
+                                              + correlationID + " is already waiting for its response");
+                PendingReply pending = new PendingReply();
+                m_pending.put(correlationID, pending);
+                return pending;
+            }
+        }
+
+        void forget(String correlationID, PendingReply pending)
+        {
+            synchronized(m_pending)
+            {
+                if(m_pending.get(correlationID) == pending)
+                    m_pending.remove(correlationID);
+            }
+        }
+
+        public void onMessage(Message message)
+        {
+            PendingReply pending;
+            try
+            {
+                String correlationID = message.getJMSCorrelationID();
+                synchronized(m_pending)
+                {
+                    pending = (PendingReply)m_pending.remove(correlationID);
+                }
+            }
+            catch(JMSException jmse)
+            {
+                return;
+            }
+            // without a waiting caller the call has timed out already
+            if(pending != null)
+                pending.complete(message, null);
+        }
+
+        /**
+         * Close the consumer and delete the destination; the callers still
+         * waiting fail with the given exception.
+         */
+        void close(Exception failure)
+        {
+            HashMap pending;
+            synchronized(m_pending)
+            {
+                m_closed = true;
+                pending = m_pending;
+                m_pending = new HashMap();
+            }
+            try{m_consumer.close();}catch(Throwable t){}
+            try{m_replySession.deleteTemporaryDestination(m_destination);}catch(Throwable t){}
+            m_replySession.cleanup();
+
+            Iterator waiting = pending.values().iterator();
+            while(waiting.hasNext())
+                ((PendingReply)waiting.next()).complete(null, failure);
+        }
+    }
+
+    /**
+     * A caller waiting for its response on a shared reply destination.
+     */
+    static final class PendingReply
+    {
+        private Message m_response;
+        private Exception m_failure;
+        private boolean m_done = false;
+
+        synchronized void complete(Message response, Exception failure)
+        {
+            if(m_done)
+                return;
+            m_response = response;
+            m_failure = failure;
+            m_done = true;
+            notifyAll();
+        }
+
+        /**
+         * Wait for the response.
+         *
+         * @return the response, or null if none arrived in time
+         */
+        synchronized Message waitFor(long timeout)
+            throws Exception
+        {
+            long timeoutTime = System.currentTimeMillis() + timeout;
+            while(!m_done)
+            {
+                long remaining = timeoutTime - System.currentTimeMillis();
+                if(remaining <= 0)
+                    return null;
+                wait(remaining);
+            }
+            if(m_failure != null)
+                throw m_failure;
+            return m_response;
+        }
+    }
+
     AsyncConnection getReceiveConnection()
     {
         return m_receiveConnection;
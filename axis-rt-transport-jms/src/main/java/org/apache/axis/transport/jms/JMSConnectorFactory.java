@@ -86,6 +86,14 @@ public abstract class JMSConnectorFactory
             if (connectorNumRetries != numRetries)
                 continue;
 
+            // shared reply destination
+            Object propertySharedReply = connectorProps.get(JMSConstants.SHARED_REPLY_DESTINATION);
+            boolean sharedReply = JMSConstants.DEFAULT_SHARED_REPLY_DESTINATION;
+            if (propertySharedReply != null)
+                sharedReply = Boolean.valueOf(propertySharedReply.toString()).booleanValue();
+            if (conn.isSharedReplyDestination() != sharedReply)
+                continue;
+
             // client id
             String connectorClientID = conn.getClientID();
             String clientID = (String)connectorProps.get(JMSConstants.CLIENT_ID);
@@ -215,6 +223,9 @@ public abstract class JMSConnectorFactory
         String domain = MapUtils.removeStringProperty(connectorConfig,
                                     JMSConstants.DOMAIN,
                                     JMSConstants.DOMAIN_DEFAULT);
+        boolean sharedReply = MapUtils.removeBooleanProperty(connectorConfig,
+                                    JMSConstants.SHARED_REPLY_DESTINATION,
+                                    JMSConstants.DEFAULT_SHARED_REPLY_DESTINATION);
 
         // this will be set if the target endpoint address was set on the Axis call
         JMSURLHelper jmsurl = (JMSURLHelper)connectorConfig.get(JMSConstants.JMS_URL);
@@ -222,9 +233,10 @@ public abstract class JMSConnectorFactory
         if(cfConfig == null)
             throw new IllegalArgumentException("noCfConfig");
 
+        JMSConnector connector;
         if(domain.equals(JMSConstants.DOMAIN_QUEUE))
         {
-            return new QueueConnector(adapter.getQueueConnectionFactory(cfConfig),
+            connector = new QueueConnector(adapter.getQueueConnectionFactory(cfConfig),
                                       numRetries, numSessions, connectRetryInterval,
                                       interactRetryInterval, timeoutTime,
                                       allowReceive, clientID, username, password,
@@ -232,11 +244,13 @@ public abstract class JMSConnectorFactory
         }
         else // domain is Topic
         {
-            return new TopicConnector(adapter.getTopicConnectionFactory(cfConfig),
+            connector = new TopicConnector(adapter.getTopicConnectionFactory(cfConfig),
                                       numRetries, numSessions, connectRetryInterval,
                                       interactRetryInterval, timeoutTime,
                                       allowReceive, clientID, username, password,
                                       adapter, jmsurl);
         }
+        connector.setSharedReplyDestination(sharedReply);
+        return connector;
     }
 }
\ No newline at end of file
@@ -63,6 +63,7 @@ public interface JMSConstants
     final static String _INTERACT_RETRY_INTERVAL      = "interactRetryInterval";
     final static String _TIMEOUT_TIME                 = "timeoutTime";
     final static String _MIN_TIMEOUT_TIME             = "minTimeoutTime";
+    final static String _SHARED_REPLY_DESTINATION     = "sharedReplyDestination";
     /** Defines a prefix added to each application-specific property in the 
      * JMS URL that should be added to the JMS Message when issued.
      */
@@ -239,6 +240,17 @@ public interface JMSConstants
      * The value must be a <code>java.lang.Long</code>.
      */
     final static String MIN_TIMEOUT_TIME                  = JMS_PROPERTY_PREFIX + _MIN_TIMEOUT_TIME;
+    /**
+     * Key for properties used in the <code>createConnector</code>
+     * method.  If true, the connector sends all its requests with one
+     * long-lived temporary reply destination and matches the responses to
+     * the waiting callers by their JMSCorrelationID, instead of creating
+     * and deleting a temporary destination for every call.  The service
+     * must copy the JMSCorrelationID of the request to the response.
+     * The value must be a <code>java.lang.Boolean</code> or a
+     * <code>java.lang.String</code>.
+     */
+    final static String SHARED_REPLY_DESTINATION          = JMS_PROPERTY_PREFIX + _SHARED_REPLY_DESTINATION;
 
     final static int DEFAULT_NUM_RETRIES      = 5;
     final static int DEFAULT_NUM_SESSIONS     = 5;
@@ -247,6 +259,7 @@ public interface JMSConstants
     final static long DEFAULT_TIMEOUT_TIME            = 5000;
     final static long DEFAULT_MIN_TIMEOUT_TIME        = 1000;
     final static long DEFAULT_INTERACT_RETRY_INTERVAL = 250;
+    final static boolean DEFAULT_SHARED_REPLY_DESTINATION = false;
 
     // key used to store the JMS connector in the message context
     final static String CONNECTOR       = JMS_PROPERTY_PREFIX + "Connector";
@@ -82,7 +82,9 @@ public class MapUtils
     }
 
     /**
-     * Returns a boolean property from a Map and removes it.
+     * Returns a boolean property from a Map and removes it.  The value may
+     * be a <code>Boolean</code> or, as taken from a JMS URL, a
+     * <code>String</code>.
      *
      * @param properties
      * @param key
@@ -94,7 +96,11 @@ public class MapUtils
         boolean value = defaultValue;
         if(properties != null && properties.containsKey(key))
         {
-            try{value = ((Boolean)properties.remove(key)).booleanValue();}catch(Exception ignore){}
+            Object property = properties.remove(key);
+            if(property instanceof String)
+                value = Boolean.valueOf((String)property).booleanValue();
+            else
+                try{value = ((Boolean)property).booleanValue();}catch(Exception ignore){}
         }
         return value;
     }
@@ -16,6 +16,7 @@
 
 package org.apache.axis.transport.jms;
 
+import org.apache.axis.client.async.AsyncExecutor;
 import org.apache.axis.components.jms.JMSVendorAdapter;
 import org.apache.axis.components.jms.JMSVendorAdapterFactory;
 import org.apache.axis.components.logger.LogFactory;
@@ -25,7 +26,10 @@ import org.apache.axis.utils.Options;
 import org.apache.commons.logging.Log;
 
 import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.Session;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -38,9 +42,26 @@ import java.util.Properties;
  *   basic purpose is listen asynchronously for messages and to pass them off
  *   to SimpleJMSWorker for processing.
  *
- * Note: This is a simple JMS listener that does not pool worker threads and
- *   is not otherwise tuned for performance. As such, its intended use is not
- *   for production code, but for demos, debugging, and performance profiling.
+ * The listener consumes the destination with one or more sessions of its
+ *   own (see {@link #setNumSessions}).  With threads enabled, the messages
+ *   are processed by a bounded pool of worker threads; at most
+ *   <code>numThreads + prefetch</code> messages are taken off the sessions
+ *   and not yet processed, and once that many are a session waits for a
+ *   worker to finish before it accepts its next message, which holds the
+ *   remaining messages back in the destination.  Without threads each
+ *   session processes its messages itself, one at a time.
+ *
+ * With the CLIENT_ACKNOWLEDGE mode a session acknowledges its messages in
+ *   batches of {@link #setAckBatchSize ackBatchSize}, once all of them have
+ *   been processed.  Acknowledging covers every message the session has
+ *   received, so when a batch is complete the session waits for its
+ *   workers before it accepts its next message; the smaller the batch, the
+ *   fewer messages of a session are processed at the same time, down to
+ *   one at a time with a batch size of 1.  The messages of an incomplete
+ *   batch are acknowledged at shutdown if they are processed within the
+ *   shutdown timeout; when the listener dies before that they are
+ *   delivered again.  In the other modes the JMS provider acknowledges a
+ *   message as soon as it has been handed to a worker.
  *
  * @author Jaime Meritt  (jmeritt@sonicsoftware.com)
  * @author Richard Chung (rchung@sonicsoftware.com)
@@ -51,24 +72,54 @@ public class SimpleJMSListener implements MessageListener
     protected static Log log =
             LogFactory.getLog(SimpleJMSListener.class.getName());
 
+    public static final int DEFAULT_NUM_THREADS = 16;
+    public static final int DEFAULT_PREFETCH = 16;
+    public static final int DEFAULT_ACK_BATCH_SIZE = 16;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
+    /** Set on the threads of the worker pool while they process a message */
+    private static final ThreadLocal inWorker = new ThreadLocal();
+
     // Do we use (multiple) threads to process incoming messages?
-    private static boolean doThreads;
+    private boolean doThreads;
+
+    private int numSessions = 1;
+    private int numThreads = DEFAULT_NUM_THREADS;
+    private int prefetch = DEFAULT_PREFETCH;
+    private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+    private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
 
     private JMSConnector connector;
     private JMSEndpoint endpoint;
     private AxisServer server;
     private HashMap connectorProps;
 
+    private AsyncExecutor executor;
+    private Consumer[] consumers;
+
+    /** Messages handed to the worker pool and not processed yet */
+    private int inFlight = 0;
+    private Object inFlightLock = new Object();
+
     public SimpleJMSListener(HashMap connectorMap, HashMap cfMap,
                              String destination, String username,
                              String password, boolean doThreads)
         throws Exception
     {
-        SimpleJMSListener.doThreads = doThreads;
+        this(JMSVendorAdapterFactory.getJMSVendorAdapter(), connectorMap,
+             cfMap, destination, username, password, doThreads);
+    }
+
+    public SimpleJMSListener(JMSVendorAdapter adapter,
+                             HashMap connectorMap, HashMap cfMap,
+                             String destination, String username,
+                             String password, boolean doThreads)
+        throws Exception
+    {
+        this.doThreads = doThreads;
 
         try {
-            // create a JMS connector using the default vendor adapter
-            JMSVendorAdapter adapter = JMSVendorAdapterFactory.getJMSVendorAdapter();
+            // create a JMS connector using the given vendor adapter
             connector = JMSConnectorFactory.createServerConnector(connectorMap,
                                                                   cfMap,
                                                                   username,
@@ -97,46 +148,346 @@ public class SimpleJMSListener implements MessageListener
         return connector;
     }
 
+    /**
+     * Set the number of sessions, each with a consumer of its own, that
+     * receive messages from the destination.  Must be called before
+     * {@link #start()}.
+     */
+    public void setNumSessions(int numSessions)
+    {
+        this.numSessions = Math.max(numSessions, 1);
+    }
+
+    public int getNumSessions()
+    {
+        return numSessions;
+    }
+
+    /**
+     * Set the size of the worker pool, if threads are used.  Must be called
+     * before {@link #start()}.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Set the number of messages that may wait for a free worker.
+     */
+    public void setPrefetch(int prefetch)
+    {
+        this.prefetch = Math.max(prefetch, 0);
+    }
+
+    public int getPrefetch()
+    {
+        return prefetch;
+    }
+
+    /**
+     * Set the number of messages a session acknowledges at once in the
+     * CLIENT_ACKNOWLEDGE mode.  A session waits for the messages of a
+     * complete batch to be processed before it takes the next one, so with
+     * a batch size of 1 each session processes one message at a time.
+     * Must be called before {@link #start()}.
+     */
+    public void setAckBatchSize(int ackBatchSize)
+    {
+        this.ackBatchSize = Math.max(ackBatchSize, 1);
+    }
+
+    public int getAckBatchSize()
+    {
+        return ackBatchSize;
+    }
+
+    /**
+     * Set the number of milliseconds {@link #shutdown()} waits for the
+     * workers to finish the messages they have been handed, and for the
+     * last messages to be acknowledged, before it closes the connection.
+     */
+    public void setShutdownTimeout(long shutdownTimeout)
+    {
+        this.shutdownTimeout = Math.max(shutdownTimeout, 0);
+    }
+
+    public long getShutdownTimeout()
+    {
+        return shutdownTimeout;
+    }
+
     /**
      * This method is called asynchronously whenever a message arrives.
+     * Messages that arrive here rather than through one of the sessions of
+     * the listener are never acknowledged by it.
      * @param message
      */
     public void onMessage(javax.jms.Message message)
     {
+        dispatch(null, message);
+    }
+
+    /**
+     * Process the message on a worker thread, or on the calling thread if
+     * threads are not used.
+     *
+     * @param consumer the consumer that received the message, if any
+     * @return false if the message could not be handed off
+     */
+    private boolean dispatch(final Consumer consumer, javax.jms.Message message)
+    {
+        final BytesMessage bytesMessage;
         try
         {
             // pass off the message to a worker as a BytesMessage
-            SimpleJMSWorker worker = new SimpleJMSWorker(this, (BytesMessage)message);
-
-            // do we allow multi-threaded workers?
-            if (doThreads) {
-                Thread t = new Thread(worker);
-                t.start();
-            } else {
-                worker.run();
-            }
+            bytesMessage = (BytesMessage)message;
         }
         catch(ClassCastException cce)
         {
             log.error(Messages.getMessage("exception00"), cce);
             cce.printStackTrace();
-            return;
+            return false;
+        }
+
+        // do we allow multi-threaded workers?
+        AsyncExecutor executor = this.executor;
+        if (!doThreads || executor == null) {
+            process(bytesMessage);
+            return true;
+        }
+
+        boolean interrupted = false;
+        synchronized (inFlightLock) {
+            // wait for room; meanwhile the session accepts no more messages
+            while (inFlight >= numThreads + prefetch) {
+                try {
+                    inFlightLock.wait();
+                } catch (InterruptedException e) {
+                    // the message has been taken already; hand it off
+                    // anyway rather than lose it
+                    interrupted = true;
+                    break;
+                }
+            }
+            inFlight++;
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumer != null) {
+            consumer.started();
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    inWorker.set(Boolean.TRUE);
+                    try {
+                        process(bytesMessage);
+                    } finally {
+                        inWorker.set(null);
+                        finished(consumer);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            finished(consumer);
+            log.error(Messages.getMessage("exception00"), e);
+            return false;
+        }
+        return true;
+    }
+
+    private void finished(Consumer consumer)
+    {
+        if (consumer != null) {
+            consumer.finished();
+        }
+        synchronized (inFlightLock) {
+            inFlight--;
+            inFlightLock.notifyAll();
+        }
+    }
+
+    /**
+     * Process one message: invoke the Axis server and send the response to
+     * the reply destination of the message.
+     */
+    protected void process(BytesMessage message)
+    {
+        new SimpleJMSWorker(this, message).run();
     }
 
     public void start()
         throws Exception
     {
-        endpoint.registerListener(this, connectorProps);
+        if (doThreads) {
+            executor = new AsyncExecutor(numThreads);
+        }
+        int ackMode = MapUtils.removeIntProperty(
+                connectorProps == null ? null : (HashMap)connectorProps.clone(),
+                JMSConstants.ACKNOWLEDGE_MODE,
+                JMSConstants.DEFAULT_ACKNOWLEDGE_MODE);
+        consumers = new Consumer[numSessions];
+        for (int i = 0; i < numSessions; i++) {
+            consumers[i] = new Consumer(ackMode == Session.CLIENT_ACKNOWLEDGE);
+            endpoint.registerListener(consumers[i], connectorProps);
+        }
         connector.start();
     }
 
     public void shutdown()
         throws Exception
     {
-        endpoint.unregisterListener(this);
+        // stop the deliveries, then acknowledge what has been processed
         connector.stop();
+        long end = System.currentTimeMillis() + shutdownTimeout;
+        Consumer[] consumers = this.consumers;
+        if (consumers != null) {
+            // a worker shutting the listener down would wait for itself
+            long ackEnd = (inWorker.get() == null)
+                    ? end : System.currentTimeMillis();
+            for (int i = 0; i < consumers.length; i++) {
+                consumers[i].acknowledgeProcessed(ackEnd);
+                endpoint.unregisterListener(consumers[i]);
+            }
+        }
+        waitForInFlight(end);
         connector.shutdown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Wait, until the end of the shutdown timeout at the latest, until the
+     * workers have processed the messages they were handed, so that their
+     * responses can still be sent.  A worker shutting the listener down
+     * doesn't wait for itself.
+     */
+    private void waitForInFlight(long end)
+    {
+        int own = (inWorker.get() == null) ? 0 : 1;
+        synchronized (inFlightLock) {
+            while (inFlight > own) {
+                long left = end - System.currentTimeMillis();
+                if (left <= 0) {
+                    log.warn(Messages.getMessage("jmsShutdownTimeout00",
+                            String.valueOf(inFlight - own)));
+                    return;
+                }
+                try {
+                    inFlightLock.wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The listener of one session.
+     */
+    private class Consumer implements MessageListener
+    {
+        private boolean clientAcknowledge;
+        private int running = 0;
+        private int unacknowledged = 0;
+        private Message last;
+
+        Consumer(boolean clientAcknowledge)
+        {
+            this.clientAcknowledge = clientAcknowledge;
+        }
+
+        public void onMessage(Message message)
+        {
+            if (!dispatch(this, message) || !clientAcknowledge) {
+                return;
+            }
+            boolean acknowledge = false;
+            synchronized (this) {
+                last = message;
+                if (++unacknowledged >= ackBatchSize) {
+                    // acknowledging covers every message of the session,
+                    // so wait for the whole batch to be processed
+                    acknowledge = waitForWorkers(0);
+                }
+            }
+            if (acknowledge) {
+                acknowledge(message);
+            }
+        }
+
+        synchronized void started()
+        {
+            running++;
+        }
+
+        synchronized void finished()
+        {
+            running--;
+            notifyAll();
+        }
+
+        /**
+         * Wait until no message of this session is being processed.
+         * Called with the lock held; clears the batch on success.
+         *
+         * @param end the time to give up at; 0 to wait as long as it takes
+         */
+        private boolean waitForWorkers(long end)
+        {
+            while (running > 0) {
+                long left = 0;
+                if (end != 0) {
+                    left = end - System.currentTimeMillis();
+                    if (left <= 0) {
+                        return false;
+                    }
+                }
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            unacknowledged = 0;
+            return true;
+        }
+
+        /**
+         * Acknowledge the messages of an incomplete batch, if they have all
+         * been processed by the given time.
+         */
+        void acknowledgeProcessed(long end)
+        {
+            Message message;
+            synchronized (this) {
+                if (!clientAcknowledge || unacknowledged == 0
+                        || !waitForWorkers(end)) {
+                    return;
+                }
+                message = last;
+            }
+            acknowledge(message);
+        }
+
+        private void acknowledge(Message message)
+        {
+            try {
+                message.acknowledge();
+            } catch (JMSException e) {
+                log.error(Messages.getMessage("exception00"), e);
+            }
+        }
     }
 
     public static final HashMap createConnectorMap(Options options)
@@ -147,6 +498,11 @@ public class SimpleJMSListener implements MessageListener
             //queue is default so only setup map if topic domain is required
             connectorMap.put(JMSConstants.DOMAIN, JMSConstants.DOMAIN_TOPIC);
         }
+        if (options.isFlagSet('a') > 0)
+        {
+            connectorMap.put(JMSConstants.ACKNOWLEDGE_MODE,
+                             new Integer(Session.CLIENT_ACKNOWLEDGE));
+        }
         return connectorMap;
     }
 
@@ -176,7 +532,16 @@ public class SimpleJMSListener implements MessageListener
                                                            options.isValueSet('d'),
                                                            options.getUser(),
                                                            options.getPassword(),
-                                                           options.isFlagSet('s') > 0);
+                                                           options.isFlagSet('s') == 0);
+        String value;
+        if ((value = options.isValueSet('n')) != null)
+            listener.setNumSessions(Integer.parseInt(value));
+        if ((value = options.isValueSet('x')) != null)
+            listener.setNumThreads(Integer.parseInt(value));
+        if ((value = options.isValueSet('f')) != null)
+            listener.setPrefetch(Integer.parseInt(value));
+        if ((value = options.isValueSet('b')) != null)
+            listener.setAckBatchSize(Integer.parseInt(value));
         listener.start();
     }
 
@@ -194,6 +559,12 @@ public class SimpleJMSListener implements MessageListener
         System.out.println();
         System.out.println("       -s single-threaded listener");
         System.out.println("          [absence of option => multithreaded]");
+        System.out.println("       -n number of sessions [default 1]");
+        System.out.println("       -x number of worker threads [default " + DEFAULT_NUM_THREADS + "]");
+        System.out.println("       -f messages waiting for a worker [default " + DEFAULT_PREFETCH + "]");
+        System.out.println();
+        System.out.println("       -a client acknowledge mode");
+        System.out.println("       -b messages acknowledged at once [default 1]");
 
         System.exit(1);
     }
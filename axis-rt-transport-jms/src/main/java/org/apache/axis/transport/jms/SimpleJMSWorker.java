@@ -20,6 +20,7 @@ import org.apache.axis.AxisFault;
 import org.apache.axis.Message;
 import org.apache.axis.MessageContext;
 import org.apache.axis.components.logger.LogFactory;
+import org.apache.axis.monitoring.MetricsRegistry;
 import org.apache.axis.server.AxisServer;
 import org.apache.axis.utils.Messages;
 import org.apache.commons.logging.Log;
@@ -29,11 +30,13 @@ import javax.jms.Destination;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.HashMap;
 
 /**
  * SimpleJMSWorker is a worker thread that processes messages that are
  *   received by SimpleJMSListener. It creates a new message context, invokes
- *   the server, and sends back response msg to the replyTo destination.
+ *   the server, and sends back response msg to the replyTo destination,
+ *   with the JMSCorrelationID of the request.
  *
  * @author Jaime Meritt  (jmeritt@sonicsoftware.com)
  * @author Richard Chung (rchung@sonicsoftware.com)
@@ -59,6 +62,7 @@ public class SimpleJMSWorker implements Runnable
     public void run()
     {
         InputStream in = null;
+        int requestLength = -1;
         try
         {
             // get the incoming msg content into a byte array
@@ -70,6 +74,7 @@ public class SimpleJMSWorker implements Runnable
                 out.write(buffer, 0, bytesRead);
             }
             in = new ByteArrayInputStream(out.toByteArray());
+            requestLength = out.size();
         }
         catch(Exception e)
         {
@@ -126,11 +131,24 @@ public class SimpleJMSWorker implements Runnable
             // now we need to send the response
             Destination destination = message.getJMSReplyTo();
             if(destination == null)
+            {
+                MetricsRegistry.recordTransfer(msgContext, requestLength, 0, -1);
                 return;
+            }
+            long start = System.currentTimeMillis();
             JMSEndpoint replyTo = listener.getConnector().createEndpoint(destination);
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             msg.writeTo(out);
-            replyTo.send(out.toByteArray());
+            HashMap props = null;
+            String correlationID = message.getJMSCorrelationID();
+            if(correlationID != null)
+            {
+                props = new HashMap();
+                props.put(JMSConstants.JMS_CORRELATION_ID, correlationID);
+            }
+            replyTo.send(out.toByteArray(), props);
+            MetricsRegistry.recordTransfer(msgContext, requestLength,
+                    out.size(), System.currentTimeMillis() - start);
         }
         catch(Exception e)
         {
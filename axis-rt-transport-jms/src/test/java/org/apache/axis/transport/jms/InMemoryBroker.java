@@ -0,0 +1,435 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.jms;
+
+import javax.jms.BytesMessage;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueConnectionFactory;
+import javax.jms.QueueReceiver;
+import javax.jms.QueueSender;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory stand-in for a JMS provider in the point-to-point domain.
+ * Each consumer with a message listener gets a delivery thread of its own,
+ * as with a real provider.  The JMS objects are dynamic proxies that
+ * implement just the methods the transport uses.
+ */
+public class InMemoryBroker {
+    private final Map queues = new HashMap();
+    /** Queue proxies to their queues */
+    private final Map queueHandlers = new HashMap();
+    private int delivered = 0;
+    private int acknowledged = 0;
+    private int acknowledgeCalls = 0;
+    private int temporaryQueues = 0;
+
+    public QueueConnectionFactory getConnectionFactory() {
+        return (QueueConnectionFactory) proxy(QueueConnectionFactory.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("createQueueConnection")
+                                || name.equals("createConnection")) {
+                            return new ConnectionHandler().proxy;
+                        }
+                        return objectMethod(this, method, args);
+                    }
+                });
+    }
+
+    /**
+     * Put a message with the given body on a queue.
+     */
+    public void send(String queueName, String body) {
+        MessageHandler message = new MessageHandler();
+        message.body.write(body.getBytes(), 0, body.length());
+        getQueue(queueName).put(message);
+    }
+
+    /** Number of messages handed to a listener */
+    public synchronized int getDelivered() {
+        return delivered;
+    }
+
+    /** Number of messages acknowledged by a client */
+    public synchronized int getAcknowledged() {
+        return acknowledged;
+    }
+
+    /** Number of calls to <code>Message.acknowledge()</code> */
+    public synchronized int getAcknowledgeCalls() {
+        return acknowledgeCalls;
+    }
+
+    public synchronized int getTemporaryQueues() {
+        return temporaryQueues;
+    }
+
+    public int getQueueDepth(String queueName) {
+        return getQueue(queueName).size();
+    }
+
+    /**
+     * Called when a client acknowledges messages, with their bodies.
+     */
+    protected void acknowledged(List bodies) {
+    }
+
+    private synchronized BrokerQueue getQueue(String name) {
+        BrokerQueue queue = (BrokerQueue) queues.get(name);
+        if (queue == null) {
+            queue = new BrokerQueue(name);
+            queues.put(name, queue);
+        }
+        return queue;
+    }
+
+    private static Object proxy(Class iface, InvocationHandler handler) {
+        return proxy(new Class[] {iface}, handler);
+    }
+
+    private static Object proxy(Class[] ifaces, InvocationHandler handler) {
+        return Proxy.newProxyInstance(InMemoryBroker.class.getClassLoader(),
+                                      ifaces, handler);
+    }
+
+    private static Object objectMethod(Object handler, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("equals")) {
+            return Boolean.valueOf(args[0] != null
+                    && Proxy.isProxyClass(args[0].getClass())
+                    && Proxy.getInvocationHandler(args[0]) == handler);
+        } else if (name.equals("hashCode")) {
+            return new Integer(System.identityHashCode(handler));
+        } else if (name.equals("toString")) {
+            return handler.toString();
+        }
+        // anything else the tests don't need
+        return null;
+    }
+
+    private class BrokerQueue {
+        final String name;
+        final LinkedList messages = new LinkedList();
+        final Queue proxy;
+
+        BrokerQueue(String name) {
+            this(name, Queue.class);
+        }
+
+        BrokerQueue(String queueName, Class type) {
+            name = queueName;
+            proxy = (Queue) InMemoryBroker.proxy(type, new InvocationHandler() {
+                public Object invoke(Object p, Method method, Object[] args) {
+                    if (method.getName().equals("getQueueName")) {
+                        return name;
+                    } else if (method.getName().equals("delete")) {
+                        return null;
+                    } else if (method.getName().equals("equals")) {
+                        return Boolean.valueOf(args[0] == p);
+                    }
+                    return objectMethod(BrokerQueue.this, method, args);
+                }
+            });
+        }
+
+        synchronized void put(MessageHandler message) {
+            messages.addLast(message);
+            notifyAll();
+        }
+
+        synchronized MessageHandler take(long timeout) throws InterruptedException {
+            if (messages.isEmpty()) {
+                wait(timeout);
+            }
+            return messages.isEmpty() ? null : (MessageHandler) messages.removeFirst();
+        }
+
+        synchronized int size() {
+            return messages.size();
+        }
+    }
+
+    private synchronized BrokerQueue queueOf(Object destination) {
+        return (BrokerQueue) queueHandlers.get(destination);
+    }
+
+    private synchronized Queue register(BrokerQueue queue) {
+        queueHandlers.put(queue.proxy, queue);
+        return queue.proxy;
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        final QueueConnection proxy =
+                (QueueConnection) InMemoryBroker.proxy(QueueConnection.class, this);
+        boolean started = false;
+        boolean closed = false;
+
+        public Object invoke(Object p, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("createQueueSession") || name.equals("createSession")) {
+                return new SessionHandler(this, ((Integer) args[1]).intValue()).proxy;
+            } else if (name.equals("start")) {
+                setStarted(true);
+            } else if (name.equals("stop")) {
+                setStarted(false);
+            } else if (name.equals("close")) {
+                synchronized (this) {
+                    closed = true;
+                    started = false;
+                    notifyAll();
+                }
+            } else if (name.equals("setExceptionListener")
+                    || name.equals("setClientID")) {
+                return null;
+            } else {
+                return objectMethod(this, method, args);
+            }
+            return null;
+        }
+
+        synchronized void setStarted(boolean started) {
+            this.started = started;
+            notifyAll();
+        }
+
+        /** Wait for the connection to be started; false once it is closed */
+        synchronized boolean awaitStarted() throws InterruptedException {
+            while (!started && !closed) {
+                wait(100);
+            }
+            return !closed;
+        }
+    }
+
+    private class SessionHandler implements InvocationHandler {
+        final QueueSession proxy =
+                (QueueSession) InMemoryBroker.proxy(QueueSession.class, this);
+        final ConnectionHandler connection;
+        final int ackMode;
+        final List unacknowledged = new ArrayList();
+        final List consumers = new ArrayList();
+
+        SessionHandler(ConnectionHandler connection, int ackMode) {
+            this.connection = connection;
+            this.ackMode = ackMode;
+        }
+
+        public Object invoke(Object p, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("createQueue")) {
+                return register(getQueue((String) args[0]));
+            } else if (name.equals("createTemporaryQueue")) {
+                synchronized (InMemoryBroker.this) {
+                    temporaryQueues++;
+                }
+                return register(new BrokerQueue("temporary", TemporaryQueue.class));
+            } else if (name.equals("createBytesMessage")) {
+                return new MessageHandler().proxy;
+            } else if (name.equals("createSender") || name.equals("createProducer")) {
+                return proxy(QueueSender.class, new InvocationHandler() {
+                    public Object invoke(Object p, Method method, Object[] args) {
+                        if (method.getName().equals("send")) {
+                            MessageHandler message = (MessageHandler)
+                                    Proxy.getInvocationHandler(args[1]);
+                            queueOf(args[0]).put(message.copy());
+                            return null;
+                        }
+                        return objectMethod(this, method, args);
+                    }
+                });
+            } else if (name.equals("createReceiver") || name.equals("createConsumer")) {
+                ConsumerHandler consumer = new ConsumerHandler(this, queueOf(args[0]));
+                consumers.add(consumer);
+                return consumer.proxy;
+            } else if (name.equals("close")) {
+                for (Iterator i = consumers.iterator(); i.hasNext();) {
+                    ((ConsumerHandler) i.next()).close();
+                }
+                return null;
+            }
+            return objectMethod(this, method, args);
+        }
+
+        void delivered(MessageHandler message) {
+            synchronized (InMemoryBroker.this) {
+                delivered++;
+            }
+            if (ackMode == Session.CLIENT_ACKNOWLEDGE) {
+                synchronized (this) {
+                    unacknowledged.add(message);
+                }
+            }
+        }
+
+        void acknowledge() {
+            List bodies = new ArrayList();
+            synchronized (this) {
+                for (Iterator i = unacknowledged.iterator(); i.hasNext();) {
+                    bodies.add(((MessageHandler) i.next()).getBody());
+                }
+                unacknowledged.clear();
+            }
+            synchronized (InMemoryBroker.this) {
+                acknowledged += bodies.size();
+                acknowledgeCalls++;
+            }
+            acknowledged(bodies);
+        }
+    }
+
+    private class ConsumerHandler implements InvocationHandler, Runnable {
+        final QueueReceiver proxy =
+                (QueueReceiver) InMemoryBroker.proxy(QueueReceiver.class, this);
+        final SessionHandler session;
+        final BrokerQueue queue;
+        MessageListener listener;
+        volatile boolean closed = false;
+
+        ConsumerHandler(SessionHandler session, BrokerQueue queue) {
+            this.session = session;
+            this.queue = queue;
+        }
+
+        public Object invoke(Object p, Method method, Object[] args)
+                throws InterruptedException {
+            String name = method.getName();
+            if (name.equals("setMessageListener")) {
+                listener = (MessageListener) args[0];
+                Thread thread = new Thread(this, "delivery-" + queue.name);
+                thread.setDaemon(true);
+                thread.start();
+                return null;
+            } else if (name.equals("receive")) {
+                long timeout = args == null ? 0 : ((Long) args[0]).longValue();
+                MessageHandler message = queue.take(timeout);
+                if (message == null) {
+                    return null;
+                }
+                session.delivered(message);
+                message.session = session;
+                return message.proxy;
+            } else if (name.equals("close")) {
+                close();
+                return null;
+            }
+            return objectMethod(this, method, args);
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        public void run() {
+            try {
+                while (!closed && session.connection.awaitStarted()) {
+                    MessageHandler message = queue.take(50);
+                    if (message == null) {
+                        continue;
+                    }
+                    if (closed) {
+                        queue.put(message);
+                        return;
+                    }
+                    message.session = session;
+                    session.delivered(message);
+                    listener.onMessage(message.proxy);
+                }
+            } catch (InterruptedException e) {
+                // stop delivering
+            }
+        }
+    }
+
+    private class MessageHandler implements InvocationHandler {
+        final BytesMessage proxy =
+                (BytesMessage) InMemoryBroker.proxy(BytesMessage.class, this);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final Map properties = new HashMap();
+        int position = 0;
+        String correlationID;
+        Object replyTo;
+        SessionHandler session;
+
+        MessageHandler copy() {
+            MessageHandler copy = new MessageHandler();
+            byte[] bytes = body.toByteArray();
+            copy.body.write(bytes, 0, bytes.length);
+            copy.properties.putAll(properties);
+            copy.correlationID = correlationID;
+            copy.replyTo = replyTo;
+            return copy;
+        }
+
+        String getBody() {
+            return new String(body.toByteArray());
+        }
+
+        public Object invoke(Object p, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("writeBytes")) {
+                byte[] bytes = (byte[]) args[0];
+                body.write(bytes, 0, bytes.length);
+            } else if (name.equals("readBytes")) {
+                byte[] buffer = (byte[]) args[0];
+                byte[] bytes = body.toByteArray();
+                if (position >= bytes.length) {
+                    return new Integer(-1);
+                }
+                int n = Math.min(buffer.length, bytes.length - position);
+                System.arraycopy(bytes, position, buffer, 0, n);
+                position += n;
+                return new Integer(n);
+            } else if (name.equals("getBodyLength")) {
+                return new Long(body.size());
+            } else if (name.equals("setJMSCorrelationID")) {
+                correlationID = (String) args[0];
+            } else if (name.equals("getJMSCorrelationID")) {
+                return correlationID;
+            } else if (name.equals("setJMSReplyTo")) {
+                replyTo = args[0];
+            } else if (name.equals("getJMSReplyTo")) {
+                return replyTo;
+            } else if (name.startsWith("set") && name.endsWith("Property")) {
+                properties.put(args[0], args[1]);
+            } else if (name.startsWith("get") && name.endsWith("Property")) {
+                return properties.get(args[0]);
+            } else if (name.equals("acknowledge")) {
+                if (session != null && session.ackMode == Session.CLIENT_ACKNOWLEDGE) {
+                    session.acknowledge();
+                }
+            } else {
+                return objectMethod(this, method, args);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.jms;
+
+import junit.framework.TestCase;
+import org.apache.axis.components.jms.JMSVendorAdapter;
+
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionFactory;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueConnectionFactory;
+import javax.jms.QueueReceiver;
+import javax.jms.QueueSender;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TopicConnectionFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests the reply destination that the calls of a {@link JMSConnector}
+ * share when <code>sharedReplyDestination</code> is set, against an
+ * {@link InMemoryBroker}.
+ */
+public class TestSharedReplyDestination extends TestCase {
+    private static final String QUEUE = "requests";
+
+    private InMemoryBroker broker;
+    private JMSConnector connector;
+    private JMSEndpoint endpoint;
+    private QueueSession responder;
+    private QueueReceiver requests;
+    private QueueSender replies;
+
+    protected void setUp() throws Exception {
+        broker = new InMemoryBroker();
+        JMSVendorAdapter adapter = new JMSVendorAdapter() {
+            public QueueConnectionFactory getQueueConnectionFactory(HashMap cfProps) {
+                return broker.getConnectionFactory();
+            }
+            public TopicConnectionFactory getTopicConnectionFactory(HashMap cfProps) {
+                throw new UnsupportedOperationException();
+            }
+            public void addVendorConnectionFactoryProperties(JMSURLHelper jmsurl, HashMap cfProps) {
+            }
+            public boolean isMatchingConnectionFactory(ConnectionFactory cf, JMSURLHelper jmsurl, HashMap cfProps) {
+                return false;
+            }
+        };
+        HashMap connectorMap = new HashMap();
+        connectorMap.put(JMSConstants.SHARED_REPLY_DESTINATION, "true");
+        connector = JMSConnectorFactory.createClientConnector(connectorMap,
+                new HashMap(), null, null, adapter);
+        connector.start();
+        endpoint = connector.createEndpoint(QUEUE);
+
+        QueueConnection connection =
+                broker.getConnectionFactory().createQueueConnection();
+        responder = connection.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+        requests = responder.createReceiver(responder.createQueue(QUEUE));
+        replies = responder.createSender(null);
+    }
+
+    protected void tearDown() throws Exception {
+        connector.stop();
+        connector.shutdown();
+    }
+
+    private BytesMessage receiveRequest() throws Exception {
+        BytesMessage request = (BytesMessage) requests.receive(5000);
+        assertNotNull("no request arrived", request);
+        return request;
+    }
+
+    private void reply(BytesMessage request, String body) throws Exception {
+        BytesMessage response = responder.createBytesMessage();
+        response.writeBytes(body.getBytes());
+        response.setJMSCorrelationID(request.getJMSCorrelationID());
+        replies.send((Queue) request.getJMSReplyTo(), response);
+    }
+
+    private static String getBody(BytesMessage message) throws Exception {
+        byte[] buffer = new byte[(int) message.getBodyLength()];
+        message.readBytes(buffer);
+        return new String(buffer);
+    }
+
+    /**
+     * Makes a call on a thread of its own, keeping its response or failure.
+     */
+    private class Caller extends Thread {
+        final String body;
+        final long timeout;
+        String response;
+        Throwable failure;
+
+        Caller(String body, long timeout) {
+            this.body = body;
+            this.timeout = timeout;
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                response = new String(endpoint.call(body.getBytes(), timeout));
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    public void testCorrelation() throws Exception {
+        List callers = new ArrayList();
+        for (int i = 0; i < 4; i++) {
+            Caller caller = new Caller("call" + i, 10000);
+            callers.add(caller);
+            caller.start();
+        }
+
+        // answer once every call is in flight, in the reverse order
+        List received = new ArrayList();
+        for (int i = 0; i < callers.size(); i++) {
+            received.add(receiveRequest());
+        }
+        for (int i = received.size() - 1; i >= 0; i--) {
+            BytesMessage request = (BytesMessage) received.get(i);
+            reply(request, "re:" + getBody(request));
+        }
+
+        for (int i = 0; i < callers.size(); i++) {
+            Caller caller = (Caller) callers.get(i);
+            caller.join(10000);
+            assertNull(caller.body + ": " + caller.failure, caller.failure);
+            assertEquals("re:" + caller.body, caller.response);
+        }
+        assertEquals(1, broker.getTemporaryQueues());
+    }
+
+    public void testLateReplyDropped() throws Exception {
+        Caller late = new Caller("late", 200);
+        late.start();
+        BytesMessage lateRequest = receiveRequest();
+        late.join(10000);
+        assertTrue("call did not time out: " + late.failure,
+                   late.failure instanceof InvokeTimeoutException);
+
+        // the response to the timed-out call must not go to the next one
+        reply(lateRequest, "re:late");
+        Caller next = new Caller("next", 10000);
+        next.start();
+        BytesMessage request = receiveRequest();
+        reply(request, "re:" + getBody(request));
+        next.join(10000);
+        assertNull(String.valueOf(next.failure), next.failure);
+        assertEquals("re:next", next.response);
+    }
+
+    public void testShutdownWakesPendingCalls() throws Exception {
+        Caller caller = new Caller("pending", 30000);
+        caller.start();
+        receiveRequest();
+
+        long start = System.currentTimeMillis();
+        connector.shutdown();
+        caller.join(10000);
+        assertFalse("call still waiting", caller.isAlive());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertTrue("unexpected failure: " + caller.failure,
+                   caller.failure instanceof InvokeException
+                   && !(caller.failure instanceof InvokeTimeoutException));
+    }
+}
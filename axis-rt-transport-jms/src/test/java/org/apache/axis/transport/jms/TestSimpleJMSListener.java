@@ -0,0 +1,285 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.jms;
+
+import junit.framework.TestCase;
+import org.apache.axis.components.jms.JMSVendorAdapter;
+
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionFactory;
+import javax.jms.QueueConnectionFactory;
+import javax.jms.Session;
+import javax.jms.TopicConnectionFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the worker pool, backpressure and acknowledgement batching of
+ * {@link SimpleJMSListener} against an {@link InMemoryBroker}.
+ */
+public class TestSimpleJMSListener extends TestCase {
+    private static final String QUEUE = "requests";
+
+    private InMemoryBroker broker;
+    private HashMap connectorMap;
+    private Set processed;
+    private Set acknowledgedEarly;
+    private int running;
+    private int maxRunning;
+    private long delay;
+    private Object gate;
+    private boolean open;
+
+    protected void setUp() throws Exception {
+        processed = Collections.synchronizedSet(new HashSet());
+        acknowledgedEarly = Collections.synchronizedSet(new HashSet());
+        broker = new InMemoryBroker() {
+            protected void acknowledged(List bodies) {
+                // a message may only be acknowledged once it is processed
+                for (int i = 0; i < bodies.size(); i++) {
+                    if (!processed.contains(bodies.get(i))) {
+                        acknowledgedEarly.add(bodies.get(i));
+                    }
+                }
+            }
+        };
+        connectorMap = new HashMap();
+        running = 0;
+        maxRunning = 0;
+        delay = 0;
+        gate = new Object();
+        open = true;
+    }
+
+    private SimpleJMSListener createListener(boolean doThreads) throws Exception {
+        JMSVendorAdapter adapter = new JMSVendorAdapter() {
+            public QueueConnectionFactory getQueueConnectionFactory(HashMap cfProps) {
+                return broker.getConnectionFactory();
+            }
+            public TopicConnectionFactory getTopicConnectionFactory(HashMap cfProps) {
+                throw new UnsupportedOperationException();
+            }
+            public void addVendorConnectionFactoryProperties(JMSURLHelper jmsurl, HashMap cfProps) {
+            }
+            public boolean isMatchingConnectionFactory(ConnectionFactory cf, JMSURLHelper jmsurl, HashMap cfProps) {
+                return false;
+            }
+        };
+        return new SimpleJMSListener(adapter, connectorMap, new HashMap(),
+                                     QUEUE, null, null, doThreads) {
+            protected void process(BytesMessage message) {
+                synchronized (TestSimpleJMSListener.this) {
+                    running++;
+                    maxRunning = Math.max(maxRunning, running);
+                }
+                try {
+                    synchronized (gate) {
+                        while (!open) {
+                            gate.wait();
+                        }
+                    }
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                    byte[] buffer = new byte[(int) message.getBodyLength()];
+                    message.readBytes(buffer);
+                    processed.add(new String(buffer));
+                } catch (Exception e) {
+                    fail(e.toString());
+                } finally {
+                    synchronized (TestSimpleJMSListener.this) {
+                        running--;
+                    }
+                }
+            }
+        };
+    }
+
+    private void send(int count) {
+        for (int i = 0; i < count; i++) {
+            broker.send(QUEUE, "m" + i);
+        }
+    }
+
+    private void waitForProcessed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (processed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, processed.size());
+    }
+
+    public void testBoundedWorkers() throws Exception {
+        SimpleJMSListener listener = createListener(true);
+        listener.setNumSessions(3);
+        listener.setNumThreads(4);
+        listener.setPrefetch(2);
+        delay = 2;
+        listener.start();
+        send(200);
+        waitForProcessed(200);
+        listener.shutdown();
+
+        assertTrue("max workers " + maxRunning, maxRunning <= 4);
+        assertTrue("workers were not used concurrently", maxRunning > 1);
+    }
+
+    public void testBackpressure() throws Exception {
+        SimpleJMSListener listener = createListener(true);
+        listener.setNumSessions(2);
+        listener.setNumThreads(3);
+        listener.setPrefetch(5);
+        open = false;
+        listener.start();
+        send(50);
+
+        // workers + waiting messages + one blocked delivery per session
+        Thread.sleep(300);
+        assertEquals(3 + 5 + 2, broker.getDelivered());
+        assertEquals(50 - 10, broker.getQueueDepth(QUEUE));
+
+        synchronized (gate) {
+            open = true;
+            gate.notifyAll();
+        }
+        waitForProcessed(50);
+        listener.shutdown();
+    }
+
+    public void testShutdownWaitsForWorkers() throws Exception {
+        SimpleJMSListener listener = createListener(true);
+        listener.setNumThreads(4);
+        open = false;
+        listener.start();
+        send(6);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (broker.getDelivered() < 6 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                }
+                synchronized (gate) {
+                    open = true;
+                    gate.notifyAll();
+                }
+            }
+        }.start();
+        listener.shutdown();
+        assertEquals(6, processed.size());
+    }
+
+    public void testShutdownTimeout() throws Exception {
+        SimpleJMSListener listener = createListener(true);
+        listener.setShutdownTimeout(100);
+        open = false;
+        listener.start();
+        send(2);
+        long start = System.currentTimeMillis();
+        listener.shutdown();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+
+        synchronized (gate) {
+            open = true;
+            gate.notifyAll();
+        }
+    }
+
+    public void testShutdownTimeoutClientAcknowledge() throws Exception {
+        connectorMap.put(JMSConstants.ACKNOWLEDGE_MODE,
+                         new Integer(Session.CLIENT_ACKNOWLEDGE));
+        SimpleJMSListener listener = createListener(true);
+        listener.setShutdownTimeout(100);
+        open = false;
+        listener.start();
+        send(2);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (broker.getDelivered() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // the incomplete batch is still being processed
+        long start = System.currentTimeMillis();
+        listener.shutdown();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(0, broker.getAcknowledged());
+
+        synchronized (gate) {
+            open = true;
+            gate.notifyAll();
+        }
+    }
+
+    public void testClientAcknowledgeDefaultBatch() throws Exception {
+        connectorMap.put(JMSConstants.ACKNOWLEDGE_MODE,
+                         new Integer(Session.CLIENT_ACKNOWLEDGE));
+        SimpleJMSListener listener = createListener(true);
+        listener.setNumThreads(4);
+        delay = 5;
+        listener.start();
+        send(40);
+        waitForProcessed(40);
+        listener.shutdown();
+
+        // a single session still keeps several workers busy
+        assertTrue("max workers " + maxRunning, maxRunning > 1);
+        assertEquals(40, broker.getAcknowledged());
+        assertTrue("acknowledged before being processed: " + acknowledgedEarly,
+                   acknowledgedEarly.isEmpty());
+    }
+
+    public void testClientAcknowledgeBatches() throws Exception {
+        connectorMap.put(JMSConstants.ACKNOWLEDGE_MODE,
+                         new Integer(Session.CLIENT_ACKNOWLEDGE));
+        SimpleJMSListener listener = createListener(true);
+        listener.setNumSessions(2);
+        listener.setNumThreads(4);
+        listener.setAckBatchSize(10);
+        delay = 1;
+        listener.start();
+        send(105);
+        waitForProcessed(105);
+        listener.shutdown();
+
+        assertEquals(105, broker.getAcknowledged());
+        assertTrue("acknowledge calls " + broker.getAcknowledgeCalls(),
+                   broker.getAcknowledgeCalls() <= 105 / 10 + 2);
+        assertTrue("acknowledged before being processed: " + acknowledgedEarly,
+                   acknowledgedEarly.isEmpty());
+    }
+
+    public void testSingleThreaded() throws Exception {
+        connectorMap.put(JMSConstants.ACKNOWLEDGE_MODE,
+                         new Integer(Session.CLIENT_ACKNOWLEDGE));
+        SimpleJMSListener listener = createListener(false);
+        listener.setAckBatchSize(5);
+        listener.start();
+        send(20);
+        waitForProcessed(20);
+        listener.shutdown();
+
+        assertEquals(1, maxRunning);
+        assertEquals(20, broker.getAcknowledged());
+        assertEquals(4, broker.getAcknowledgeCalls());
+    }
+}
@@ -23,4 +23,6 @@ public class MailConstants {
     public final static String POP3_HOST = "transport.mail.pop3.host";
     public final static String POP3_USERID = "transport.mail.pop3.userid";
     public final static String POP3_PASSWORD = "transport.mail.pop3.password";
+    public final static String POP3_POLL_INTERVAL = "transport.mail.pop3.pollInterval";
+    public final static String POP3_TIMEOUT = "transport.mail.pop3.timeout";
 }
@@ -27,8 +27,6 @@ import org.apache.axis.utils.Messages;
 import org.apache.commons.logging.Log;
 import org.apache.commons.net.pop3.POP3Client;
 import org.apache.commons.net.pop3.POP3MessageInfo;
-import org.apache.commons.net.smtp.SMTPClient;
-import org.apache.commons.net.smtp.SMTPReply;
 
 import javax.mail.Session;
 import javax.mail.internet.InternetAddress;
@@ -38,7 +36,6 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Reader;
-import java.io.Writer;
 import java.util.Properties;
 
 /**
@@ -51,6 +48,12 @@ public class MailSender extends BasicHandler {
     protected static Log log = LogFactory.getLog(MailSender.class.getName());
     private UUIDGen uuidGen = UUIDGenFactory.getUUIDGen();
 
+    /** Default time between two checks of the mailbox for the response */
+    public static final long DEFAULT_POLL_INTERVAL = 5000;
+
+    /** Default time to wait for the response */
+    public static final long DEFAULT_TIMEOUT = 60000;
+
     Properties prop = new Properties();
     Session session = Session.getDefaultInstance(prop, null);
 
@@ -97,28 +100,6 @@ public class MailSender extends BasicHandler {
         String id = (new java.rmi.server.UID()).toString();
         String smtpHost = msgContext.getStrProp(MailConstants.SMTP_HOST);
 
-        SMTPClient client = new SMTPClient();
-        client.connect(smtpHost);
-        
-        // After connection attempt, you should check the reply code to verify
-        // success.
-        System.out.print(client.getReplyString());
-        int reply = client.getReplyCode();
-        if (!SMTPReply.isPositiveCompletion(reply)) {
-            client.disconnect();
-            AxisFault fault = new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
-            throw fault;
-        }
-
-        client.login(smtpHost);
-        System.out.print(client.getReplyString());
-        reply = client.getReplyCode();
-        if (!SMTPReply.isPositiveCompletion(reply)) {
-            client.disconnect();
-            AxisFault fault = new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
-            throw fault;
-        }
-
         String fromAddress = msgContext.getStrProp(MailConstants.FROM_ADDRESS);
         String toAddress = msgContext.getStrProp(MailConstants.TO_ADDRESS);
 
@@ -149,26 +130,8 @@ public class MailSender extends BasicHandler {
         ByteArrayOutputStream out2 = new ByteArrayOutputStream(8 * 1024);
         msg.writeTo(out2);
 
-        client.setSender(fromAddress);
-        System.out.print(client.getReplyString());
-        client.addRecipient(toAddress);
-        System.out.print(client.getReplyString());
-
-        Writer writer = client.sendMessageData();
-        System.out.print(client.getReplyString());
-        writer.write(out2.toString());
-        writer.flush();
-        writer.close();
-
-        System.out.print(client.getReplyString());
-        if (!client.completePendingCommand()) {
-            System.out.print(client.getReplyString());
-            AxisFault fault = new AxisFault("SMTP", "( Failed to send email )", null, null);
-            throw fault;
-        }
-        System.out.print(client.getReplyString());
-        client.logout();
-        client.disconnect();
+        SMTPConnectionPool.getDefault().send(smtpHost, fromAddress,
+                toAddress, out2.toString());
         return id;
     }
 
@@ -183,64 +146,36 @@ public class MailSender extends BasicHandler {
         String pop3User = msgContext.getStrProp(MailConstants.POP3_USERID);
         String pop3passwd = msgContext.getStrProp(MailConstants.POP3_PASSWORD);
 
-        Reader reader;
-        POP3MessageInfo[] messages = null;
+        long pollInterval = getLongProp(msgContext,
+                MailConstants.POP3_POLL_INTERVAL, DEFAULT_POLL_INTERVAL);
+        long deadline = System.currentTimeMillis() + getLongProp(msgContext,
+                MailConstants.POP3_TIMEOUT, DEFAULT_TIMEOUT);
 
         MimeMessage mimeMsg = null;
         POP3Client pop3 = new POP3Client();
         // We want to timeout if a response takes longer than 60 seconds
         pop3.setDefaultTimeout(60000);
 
-        for (int i = 0; i < 12; i++) {
+        while (true) {
             pop3.connect(pop3Host);
-
-            if (!pop3.login(pop3User, pop3passwd)) {
-                pop3.disconnect();
-                AxisFault fault = new AxisFault("POP3", "( Could not login to server.  Check password. )", null, null);
-                throw fault;
-            }
-
-            messages = pop3.listMessages();
-            if (messages != null && messages.length > 0) {
-                StringBuffer buffer = null;
-                for (int j = 0; j < messages.length; j++) {
-                    reader = pop3.retrieveMessage(messages[j].number);
-                    if (reader == null) {
-                        AxisFault fault = new AxisFault("POP3", "( Could not retrieve message header. )", null, null);
-                        throw fault;
-                    }
-
-                    buffer = new StringBuffer();
-                    BufferedReader bufferedReader = new BufferedReader(reader);
-                    int ch;
-                    while ((ch = bufferedReader.read()) != -1) {
-                        buffer.append((char) ch);
-                    }
-                    bufferedReader.close();
-                    if (buffer.toString().indexOf(id) != -1) {
-                        ByteArrayInputStream bais = new ByteArrayInputStream(buffer.toString().getBytes());
-                        Properties prop = new Properties();
-                        Session session = Session.getDefaultInstance(prop, null);
-
-                        mimeMsg = new MimeMessage(session, bais);
-                        pop3.deleteMessage(messages[j].number);
-                        break;
-                    }
-                    buffer = null;
+            try {
+                if (!pop3.login(pop3User, pop3passwd)) {
+                    AxisFault fault = new AxisFault("POP3", "( Could not login to server.  Check password. )", null, null);
+                    throw fault;
                 }
+                mimeMsg = findResponse(pop3, id);
+                pop3.logout();
+            } finally {
+                pop3.disconnect();
             }
-            pop3.logout();
-            pop3.disconnect();
-            if (mimeMsg == null) {
-                Thread.sleep(5000);
-            } else {
+            if (mimeMsg != null
+                    || System.currentTimeMillis() + pollInterval > deadline) {
                 break;
             }
+            Thread.sleep(pollInterval);
         }
 
         if (mimeMsg == null) {
-            pop3.logout();
-            pop3.disconnect();
             AxisFault fault = new AxisFault("POP3", "( Could not retrieve message list. )", null, null);
             throw fault;
         }
@@ -258,4 +193,65 @@ public class MailSender extends BasicHandler {
             log.debug(outMsg.getSOAPPartAsString());
         }
     }
+
+    /**
+     * Find the response to the request with the given id in the mailbox,
+     * and delete it.  Only the headers of the other messages are read.
+     *
+     * @return the response, or <code>null</code> if it hasn't arrived yet
+     */
+    private MimeMessage findResponse(POP3Client pop3, String id)
+            throws Exception {
+        POP3MessageInfo[] messages = pop3.listMessages();
+        if (messages == null) {
+            AxisFault fault = new AxisFault("POP3", "( Could not retrieve message list. )", null, null);
+            throw fault;
+        }
+        for (int j = 0; j < messages.length; j++) {
+            String headers = readFully(
+                    pop3.retrieveMessageTop(messages[j].number, 0));
+            if (headers.indexOf(id) == -1) {
+                continue;
+            }
+            String message = readFully(
+                    pop3.retrieveMessage(messages[j].number));
+            ByteArrayInputStream bais = new ByteArrayInputStream(message.getBytes());
+            MimeMessage mimeMsg = new MimeMessage(session, bais);
+            pop3.deleteMessage(messages[j].number);
+            return mimeMsg;
+        }
+        return null;
+    }
+
+    private static String readFully(Reader reader) throws Exception {
+        if (reader == null) {
+            AxisFault fault = new AxisFault("POP3", "( Could not retrieve message header. )", null, null);
+            throw fault;
+        }
+        StringBuffer buffer = new StringBuffer();
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        char[] chars = new char[4096];
+        int n;
+        while ((n = bufferedReader.read(chars)) != -1) {
+            buffer.append(chars, 0, n);
+        }
+        bufferedReader.close();
+        return buffer.toString();
+    }
+
+    private static long getLongProp(MessageContext msgContext, String name,
+                                    long defaultValue) {
+        Object value = msgContext.getProperty(name);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                log.warn(name + "=" + value, e);
+            }
+        }
+        return defaultValue;
+    }
 }
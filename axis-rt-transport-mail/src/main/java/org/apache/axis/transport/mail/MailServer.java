@@ -16,6 +16,7 @@
 
 package org.apache.axis.transport.mail;
 
+import org.apache.axis.client.async.AsyncExecutor;
 import org.apache.axis.components.logger.LogFactory;
 import org.apache.axis.i18n.Messages;
 import org.apache.axis.server.AxisServer;
@@ -30,6 +31,8 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.Reader;
 import java.net.MalformedURLException;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Properties;
 
 /**
@@ -38,6 +41,12 @@ import java.util.Properties;
  * use.  Its intended uses are for demos, debugging, and performance
  * profiling.
  *
+ * The mailbox is polled every <code>pollInterval</code> milliseconds and
+ * emptied in batches of <code>batchSize</code> messages, one POP3 session
+ * per batch.  With threads enabled the messages are processed by a bounded
+ * pool of <code>maxThreads</code> workers, which send their replies over
+ * the shared connections of the {@link SMTPConnectionPool}.
+ *
  * @author Davanum Srinivas &lt;dims@yahoo.com&gt;
  * @author Rob Jellinghaus (robj@unrealities.com)
  */
@@ -51,6 +60,12 @@ public class MailServer implements Runnable {
     private String userid;
     private String password;
 
+    public static final long DEFAULT_POLL_INTERVAL = 3000;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final int DEFAULT_MAX_THREADS = 8;
+
+    private Session session = Session.getDefaultInstance(new Properties(), null);
+
     public MailServer(String host, int port, String userid, String password) {
         this.host = host;
         this.port = port;
@@ -87,6 +102,58 @@ public class MailServer implements Runnable {
     // latch to true if stop() is called
     private boolean stopped = false;
 
+    /** Time between two polls in milliseconds */
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+    /** Messages fetched per POP3 session */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Size of the worker pool, if threads are used */
+    private int maxThreads = DEFAULT_MAX_THREADS;
+
+    private AsyncExecutor executor;
+
+    /** Messages handed to the worker pool and not processed yet */
+    private int inFlight = 0;
+    private Object inFlightLock = new Object();
+
+    /**
+     * Set the time to wait before polling the mailbox again after it has
+     * been emptied.
+     */
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = Math.max(pollInterval, 0);
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Set the number of messages fetched per POP3 session.  As long as the
+     * mailbox holds more messages, the next session is started without
+     * waiting for the poll interval.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the size of the worker pool, if threads are used.  Must be called
+     * before the server is started.
+     */
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = Math.max(maxThreads, 1);
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
     /**
      * Accept requests from a given TCP port and send them through the
      * Axis engine for processing.
@@ -94,63 +161,140 @@ public class MailServer implements Runnable {
     public void run() {
         log.info(Messages.getMessage("start00", "MailServer", host + ":" + port));
 
+        if (doThreads) {
+            executor = new AsyncExecutor(maxThreads);
+        }
+
         // Accept and process requests from the socket
         while (!stopped) {
+            boolean more = false;
             try {
-                pop3.connect(host, port);
-                pop3.login(userid, password);
-
-                POP3MessageInfo[] messages = pop3.listMessages();
-                if (messages != null && messages.length > 0) {
-                    for (int i = 0; i < messages.length; i++) {
-                        Reader reader = pop3.retrieveMessage(messages[i].number);
-                        if (reader == null) {
-                            continue;
-                        }
-
-                        StringBuffer buffer = new StringBuffer();
-                        BufferedReader bufferedReader =
-                                new BufferedReader(reader);
-                        int ch;
-                        while ((ch = bufferedReader.read()) != -1) {
-                            buffer.append((char) ch);
-                        }
-                        bufferedReader.close();
-                        ByteArrayInputStream bais = new ByteArrayInputStream(buffer.toString().getBytes());
-                        Properties prop = new Properties();
-                        Session session = Session.getDefaultInstance(prop, null);
-
-                        MimeMessage mimeMsg = new MimeMessage(session, bais);
-                        pop3.deleteMessage(messages[i].number);
-                        if (mimeMsg != null) {
-                            MailWorker worker = new MailWorker(this, mimeMsg);
-                            if (doThreads) {
-                                Thread thread = new Thread(worker);
-                                thread.setDaemon(true);
-                                thread.start();
-                            } else {
-                                worker.run();
-                            }
-                        }
-                    }
-                }
+                more = poll();
             } catch (java.io.InterruptedIOException iie) {
             } catch (Exception e) {
                 log.debug(Messages.getMessage("exception00"), e);
                 break;
-            } finally {
+            }
+            if (!more) {
                 try {
-                    pop3.logout();
-                    pop3.disconnect();
-                    Thread.sleep(3000);
-                } catch (Exception e) {
-                    log.error(Messages.getMessage("exception00"), e);
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    break;
                 }
             }
         }
+        if (executor != null) {
+            executor.shutdown();
+        }
         log.info(Messages.getMessage("quit00", "MailServer"));
     }
 
+    /**
+     * Fetch a batch of messages in one POP3 session and hand them to the
+     * workers.  A batch holds no more messages than there is room for in
+     * the worker pool and its queue, so while the workers are busy the
+     * remaining messages stay in the mailbox.  The messages are only
+     * processed once the session has ended, since POP3 deletes them on QUIT.
+     *
+     * @return true if the mailbox holds more messages
+     */
+    private boolean poll() throws Exception {
+        int room = reserve();
+        LinkedList batch = new LinkedList();
+        boolean more = false;
+
+        pop3.connect(host, port);
+        try {
+            pop3.login(userid, password);
+
+            POP3MessageInfo[] messages = pop3.listMessages();
+            if (messages != null) {
+                int i = 0;
+                for (; i < messages.length && batch.size() < room; i++) {
+                    Reader reader = pop3.retrieveMessage(messages[i].number);
+                    if (reader == null) {
+                        continue;
+                    }
+
+                    StringBuffer buffer = new StringBuffer();
+                    BufferedReader bufferedReader =
+                            new BufferedReader(reader);
+                    char[] chars = new char[4096];
+                    int n;
+                    while ((n = bufferedReader.read(chars)) != -1) {
+                        buffer.append(chars, 0, n);
+                    }
+                    bufferedReader.close();
+                    ByteArrayInputStream bais = new ByteArrayInputStream(buffer.toString().getBytes());
+
+                    batch.add(new MimeMessage(session, bais));
+                    pop3.deleteMessage(messages[i].number);
+                }
+                more = i < messages.length;
+            }
+            pop3.logout();
+        } finally {
+            pop3.disconnect();
+        }
+
+        for (Iterator it = batch.iterator(); it.hasNext();) {
+            dispatch(new MailWorker(this, (MimeMessage) it.next()));
+        }
+        return more;
+    }
+
+    /**
+     * Wait until the worker pool can take more messages.
+     *
+     * @return the number of messages to fetch
+     */
+    private int reserve() throws InterruptedException {
+        if (executor == null) {
+            return batchSize;
+        }
+        synchronized (inFlightLock) {
+            while (inFlight >= maxThreads + batchSize) {
+                inFlightLock.wait();
+            }
+            return Math.min(batchSize, maxThreads + batchSize - inFlight);
+        }
+    }
+
+    /**
+     * Process a message on a worker thread, or on the calling thread if
+     * threads are not used.
+     */
+    private void dispatch(final MailWorker worker) {
+        if (executor == null) {
+            worker.run();
+            return;
+        }
+        synchronized (inFlightLock) {
+            inFlight++;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        worker.run();
+                    } finally {
+                        finished();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            finished();
+            log.error(Messages.getMessage("exception00"), e);
+        }
+    }
+
+    private void finished() {
+        synchronized (inFlightLock) {
+            inFlight--;
+            inFlightLock.notifyAll();
+        }
+    }
+
     /**
      * POP3 connection
      */
@@ -231,6 +375,16 @@ public class MailServer implements Runnable {
             int port = ((opts.isFlagSet('p') > 0) ? opts.getPort() : 110);
             POP3Client pop3 = new POP3Client();
             MailServer sas = new MailServer(host, port, opts.getUser(), opts.getPassword());
+            String value;
+            if ((value = opts.isValueSet('i')) != null) {
+                sas.setPollInterval(Long.parseLong(value));
+            }
+            if ((value = opts.isValueSet('b')) != null) {
+                sas.setBatchSize(Integer.parseInt(value));
+            }
+            if ((value = opts.isValueSet('x')) != null) {
+                sas.setMaxThreads(Integer.parseInt(value));
+            }
 
             sas.setPOP3(pop3);
             sas.start();
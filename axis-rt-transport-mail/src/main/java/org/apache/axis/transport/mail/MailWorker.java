@@ -27,15 +27,12 @@ import org.apache.axis.server.AxisServer;
 import org.apache.axis.transport.http.HTTPConstants;
 import org.apache.axis.utils.Messages;
 import org.apache.commons.logging.Log;
-import org.apache.commons.net.smtp.SMTPClient;
-import org.apache.commons.net.smtp.SMTPReply;
 
 import javax.mail.Session;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimePart;
 import java.io.ByteArrayOutputStream;
-import java.io.Writer;
 import java.util.Properties;
 
 
@@ -192,28 +189,6 @@ public class MailWorker implements Runnable {
                                 String subject,
                                 Message output)
             throws Exception {
-        SMTPClient client = new SMTPClient();
-        client.connect(smtpHost);
-        
-        // After connection attempt, you should check the reply code to verify
-        // success.
-        System.out.print(client.getReplyString());
-        int reply = client.getReplyCode();
-        if (!SMTPReply.isPositiveCompletion(reply)) {
-            client.disconnect();
-            AxisFault fault = new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
-            throw fault;
-        }
-
-        client.login(smtpHost);
-        System.out.print(client.getReplyString());
-        reply = client.getReplyCode();
-        if (!SMTPReply.isPositiveCompletion(reply)) {
-            client.disconnect();
-            AxisFault fault = new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
-            throw fault;
-        }
-
         MimeMessage msg = new MimeMessage(session);
         msg.setFrom(new InternetAddress(sendFrom));
         msg.addRecipient(MimeMessage.RecipientType.TO, new InternetAddress(replyTo));
@@ -227,26 +202,8 @@ public class MailWorker implements Runnable {
         ByteArrayOutputStream out2 = new ByteArrayOutputStream(8 * 1024);
         msg.writeTo(out2);
 
-        client.setSender(sendFrom);
-        System.out.print(client.getReplyString());
-        client.addRecipient(replyTo);
-        System.out.print(client.getReplyString());
-
-        Writer writer = client.sendMessageData();
-        System.out.print(client.getReplyString());
-        writer.write(out2.toString());
-        writer.flush();
-        writer.close();
-
-        System.out.print(client.getReplyString());
-        if (!client.completePendingCommand()) {
-            System.out.print(client.getReplyString());
-            AxisFault fault = new AxisFault("SMTP", "( Failed to send email )", null, null);
-            throw fault;
-        }
-        System.out.print(client.getReplyString());
-        client.logout();
-        client.disconnect();
+        SMTPConnectionPool.getDefault().send(smtpHost, sendFrom, replyTo,
+                out2.toString());
     }
 
     /**
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.axis.transport.mail;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.AxisProperties;
+import org.apache.axis.components.logger.LogFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.net.smtp.SMTPClient;
+import org.apache.commons.net.smtp.SMTPReply;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Open SMTP connections of the mail transport, kept so that several
+ * messages are sent over one connection instead of connecting and logging
+ * in to the server for each of them.
+ * <p>
+ * After a message has been sent its connection goes back to the pool, and
+ * the next message for the same host is sent over it.  A connection is
+ * closed after <code>maxMessagesPerConnection</code> messages, or when it
+ * has been idle for longer than the idle timeout.  Before an idle
+ * connection is reused it is checked with RSET, since the server may have
+ * closed it meanwhile.  A message is only tried on another connection if
+ * its connection turns out to be closed before the server has accepted the
+ * sender; rejections and failures once the transaction has started are
+ * reported, so that a message is never delivered twice.
+ * <p>
+ * The limits of the default pool are set with the
+ * <code>axis.mail.smtp.maxMessagesPerConnection</code> and
+ * <code>axis.mail.smtp.idleTimeout</code> properties.
+ */
+public class SMTPConnectionPool {
+    protected static Log log =
+        LogFactory.getLog(SMTPConnectionPool.class.getName());
+
+    public static final String PROP_MAX_MESSAGES =
+        "axis.mail.smtp.maxMessagesPerConnection";
+    public static final String PROP_IDLE_TIMEOUT =
+        "axis.mail.smtp.idleTimeout";
+
+    public static final int DEFAULT_MAX_MESSAGES = 100;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    /** Idle connections kept per host */
+    private static final int MAX_IDLE = 4;
+
+    private static SMTPConnectionPool defaultPool;
+
+    private final int maxMessages;
+    private final long idleTimeout;
+
+    /** host -> LinkedList of idle connections, most recently used first */
+    private final HashMap idle = new HashMap();
+
+    /**
+     * Return the pool used by {@link MailSender} and {@link MailWorker}.
+     */
+    public static synchronized SMTPConnectionPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new SMTPConnectionPool(
+                    (int) getLongProperty(PROP_MAX_MESSAGES, DEFAULT_MAX_MESSAGES),
+                    getLongProperty(PROP_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+        }
+        return defaultPool;
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = AxisProperties.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(name + "=" + value, e);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @param maxMessages the number of messages sent over a connection
+     *                    before it is closed
+     * @param idleTimeout the time in milliseconds an unused connection is
+     *                    kept open
+     */
+    public SMTPConnectionPool(int maxMessages, long idleTimeout) {
+        this.maxMessages = Math.max(maxMessages, 1);
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxMessagesPerConnection() {
+        return maxMessages;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Send a message.
+     *
+     * @param host the SMTP server
+     * @param from the envelope sender
+     * @param to   the envelope recipient
+     * @param data the message, headers included
+     * @throws Exception if the message could not be sent
+     */
+    public void send(String host, String from, String to, String data)
+            throws Exception {
+        Connection conn = checkOut(host);
+        boolean reused = (conn != null);
+        if (conn == null) {
+            conn = new Connection(host, createClient());
+        }
+        try {
+            try {
+                conn.setSender(from);
+            } catch (AxisFault e) {
+                // rejected by the server
+                throw e;
+            } catch (IOException e) {
+                if (!reused) {
+                    throw e;
+                }
+                // closed by the server since it was checked; nothing of the
+                // message has been accepted yet
+                log.debug(e);
+                conn.close();
+                conn = new Connection(host, createClient());
+                conn.setSender(from);
+            }
+            conn.send(to, data);
+        } catch (Exception e) {
+            conn.close();
+            throw e;
+        }
+        checkIn(conn);
+    }
+
+    /**
+     * Create the client of a new connection.
+     */
+    protected SMTPClient createClient() {
+        return new SMTPClient();
+    }
+
+    /**
+     * Close all idle connections.
+     */
+    public void close() {
+        LinkedList closing = new LinkedList();
+        synchronized (idle) {
+            for (Iterator it = idle.values().iterator(); it.hasNext();) {
+                closing.addAll((LinkedList) it.next());
+            }
+            idle.clear();
+        }
+        for (Iterator it = closing.iterator(); it.hasNext();) {
+            ((Connection) it.next()).close();
+        }
+    }
+
+    /**
+     * Take an idle connection to the host that still works, closing those
+     * that have been idle for too long or have been closed by the server.
+     *
+     * @return the connection, or <code>null</code> if there is none
+     */
+    private Connection checkOut(String host) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Connection result = null;
+            LinkedList expired = null;
+            synchronized (idle) {
+                LinkedList list = (LinkedList) idle.get(host);
+                while (list != null && !list.isEmpty()) {
+                    Connection conn = (Connection) list.removeFirst();
+                    if (now - conn.lastUsed < idleTimeout) {
+                        result = conn;
+                        break;
+                    }
+                    if (expired == null) {
+                        expired = new LinkedList();
+                    }
+                    expired.add(conn);
+                }
+            }
+            if (expired != null) {
+                for (Iterator it = expired.iterator(); it.hasNext();) {
+                    ((Connection) it.next()).close();
+                }
+            }
+            if (result == null || result.isAlive()) {
+                return result;
+            }
+            result.close();
+        }
+    }
+
+    private void checkIn(Connection conn) {
+        Connection surplus = conn;
+        if (conn.messages < maxMessages) {
+            synchronized (idle) {
+                LinkedList list = (LinkedList) idle.get(conn.host);
+                if (list == null) {
+                    list = new LinkedList();
+                    idle.put(conn.host, list);
+                }
+                list.addFirst(conn);
+                surplus = (list.size() > MAX_IDLE)
+                        ? (Connection) list.removeLast() : null;
+            }
+        }
+        if (surplus != null) {
+            surplus.close();
+        }
+    }
+
+    /**
+     * An SMTP connection and the number of messages sent over it.
+     */
+    private static class Connection {
+        final String host;
+        final SMTPClient client;
+        int messages = 0;
+        long lastUsed;
+
+        Connection(String host, SMTPClient client) throws Exception {
+            this.host = host;
+            this.client = client;
+            client.connect(host);
+
+            // After connection attempt, you should check the reply code to
+            // verify success.
+            if (!SMTPReply.isPositiveCompletion(client.getReplyCode())) {
+                client.disconnect();
+                throw new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
+            }
+            if (!client.login(host)) {
+                client.disconnect();
+                throw new AxisFault("SMTP", "( SMTP server refused connection )", null, null);
+            }
+        }
+
+        /**
+         * Check that the server still answers, and reset the transaction.
+         */
+        boolean isAlive() {
+            try {
+                return client.reset();
+            } catch (IOException e) {
+                log.debug(e);
+                return false;
+            }
+        }
+
+        /**
+         * Start a transaction: MAIL FROM.
+         *
+         * @throws AxisFault if the server rejects the sender
+         * @throws IOException if the connection is closed
+         */
+        void setSender(String from) throws IOException {
+            if (!client.setSender(from)) {
+                throw new AxisFault("SMTP", "( " + client.getReplyString().trim() + " )", null, null);
+            }
+        }
+
+        /**
+         * Finish the transaction started by {@link #setSender}: RCPT TO and
+         * DATA.
+         */
+        void send(String to, String data) throws Exception {
+            if (!client.addRecipient(to)) {
+                throw new AxisFault("SMTP", "( " + client.getReplyString().trim() + " )", null, null);
+            }
+            Writer writer = client.sendMessageData();
+            if (writer == null) {
+                throw new AxisFault("SMTP", "( " + client.getReplyString().trim() + " )", null, null);
+            }
+            writer.write(data);
+            writer.close();
+            if (!client.completePendingCommand()) {
+                throw new AxisFault("SMTP", "( Failed to send email )", null, null);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(client.getReplyString());
+            }
+            messages++;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void close() {
+            if (!client.isConnected()) {
+                return;
+            }
+            try {
+                client.logout();
+            } catch (Exception e) {
+                log.debug(e);
+            }
+            try {
+                client.disconnect();
+            } catch (Exception e) {
+                log.debug(e);
+            }
+        }
+    }
+}
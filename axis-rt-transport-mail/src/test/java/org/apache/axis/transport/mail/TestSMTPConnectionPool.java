@@ -0,0 +1,230 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.axis.transport.mail;
+
+import junit.framework.TestCase;
+import org.apache.commons.net.smtp.SMTPClient;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the reuse, expiry and retry rules of {@link SMTPConnectionPool}
+ * with scripted SMTP clients.
+ */
+public class TestSMTPConnectionPool extends TestCase {
+    private static final String HOST = "mail.example.com";
+
+    /** The clients created by the pool, in order */
+    private List clients;
+
+    /** Messages that made it through DATA */
+    private List delivered;
+
+    protected void setUp() {
+        clients = new ArrayList();
+        delivered = new ArrayList();
+    }
+
+    private SMTPConnectionPool createPool(int maxMessages, long idleTimeout) {
+        return new SMTPConnectionPool(maxMessages, idleTimeout) {
+            protected SMTPClient createClient() {
+                FakeClient client = new FakeClient();
+                clients.add(client);
+                return client;
+            }
+        };
+    }
+
+    private FakeClient client(int i) {
+        return (FakeClient) clients.get(i);
+    }
+
+    public void testReuse() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 60000);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        pool.send(HOST, "a@example.com", "b@example.com", "two");
+        assertEquals(1, clients.size());
+        assertEquals(1, client(0).resets);
+        assertEquals(2, delivered.size());
+        pool.close();
+        assertFalse(client(0).connected);
+    }
+
+    public void testMaxMessages() throws Exception {
+        SMTPConnectionPool pool = createPool(2, 60000);
+        for (int i = 0; i < 3; i++) {
+            pool.send(HOST, "a@example.com", "b@example.com", "m" + i);
+        }
+        assertEquals(2, clients.size());
+        assertFalse(client(0).connected);
+        pool.close();
+    }
+
+    public void testIdleExpiry() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 0);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        pool.send(HOST, "a@example.com", "b@example.com", "two");
+        assertEquals(2, clients.size());
+        assertFalse(client(0).connected);
+        assertEquals(0, client(0).resets);
+        pool.close();
+    }
+
+    /**
+     * A connection the server closed while it was idle is found out at
+     * checkout and replaced.
+     */
+    public void testStaleConnectionReplaced() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 60000);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        client(0).dropped = true;
+        pool.send(HOST, "a@example.com", "b@example.com", "two");
+        assertEquals(2, clients.size());
+        assertEquals(2, delivered.size());
+        assertEquals(1, client(1).senders);
+        pool.close();
+    }
+
+    /**
+     * A connection closed between the check and MAIL FROM is replaced too,
+     * since the server has accepted nothing of the message yet.
+     */
+    public void testClosedBeforeSender() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 60000);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        client(0).dropAtSender = true;
+        pool.send(HOST, "a@example.com", "b@example.com", "two");
+        assertEquals(2, clients.size());
+        assertEquals(2, delivered.size());
+        pool.close();
+    }
+
+    public void testRejectedSenderNotRetried() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 60000);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        client(0).rejectSender = true;
+        try {
+            pool.send(HOST, "a@example.com", "b@example.com", "two");
+            fail("rejection not reported");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, clients.size());
+        assertEquals(2, client(0).senders);
+        assertFalse(client(0).connected);
+    }
+
+    public void testFailureAfterDataNotRetried() throws Exception {
+        SMTPConnectionPool pool = createPool(10, 60000);
+        pool.send(HOST, "a@example.com", "b@example.com", "one");
+        client(0).failCompletion = true;
+        try {
+            pool.send(HOST, "a@example.com", "b@example.com", "two");
+            fail("failure not reported");
+        } catch (Exception e) {
+            // expected
+        }
+        assertEquals(1, clients.size());
+        assertEquals(2, delivered.size());
+        assertFalse(client(0).connected);
+    }
+
+    /**
+     * An SMTP client that talks to no server and fails as told.
+     */
+    private class FakeClient extends SMTPClient {
+        boolean connected;
+        boolean dropped;
+        boolean dropAtSender;
+        boolean rejectSender;
+        boolean failCompletion;
+        int resets;
+        int senders;
+
+        public void connect(String host) throws IOException {
+            connected = true;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        public void disconnect() throws IOException {
+            connected = false;
+        }
+
+        public int getReplyCode() {
+            return 220;
+        }
+
+        public String getReplyString() {
+            return rejectSender ? "550 rejected\r\n" : "250 OK\r\n";
+        }
+
+        public boolean login(String host) throws IOException {
+            return true;
+        }
+
+        public boolean logout() throws IOException {
+            checkConnection();
+            return true;
+        }
+
+        public boolean reset() throws IOException {
+            checkConnection();
+            resets++;
+            return true;
+        }
+
+        public boolean setSender(String address) throws IOException {
+            if (dropAtSender) {
+                dropped = true;
+            }
+            checkConnection();
+            senders++;
+            return !rejectSender;
+        }
+
+        public boolean addRecipient(String address) throws IOException {
+            checkConnection();
+            return true;
+        }
+
+        public Writer sendMessageData() throws IOException {
+            checkConnection();
+            return new StringWriter() {
+                public void close() throws IOException {
+                    delivered.add(toString());
+                }
+            };
+        }
+
+        public boolean completePendingCommand() throws IOException {
+            checkConnection();
+            return !failCompletion;
+        }
+
+        private void checkConnection() throws IOException {
+            if (dropped) {
+                throw new IOException("Connection closed without indication.");
+            }
+        }
+    }
+}
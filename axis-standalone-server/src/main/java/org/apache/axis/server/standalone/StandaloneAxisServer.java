@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.axis.components.threads.ThreadFactoryFactory;
+import org.apache.axis.components.threads.VirtualThreadFactory;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.SessionManager;
 import org.mortbay.jetty.servlet.Context;
@@ -44,6 +46,7 @@ public final class StandaloneAxisServer {
     private File workDir;
     private int maxSessions = -1;
     private File[] jwsDirs;
+    private boolean virtualThreads;
     
     private Server server;
     private QuitListener quitListener;
@@ -80,6 +83,18 @@ public final class StandaloneAxisServer {
         this.jwsDirs = jwsDirs == null ? null : (File[])jwsDirs.clone();
     }
 
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Run requests, and the asynchronous and one-way calls made by services,
+     * on virtual threads instead of pooled ones.  Requires Java 21 or later.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     public void init() throws ServerException {
         StandaloneAxisServlet servlet = new StandaloneAxisServlet();
         
@@ -105,6 +120,10 @@ public final class StandaloneAxisServer {
         
         server = new Server(port);
         server.setGracefulShutdown(1000);
+        if (virtualThreads && VirtualThreadFactory.isSupported()) {
+            server.setThreadPool(new VirtualThreadPool());
+            ThreadFactoryFactory.setFactory(new VirtualThreadFactory());
+        }
         Context context = new Context(server, "/axis");
         context.setBaseResource(new ResourceCollection((Resource[])resources.toArray(new Resource[resources.size()])));
         SessionManager sessionManager;
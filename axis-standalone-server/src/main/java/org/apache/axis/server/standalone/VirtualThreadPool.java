@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.axis.server.standalone;
+
+import org.apache.axis.components.threads.ThreadFactory;
+import org.apache.axis.components.threads.VirtualThreadFactory;
+import org.mortbay.component.AbstractLifeCycle;
+import org.mortbay.thread.ThreadPool;
+
+/**
+ * Jetty thread pool that runs every job on a virtual thread of its own, so
+ * that requests waiting for I/O (e.g. for a downstream service) don't tie up
+ * a pooled thread.  Requires Java 21 or later.
+ */
+final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ThreadFactory threadFactory = new VirtualThreadFactory();
+    private int threads;
+    
+    public boolean dispatch(final Runnable job) {
+        if (!isRunning()) {
+            return false;
+        }
+        synchronized (this) {
+            threads++;
+        }
+        Thread thread = threadFactory.newThread(new Runnable() {
+            public void run() {
+                try {
+                    job.run();
+                } finally {
+                    synchronized (VirtualThreadPool.this) {
+                        threads--;
+                    }
+                }
+            }
+        });
+        thread.start();
+        return true;
+    }
+
+    public synchronized void join() throws InterruptedException {
+        while (isRunning()) {
+            wait();
+        }
+    }
+
+    protected void doStop() throws Exception {
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    public synchronized int getThreads() {
+        return threads;
+    }
+
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.axis.server.standalone.cli;
 import java.io.File;
 import java.io.PrintWriter;
 
+import org.apache.axis.components.threads.VirtualThreadFactory;
 import org.apache.axis.server.standalone.StandaloneAxisServer;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -63,6 +64,11 @@ public final class Configurator {
             option.setArgName("count");
             options.addOption(option);
         }
+        
+        {
+            Option option = new Option("t", false, "process requests on virtual threads (requires Java 21 or later)");
+            options.addOption(option);
+        }
     }
     
     public void printHelp(PrintWriter pw, String app) {
@@ -94,5 +100,11 @@ public final class Configurator {
             }
             server.setJwsDirs(jwsDirs);
         }
+        if (cmdLine.hasOption("t")) {
+            if (!VirtualThreadFactory.isSupported()) {
+                throw new ConfiguratorException("Virtual threads require Java 21 or later");
+            }
+            server.setVirtualThreads(true);
+        }
     }
 }